@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the number of rows per second evaluated by {@link BatchEvaluator}
+ * with evaluating each row on its own, and the scalar loops of the batch
+ * evaluator with its Vector API loops. Scores are in rows per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BatchBenchmark.ROW_COUNT)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    /**
+     * Number of rows evaluated by each invocation.
+     */
+    static final int ROW_COUNT = 1 << 20;
+
+    /**
+     * Expression to evaluate, with variables x and y.
+     */
+    @Param({
+        "x * y + x / 2 - y",
+        "(x + y) * (x - y) / (x * x + y * y + 1) - max(x, y)",
+        "sqrt(x * x + y * y) * sin(x) + cos(y)",
+    })
+    private String expression;
+
+    /**
+     * Number of rows evaluated by each instruction of the batch evaluator.
+     */
+    @Param({"256", "1024", "4096"})
+    private int chunkSize;
+
+    /**
+     * Values of x and y for each row.
+     */
+    private double[][] columns;
+
+    /**
+     * Receives the value of the expression for each row.
+     */
+    private double[] output;
+
+    /**
+     * Expression tree, walked once per row.
+     */
+    private ExpressionNode root;
+
+    /**
+     * Program, run once per row.
+     */
+    private Program program;
+
+    /**
+     * Program, run once per chunk.
+     */
+    private BatchEvaluator batchEvaluator;
+
+    /**
+     * Program, run once per chunk on the Vector API.
+     */
+    private BatchEvaluator vectorEvaluator;
+
+    /**
+     * Builds the columns and compiles the expression once per trial.
+     */
+    @Setup
+    public void setUp() {
+        final SplittableRandom random = new SplittableRandom(42);
+        columns = new double[2][ROW_COUNT];
+        for (double[] column : columns) {
+            for (int row = 0; row < ROW_COUNT; row++) {
+                column[row] = random.nextDouble(-100, 100);
+            }
+        }
+        output = new double[ROW_COUNT];
+        root = Main.buildExpressionTree(expression);
+        program = ProgramCompiler.compile(root);
+        batchEvaluator = new BatchEvaluator(program, chunkSize);
+        vectorEvaluator = new BatchEvaluator(program, chunkSize, true);
+        if (!vectorEvaluator.isVectorized()) {
+            throw new IllegalStateException("The Vector API is not available");
+        }
+    }
+
+    /**
+     * Evaluates every row with {@link DoubleEvaluator}.
+     *
+     * @return output array
+     */
+    @Benchmark
+    public double[] perRowTree() {
+        final DoubleEvaluator evaluator = new DoubleEvaluator();
+        final double[] variables = new double[2];
+        for (int row = 0; row < ROW_COUNT; row++) {
+            variables[0] = columns[0][row];
+            variables[1] = columns[1][row];
+            output[row] = evaluator.visit(root, variables);
+        }
+        return output;
+    }
+
+    /**
+     * Evaluates every row with the stack machine, reusing one frame.
+     *
+     * @return output array
+     */
+    @Benchmark
+    public double[] perRowProgram() {
+        final double[] frame = new double[program.getFrameSize()];
+        final double[] variables = new double[2];
+        for (int row = 0; row < ROW_COUNT; row++) {
+            variables[0] = columns[0][row];
+            variables[1] = columns[1][row];
+            output[row] = program.evaluate(variables, frame);
+        }
+        return output;
+    }
+
+    /**
+     * Evaluates all rows with the batch evaluator.
+     *
+     * @return output array
+     */
+    @Benchmark
+    public double[] batch() {
+        batchEvaluator.evaluate(columns, output);
+        return output;
+    }
+
+    /**
+     * Evaluates all rows with the vectorized batch evaluator.
+     *
+     * @return output array
+     */
+    @Benchmark
+    public double[] batchVectorized() {
+        vectorEvaluator.evaluate(columns, output);
+        return output;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares visiting a large tree through {@link ExpressionNode#accept}
+ * against the string switch on the simple class name that the visitor
+ * used before the node hierarchy was sealed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+    /**
+     * Number of times the base expression is repeated in the tree.
+     */
+    @Param({"100", "1000"})
+    private int repetitions;
+
+    /**
+     * Tree under test.
+     */
+    private ExpressionNode root;
+
+    /**
+     * Visitor dispatching through accept.
+     */
+    private final EvaluateExpressionVisitor acceptVisitor = new EvaluateExpressionVisitor();
+
+    /**
+     * Visitor dispatching on the simple class name.
+     */
+    private final EvaluateExpressionVisitor stringSwitchVisitor = new StringSwitchVisitor();
+
+    /**
+     * Builds a tree mixing every node type.
+     */
+    @Setup
+    public void setUp() {
+        final StringBuilder expression = new StringBuilder("0");
+        for (int i = 0; i < repetitions; i++) {
+            expression.append(" + (sqrt(4) * -2 / 3 - pi) * (e - 1)");
+        }
+        root = Main.buildExpressionTree(expression.toString());
+    }
+
+    /**
+     * Evaluates the tree with accept based dispatch.
+     *
+     * @return value of the tree
+     */
+    @Benchmark
+    public double accept() {
+        return acceptVisitor.visit(root);
+    }
+
+    /**
+     * Evaluates the tree with string switch dispatch.
+     *
+     * @return value of the tree
+     */
+    @Benchmark
+    public double stringSwitch() {
+        return stringSwitchVisitor.visit(root);
+    }
+
+    /**
+     * Evaluation visitor restoring the previous dispatch strategy.
+     */
+    private static final class StringSwitchVisitor extends EvaluateExpressionVisitor {
+
+        @Override
+        public Double visit(ExpressionNode node) {
+            return switch (node.getClass().getSimpleName()) {
+                case "AdditionNode" -> visit((AdditionNode) node);
+                case "SubtractionNode" -> visit((SubtractionNode) node);
+                case "MultiplicationNode" -> visit((MultiplicationNode) node);
+                case "DivisionNode" -> visit((DivisionNode) node);
+                case "NegateNode" -> visit((NegateNode) node);
+                case "MethodNode" -> visit((MethodNode) node);
+                case "NumberNode" -> visit((NumberNode) node);
+                case "ConstantNode" -> visit((ConstantNode) node);
+                case "FactorialNode" -> visit((FactorialNode) node);
+                case "VariableNode" -> visit((VariableNode) node);
+                default -> throw new IllegalStateException("Unexpected value: " + node.getClass());
+            };
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the evaluation of a factorial node across argument ranges:
+ * small and large integers from the table, integers past the largest
+ * finite factorial, and non-integers computed with the gamma function.
+ * The previous multiplication loop is measured alongside for comparison,
+ * as are exact factorials.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FactorialBenchmark {
+
+    /**
+     * Argument of the factorial.
+     */
+    @Param({"5", "20", "100", "170", "1000", "2.5", "99.5", "-0.5"})
+    private double argument;
+
+    /**
+     * Factorial of a variable, so that the argument is not folded.
+     */
+    private ExpressionNode tree;
+
+    /**
+     * Values of the variables, holding the argument.
+     */
+    private double[] variables;
+
+    /**
+     * Evaluates the tree.
+     */
+    private final DoubleEvaluator evaluator = new DoubleEvaluator();
+
+    /**
+     * Builds the tree once per trial.
+     */
+    @Setup
+    public void setUp() {
+        tree = Main.buildExpressionTree("x!", List.of("x"));
+        variables = new double[] {argument};
+    }
+
+    /**
+     * Evaluates the factorial node.
+     *
+     * @return factorial of the argument
+     */
+    @Benchmark
+    public double evaluate() {
+        return evaluator.visit(tree, variables);
+    }
+
+    /**
+     * Computes the factorial with the multiplication loop used before the
+     * table and the gamma function, which truncates non-integers.
+     *
+     * @return factorial of the argument, truncated to an integer
+     */
+    @Benchmark
+    public double loop() {
+        double factorial = 1.0;
+        for (int i = 1; i <= variables[0]; i++) {
+            factorial *= i;
+        }
+        return factorial;
+    }
+
+    /**
+     * Computes the exact factorial of the argument, truncated to an
+     * integer.
+     *
+     * @return exact factorial of the argument
+     */
+    @Benchmark
+    public BigInteger exact() {
+        return FactorialUtils.exactFactorial(Math.max(0, (int) variables[0]));
+    }
+}
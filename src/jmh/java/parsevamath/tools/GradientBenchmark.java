@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the time to compute the full gradient of an expression with
+ * many variables: central finite differences of the compiled expression,
+ * one compiled symbolic derivative per variable, and one forward and
+ * backward sweep of a gradient tape. In a chain, each derivative only
+ * involves the neighbours of its variable; in a norm, each derivative
+ * involves every variable.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GradientBenchmark {
+
+    /**
+     * Step of the finite differences.
+     */
+    private static final double STEP = 1.0e-6;
+
+    /**
+     * Number of variables of the expression.
+     */
+    @Param({"10", "100", "300"})
+    private int variableCount;
+
+    /**
+     * Shape of the expression.
+     */
+    @Param({"chain", "norm"})
+    private String shape;
+
+    /**
+     * Values of the variables.
+     */
+    private double[] variables;
+
+    /**
+     * Receives the gradient.
+     */
+    private double[] gradient;
+
+    /**
+     * The expression, compiled for the stack machine.
+     */
+    private CompiledExpression expression;
+
+    /**
+     * The derivative by each variable, compiled for the stack machine.
+     */
+    private List<CompiledExpression> derivatives;
+
+    /**
+     * The expression, compiled into a gradient tape.
+     */
+    private GradientTape tape;
+
+    /**
+     * Frame of the gradient tape.
+     */
+    private double[] frame;
+
+    /**
+     * Builds the expression over the variables, and compiles it once per
+     * trial.
+     */
+    @Setup
+    public void setUp() {
+        final List<String> names = new ArrayList<>();
+        final StringJoiner text = new StringJoiner(" + ");
+        variables = new double[variableCount];
+        for (int slot = 0; slot < variableCount; slot++) {
+            names.add("v" + (char) ('a' + slot / 26) + (char) ('a' + slot % 26));
+            variables[slot] = 1 + slot * 0.001;
+            if ("norm".equals(shape)) {
+                text.add(names.get(slot) + " * " + names.get(slot));
+            }
+            else if (slot > 0) {
+                text.add("sin(" + names.get(slot - 1) + ") * " + names.get(slot));
+            }
+        }
+        String source = text.toString();
+        if ("norm".equals(shape)) {
+            source = "sqrt(" + source + ")";
+        }
+        final ExpressionNode root = Main.buildExpressionTree(source, names);
+        expression = Engine.VM.compile(root);
+        derivatives = DerivativeVisitor.gradient(root).stream()
+            .map(Engine.VM::compile)
+            .toList();
+        tape = GradientTapeCompiler.compile(root);
+        frame = new double[tape.getFrameSize()];
+        gradient = new double[variableCount];
+    }
+
+    /**
+     * Computes the gradient by central finite differences.
+     *
+     * @return the gradient
+     */
+    @Benchmark
+    public double[] finiteDifferences() {
+        for (int slot = 0; slot < variableCount; slot++) {
+            final double value = variables[slot];
+            variables[slot] = value + STEP;
+            final double above = expression.evaluate(variables);
+            variables[slot] = value - STEP;
+            final double below = expression.evaluate(variables);
+            variables[slot] = value;
+            gradient[slot] = (above - below) / (2 * STEP);
+        }
+        return gradient;
+    }
+
+    /**
+     * Computes the gradient by evaluating each compiled derivative.
+     *
+     * @return the gradient
+     */
+    @Benchmark
+    public double[] symbolic() {
+        for (int slot = 0; slot < variableCount; slot++) {
+            gradient[slot] = derivatives.get(slot).evaluate(variables);
+        }
+        return gradient;
+    }
+
+    /**
+     * Computes the gradient with the gradient tape.
+     *
+     * @return the gradient
+     */
+    @Benchmark
+    public double[] tape() {
+        tape.evaluate(variables, gradient, frame);
+        return gradient;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares reading an expression file through memory mapped windows with
+ * reading it through a {@link BufferedReader}, both for splitting the file
+ * into lines and for evaluating every line. Scores are in MiB per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(MappedInputBenchmark.FILE_MEBIBYTES)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappedInputBenchmark {
+
+    /**
+     * Size of the expression file.
+     */
+    static final int FILE_MEBIBYTES = 64;
+
+    /**
+     * Expression file.
+     */
+    private Path path;
+
+    /**
+     * Evaluates each line of the file.
+     */
+    private BatchRunner runner;
+
+    /**
+     * Writes a file of random expressions once per trial.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Setup
+    public void setUp() throws IOException {
+        path = Files.createTempFile("expressions", ".txt");
+        final SplittableRandom random = new SplittableRandom(42);
+        final long size = (long) FILE_MEBIBYTES * 1024 * 1024;
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+            long written = 0;
+            while (written < size) {
+                final String line = random.nextInt(1000) + " * " + random.nextDouble()
+                    + " + sqrt(" + random.nextInt(100) + ") - (2 + 3) / 4\n";
+                writer.write(line);
+                written += line.length();
+            }
+        }
+        runner = new BatchRunner(
+            line -> new DoubleEvaluator().visit(ExpressionParser.buildExpressionTreeStrictly(line)));
+    }
+
+    /**
+     * Deletes the expression file.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(path);
+    }
+
+    /**
+     * Splits the mapped file into lines.
+     *
+     * @return number of lines
+     * @throws IOException if the file cannot be read
+     */
+    @Benchmark
+    public long splitMapped() throws IOException {
+        return MappedLineReader.forEachLine(path, line -> line.size());
+    }
+
+    /**
+     * Splits the file into lines with a reader.
+     *
+     * @return number of lines
+     * @throws IOException if the file cannot be read
+     */
+    @Benchmark
+    public long splitReader() throws IOException {
+        long lineCount = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            while (reader.readLine() != null) {
+                lineCount++;
+            }
+        }
+        return lineCount;
+    }
+
+    /**
+     * Evaluates every line of the mapped file.
+     *
+     * @return counts of the run
+     * @throws IOException if the file cannot be read
+     */
+    @Benchmark
+    public BatchRunner.Summary evaluateMapped() throws IOException {
+        return runner.run(path, Writer.nullWriter());
+    }
+
+    /**
+     * Evaluates every line of the file read with a reader.
+     *
+     * @return counts of the run
+     * @throws IOException if the file cannot be read
+     */
+    @Benchmark
+    public BatchRunner.Summary evaluateReader() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            return runner.run(reader, Writer.nullWriter());
+        }
+    }
+}
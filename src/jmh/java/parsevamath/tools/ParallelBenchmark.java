@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how the throughput of {@link ParallelEvaluator} scales with the
+ * number of workers, over the rows of a set of columns and over a list of
+ * expressions. Scores are in rows or expressions per second; run with
+ * {@code -p threads=1,2,4,...} up to the number of cores of the machine.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(ParallelBenchmark.ROW_COUNT)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelBenchmark {
+
+    /**
+     * Number of rows evaluated by each invocation.
+     */
+    static final int ROW_COUNT = 1 << 22;
+
+    /**
+     * Number of expressions evaluated by each invocation of the list mode.
+     */
+    static final int EXPRESSION_COUNT = 1 << 16;
+
+    /**
+     * Number of workers of the pool.
+     */
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    private int threads;
+
+    /**
+     * Expression to evaluate, with variables x and y.
+     */
+    @Param("sqrt(x * x + y * y) * sin(x) + cos(y)")
+    private String expression;
+
+    /**
+     * Number of distinct expressions in the list mode, which repeats them
+     * in random order.
+     */
+    @Param({"1024", "65536"})
+    private int distinctExpressions;
+
+    /**
+     * Values of x and y for each row.
+     */
+    private double[][] columns;
+
+    /**
+     * Receives the value of the expression for each row.
+     */
+    private double[] output;
+
+    /**
+     * Expressions of the list mode, with the variables replaced by literals.
+     */
+    private List<String> expressions;
+
+    /**
+     * Evaluates the rows of each task.
+     */
+    private BatchEvaluator batchEvaluator;
+
+    /**
+     * Pool of the requested number of workers.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Splits the batch across the pool.
+     */
+    private ParallelEvaluator parallelEvaluator;
+
+    /**
+     * Builds the columns and the pool once per trial.
+     */
+    @Setup
+    public void setUp() {
+        final SplittableRandom random = new SplittableRandom(42);
+        columns = new double[2][ROW_COUNT];
+        for (double[] column : columns) {
+            for (int row = 0; row < ROW_COUNT; row++) {
+                column[row] = random.nextDouble(-100, 100);
+            }
+        }
+        output = new double[ROW_COUNT];
+        expressions = new ArrayList<>(EXPRESSION_COUNT);
+        for (int i = 0; i < EXPRESSION_COUNT; i++) {
+            final int variant = random.nextInt(distinctExpressions);
+            expressions.add(expression.replace("x", Integer.toString(variant))
+                .replace("y", Integer.toString(variant + 1)));
+        }
+        batchEvaluator = new BatchEvaluator(
+            ProgramCompiler.compile(Main.buildExpressionTree(expression)));
+        pool = new ForkJoinPool(threads);
+        parallelEvaluator = new ParallelEvaluator(pool, ParallelEvaluator.DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Shuts the pool down at the end of the trial.
+     */
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Evaluates all rows on the pool.
+     *
+     * @return output array
+     */
+    @Benchmark
+    public double[] evaluate() {
+        parallelEvaluator.evaluate(batchEvaluator, columns, output);
+        return output;
+    }
+
+    /**
+     * Evaluates the list of expressions on the pool.
+     *
+     * @return value of each expression
+     */
+    @Benchmark
+    @OperationsPerInvocation(EXPRESSION_COUNT)
+    public double[] evaluateExpressions() {
+        return parallelEvaluator.evaluate(expressions);
+    }
+}
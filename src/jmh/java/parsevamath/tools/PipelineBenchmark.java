@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parsevamath.tools.grammar.MathLexer;
+import parsevamath.tools.grammar.MathParser;
+
+/**
+ * Measures each stage of the pipeline on its own, from lexing to rendering,
+ * and the whole pipeline end to end. Each stage starts from the output of
+ * the previous stage, built once per trial. Expressions are generated by
+ * shape and size, so that a regression can be traced to the stage and the
+ * kind of expression it affects. Run with {@code -prof gc} to also report
+ * the bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+
+    /**
+     * Shape of the generated expression.
+     */
+    @Param
+    private Shape shape;
+
+    /**
+     * Number of operators of the generated expression.
+     */
+    @Param({"8", "64", "512"})
+    private int size;
+
+    /**
+     * The generated expression.
+     */
+    private String expression;
+
+    /**
+     * Tokens of the expression.
+     */
+    private List<? extends Token> tokens;
+
+    /**
+     * Parse tree of the expression.
+     */
+    private MathParser.CompilationUnitContext parseTree;
+
+    /**
+     * Heterogeneous ast of the expression.
+     */
+    private ExpressionNode expressionTree;
+
+    /**
+     * Homogeneous ast of the expression.
+     */
+    private MathAstNode mathAstTree;
+
+    /**
+     * Generates the expression, and runs each stage once to build the
+     * input of the next one.
+     */
+    @Setup
+    public void setUp() {
+        expression = shape.generate(size);
+        final CommonTokenStream tokenStream =
+            new CommonTokenStream(new MathLexer(CharStreams.fromString(expression)));
+        tokenStream.fill();
+        tokens = tokenStream.getTokens();
+        parseTree = ExpressionParser.parse(expression);
+        expressionTree = new MathAstBuilder().visitCompilationUnit(parseTree);
+        mathAstTree = new HomogeneousAstVisitor().visit(parseTree);
+    }
+
+    /**
+     * Reads the tokens of the expression with {@link MathLexer}.
+     *
+     * @return tokens of the expression
+     */
+    @Benchmark
+    public List<Token> lex() {
+        final CommonTokenStream tokenStream =
+            new CommonTokenStream(new MathLexer(CharStreams.fromString(expression)));
+        tokenStream.fill();
+        return tokenStream.getTokens();
+    }
+
+    /**
+     * Parses the tokens of the expression with {@link MathParser}, in its
+     * default full LL mode.
+     *
+     * @return parse tree of the expression
+     */
+    @Benchmark
+    public MathParser.CompilationUnitContext parse() {
+        final MathParser parser =
+            new MathParser(new CommonTokenStream(new ListTokenSource(tokens)));
+        return parser.compilationUnit();
+    }
+
+    /**
+     * Builds the heterogeneous ast from the parse tree.
+     *
+     * @return root of the expression tree
+     */
+    @Benchmark
+    public ExpressionNode buildExpressionTree() {
+        return new MathAstBuilder().visitCompilationUnit(parseTree);
+    }
+
+    /**
+     * Builds the homogeneous ast from the parse tree.
+     *
+     * @return root of the homogeneous ast
+     */
+    @Benchmark
+    public MathAstNode buildMathAstTree() {
+        return new HomogeneousAstVisitor().visit(parseTree);
+    }
+
+    /**
+     * Evaluates the heterogeneous ast with
+     * {@link EvaluateExpressionVisitor}.
+     *
+     * @return value of the expression
+     */
+    @Benchmark
+    public Double evaluate() {
+        return new EvaluateExpressionVisitor().visit(expressionTree);
+    }
+
+    /**
+     * Renders the homogeneous ast as text.
+     *
+     * @return rendered tree
+     */
+    @Benchmark
+    public String render() {
+        return ParsevaUtils.toStringTree(mathAstTree);
+    }
+
+    /**
+     * Evaluates the expression text with {@link Main#evaluate(String)},
+     * whose expression cache holds the tree after the first call.
+     *
+     * @return value of the expression
+     */
+    @Benchmark
+    public Double endToEnd() {
+        return Main.evaluate(expression);
+    }
+
+    /**
+     * Parses and evaluates the expression text without the expression
+     * cache.
+     *
+     * @return value of the expression
+     */
+    @Benchmark
+    public Double endToEndUncached() {
+        return new EvaluateExpressionVisitor().visit(
+            ExpressionParser.buildExpressionTree(expression));
+    }
+
+    /**
+     * The shapes of generated expressions.
+     */
+    public enum Shape {
+
+        /**
+         * Operators nested in parentheses, such as
+         * {@code 1 + (2 * (3 - (4 / 5)))}, for a parse tree as deep as the
+         * expression is long.
+         */
+        DEEP {
+            @Override
+            String generate(int size) {
+                final StringBuilder builder = new StringBuilder();
+                for (int i = 0; i < size; i++) {
+                    builder.append(i % 9 + 1).append(' ').append(operator(i)).append(" (");
+                }
+                builder.append(size % 9 + 1);
+                builder.append(")".repeat(size));
+                return builder.toString();
+            }
+        },
+
+        /**
+         * A flat chain of operators, such as {@code 1 + 2 * 3 - 4 / 5},
+         * for a parse tree that stays shallow.
+         */
+        WIDE {
+            @Override
+            String generate(int size) {
+                final StringBuilder builder = new StringBuilder();
+                for (int i = 0; i < size; i++) {
+                    builder.append(i % 9 + 1).append(' ').append(operator(i)).append(' ');
+                }
+                return builder.append(size % 9 + 1).toString();
+            }
+        },
+
+        /**
+         * Sums of nested function calls, such as
+         * {@code sqrt(abs(sin(1))) + max(2, cos(3))}.
+         */
+        FUNCTIONS {
+            @Override
+            String generate(int size) {
+                final StringBuilder builder = new StringBuilder("sqrt(abs(sin(1)))");
+                for (int i = 1; i < size; i++) {
+                    builder.append(" + ");
+                    if (i % 2 == 0) {
+                        builder.append("sqrt(abs(sin(").append(i).append(")))");
+                    }
+                    else {
+                        builder.append("max(").append(i).append(", cos(").append(i)
+                            .append("))");
+                    }
+                }
+                return builder.toString();
+            }
+        };
+
+        /**
+         * Operators used in turn by generated expressions.
+         */
+        private static final String OPERATORS = "+*-/";
+
+        /**
+         * Generates an expression of this shape.
+         *
+         * @param size number of operators of the expression
+         * @return the expression
+         */
+        abstract String generate(int size);
+
+        /**
+         * Gets the operator of a position in a generated expression.
+         *
+         * @param index position of the operator
+         * @return the operator
+         */
+        private static char operator(int index) {
+            return OPERATORS.charAt(index % OPERATORS.length());
+        }
+    }
+}
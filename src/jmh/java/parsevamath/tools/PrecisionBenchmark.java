@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the evaluation time of an expression tree across arithmetics:
+ * plain doubles, decimal evaluation that refines cancelling subtrees of a
+ * double evaluation, double-double evaluation of every node, and decimal
+ * evaluation of every node with as many digits as a double-double.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrecisionBenchmark {
+
+    /**
+     * Expression to evaluate.
+     */
+    @Param({
+        "2 * 3 + 4 / 5 - 1",
+        "sqrt(sin(0.5) * sin(0.5) + cos(0.5) * cos(0.5)) + pow(2, 10)",
+        "(1e16 + 1) - 1e16 + 0.1 * 3",
+    })
+    private String expression;
+
+    /**
+     * Tree of the expression.
+     */
+    private ExpressionNode tree;
+
+    /**
+     * Evaluates in double.
+     */
+    private final DoubleEvaluator doubleEvaluator = new DoubleEvaluator();
+
+    /**
+     * Evaluates in double, refining cancellations in decimal.
+     */
+    private final BigDecimalEvaluator adaptiveEvaluator =
+        new BigDecimalEvaluator(new MathContext(BigDecimalEvaluator.DOUBLE_DIGITS));
+
+    /**
+     * Evaluates in double-double.
+     */
+    private final DoubleDoubleEvaluator doubleDoubleEvaluator = new DoubleDoubleEvaluator();
+
+    /**
+     * Evaluates in decimal with 32 digits.
+     */
+    private final BigDecimalEvaluator decimalEvaluator =
+        new BigDecimalEvaluator(new MathContext(DoubleDouble.DIGITS));
+
+    /**
+     * Builds the tree once per trial.
+     */
+    @Setup
+    public void setUp() {
+        tree = Main.buildExpressionTree(expression);
+    }
+
+    /**
+     * Evaluates the tree in double.
+     *
+     * @return value of the expression
+     */
+    @Benchmark
+    public double doubles() {
+        return doubleEvaluator.visit(tree);
+    }
+
+    /**
+     * Evaluates the tree in double, refining cancellations in decimal.
+     *
+     * @return value of the expression
+     */
+    @Benchmark
+    public BigDecimal adaptive() {
+        return adaptiveEvaluator.evaluate(tree);
+    }
+
+    /**
+     * Evaluates every node of the tree in double-double.
+     *
+     * @return value of the expression
+     */
+    @Benchmark
+    public DoubleDouble doubleDouble() {
+        return doubleDoubleEvaluator.visit(tree);
+    }
+
+    /**
+     * Evaluates every node of the tree in decimal with 32 digits.
+     *
+     * @return value of the expression
+     */
+    @Benchmark
+    public BigDecimal decimal() {
+        return decimalEvaluator.visit(tree);
+    }
+}
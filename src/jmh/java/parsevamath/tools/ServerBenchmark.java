@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Load generator for {@link EvaluationServer}. Each benchmark thread holds
+ * one connection and sends one expression per operation, waiting for its
+ * result; the sampled times give the p50 and p99 round trip latencies.
+ * Run with {@code -t <threads>} to vary the number of concurrent clients.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerBenchmark {
+
+    /**
+     * Server shared by all benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        /**
+         * Address the server listens on; port 0 picks a free port.
+         */
+        @Param(":0")
+        private String address;
+
+        /**
+         * Server under test.
+         */
+        private EvaluationServer server;
+
+        /**
+         * Completes when the server stops accepting connections.
+         */
+        private CompletableFuture<Void> serving;
+
+        /**
+         * Starts the server once per trial.
+         *
+         * @throws IOException if the address cannot be bound
+         */
+        @Setup
+        public void setUp() throws IOException {
+            server = EvaluationServer.open(address, Engine.VM, Optimizer.allPasses(),
+                EvaluationServer.DEFAULT_MAX_CONNECTIONS);
+            serving = CompletableFuture.runAsync(server::serve);
+        }
+
+        /**
+         * Stops the server at the end of the trial.
+         *
+         * @throws IOException if the server cannot be closed
+         */
+        @TearDown
+        public void tearDown() throws IOException {
+            server.close();
+            serving.join();
+        }
+    }
+
+    /**
+     * Connection held by a single benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        /**
+         * Expression sent with each request.
+         */
+        @Param("sqrt(3 * 3 + 4 * 4) * sin(pi / 4)")
+        private String expression;
+
+        /**
+         * Connection to the server.
+         */
+        private SocketChannel channel;
+
+        /**
+         * Reads results from the server.
+         */
+        private BufferedReader reader;
+
+        /**
+         * Writes expressions to the server.
+         */
+        private BufferedWriter writer;
+
+        /**
+         * Connects to the server once per trial.
+         *
+         * @param server the server under test
+         * @throws IOException if the server cannot be reached
+         */
+        @Setup
+        public void setUp(Server server) throws IOException {
+            channel = SocketChannel.open(server.server.getLocalAddress());
+            reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+            writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Closes the connection at the end of the trial.
+         *
+         * @throws IOException if the connection cannot be closed
+         */
+        @TearDown
+        public void tearDown() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Sends one expression and waits for its result.
+     *
+     * @param client connection of the current thread
+     * @return result line
+     * @throws IOException if the connection fails
+     */
+    @Benchmark
+    public String roundTrip(Client client) throws IOException {
+        client.writer.write(client.expression);
+        client.writer.newLine();
+        client.writer.flush();
+        return client.reader.readLine();
+    }
+}
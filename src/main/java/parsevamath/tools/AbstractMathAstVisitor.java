@@ -108,26 +108,23 @@ public abstract class AbstractMathAstVisitor<T> {
      */
     abstract T visit(FactorialNode node);
 
+    /**
+     * Visit a variable node.
+     *
+     * @param node variable node to visit
+     * @return the result of calling visit on node
+     */
+    abstract T visit(VariableNode node);
+
     /**
      * This method handles the double dispatch of the visit method for
-     * each concrete node type.
+     * each concrete node type, by letting the node call the visit method
+     * for its own type.
      *
      * @param node the expression node to process
      * @return the result of calling visit on node
-     * @throws IllegalStateException on unknown token
      */
     public T visit(ExpressionNode node) {
-        return switch (node.getClass().getSimpleName()) {
-            case "AdditionNode" -> visit((AdditionNode) node);
-            case "SubtractionNode" -> visit((SubtractionNode) node);
-            case "MultiplicationNode" -> visit((MultiplicationNode) node);
-            case "DivisionNode" -> visit((DivisionNode) node);
-            case "NegateNode" -> visit((NegateNode) node);
-            case "MethodNode" -> visit((MethodNode) node);
-            case "NumberNode" -> visit((NumberNode) node);
-            case "ConstantNode" -> visit((ConstantNode) node);
-            case "FactorialNode" -> visit((FactorialNode) node);
-            default -> throw new IllegalStateException("Unexpected value: " + node.getClass());
-        };
+        return node.accept(this);
     }
 }
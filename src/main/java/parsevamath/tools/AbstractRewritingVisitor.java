@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.List;
+
+/**
+ * This class is the base of visitors that rewrite an expression tree into
+ * a new one. Each visit method rewrites the descendants of a node and
+ * rebuilds the node on top of them; leaves are returned as they are.
+ * Subclasses override the visit methods of the nodes they simplify.
+ */
+abstract class AbstractRewritingVisitor extends AbstractMathAstVisitor<ExpressionNode> {
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation rebuilds the node from its rewritten operands.
+     */
+    @Override
+    ExpressionNode visit(AdditionNode node) {
+        return new AdditionNode(visit(node.left()), visit(node.right()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation rebuilds the node from its rewritten operands.
+     */
+    @Override
+    ExpressionNode visit(SubtractionNode node) {
+        return new SubtractionNode(visit(node.left()), visit(node.right()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation rebuilds the node from its rewritten operands.
+     */
+    @Override
+    ExpressionNode visit(MultiplicationNode node) {
+        return new MultiplicationNode(visit(node.left()), visit(node.right()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation rebuilds the node from its rewritten operands.
+     */
+    @Override
+    ExpressionNode visit(DivisionNode node) {
+        return new DivisionNode(visit(node.left()), visit(node.right()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation rebuilds the node from its rewritten inner node.
+     */
+    @Override
+    ExpressionNode visit(NegateNode node) {
+        return new NegateNode(visit(node.innerNode()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation rebuilds the node from its rewritten arguments.
+     */
+    @Override
+    ExpressionNode visit(MethodNode node) {
+        final List<ExpressionNode> arguments = node.arguments().stream()
+            .map(this::visit)
+            .toList();
+        return new MethodNode(node.functionName(), node.function(), arguments);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the node itself.
+     */
+    @Override
+    ExpressionNode visit(NumberNode node) {
+        return node;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the node itself.
+     */
+    @Override
+    ExpressionNode visit(ConstantNode node) {
+        return node;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation rebuilds the node from its rewritten inner node.
+     */
+    @Override
+    ExpressionNode visit(FactorialNode node) {
+        return new FactorialNode(visit(node.innerNode()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the node itself.
+     */
+    @Override
+    ExpressionNode visit(VariableNode node) {
+        return node;
+    }
+
+    /**
+     * Determines if a node is a number or constant literal.
+     *
+     * @param node the node to check
+     * @return true if node has a value known at compile time
+     */
+    static boolean isLiteral(ExpressionNode node) {
+        return node instanceof NumberNode || node instanceof ConstantNode;
+    }
+
+    /**
+     * Determines if a node is a number with the given value.
+     *
+     * @param node the node to check
+     * @param value the value to compare to
+     * @return true if node is a number node equal to value
+     */
+    static boolean isNumber(ExpressionNode node, double value) {
+        return node instanceof NumberNode number && number.value() == value;
+    }
+}
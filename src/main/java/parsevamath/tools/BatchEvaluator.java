@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Evaluates a {@link Program} over many rows at once. The variables of the
+ * program are given as columns, one array per slot, and each instruction
+ * is run over a whole chunk of rows before the next one, instead of running
+ * the whole program once per row. The cost of dispatching an instruction is
+ * paid once per chunk, and the loop over a chunk is simple enough for the
+ * JIT to unroll and vectorize.
+ *
+ * <p>Each stack slot and register of the program is a buffer holding one
+ * chunk of rows. The chunk size should be small enough for these buffers
+ * to stay in the L1 or L2 cache; the default of {@value #DEFAULT_CHUNK_SIZE}
+ * rows needs 8 KiB per slot.
+ *
+ * <p>The loops over a chunk can also run on the incubating Vector API, see
+ * {@link #isVectorSupported()}. Operations without a vector equivalent fall
+ * back to scalar loops, so both forms give the same results.
+ *
+ * <p>Batch evaluators are immutable, and each evaluation allocates its own
+ * buffers, so one evaluator can be used by any number of threads at once.
+ */
+public final class BatchEvaluator {
+
+    /**
+     * Default number of rows evaluated by each instruction.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    /**
+     * Program to evaluate.
+     */
+    private final Program program;
+
+    /**
+     * Number of rows evaluated by each instruction.
+     */
+    private final int chunkSize;
+
+    /**
+     * Loops run over the buffers of a chunk.
+     */
+    private final ColumnKernels kernels;
+
+    /**
+     * Whether the program reads each variable slot.
+     */
+    private final boolean[] readSlots;
+
+    /**
+     * Creates a scalar batch evaluator with the default chunk size.
+     *
+     * @param program program to evaluate
+     */
+    public BatchEvaluator(Program program) {
+        this(program, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a scalar batch evaluator.
+     *
+     * @param program program to evaluate
+     * @param chunkSize number of rows evaluated by each instruction
+     */
+    public BatchEvaluator(Program program, int chunkSize) {
+        this(program, chunkSize, false);
+    }
+
+    /**
+     * Creates a batch evaluator. If vectorized is requested but the Vector
+     * API is not available, the scalar loops are used instead.
+     *
+     * @param program program to evaluate
+     * @param chunkSize number of rows evaluated by each instruction
+     * @param vectorized true to run the loops over a chunk on the Vector API
+     * @throws IllegalArgumentException if chunkSize is not positive
+     */
+    public BatchEvaluator(Program program, int chunkSize, boolean vectorized) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.program = Objects.requireNonNull(program);
+        this.chunkSize = chunkSize;
+        kernels = ColumnKernels.select(vectorized);
+        readSlots = getReadSlots(program);
+    }
+
+    /**
+     * Finds the variable slots that a program reads.
+     *
+     * @param program program to scan
+     * @return whether the program reads each variable slot
+     */
+    private static boolean[] getReadSlots(Program program) {
+        final boolean[] slots = new boolean[program.getVariableCount()];
+        final int[] code = program.getCode();
+        int position = 0;
+        while (position < code.length) {
+            final int opcode = code[position];
+            if (opcode == Program.VARIABLE) {
+                slots[code[position + 1]] = true;
+            }
+            if (opcode == Program.CONST || opcode >= Program.CALL1) {
+                position++;
+            }
+            position++;
+        }
+        return slots;
+    }
+
+    /**
+     * Determines if the Vector API can be used by batch evaluators. It is an
+     * incubator module, so the JVM must be started with
+     * {@code --add-modules jdk.incubator.vector}.
+     *
+     * @return true if vectorized batch evaluators can be created
+     */
+    public static boolean isVectorSupported() {
+        return ColumnKernels.isVectorSupported();
+    }
+
+    /**
+     * Evaluates the first rows of the given columns.
+     *
+     * @param columns the values of the variables, one column per slot
+     * @param rowCount number of rows to evaluate
+     * @return the value of the expression for each row
+     */
+    public double[] evaluate(double[][] columns, int rowCount) {
+        final double[] output = new double[rowCount];
+        evaluate(columns, output, 0, rowCount);
+        return output;
+    }
+
+    /**
+     * Evaluates as many rows of the given columns as output can hold.
+     *
+     * @param columns the values of the variables, one column per slot
+     * @param output receives the value of the expression for each row
+     */
+    public void evaluate(double[][] columns, double[] output) {
+        evaluate(columns, output, 0, output.length);
+    }
+
+    /**
+     * Evaluates a range of rows of the given columns. Entries of output
+     * outside of the range are left untouched.
+     *
+     * @param columns the values of the variables, one column per slot
+     * @param output receives the value of the expression for each row
+     * @param fromRow first row to evaluate, inclusive
+     * @param toRow last row to evaluate, exclusive
+     * @throws IndexOutOfBoundsException if the range is out of output bounds
+     * @throws IllegalArgumentException if a column that the program reads
+     *     is missing, or if a column is too short
+     */
+    public void evaluate(double[][] columns, double[] output, int fromRow, int toRow) {
+        Objects.checkFromToIndex(fromRow, toRow, output.length);
+        checkColumns(columns, toRow);
+        final int bufferSize = Math.min(chunkSize, toRow - fromRow);
+        final double[][] frame = new double[program.getFrameSize()][bufferSize];
+        for (int start = fromRow; start < toRow; start += chunkSize) {
+            final int length = Math.min(chunkSize, toRow - start);
+            run(columns, start, length, frame);
+            System.arraycopy(frame[0], 0, output, start, length);
+        }
+    }
+
+    /**
+     * Gets the number of rows evaluated by each instruction.
+     *
+     * @return chunk size
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Determines if this evaluator runs the loops over a chunk on the
+     * Vector API.
+     *
+     * @return true if this evaluator is vectorized
+     */
+    public boolean isVectorized() {
+        return kernels.isVectorized();
+    }
+
+    /**
+     * Checks that there is a column for every variable slot of the program,
+     * with at least the given number of rows. Columns of slots that the
+     * program does not read may be null.
+     *
+     * @param columns the values of the variables, one column per slot
+     * @param rowCount number of rows that each column must hold
+     * @throws IllegalArgumentException if a column is missing or too short
+     */
+    private void checkColumns(double[][] columns, int rowCount) {
+        final int variableCount = program.getVariableCount();
+        if (columns.length < variableCount) {
+            throw new IllegalArgumentException("Expected " + variableCount
+                + " columns, but got " + columns.length);
+        }
+        for (int slot = 0; slot < variableCount; slot++) {
+            if (readSlots[slot] && columns[slot] == null) {
+                throw new IllegalArgumentException("Missing column for slot " + slot);
+            }
+            if (columns[slot] != null && columns[slot].length < rowCount) {
+                throw new IllegalArgumentException("Column " + slot + " has "
+                    + columns[slot].length + " rows, but " + rowCount + " are needed");
+            }
+        }
+    }
+
+    /**
+     * Runs the program over one chunk of rows. The result is left in the
+     * first buffer of the frame.
+     *
+     * @param columns the values of the variables, one column per slot
+     * @param start first row of the chunk
+     * @param length number of rows in the chunk
+     * @param frame stack buffers followed by register buffers
+     * @throws IllegalStateException on unknown opcode
+     */
+    private void run(double[][] columns, int start, int length, double[][] frame) {
+        final int[] code = program.getCode();
+        final MathFunction[] functions = program.getFunctions();
+        final int maxStack = program.getMaxStack();
+        int top = -1;
+        int position = 0;
+        while (position < code.length) {
+            final int opcode = code[position];
+            position++;
+            switch (opcode) {
+                case Program.CONST -> {
+                    top++;
+                    Arrays.fill(frame[top], 0, length, program.getConstants()[code[position++]]);
+                }
+                case Program.ADD -> {
+                    top--;
+                    kernels.add(frame[top], frame[top + 1], length);
+                }
+                case Program.SUB -> {
+                    top--;
+                    kernels.subtract(frame[top], frame[top + 1], length);
+                }
+                case Program.MUL -> {
+                    top--;
+                    kernels.multiply(frame[top], frame[top + 1], length);
+                }
+                case Program.DIV -> {
+                    top--;
+                    kernels.divide(frame[top], frame[top + 1], length);
+                }
+                case Program.NEG -> kernels.negate(frame[top], length);
+                case Program.FACT -> kernels.factorial(frame[top], length);
+                case Program.CALL1 -> {
+                    kernels.apply(functions[code[position++]], frame[top], length);
+                }
+                case Program.CALL2 -> {
+                    top--;
+                    kernels.apply(functions[code[position++]], frame[top], frame[top + 1],
+                        length);
+                }
+                case Program.CALL3 -> {
+                    top -= 2;
+                    kernels.apply(functions[code[position++]], frame[top], frame[top + 1],
+                        frame[top + 2], length);
+                }
+                case Program.LOAD -> {
+                    top++;
+                    System.arraycopy(frame[maxStack + code[position++]], 0, frame[top], 0, length);
+                }
+                case Program.STORE -> System.arraycopy(frame[top], 0,
+                    frame[maxStack + code[position++]], 0, length);
+                case Program.VARIABLE -> {
+                    top++;
+                    System.arraycopy(columns[code[position++]], start, frame[top], 0, length);
+                }
+                default -> throw new IllegalStateException("Unknown opcode: " + opcode);
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.ToDoubleFunction;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+
+/**
+ * Streams newline delimited expressions from a file or a reader, and writes
+ * the value of each one to a writer, one line per input line and in the same
+ * order. Files are memory mapped with {@link MappedLineReader}, so their
+ * lines go to the lexer without being decoded; other input is read one line
+ * at a time. Either way, the input is never held in memory as a whole.
+ *
+ * <p>Blank input lines give blank output lines. A line that cannot be
+ * evaluated gives an {@value #ERROR_PREFIX} line with the reason, and the
+ * run goes on with the next line.
+ */
+final class BatchRunner {
+
+    /**
+     * Prefix of the output line of an expression that could not be evaluated.
+     */
+    static final String ERROR_PREFIX = "error: ";
+
+    /**
+     * Name of the input that reads from standard input.
+     */
+    static final String STANDARD_INPUT = "-";
+
+    /**
+     * Size of the buffer of output written to standard output.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Evaluates the characters of one expression.
+     */
+    private final ToDoubleFunction<CharStream> evaluator;
+
+    /**
+     * Creates a batch runner.
+     *
+     * @param evaluator evaluates the characters of one expression
+     */
+    BatchRunner(ToDoubleFunction<CharStream> evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Evaluates every line of a file, or of standard input, and writes the
+     * results to a file, or to standard output. Standard input and output
+     * are not closed.
+     *
+     * @param inputName path of the input file, or {@value #STANDARD_INPUT}
+     *     for standard input
+     * @param outputPath path of the output file, or null for standard output
+     * @return number of lines and errors
+     * @throws IOException if input cannot be read or output cannot be written
+     * @noinspection UseOfSystemOutOrSystemErr
+     */
+    Summary run(String inputName, Path outputPath) throws IOException {
+        final Summary summary;
+        if (outputPath == null) {
+            summary = run(inputName, new BufferedWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8), OUTPUT_BUFFER_SIZE));
+        }
+        else {
+            try (Writer output = Files.newBufferedWriter(outputPath)) {
+                summary = run(inputName, output);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Evaluates every line of a file, or of standard input. Standard input
+     * is not closed.
+     *
+     * @param inputName path of the input file, or {@value #STANDARD_INPUT}
+     *     for standard input
+     * @param output receives the value of each expression, one per line
+     * @return number of lines and errors
+     * @throws IOException if input cannot be read or output cannot be written
+     * @noinspection UseOfSystemOutOrSystemErr
+     */
+    private Summary run(String inputName, Writer output) throws IOException {
+        final Summary summary;
+        if (STANDARD_INPUT.equals(inputName)) {
+            summary = run(new BufferedReader(
+                new InputStreamReader(System.in, StandardCharsets.UTF_8)), output);
+        }
+        else {
+            summary = run(Path.of(inputName), output);
+        }
+        return summary;
+    }
+
+    /**
+     * Evaluates every line of a memory mapped file. The output is flushed
+     * but not closed.
+     *
+     * @param input path of the input file
+     * @param output receives the value of each expression, one per line
+     * @return number of lines and errors
+     * @throws IOException if input cannot be read or output cannot be written
+     */
+    Summary run(Path input, Writer output) throws IOException {
+        final ResultWriter resultWriter = new ResultWriter(output);
+        MappedLineReader.forEachLine(input, resultWriter);
+        output.flush();
+        return resultWriter.getSummary();
+    }
+
+    /**
+     * Evaluates every line of input. The output is flushed whenever no more
+     * input is ready, so that a client waiting for a result gets it, but it
+     * is not closed.
+     *
+     * @param input newline delimited expressions
+     * @param output receives the value of each expression, one per line
+     * @return number of lines and errors
+     * @throws IOException if input cannot be read or output cannot be written
+     */
+    Summary run(BufferedReader input, Writer output) throws IOException {
+        final ResultWriter resultWriter = new ResultWriter(output);
+        String line = input.readLine();
+        while (line != null) {
+            resultWriter.handle(CharStreams.fromString(line));
+            if (!input.ready()) {
+                output.flush();
+            }
+            line = input.readLine();
+        }
+        output.flush();
+        return resultWriter.getSummary();
+    }
+
+    /**
+     * Determines if all characters of a stream are whitespace.
+     *
+     * @param line the characters of a line, none of which are consumed
+     * @return true if line is empty or only holds whitespace
+     */
+    private static boolean isBlank(CharStream line) {
+        boolean blank = true;
+        for (int offset = 1; blank && offset <= line.size(); offset++) {
+            blank = Character.isWhitespace(line.LA(offset));
+        }
+        return blank;
+    }
+
+    /**
+     * Writes the value of each line, and counts lines and errors.
+     */
+    private final class ResultWriter implements MappedLineReader.LineHandler {
+
+        /**
+         * Receives the value of each expression, one per line.
+         */
+        private final Writer output;
+
+        /**
+         * Number of lines handled.
+         */
+        private long lineCount;
+
+        /**
+         * Number of lines that could not be evaluated.
+         */
+        private long errorCount;
+
+        /**
+         * Creates a result writer.
+         *
+         * @param output receives the value of each expression, one per line
+         */
+        ResultWriter(Writer output) {
+            this.output = output;
+        }
+
+        @Override
+        public void handle(CharStream line) throws IOException {
+            lineCount++;
+            if (!isBlank(line)) {
+                try {
+                    output.write(Double.toString(evaluator.applyAsDouble(line)));
+                }
+                catch (IllegalArgumentException | IllegalStateException exception) {
+                    errorCount++;
+                    output.write(ERROR_PREFIX);
+                    output.write(String.valueOf(exception.getMessage()));
+                }
+            }
+            output.write('\n');
+        }
+
+        /**
+         * Gets the counts of the lines handled so far.
+         *
+         * @return number of lines and errors
+         */
+        Summary getSummary() {
+            return new Summary(lineCount, errorCount);
+        }
+    }
+
+    /**
+     * Counts of a batch run.
+     *
+     * @param lineCount number of lines read
+     * @param errorCount number of lines that could not be evaluated
+     */
+    record Summary(long lineCount, long errorCount) {
+
+        @Override
+        public String toString() {
+            return "Evaluated " + lineCount + " lines, " + errorCount + " errors";
+        }
+    }
+}
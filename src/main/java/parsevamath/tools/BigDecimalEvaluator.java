@@ -0,0 +1,532 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class evaluates an expression tree in decimal arithmetic, with the
+ * precision and rounding mode of a {@link MathContext}. Literals are read
+ * as the shortest decimal that rounds to their double, so that {@code 0.1}
+ * is exactly one tenth, and the java.lang.Math functions are computed by
+ * {@link BigDecimalMath}.
+ *
+ * <p>{@link #visit(ExpressionNode)} evaluates every node in decimal.
+ * {@link #evaluate(ExpressionNode)} evaluates in double first, and only
+ * re-evaluates in decimal the subtrees whose sums or differences cancel,
+ * since these are where a double loses most of its digits.
+ *
+ * <p>Results that are not finite numbers, such as a division by zero or
+ * the logarithm of a negative number, throw an {@link ArithmeticException}.
+ */
+public final class BigDecimalEvaluator extends AbstractMathAstVisitor<BigDecimal> {
+
+    /**
+     * Number of significant digits that a double always holds.
+     */
+    public static final int DOUBLE_DIGITS = 15;
+
+    /**
+     * A sum or difference cancels when its magnitude is below this fraction
+     * of the magnitude of its larger operand, that is when more than three
+     * leading bits of the operands cancel out.
+     */
+    private static final double CANCELLATION_RATIO = 0.125;
+
+    /**
+     * Largest integer whose factorial is computed exactly.
+     */
+    private static final int MAX_EXACT_FACTORIAL = 10_000;
+
+    /**
+     * Precision of the subtrees re-evaluated by {@link #evaluate(ExpressionNode)},
+     * which is well beyond the digits of a double.
+     */
+    private static final MathContext REFINEMENT_CONTEXT = MathContext.DECIMAL128;
+
+    /**
+     * Precision and rounding mode of the results.
+     */
+    private final MathContext context;
+
+    /**
+     * The values of the variables, indexed by slot.
+     */
+    private final BigDecimal[] variables;
+
+    /**
+     * The values of the variables as doubles, indexed by slot.
+     */
+    private final double[] doubleVariables;
+
+    /**
+     * Evaluates the subtrees that cancel in {@link #evaluate(ExpressionNode)}.
+     */
+    private final BigDecimalEvaluator refinement;
+
+    /**
+     * Number of subtrees re-evaluated in decimal after a cancellation.
+     */
+    private final LongAdder refinementCount = new LongAdder();
+
+    /**
+     * Creates an evaluator for expressions without variables.
+     *
+     * @param context precision and rounding mode of the results
+     * @throws IllegalArgumentException if the precision is unlimited
+     */
+    public BigDecimalEvaluator(MathContext context) {
+        this(context, CompiledExpression.NO_VARIABLES);
+    }
+
+    /**
+     * Creates an evaluator that evaluates variables from the given array.
+     *
+     * @param context precision and rounding mode of the results
+     * @param variables the values of the variables, indexed by slot
+     * @throws IllegalArgumentException if the precision is unlimited
+     * @throws ArithmeticException if a variable is infinite or NaN
+     */
+    public BigDecimalEvaluator(MathContext context, double[] variables) {
+        if (context.getPrecision() == 0) {
+            throw new IllegalArgumentException("Precision must be limited");
+        }
+        this.context = context;
+        doubleVariables = variables.clone();
+        this.variables = new BigDecimal[variables.length];
+        for (int slot = 0; slot < variables.length; slot++) {
+            this.variables[slot] = BigDecimalMath.fromDouble(variables[slot]);
+        }
+        if (context.getPrecision() <= DOUBLE_DIGITS) {
+            refinement = new BigDecimalEvaluator(REFINEMENT_CONTEXT, variables);
+        }
+        else {
+            refinement = this;
+        }
+    }
+
+    /**
+     * Creates an evaluator with the given number of significant digits,
+     * rounding half to even.
+     *
+     * @param digits number of significant digits of the results
+     * @param variables the values of the variables, indexed by slot
+     * @return new evaluator
+     * @throws IllegalArgumentException if digits is not positive
+     * @throws ArithmeticException if a variable is infinite or NaN
+     */
+    public static BigDecimalEvaluator withPrecision(int digits, double[] variables) {
+        if (digits <= 0) {
+            throw new IllegalArgumentException("Precision must be positive: " + digits);
+        }
+        return new BigDecimalEvaluator(new MathContext(digits), variables);
+    }
+
+    /**
+     * Evaluates an expression tree, in double where a double is accurate
+     * enough. If the precision of this evaluator fits in a double, the tree
+     * is evaluated in double first, and each sum or difference that cancels
+     * is evaluated again in decimal with 34 digits; the result is then
+     * rounded to the precision of this evaluator. Otherwise, or if any
+     * node overflows or is NaN in double, the whole tree is evaluated in
+     * decimal, as with {@link #visit(ExpressionNode)}. Either way, the value
+     * has no trailing zeros after the decimal point.
+     *
+     * @param root the root of the expression tree
+     * @return the value of the expression
+     * @throws ArithmeticException if the value is not a finite number
+     */
+    public BigDecimal evaluate(ExpressionNode root) {
+        BigDecimal result = null;
+        if (context.getPrecision() <= DOUBLE_DIGITS) {
+            final Approximation approximation = new Approximation();
+            final double value = approximation.visit(root);
+            if (approximation.finite) {
+                BigDecimal decimal = approximation.refinedValue;
+                if (approximation.refinedNode != root) {
+                    decimal = BigDecimalMath.fromDouble(value);
+                }
+                result = stripTrailingZeros(decimal.round(context));
+            }
+        }
+        if (result == null) {
+            result = stripTrailingZeros(visit(root));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of subtrees that {@link #evaluate(ExpressionNode)}
+     * re-evaluated in decimal after a cancellation.
+     *
+     * @return refinement count
+     */
+    public long getRefinementCount() {
+        return refinementCount.sum();
+    }
+
+    /**
+     * Gets the precision and rounding mode of the results.
+     *
+     * @return math context of this evaluator
+     */
+    public MathContext getContext() {
+        return context;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the sum of this node's two descendants.
+     */
+    @Override
+    BigDecimal visit(AdditionNode node) {
+        return visit(node.left()).add(visit(node.right()), context);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the difference of this node's two descendants.
+     */
+    @Override
+    BigDecimal visit(SubtractionNode node) {
+        return visit(node.left()).subtract(visit(node.right()), context);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the product of this node's two descendants.
+     */
+    @Override
+    BigDecimal visit(MultiplicationNode node) {
+        return visit(node.left()).multiply(visit(node.right()), context);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the quotient of two descendants.
+     */
+    @Override
+    BigDecimal visit(DivisionNode node) {
+        return visit(node.left()).divide(visit(node.right()), context);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the value of the node's inner node, negated.
+     */
+    @Override
+    BigDecimal visit(NegateNode node) {
+        return visit(node.innerNode()).negate(context);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the exact factorial of an integer up
+     * to 10000, rounded to the precision of this evaluator. The factorial
+     * of any other number is computed in double precision.
+     */
+    @Override
+    BigDecimal visit(FactorialNode node) {
+        final BigDecimal value = visit(node.innerNode());
+        final BigDecimal result;
+        if (value.signum() >= 0 && value.compareTo(BigDecimal.valueOf(MAX_EXACT_FACTORIAL)) <= 0
+            && value.stripTrailingZeros().scale() <= 0) {
+            final BigInteger factorial = FactorialUtils.exactFactorial(value.intValueExact());
+            result = new BigDecimal(factorial, context);
+        }
+        else {
+            result = BigDecimalMath.fromDouble(FactorialUtils.factorial(value.doubleValue()));
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation applies the decimal implementation of the
+     * java.lang.Math function resolved when the ast was built.
+     *
+     * @throws ArithmeticException if the function could not be resolved
+     */
+    @Override
+    BigDecimal visit(MethodNode node) {
+        if (node.function() == null) {
+            throw new ArithmeticException("Unknown function: " + node.functionName());
+        }
+        final List<BigDecimal> arguments = new ArrayList<>(node.arguments().size());
+        for (ExpressionNode argument : node.arguments()) {
+            arguments.add(visit(argument));
+        }
+        return BigDecimalMath.apply(node.function(), arguments, context);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the value of the numerical expression.
+     */
+    @Override
+    BigDecimal visit(NumberNode node) {
+        return BigDecimalMath.fromDouble(node.value()).round(context);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation computes pi and e to the precision of this
+     * evaluator.
+     */
+    @Override
+    BigDecimal visit(ConstantNode node) {
+        final BigDecimal result;
+        if (node.value() == Math.PI) {
+            result = BigDecimalMath.pi(context);
+        }
+        else if (node.value() == Math.E) {
+            result = BigDecimalMath.exp(BigDecimal.ONE, context);
+        }
+        else {
+            result = BigDecimalMath.fromDouble(node.value()).round(context);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the value in the slot of this variable.
+     */
+    @Override
+    BigDecimal visit(VariableNode node) {
+        return variables[node.slot()].round(context);
+    }
+
+    /**
+     * Removes the trailing zeros of a result, without switching to an
+     * exponent for integers.
+     *
+     * @param value the result
+     * @return value with the smallest non-negative scale
+     */
+    private static BigDecimal stripTrailingZeros(BigDecimal value) {
+        BigDecimal result = value.stripTrailingZeros();
+        if (result.scale() < 0) {
+            result = result.setScale(0, RoundingMode.UNNECESSARY);
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates an expression tree in double, and re-evaluates in decimal
+     * the sums and differences that cancel. The value of a re-evaluated
+     * subtree is rounded back to a double for its ancestors.
+     */
+    private final class Approximation extends AbstractMathAstVisitor<Double> {
+
+        /**
+         * The last node that was re-evaluated in decimal.
+         */
+        private ExpressionNode refinedNode;
+
+        /**
+         * The decimal value of the last node that was re-evaluated.
+         */
+        private BigDecimal refinedValue;
+
+        /**
+         * Whether every node visited so far had a finite value.
+         */
+        private boolean finite = true;
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>This implementation also records whether the value of the node
+         * is infinite or NaN.
+         */
+        @Override
+        public Double visit(ExpressionNode node) {
+            final double value = super.visit(node);
+            finite &= Double.isFinite(value);
+            return value;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>This implementation returns the sum of this node's two
+         * descendants, re-evaluated in decimal if it cancels.
+         */
+        @Override
+        Double visit(AdditionNode node) {
+            final double left = visit(node.left());
+            final double right = visit(node.right());
+            return refineIfCancelled(node, left, right, left + right);
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>This implementation returns the difference of this node's two
+         * descendants, re-evaluated in decimal if it cancels.
+         */
+        @Override
+        Double visit(SubtractionNode node) {
+            final double left = visit(node.left());
+            final double right = visit(node.right());
+            return refineIfCancelled(node, left, right, left - right);
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>This implementation returns the product of this node's two descendants.
+         */
+        @Override
+        Double visit(MultiplicationNode node) {
+            return visit(node.left()) * visit(node.right());
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>This implementation returns the quotient of two descendants.
+         */
+        @Override
+        Double visit(DivisionNode node) {
+            return visit(node.left()) / visit(node.right());
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>This implementation returns the value of the node's inner node, negated.
+         */
+        @Override
+        Double visit(NegateNode node) {
+            return -visit(node.innerNode());
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>This implementation returns the factorial of the inner node.
+         */
+        @Override
+        Double visit(FactorialNode node) {
+            return FactorialUtils.factorial(visit(node.innerNode()));
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>This implementation applies the java.lang.Math function to the
+         * approximated arguments, or returns NaN if it was not resolved.
+         */
+        @Override
+        Double visit(MethodNode node) {
+            final MathFunction function = node.function();
+            final List<ExpressionNode> arguments = node.arguments();
+            double result = Double.NaN;
+            if (function != null) {
+                final double first = visit(arguments.get(0));
+                result = switch (arguments.size()) {
+                    case 1 -> function.apply(first);
+                    case 2 -> function.apply(first, visit(arguments.get(1)));
+                    default -> function.apply(first, visit(arguments.get(1)),
+                        visit(arguments.get(2)));
+                };
+            }
+            return result;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>This implementation returns the value of the numerical expression.
+         */
+        @Override
+        Double visit(NumberNode node) {
+            return node.value();
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>This implementation returns the value of this constant.
+         */
+        @Override
+        Double visit(ConstantNode node) {
+            return node.value();
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>This implementation returns the value in the slot of this variable.
+         */
+        @Override
+        Double visit(VariableNode node) {
+            return doubleVariables[node.slot()];
+        }
+
+        /**
+         * Re-evaluates a sum or difference in decimal if it cancels.
+         *
+         * @param node the addition or subtraction node
+         * @param left value of the left operand
+         * @param right value of the right operand
+         * @param value value of the node in double
+         * @return value of the node, rounded from decimal if it cancels
+         */
+        private double refineIfCancelled(ExpressionNode node, double left, double right,
+                                         double value) {
+            double result = value;
+            if (Math.abs(value) < CANCELLATION_RATIO * Math.max(Math.abs(left), Math.abs(right))) {
+                refinedValue = refinement.visit(node);
+                refinedNode = node;
+                refinementCount.increment();
+                result = refinedValue.doubleValue();
+            }
+            return result;
+        }
+    }
+}
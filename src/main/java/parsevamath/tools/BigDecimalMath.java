@@ -0,0 +1,868 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Arbitrary precision implementations of the java.lang.Math functions that
+ * can be called from an expression. Each function computes its result with
+ * a few guard digits, and rounds it once to the requested precision.
+ * Functions that only make sense for doubles, such as ulp or nextUp, are
+ * computed in double precision.
+ */
+final class BigDecimalMath {
+
+    /**
+     * Extra digits carried by intermediate results.
+     */
+    private static final int GUARD_DIGITS = 10;
+
+    /**
+     * Number of times an argument of exp is halved per extra digit needed
+     * to square the result back.
+     */
+    private static final int HALVINGS_PER_DIGIT = 3;
+
+    /**
+     * Number of times an argument of atan is halved before summing the
+     * series, so that the series converges quickly.
+     */
+    private static final int ANGLE_HALVINGS = 2;
+
+    /**
+     * Upper bound on the number of digits of the integer part of a
+     * logarithm of any BigDecimal.
+     */
+    private static final int LOGARITHM_DIGITS = 10;
+
+    /**
+     * First reciprocal in Machin's formula for pi.
+     */
+    private static final int MACHIN_FIRST = 5;
+
+    /**
+     * Second reciprocal in Machin's formula for pi.
+     */
+    private static final int MACHIN_SECOND = 239;
+
+    /**
+     * Two.
+     */
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+    /**
+     * Three.
+     */
+    private static final BigDecimal THREE = BigDecimal.valueOf(3);
+
+    /**
+     * Four.
+     */
+    private static final BigDecimal FOUR = BigDecimal.valueOf(4);
+
+    /**
+     * One half.
+     */
+    private static final BigDecimal HALF = BigDecimal.valueOf(5, 1);
+
+    /**
+     * Degrees in half a turn.
+     */
+    private static final BigDecimal HALF_TURN_DEGREES = BigDecimal.valueOf(180);
+
+    /**
+     * Largest magnitude of an argument of exp once it has been halved, so
+     * that its Taylor series only needs a few terms.
+     */
+    private static final BigDecimal REDUCED_EXP_ARGUMENT = BigDecimal.valueOf(1, 3);
+
+    /**
+     * Largest magnitude of an argument of exp.
+     */
+    private static final BigDecimal MAX_EXP_ARGUMENT = BigDecimal.valueOf(Integer.MAX_VALUE);
+
+    /**
+     * Largest magnitude of an integer exponent raised by repeated squaring.
+     */
+    private static final BigDecimal MAX_INTEGER_EXPONENT = BigDecimal.valueOf(999_999_999);
+
+    /**
+     * The most precise value of pi computed so far.
+     */
+    private static final AtomicReference<BigDecimal> PI = new AtomicReference<>(BigDecimal.ZERO);
+
+    /**
+     * Functions of one argument, by function.
+     */
+    private static final Map<MathFunction, UnaryFunction> UNARY_FUNCTIONS =
+        createUnaryFunctions();
+
+    /**
+     * Functions of two arguments, by function.
+     */
+    private static final Map<MathFunction, BinaryFunction> BINARY_FUNCTIONS =
+        createBinaryFunctions();
+
+    /**
+     * Prevent instantiation.
+     */
+    private BigDecimalMath() {
+    }
+
+    /**
+     * Applies a function to its arguments.
+     *
+     * @param function the function to apply
+     * @param arguments the arguments of the function
+     * @param context the precision of the result
+     * @return the result of the function
+     * @throws ArithmeticException if the result is not a finite number
+     */
+    static BigDecimal apply(MathFunction function, List<BigDecimal> arguments,
+                            MathContext context) {
+        final BigDecimal first = arguments.get(0);
+        final UnaryFunction unaryFunction = UNARY_FUNCTIONS.get(function);
+        final BinaryFunction binaryFunction = BINARY_FUNCTIONS.get(function);
+        final BigDecimal result;
+        if (unaryFunction != null) {
+            result = unaryFunction.apply(first, context);
+        }
+        else if (binaryFunction != null) {
+            result = binaryFunction.apply(first, arguments.get(1), context);
+        }
+        else if (function == MathFunction.FMA) {
+            result = first.multiply(arguments.get(1)).add(arguments.get(2), context);
+        }
+        else {
+            result = applyInDoublePrecision(function, arguments);
+        }
+        return result.round(context);
+    }
+
+    /**
+     * Applies a function to its arguments in double precision.
+     *
+     * @param function the function to apply
+     * @param arguments the arguments of the function
+     * @return the result of the function
+     * @throws ArithmeticException if the result is not a finite number
+     */
+    private static BigDecimal applyInDoublePrecision(MathFunction function,
+                                                     List<BigDecimal> arguments) {
+        final double first = arguments.get(0).doubleValue();
+        final double result = switch (arguments.size()) {
+            case 1 -> function.apply(first);
+            case 2 -> function.apply(first, arguments.get(1).doubleValue());
+            default -> function.apply(first, arguments.get(1).doubleValue(),
+                arguments.get(2).doubleValue());
+        };
+        return fromDouble(result);
+    }
+
+    /**
+     * Converts a double to the shortest decimal that rounds to it, so that
+     * a literal such as 0.1 is read back as typed.
+     *
+     * @param value the value to convert
+     * @return decimal value
+     * @throws ArithmeticException if the value is infinite or NaN
+     */
+    static BigDecimal fromDouble(double value) {
+        if (!Double.isFinite(value)) {
+            throw new ArithmeticException("Not a finite number: " + value);
+        }
+        return BigDecimal.valueOf(value);
+    }
+
+    /**
+     * Computes pi with Machin's formula,
+     * {@code pi = 16 atan(1/5) - 4 atan(1/239)}.
+     *
+     * @param context the precision of the result
+     * @return pi
+     */
+    static BigDecimal pi(MathContext context) {
+        final MathContext working = working(context, 0);
+        BigDecimal result = PI.get();
+        if (result.precision() < working.getPrecision()) {
+            final BigDecimal first = arctanOfReciprocal(MACHIN_FIRST, working);
+            final BigDecimal second = arctanOfReciprocal(MACHIN_SECOND, working);
+            result = first.multiply(FOUR).subtract(second).multiply(FOUR).round(working);
+            PI.set(result);
+        }
+        return result.round(context);
+    }
+
+    /**
+     * Computes Euler's number raised to a power. The argument is halved
+     * until it is at most a thousandth, the Taylor series is summed, and
+     * the sum is squared back once per halving.
+     *
+     * @param argument the exponent
+     * @param context the precision of the result
+     * @return e raised to the power of argument
+     * @throws ArithmeticException if the result is out of the range of BigDecimal
+     */
+    static BigDecimal exp(BigDecimal argument, MathContext context) {
+        if (argument.abs().compareTo(MAX_EXP_ARGUMENT) > 0) {
+            throw new ArithmeticException("Argument of exp out of range: " + argument);
+        }
+        int halvings = 0;
+        BigDecimal reduced = argument;
+        while (reduced.abs().compareTo(REDUCED_EXP_ARGUMENT) > 0) {
+            reduced = reduced.multiply(HALF);
+            halvings++;
+        }
+        // every squaring doubles the relative error of the sum
+        final MathContext working = working(context, halvings / HALVINGS_PER_DIGIT + 1);
+        final int scale = working.getPrecision();
+        reduced = reduced.round(working);
+        final BigDecimal epsilon = epsilon(working);
+        BigDecimal term = BigDecimal.ONE;
+        BigDecimal sum = BigDecimal.ONE;
+        for (int n = 1; term.abs().compareTo(epsilon) > 0; n++) {
+            term = divide(term.multiply(reduced), n, scale);
+            sum = sum.add(term);
+        }
+        for (int i = 0; i < halvings; i++) {
+            sum = sum.multiply(sum, working);
+        }
+        return sum.round(context);
+    }
+
+    /**
+     * Computes Euler's number raised to a power, minus one. Extra digits
+     * are carried for small arguments, whose result would otherwise cancel.
+     *
+     * @param argument the exponent
+     * @param context the precision of the result
+     * @return e raised to the power of argument, minus one
+     */
+    static BigDecimal expm1(BigDecimal argument, MathContext context) {
+        final MathContext working = working(context, leadingZeros(argument));
+        return exp(argument, working).subtract(BigDecimal.ONE).round(context);
+    }
+
+    /**
+     * Computes the natural logarithm of a number with Halley's method on
+     * exp. Arguments far from one are split as {@code m * 10^k} first, so
+     * that the iteration starts from a double estimate.
+     *
+     * @param argument the number
+     * @param context the precision of the result
+     * @return natural logarithm of argument
+     * @throws ArithmeticException if argument is not positive
+     */
+    static BigDecimal log(BigDecimal argument, MathContext context) {
+        if (argument.signum() <= 0) {
+            throw new ArithmeticException("Logarithm of a non-positive number: " + argument);
+        }
+        final int exponent = argument.precision() - argument.scale() - 1;
+        final BigDecimal result;
+        // near one, splitting would cancel log(m) against k log(10)
+        if (Math.abs(exponent) > 1) {
+            final MathContext working =
+                working(context, Integer.toString(Math.abs(exponent)).length());
+            final BigDecimal mantissa = argument.scaleByPowerOfTen(-exponent);
+            result = logNear(BigDecimal.TEN, working).multiply(BigDecimal.valueOf(exponent))
+                .add(logNear(mantissa, working), working);
+        }
+        else {
+            result = logNear(argument, working(context, 0));
+        }
+        return result.round(context);
+    }
+
+    /**
+     * Computes the natural logarithm of a number in the range of double.
+     *
+     * @param argument the number, positive and in the range of double
+     * @param working the working precision
+     * @return natural logarithm of argument
+     */
+    private static BigDecimal logNear(BigDecimal argument, MathContext working) {
+        // the logarithm is as small as the distance to one
+        final MathContext precise =
+            widen(working, leadingZeros(argument.subtract(BigDecimal.ONE)));
+        final BigDecimal tolerance =
+            BigDecimal.ONE.movePointLeft(precise.getPrecision() - GUARD_DIGITS / 2);
+        BigDecimal result = new BigDecimal(Math.log(argument.doubleValue()));
+        BigDecimal correction = BigDecimal.ONE;
+        // Halley's method triples the number of correct digits per step
+        while (correction.abs().compareTo(tolerance) > 0) {
+            final BigDecimal power = exp(result, precise);
+            correction = TWO.multiply(argument.subtract(power))
+                .divide(argument.add(power), precise);
+            result = result.add(correction, precise);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the base 10 logarithm of a number.
+     *
+     * @param argument the number
+     * @param context the precision of the result
+     * @return base 10 logarithm of argument
+     */
+    static BigDecimal log10(BigDecimal argument, MathContext context) {
+        final MathContext working = working(context, 0);
+        return log(argument, working).divide(log(BigDecimal.TEN, working), context);
+    }
+
+    /**
+     * Computes the first number raised to the power of the second. Integer
+     * exponents are raised by repeated squaring, so that a negative base is
+     * allowed; other exponents are computed as {@code exp(y log(x))}.
+     *
+     * @param base the base
+     * @param exponent the exponent
+     * @param context the precision of the result
+     * @return base raised to the power of exponent
+     * @throws ArithmeticException if the result is not a real number
+     */
+    static BigDecimal pow(BigDecimal base, BigDecimal exponent, MathContext context) {
+        final BigDecimal result;
+        if (isInteger(exponent) && exponent.abs().compareTo(MAX_INTEGER_EXPONENT) <= 0) {
+            result = base.pow(exponent.intValueExact(), working(context, 0));
+        }
+        else if (base.signum() > 0) {
+            // the exponent of exp needs as many more digits as its integer part
+            final MathContext working = working(context, magnitude(exponent) + LOGARITHM_DIGITS);
+            result = exp(exponent.multiply(log(base, working)), working);
+        }
+        else if (base.signum() == 0 && exponent.signum() > 0) {
+            result = BigDecimal.ZERO;
+        }
+        else {
+            throw new ArithmeticException("Power of a non-positive number to a non-integer"
+                + " exponent: " + base + "^" + exponent);
+        }
+        return result.round(context);
+    }
+
+    /**
+     * Computes the cube root of a number.
+     *
+     * @param argument the number
+     * @param context the precision of the result
+     * @return cube root of argument
+     */
+    static BigDecimal cbrt(BigDecimal argument, MathContext context) {
+        BigDecimal result = BigDecimal.ZERO;
+        if (argument.signum() != 0) {
+            final MathContext working = working(context, 0);
+            result = exp(log(argument.abs(), working).divide(THREE, working), working);
+            if (argument.signum() < 0) {
+                result = result.negate();
+            }
+        }
+        return result.round(context);
+    }
+
+    /**
+     * Computes the sine of an angle.
+     *
+     * @param argument the angle, in radians
+     * @param context the precision of the result
+     * @return sine of argument
+     */
+    static BigDecimal sin(BigDecimal argument, MathContext context) {
+        return trigonometric(argument, context, true);
+    }
+
+    /**
+     * Computes the cosine of an angle.
+     *
+     * @param argument the angle, in radians
+     * @param context the precision of the result
+     * @return cosine of argument
+     */
+    static BigDecimal cos(BigDecimal argument, MathContext context) {
+        return trigonometric(argument, context, false);
+    }
+
+    /**
+     * Computes the tangent of an angle.
+     *
+     * @param argument the angle, in radians
+     * @param context the precision of the result
+     * @return tangent of argument
+     */
+    static BigDecimal tan(BigDecimal argument, MathContext context) {
+        final MathContext working = working(context, 0);
+        return sin(argument, working).divide(cos(argument, working), context);
+    }
+
+    /**
+     * Computes the sine or cosine of an angle. The angle is reduced to
+     * the range from -pi to pi and the Taylor series is summed. A result
+     * close to zero is computed again with as many more digits as it has
+     * leading zeros, since the reduction only bounds the absolute error.
+     *
+     * @param argument the angle, in radians
+     * @param context the precision of the result
+     * @param sine true for the sine, false for the cosine
+     * @return sine or cosine of argument
+     */
+    private static BigDecimal trigonometric(BigDecimal argument, MathContext context,
+                                            boolean sine) {
+        BigDecimal result = taylor(argument, working(context, 0), sine);
+        final int lostDigits = leadingZeros(result);
+        if (lostDigits > 0) {
+            result = taylor(argument, working(context, lostDigits), sine);
+        }
+        return result.round(context);
+    }
+
+    /**
+     * Sums the Taylor series of the sine or cosine of an angle.
+     *
+     * @param argument the angle, in radians
+     * @param working the working precision
+     * @param sine true for the sine, false for the cosine
+     * @return sine or cosine of argument
+     */
+    private static BigDecimal taylor(BigDecimal argument, MathContext working, boolean sine) {
+        // pi needs as many more digits as the angle has in its integer part
+        final MathContext wide = widen(working, magnitude(argument));
+        final BigDecimal twoPi = pi(wide).multiply(TWO);
+        final BigDecimal turns = argument.divide(twoPi, wide).setScale(0, RoundingMode.HALF_EVEN);
+        final BigDecimal angle = argument.subtract(twoPi.multiply(turns), working);
+        final int scale = working.getPrecision();
+        final BigDecimal square = angle.multiply(angle).setScale(scale, RoundingMode.HALF_EVEN);
+        final BigDecimal epsilon = epsilon(working);
+        BigDecimal term = BigDecimal.ONE;
+        int power = 0;
+        if (sine) {
+            term = angle;
+            power = 1;
+        }
+        BigDecimal sum = term;
+        for (int n = power + 1; term.abs().compareTo(epsilon) > 0; n += 2) {
+            term = divide(term.multiply(square), (long) n * (n + 1), scale).negate();
+            sum = sum.add(term);
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the arc sine of a number.
+     *
+     * @param argument the number, from -1 to 1
+     * @param context the precision of the result
+     * @return arc sine of argument
+     * @throws ArithmeticException if argument is out of range
+     */
+    static BigDecimal asin(BigDecimal argument, MathContext context) {
+        final int comparison = argument.abs().compareTo(BigDecimal.ONE);
+        if (comparison > 0) {
+            throw new ArithmeticException("Arc sine out of range: " + argument);
+        }
+        final MathContext working = working(context, 0);
+        final BigDecimal result;
+        if (comparison == 0) {
+            result = pi(working).multiply(HALF).multiply(BigDecimal.valueOf(argument.signum()));
+        }
+        else {
+            // 1 - x^2 is computed as (1 - x)(1 + x), which does not cancel
+            final BigDecimal cosine = BigDecimal.ONE.subtract(argument)
+                .multiply(BigDecimal.ONE.add(argument)).sqrt(working);
+            result = atan(argument.divide(cosine, working), working);
+        }
+        return result.round(context);
+    }
+
+    /**
+     * Computes the arc cosine of a number, as
+     * {@code 2 atan(sqrt((1 - x) / (1 + x)))}.
+     *
+     * @param argument the number, from -1 to 1
+     * @param context the precision of the result
+     * @return arc cosine of argument
+     * @throws ArithmeticException if argument is out of range
+     */
+    static BigDecimal acos(BigDecimal argument, MathContext context) {
+        if (argument.abs().compareTo(BigDecimal.ONE) > 0) {
+            throw new ArithmeticException("Arc cosine out of range: " + argument);
+        }
+        final MathContext working = working(context, 0);
+        final BigDecimal result;
+        if (argument.compareTo(BigDecimal.ONE.negate()) == 0) {
+            result = pi(working);
+        }
+        else {
+            final BigDecimal ratio = BigDecimal.ONE.subtract(argument)
+                .divide(BigDecimal.ONE.add(argument), working);
+            result = atan(ratio.sqrt(working), working).multiply(TWO);
+        }
+        return result.round(context);
+    }
+
+    /**
+     * Computes the arc tangent of a number. Numbers greater than one are
+     * replaced by their reciprocal, using {@code atan(x) = pi/2 - atan(1/x)}.
+     *
+     * @param argument the number
+     * @param context the precision of the result
+     * @return arc tangent of argument
+     */
+    static BigDecimal atan(BigDecimal argument, MathContext context) {
+        final MathContext working = working(context, 0);
+        final BigDecimal magnitude = argument.abs();
+        BigDecimal result;
+        if (magnitude.compareTo(BigDecimal.ONE) > 0) {
+            final BigDecimal reciprocal = BigDecimal.ONE.divide(magnitude, working);
+            result = pi(working).multiply(HALF)
+                .subtract(arctanSeries(reciprocal, working), working);
+        }
+        else {
+            result = arctanSeries(magnitude, working);
+        }
+        if (argument.signum() < 0) {
+            result = result.negate();
+        }
+        return result.round(context);
+    }
+
+    /**
+     * Computes the angle of a rectangular coordinate.
+     *
+     * @param ordinate the ordinate
+     * @param abscissa the abscissa
+     * @param context the precision of the result
+     * @return angle of the point, from -pi to pi
+     */
+    static BigDecimal atan2(BigDecimal ordinate, BigDecimal abscissa, MathContext context) {
+        final MathContext working = working(context, 0);
+        BigDecimal result;
+        if (abscissa.signum() == 0) {
+            result = pi(working).multiply(HALF).multiply(BigDecimal.valueOf(ordinate.signum()));
+        }
+        else {
+            result = atan(ordinate.divide(abscissa, working), working);
+            if (abscissa.signum() < 0 && ordinate.signum() < 0) {
+                result = result.subtract(pi(working), working);
+            }
+            else if (abscissa.signum() < 0) {
+                result = result.add(pi(working), working);
+            }
+        }
+        return result.round(context);
+    }
+
+    /**
+     * Sums the Taylor series of the arc tangent of a number from 0 to 1.
+     * The angle is halved first with
+     * {@code atan(x) = 2 atan(x / (1 + sqrt(1 + x^2)))}.
+     *
+     * @param argument the number, from 0 to 1
+     * @param working the working precision
+     * @return arc tangent of argument
+     */
+    private static BigDecimal arctanSeries(BigDecimal argument, MathContext working) {
+        BigDecimal reduced = argument;
+        for (int i = 0; i < ANGLE_HALVINGS; i++) {
+            final BigDecimal hypotenuse =
+                BigDecimal.ONE.add(reduced.multiply(reduced)).sqrt(working);
+            reduced = reduced.divide(BigDecimal.ONE.add(hypotenuse), working);
+        }
+        // the sum is as small as the argument
+        final int scale = working.getPrecision() + leadingZeros(reduced);
+        final BigDecimal square = reduced.multiply(reduced).setScale(scale, RoundingMode.HALF_EVEN);
+        final BigDecimal threshold = BigDecimal.ONE.movePointLeft(scale);
+        BigDecimal power = reduced;
+        BigDecimal sum = reduced;
+        for (int n = 1; power.abs().compareTo(threshold) > 0; n++) {
+            power = power.multiply(square).setScale(scale, RoundingMode.HALF_EVEN).negate();
+            sum = sum.add(divide(power, 2L * n + 1, scale));
+        }
+        return sum.multiply(BigDecimal.valueOf(1L << ANGLE_HALVINGS));
+    }
+
+    /**
+     * Sums the Taylor series of the arc tangent of the reciprocal of an
+     * integer, which converges quickly for the integers of Machin's formula.
+     *
+     * @param reciprocal the integer
+     * @param working the working precision
+     * @return arc tangent of one over reciprocal
+     */
+    private static BigDecimal arctanOfReciprocal(int reciprocal, MathContext working) {
+        final int scale = working.getPrecision();
+        final long square = (long) reciprocal * reciprocal;
+        final BigDecimal epsilon = epsilon(working);
+        BigDecimal power = divide(BigDecimal.ONE, reciprocal, scale);
+        BigDecimal sum = power;
+        for (int n = 1; power.compareTo(epsilon) > 0; n++) {
+            power = divide(power, square, scale);
+            final BigDecimal term = divide(power, 2L * n + 1, scale);
+            if (n % 2 == 0) {
+                sum = sum.add(term);
+            }
+            else {
+                sum = sum.subtract(term);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the hyperbolic sine of a number.
+     *
+     * @param argument the number
+     * @param context the precision of the result
+     * @return hyperbolic sine of argument
+     */
+    static BigDecimal sinh(BigDecimal argument, MathContext context) {
+        // e^x - e^-x cancels for small arguments
+        final MathContext working = working(context, leadingZeros(argument));
+        final BigDecimal power = exp(argument, working);
+        return power.subtract(BigDecimal.ONE.divide(power, working))
+            .multiply(HALF).round(context);
+    }
+
+    /**
+     * Computes the hyperbolic cosine of a number.
+     *
+     * @param argument the number
+     * @param context the precision of the result
+     * @return hyperbolic cosine of argument
+     */
+    static BigDecimal cosh(BigDecimal argument, MathContext context) {
+        final MathContext working = working(context, 0);
+        final BigDecimal power = exp(argument, working);
+        return power.add(BigDecimal.ONE.divide(power, working)).multiply(HALF).round(context);
+    }
+
+    /**
+     * Computes the hyperbolic tangent of a number, as
+     * {@code (1 - e^-2|x|) / (1 + e^-2|x|)} with the sign of x.
+     *
+     * @param argument the number
+     * @param context the precision of the result
+     * @return hyperbolic tangent of argument
+     */
+    static BigDecimal tanh(BigDecimal argument, MathContext context) {
+        final MathContext working = working(context, leadingZeros(argument));
+        final BigDecimal power = exp(argument.abs().multiply(TWO).negate(), working);
+        final BigDecimal result = BigDecimal.ONE.subtract(power)
+            .divide(BigDecimal.ONE.add(power), working);
+        return result.multiply(BigDecimal.valueOf(argument.signum())).round(context);
+    }
+
+    /**
+     * Creates the functions of one argument.
+     *
+     * @return functions of one argument, by function
+     */
+    private static Map<MathFunction, UnaryFunction> createUnaryFunctions() {
+        final Map<MathFunction, UnaryFunction> functions = new EnumMap<>(MathFunction.class);
+        functions.put(MathFunction.ABS, BigDecimal::abs);
+        functions.put(MathFunction.ACOS, BigDecimalMath::acos);
+        functions.put(MathFunction.ASIN, BigDecimalMath::asin);
+        functions.put(MathFunction.ATAN, BigDecimalMath::atan);
+        functions.put(MathFunction.CBRT, BigDecimalMath::cbrt);
+        functions.put(MathFunction.CEIL, (argument, context) -> {
+            return argument.setScale(0, RoundingMode.CEILING);
+        });
+        functions.put(MathFunction.COS, BigDecimalMath::cos);
+        functions.put(MathFunction.COSH, BigDecimalMath::cosh);
+        functions.put(MathFunction.EXP, BigDecimalMath::exp);
+        functions.put(MathFunction.EXPM1, BigDecimalMath::expm1);
+        functions.put(MathFunction.FLOOR, (argument, context) -> {
+            return argument.setScale(0, RoundingMode.FLOOR);
+        });
+        functions.put(MathFunction.LOG, BigDecimalMath::log);
+        functions.put(MathFunction.LOG10, BigDecimalMath::log10);
+        functions.put(MathFunction.LOG1P, (argument, context) -> {
+            return log(BigDecimal.ONE.add(argument), context);
+        });
+        functions.put(MathFunction.RINT, (argument, context) -> {
+            return argument.setScale(0, RoundingMode.HALF_EVEN);
+        });
+        functions.put(MathFunction.ROUND, (argument, context) -> {
+            return argument.add(HALF).setScale(0, RoundingMode.FLOOR);
+        });
+        functions.put(MathFunction.SIGNUM, (argument, context) -> {
+            return BigDecimal.valueOf(argument.signum());
+        });
+        functions.put(MathFunction.SIN, BigDecimalMath::sin);
+        functions.put(MathFunction.SINH, BigDecimalMath::sinh);
+        functions.put(MathFunction.SQRT, BigDecimal::sqrt);
+        functions.put(MathFunction.TAN, BigDecimalMath::tan);
+        functions.put(MathFunction.TANH, BigDecimalMath::tanh);
+        functions.put(MathFunction.TO_DEGREES, (argument, context) -> {
+            return argument.multiply(HALF_TURN_DEGREES).divide(pi(working(context, 0)), context);
+        });
+        functions.put(MathFunction.TO_RADIANS, (argument, context) -> {
+            return argument.multiply(pi(working(context, 0))).divide(HALF_TURN_DEGREES, context);
+        });
+        return functions;
+    }
+
+    /**
+     * Creates the functions of two arguments.
+     *
+     * @return functions of two arguments, by function
+     */
+    private static Map<MathFunction, BinaryFunction> createBinaryFunctions() {
+        final Map<MathFunction, BinaryFunction> functions = new EnumMap<>(MathFunction.class);
+        functions.put(MathFunction.ATAN2, BigDecimalMath::atan2);
+        functions.put(MathFunction.HYPOT, (first, second, context) -> {
+            return first.multiply(first).add(second.multiply(second)).sqrt(context);
+        });
+        functions.put(MathFunction.MAX, (first, second, context) -> first.max(second));
+        functions.put(MathFunction.MIN, (first, second, context) -> first.min(second));
+        functions.put(MathFunction.POW, BigDecimalMath::pow);
+        return functions;
+    }
+
+    /**
+     * Creates the working precision of a computation.
+     *
+     * @param context the precision of the result
+     * @param extraDigits digits needed beyond the guard digits
+     * @return working precision
+     */
+    private static MathContext working(MathContext context, int extraDigits) {
+        return new MathContext(context.getPrecision() + GUARD_DIGITS + extraDigits,
+            RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Widens a working precision.
+     *
+     * @param working the working precision
+     * @param extraDigits number of digits to add
+     * @return wider working precision
+     */
+    private static MathContext widen(MathContext working, int extraDigits) {
+        return new MathContext(working.getPrecision() + extraDigits, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Divides a number by an integer, rounding the quotient to a fixed
+     * number of decimal places. Unlike a division to a precision, this does
+     * not strip trailing zeros, which is most of the cost of a division.
+     *
+     * @param dividend the number to divide
+     * @param divisor the integer to divide by
+     * @param scale number of decimal places of the quotient
+     * @return quotient
+     */
+    private static BigDecimal divide(BigDecimal dividend, long divisor, int scale) {
+        return dividend.divide(BigDecimal.valueOf(divisor), scale, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Gets the smallest term worth adding to a sum close to one.
+     *
+     * @param working the working precision
+     * @return ten to the power of minus the precision
+     */
+    private static BigDecimal epsilon(MathContext working) {
+        return BigDecimal.ONE.movePointLeft(working.getPrecision());
+    }
+
+    /**
+     * Counts the digits of the integer part of a number.
+     *
+     * @param value the number
+     * @return number of digits before the decimal point, zero if below one
+     */
+    private static int magnitude(BigDecimal value) {
+        return Math.max(0, value.precision() - value.scale());
+    }
+
+    /**
+     * Counts the zeros between the decimal point and the first significant
+     * digit of a number.
+     *
+     * @param value the number
+     * @return number of leading zeros, zero if at least one or zero
+     */
+    private static int leadingZeros(BigDecimal value) {
+        int zeros = 0;
+        if (value.signum() != 0) {
+            zeros = Math.max(0, value.scale() - value.precision());
+        }
+        return zeros;
+    }
+
+    /**
+     * Determines if a number is an integer.
+     *
+     * @param value the number
+     * @return true if value has no fractional part
+     */
+    private static boolean isInteger(BigDecimal value) {
+        return value.signum() == 0 || value.stripTrailingZeros().scale() <= 0;
+    }
+
+    /**
+     * A function of one argument.
+     */
+    @FunctionalInterface
+    private interface UnaryFunction {
+
+        /**
+         * Applies this function.
+         *
+         * @param argument the argument
+         * @param context the precision of the result
+         * @return result of the function
+         */
+        BigDecimal apply(BigDecimal argument, MathContext context);
+    }
+
+    /**
+     * A function of two arguments.
+     */
+    @FunctionalInterface
+    private interface BinaryFunction {
+
+        /**
+         * Applies this function.
+         *
+         * @param first the first argument
+         * @param second the second argument
+         * @param context the precision of the result
+         * @return result of the function
+         */
+        BigDecimal apply(BigDecimal first, BigDecimal second, MathContext context);
+    }
+}
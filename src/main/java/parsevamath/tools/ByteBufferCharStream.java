@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * A {@link CharStream} view over a range of bytes of a buffer, such as one
+ * line of a memory mapped file. Each byte is one character, so the lexer
+ * reads the buffer directly, and text is only decoded for the tokens whose
+ * text is requested.
+ *
+ * <p>The grammar only has ASCII tokens, so any other byte is reported as a
+ * token recognition error, as it would be when decoding the bytes first.
+ */
+final class ByteBufferCharStream implements CharStream {
+
+    /**
+     * Mask of the bits of a byte.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * Buffer holding the characters.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Index in the buffer of the first character.
+     */
+    private final int start;
+
+    /**
+     * Number of characters.
+     */
+    private final int size;
+
+    /**
+     * Index of the next character to consume.
+     */
+    private int position;
+
+    /**
+     * Creates a view over a range of a buffer. The buffer is not copied,
+     * and its position and limit are not used.
+     *
+     * @param buffer buffer holding the characters
+     * @param start index in the buffer of the first character
+     * @param end index in the buffer after the last character
+     */
+    ByteBufferCharStream(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        size = end - start;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        final int startIndex = Math.min(interval.a, size);
+        final int length = Math.min(interval.b - interval.a + 1, size - startIndex);
+        final byte[] bytes = new byte[Math.max(0, length)];
+        buffer.get(start + startIndex, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public void consume() {
+        if (position >= size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        position++;
+    }
+
+    // -@cs[MethodName] Name is defined by the antlr IntStream interface
+    @Override
+    public int LA(int offset) {
+        final int index;
+        if (offset > 0) {
+            index = position + offset - 1;
+        }
+        else {
+            index = position + offset;
+        }
+
+        int character = IntStream.EOF;
+        if (offset != 0 && index >= 0 && index < size) {
+            character = buffer.get(start + index) & BYTE_MASK;
+        }
+        return character;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The whole range is always available, so marks are not tracked.
+     */
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+        // the whole range is always available
+    }
+
+    @Override
+    public int index() {
+        return position;
+    }
+
+    @Override
+    public void seek(int index) {
+        position = index;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        return IntStream.UNKNOWN_SOURCE_NAME;
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, size - 1));
+    }
+}
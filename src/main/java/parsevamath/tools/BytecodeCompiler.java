@@ -0,0 +1,748 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class compiles an expression tree into a hidden class implementing
+ * {@link CompiledExpression}. The generated evaluate method is straight-line
+ * arithmetic on primitive doubles, with functions called directly on
+ * java.lang.Math, so that the JIT can inline the whole expression.
+ *
+ * <p>Each visit method emits the bytecode of a node and returns the
+ * number of operand stack slots needed to evaluate it. Nodes shared by
+ * several parents are emitted once, and their value is kept in a local
+ * variable for the other parents.
+ */
+public final class BytecodeCompiler extends AbstractMathAstVisitor<Integer> {
+
+    /**
+     * Internal name of generated classes.
+     */
+    private static final String CLASS_NAME = "parsevamath/tools/GeneratedExpression";
+
+    /**
+     * Internal name of java.lang.Object.
+     */
+    private static final String OBJECT = "java/lang/Object";
+
+    /**
+     * Internal name of the interface implemented by generated classes.
+     */
+    private static final String COMPILED_EXPRESSION = "parsevamath/tools/CompiledExpression";
+
+    /**
+     * Descriptor of a primitive double.
+     */
+    private static final String PRIMITIVE_DOUBLE_DESCRIPTOR = "D";
+
+    /**
+     * Descriptor of {@link CompiledExpression#evaluate(double[])}.
+     */
+    private static final String EVALUATE_DESCRIPTOR = "([D)D";
+
+    /**
+     * Name of constructors.
+     */
+    private static final String INIT = "<init>";
+
+    /**
+     * Descriptor of a constructor taking no arguments.
+     */
+    private static final String INIT_DESCRIPTOR = "()V";
+
+    /**
+     * Descriptors of the java.lang.Math return types.
+     */
+    private static final Map<Class<?>, String> RETURN_DESCRIPTORS = Map.of(
+        double.class, PRIMITIVE_DOUBLE_DESCRIPTOR,
+        long.class, "J",
+        int.class, "I"
+    );
+
+    /**
+     * Magic number of a class file.
+     */
+    private static final int MAGIC = 0xCAFEBABE;
+
+    /**
+     * Class file major version, Java 17.
+     */
+    private static final int CLASS_FILE_VERSION = 61;
+
+    /**
+     * Access flags of generated classes: public, final, super.
+     */
+    private static final int CLASS_ACCESS = 0x0031;
+
+    /**
+     * Access flags of generated methods: public.
+     */
+    private static final int METHOD_ACCESS = 0x0001;
+
+    /**
+     * Length of a Code attribute, not counting the bytecode itself.
+     */
+    private static final int CODE_ATTRIBUTE_OVERHEAD = 12;
+
+    /**
+     * Largest bytecode length and operand stack size of a method.
+     */
+    private static final int MAXIMUM_LENGTH = 0xFFFF;
+
+    /**
+     * Number of operand stack slots taken up by a double.
+     */
+    private static final int DOUBLE_SIZE = 2;
+
+    /**
+     * Opcode dconst_0.
+     */
+    private static final int DCONST_0 = 0x0e;
+
+    /**
+     * Opcode dconst_1.
+     */
+    private static final int DCONST_1 = 0x0f;
+
+    /**
+     * Opcode ldc2_w.
+     */
+    private static final int LDC2_W = 0x14;
+
+    /**
+     * Opcode dload.
+     */
+    private static final int DLOAD = 0x18;
+
+    /**
+     * Opcode dstore.
+     */
+    private static final int DSTORE = 0x39;
+
+    /**
+     * Opcode dup2.
+     */
+    private static final int DUP2 = 0x5c;
+
+    /**
+     * Opcode wide, which widens the local variable index of the next
+     * instruction to two bytes.
+     */
+    private static final int WIDE = 0xc4;
+
+    /**
+     * Largest local variable index that fits in one byte.
+     */
+    private static final int MAXIMUM_NARROW_INDEX = 0xFF;
+
+    /**
+     * Opcode aload_0.
+     */
+    private static final int ALOAD_0 = 0x2a;
+
+    /**
+     * Opcode aload_1.
+     */
+    private static final int ALOAD_1 = 0x2b;
+
+    /**
+     * Opcode daload.
+     */
+    private static final int DALOAD = 0x31;
+
+    /**
+     * Opcode iconst_0; iconst_1 to iconst_5 follow it.
+     */
+    private static final int ICONST_0 = 0x03;
+
+    /**
+     * Largest int pushed by an iconst instruction.
+     */
+    private static final int MAXIMUM_ICONST = 5;
+
+    /**
+     * Opcode bipush.
+     */
+    private static final int BIPUSH = 0x10;
+
+    /**
+     * Opcode sipush.
+     */
+    private static final int SIPUSH = 0x11;
+
+    /**
+     * Local variable index of the first shared node, after 'this' and the
+     * variables array.
+     */
+    private static final int FIRST_SHARED_LOCAL = 2;
+
+    /**
+     * Opcode dadd.
+     */
+    private static final int DADD = 0x63;
+
+    /**
+     * Opcode dsub.
+     */
+    private static final int DSUB = 0x67;
+
+    /**
+     * Opcode dmul.
+     */
+    private static final int DMUL = 0x6b;
+
+    /**
+     * Opcode ddiv.
+     */
+    private static final int DDIV = 0x6f;
+
+    /**
+     * Opcode dneg.
+     */
+    private static final int DNEG = 0x77;
+
+    /**
+     * Opcode i2d.
+     */
+    private static final int I2D = 0x87;
+
+    /**
+     * Opcode l2d.
+     */
+    private static final int L2D = 0x8a;
+
+    /**
+     * Opcode dreturn.
+     */
+    private static final int DRETURN = 0xaf;
+
+    /**
+     * Opcode return.
+     */
+    private static final int RETURN = 0xb1;
+
+    /**
+     * Opcode invokespecial.
+     */
+    private static final int INVOKESPECIAL = 0xb7;
+
+    /**
+     * Opcode invokestatic.
+     */
+    private static final int INVOKESTATIC = 0xb8;
+
+    /**
+     * Constant pool of the generated class.
+     */
+    private final ConstantPool constantPool = new ConstantPool();
+
+    /**
+     * Bytecode of the generated evaluate method.
+     */
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+
+    /**
+     * Nodes referenced by more than one parent.
+     */
+    private final Set<ExpressionNode> sharedNodes;
+
+    /**
+     * Local variable index of each shared node emitted so far.
+     */
+    private final Map<ExpressionNode, Integer> locals = new IdentityHashMap<>();
+
+    /**
+     * Instances are only created by {@link #compile(ExpressionNode)}.
+     *
+     * @param root root of the expression tree
+     */
+    private BytecodeCompiler(ExpressionNode root) {
+        sharedNodes = ParsevaUtils.findSharedNodes(root);
+    }
+
+    /**
+     * Compiles an expression tree into a new hidden class, and returns an
+     * instance of it.
+     *
+     * @param root root of the expression tree
+     * @return compiled expression
+     * @throws IllegalStateException if the expression is too large for a
+     *     single method, or the class could not be defined
+     */
+    public static CompiledExpression compile(ExpressionNode root) {
+        final BytecodeCompiler compiler = new BytecodeCompiler(root);
+        final int maxStack = compiler.visit(root);
+        compiler.emit(DRETURN);
+        return instantiate(compiler.toClassFile(maxStack));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation loads shared nodes from their local variable
+     * once they have been emitted, and stores a copy of them after
+     * emitting them.
+     */
+    @Override
+    public Integer visit(ExpressionNode node) {
+        final Integer local = locals.get(node);
+        int maxStack = DOUBLE_SIZE;
+        if (local == null) {
+            maxStack = super.visit(node);
+            if (sharedNodes.contains(node)) {
+                // each double takes up two locals
+                final int newLocal = FIRST_SHARED_LOCAL + DOUBLE_SIZE * locals.size();
+                locals.put(node, newLocal);
+                emit(DUP2);
+                emitLocal(DSTORE, newLocal);
+                maxStack = Math.max(maxStack, DOUBLE_SIZE * 2);
+            }
+        }
+        else {
+            emitLocal(DLOAD, local);
+        }
+        return maxStack;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits dadd.
+     */
+    @Override
+    Integer visit(AdditionNode node) {
+        return emitInfix(node, DADD);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits dsub.
+     */
+    @Override
+    Integer visit(SubtractionNode node) {
+        return emitInfix(node, DSUB);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits dmul.
+     */
+    @Override
+    Integer visit(MultiplicationNode node) {
+        return emitInfix(node, DMUL);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits ddiv.
+     */
+    @Override
+    Integer visit(DivisionNode node) {
+        return emitInfix(node, DDIV);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits dneg.
+     */
+    @Override
+    Integer visit(NegateNode node) {
+        final int maxStack = visit(node.innerNode());
+        emit(DNEG);
+        return maxStack;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a static call to the java.lang.Math method
+     * of the resolved function. If the function could not be resolved, the
+     * expression evaluates to NaN.
+     */
+    @Override
+    Integer visit(MethodNode node) {
+        final List<ExpressionNode> arguments = node.arguments();
+        final MathFunction function = node.function();
+
+        int maxStack = DOUBLE_SIZE;
+        if (function == null) {
+            emitConstant(Double.NaN);
+        }
+        else {
+            final Method method = findMathMethod(function);
+            for (int i = 0; i < arguments.size(); i++) {
+                maxStack = Math.max(maxStack, DOUBLE_SIZE * i + visit(arguments.get(i)));
+            }
+
+            final Class<?> returnType = method.getReturnType();
+            final String descriptor = methodDescriptor(
+                PRIMITIVE_DOUBLE_DESCRIPTOR.repeat(arguments.size()),
+                RETURN_DESCRIPTORS.get(returnType));
+            emitInvoke(INVOKESTATIC, "java/lang/Math", method.getName(), descriptor);
+
+            if (returnType == long.class) {
+                emit(L2D);
+            }
+            else if (returnType == int.class) {
+                emit(I2D);
+            }
+        }
+        return maxStack;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits the value as a constant.
+     */
+    @Override
+    Integer visit(NumberNode node) {
+        emitConstant(node.value());
+        return DOUBLE_SIZE;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits the value as a constant.
+     */
+    @Override
+    Integer visit(ConstantNode node) {
+        emitConstant(node.value());
+        return DOUBLE_SIZE;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a call to {@link MathUtils#factorial(double)}.
+     */
+    @Override
+    Integer visit(FactorialNode node) {
+        final int maxStack = visit(node.innerNode());
+        emitInvoke(INVOKESTATIC, "parsevamath/tools/MathUtils", "factorial",
+            methodDescriptor(PRIMITIVE_DOUBLE_DESCRIPTOR, PRIMITIVE_DOUBLE_DESCRIPTOR));
+        return Math.max(maxStack, DOUBLE_SIZE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a load from the variables array.
+     *
+     * @throws IllegalStateException if the slot does not fit in a short
+     */
+    @Override
+    Integer visit(VariableNode node) {
+        final int slot = node.slot();
+        emit(ALOAD_1);
+        if (slot <= MAXIMUM_ICONST) {
+            emit(ICONST_0 + slot);
+        }
+        else if (slot <= Byte.MAX_VALUE) {
+            emit(BIPUSH);
+            emit(slot);
+        }
+        else if (slot <= Short.MAX_VALUE) {
+            emit(SIPUSH);
+            emitShort(slot);
+        }
+        else {
+            throw new IllegalStateException("Too many variables to compile to bytecode");
+        }
+        emit(DALOAD);
+        return DOUBLE_SIZE;
+    }
+
+    /**
+     * Emits both operands of an infix node, followed by the operator.
+     *
+     * @param node infix node
+     * @param opcode opcode of the operator
+     * @return number of operand stack slots needed
+     */
+    private int emitInfix(InfixExpressionNode node, int opcode) {
+        final int left = visit(node.left());
+        final int right = visit(node.right());
+        emit(opcode);
+        return Math.max(left, DOUBLE_SIZE + right);
+    }
+
+    /**
+     * Emits the shortest instruction that pushes a double constant.
+     *
+     * @param value value to push
+     */
+    private void emitConstant(double value) {
+        if (Double.doubleToRawLongBits(value) == 0L) {
+            emit(DCONST_0);
+        }
+        else if (value == 1.0) {
+            emit(DCONST_1);
+        }
+        else {
+            emit(LDC2_W);
+            emitShort(constantPool.doubleConstant(value));
+        }
+    }
+
+    /**
+     * Emits an instruction that takes a local variable index, widening it
+     * if the index does not fit in one byte.
+     *
+     * @param opcode opcode of the instruction
+     * @param index local variable index
+     */
+    private void emitLocal(int opcode, int index) {
+        if (index > MAXIMUM_NARROW_INDEX) {
+            emit(WIDE);
+            emit(opcode);
+            emitShort(index);
+        }
+        else {
+            emit(opcode);
+            emit(index);
+        }
+    }
+
+    /**
+     * Emits a method invocation.
+     *
+     * @param opcode invoke opcode
+     * @param owner internal name of the class declaring the method
+     * @param name name of the method
+     * @param descriptor method descriptor
+     */
+    private void emitInvoke(int opcode, String owner, String name, String descriptor) {
+        emit(opcode);
+        emitShort(constantPool.methodRef(owner, name, descriptor));
+    }
+
+    /**
+     * Emits a single byte.
+     *
+     * @param value byte to emit
+     */
+    private void emit(int value) {
+        code.write(value);
+    }
+
+    /**
+     * Emits a big-endian unsigned short.
+     *
+     * @param value short to emit
+     */
+    private void emitShort(int value) {
+        code.write(value >>> Byte.SIZE);
+        code.write(value);
+    }
+
+    /**
+     * Serializes the generated class.
+     *
+     * @param maxStack operand stack size of the evaluate method
+     * @return class file bytes
+     * @throws UncheckedIOException if the class file cannot be written
+     * @throws IllegalStateException if the expression is too large
+     */
+    private byte[] toClassFile(int maxStack) {
+        final byte[] evaluateCode = code.toByteArray();
+        final int maxLocals = FIRST_SHARED_LOCAL + DOUBLE_SIZE * locals.size();
+        if (evaluateCode.length > MAXIMUM_LENGTH || maxStack > MAXIMUM_LENGTH
+            || maxLocals > MAXIMUM_LENGTH) {
+            throw new IllegalStateException("Expression is too large to compile to bytecode");
+        }
+
+        final int objectInit = constantPool.methodRef(OBJECT, INIT, INIT_DESCRIPTOR);
+        final int[] initNames = methodNames(INIT, INIT_DESCRIPTOR);
+        final int[] evaluateNames = methodNames("evaluate", EVALUATE_DESCRIPTOR);
+        final byte[] initCode = {
+            (byte) ALOAD_0,
+            (byte) INVOKESPECIAL,
+            (byte) (objectInit >>> Byte.SIZE),
+            (byte) objectInit,
+            (byte) RETURN,
+        };
+        final int[] classNames = {
+            constantPool.classRef(CLASS_NAME),
+            constantPool.classRef(OBJECT),
+            constantPool.classRef(COMPILED_EXPRESSION),
+        };
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            writeHeader(output, classNames);
+            output.writeShort(2);
+            writeMethod(output, initNames, 1, 1, initCode);
+            writeMethod(output, evaluateNames, maxStack, maxLocals, evaluateCode);
+            // no class attributes
+            output.writeShort(0);
+        }
+        catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Adds the constant pool entries that describe a method.
+     *
+     * @param name name of the method
+     * @param descriptor descriptor of the method
+     * @return constant pool indexes of name, descriptor and "Code"
+     */
+    private int[] methodNames(String name, String descriptor) {
+        return new int[] {
+            constantPool.utf8(name),
+            constantPool.utf8(descriptor),
+            constantPool.utf8("Code"),
+        };
+    }
+
+    /**
+     * Writes everything in the class file that precedes its methods. All
+     * constant pool entries must have been added before this is called.
+     *
+     * @param output class file output
+     * @param classNames constant pool indexes of this class, its super class
+     *     and its interface
+     * @throws IOException if the header cannot be written
+     */
+    private void writeHeader(DataOutputStream output, int[] classNames) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeShort(0);
+        output.writeShort(CLASS_FILE_VERSION);
+        output.writeShort(constantPool.getCount());
+        output.write(constantPool.toByteArray());
+        output.writeShort(CLASS_ACCESS);
+        output.writeShort(classNames[0]);
+        output.writeShort(classNames[1]);
+        output.writeShort(1);
+        output.writeShort(classNames[2]);
+        // no fields
+        output.writeShort(0);
+    }
+
+    /**
+     * Writes a public method with a Code attribute.
+     *
+     * @param output class file output
+     * @param names constant pool indexes of name, descriptor and "Code"
+     * @param maxStack operand stack size
+     * @param maxLocals number of local variable slots, including 'this' and
+     *     the parameters
+     * @param methodCode bytecode of the method
+     * @throws IOException if the method cannot be written
+     */
+    private static void writeMethod(DataOutputStream output, int[] names, int maxStack,
+                                    int maxLocals, byte[] methodCode) throws IOException {
+        output.writeShort(METHOD_ACCESS);
+        output.writeShort(names[0]);
+        output.writeShort(names[1]);
+        output.writeShort(1);
+        output.writeShort(names[2]);
+        output.writeInt(CODE_ATTRIBUTE_OVERHEAD + methodCode.length);
+        output.writeShort(maxStack);
+        output.writeShort(maxLocals);
+        output.writeInt(methodCode.length);
+        output.write(methodCode);
+        // no exception table, no attributes
+        output.writeShort(0);
+        output.writeShort(0);
+    }
+
+    /**
+     * Builds a method descriptor.
+     *
+     * @param parameters descriptors of the parameters
+     * @param returnType descriptor of the return type
+     * @return method descriptor
+     */
+    private static String methodDescriptor(String parameters, String returnType) {
+        return "(" + parameters + ")" + returnType;
+    }
+
+    /**
+     * Defines a hidden class and creates an instance of it. The class is not
+     * strongly reachable from its defining loader, so it can be unloaded
+     * once the compiled expression is no longer used.
+     *
+     * @param classFile class file bytes
+     * @return instance of the hidden class
+     * @throws IllegalStateException if the class could not be defined
+     */
+    private static CompiledExpression instantiate(byte[] classFile) {
+        try {
+            final MethodHandles.Lookup lookup =
+                MethodHandles.lookup().defineHiddenClass(classFile, true);
+            return (CompiledExpression) lookup.lookupClass()
+                .getDeclaredConstructor()
+                .newInstance();
+        }
+        catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("Failed to define compiled expression", exception);
+        }
+    }
+
+    /**
+     * Finds the java.lang.Math method implementing a function, which is
+     * needed for its return type.
+     *
+     * @param function the resolved function
+     * @return the java.lang.Math method
+     * @throws IllegalStateException if there is no such method
+     */
+    private static Method findMathMethod(MathFunction function) {
+        final Class<?>[] paramTypes = new Class<?>[function.getArity()];
+        Arrays.fill(paramTypes, double.class);
+        try {
+            return Math.class.getMethod(function.getFunctionName(), paramTypes);
+        }
+        catch (NoSuchMethodException exception) {
+            throw new IllegalStateException("Unknown function " + function, exception);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+/**
+ * The loops run by {@link BatchEvaluator} over the buffers of a chunk. The
+ * left operand buffer of each operation receives its results. This class
+ * holds the scalar loops, which the JIT is free to unroll and vectorize on
+ * its own; {@link VectorKernels} overrides the operations that have an
+ * exact equivalent in the Vector API.
+ */
+class ColumnKernels {
+
+    /**
+     * Name of the module of the Vector API.
+     */
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /**
+     * Scalar kernels.
+     */
+    private static final ColumnKernels SCALAR = new ColumnKernels();
+
+    /**
+     * Gets the kernels to evaluate a batch with.
+     *
+     * @param vectorized true to use the Vector API if it is available
+     * @return vector kernels if requested and available, scalar kernels otherwise
+     */
+    static ColumnKernels select(boolean vectorized) {
+        final ColumnKernels kernels;
+        if (vectorized && isVectorSupported()) {
+            kernels = VectorKernels.INSTANCE;
+        }
+        else {
+            kernels = SCALAR;
+        }
+        return kernels;
+    }
+
+    /**
+     * Determines if the Vector API can be used. It is an incubator module,
+     * so it is only resolved if the JVM was started with
+     * {@code --add-modules jdk.incubator.vector}.
+     *
+     * @return true if the Vector API module is present
+     */
+    static boolean isVectorSupported() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+
+    /**
+     * Determines if these kernels use the Vector API.
+     *
+     * @return true for vector kernels
+     */
+    boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * Adds right to left, element by element.
+     *
+     * @param left left operands, receives the results
+     * @param right right operands
+     * @param length number of elements
+     */
+    void add(double[] left, double[] right, int length) {
+        for (int i = 0; i < length; i++) {
+            left[i] += right[i];
+        }
+    }
+
+    /**
+     * Subtracts right from left, element by element.
+     *
+     * @param left left operands, receives the results
+     * @param right right operands
+     * @param length number of elements
+     */
+    void subtract(double[] left, double[] right, int length) {
+        for (int i = 0; i < length; i++) {
+            left[i] -= right[i];
+        }
+    }
+
+    /**
+     * Multiplies left by right, element by element.
+     *
+     * @param left left operands, receives the results
+     * @param right right operands
+     * @param length number of elements
+     */
+    void multiply(double[] left, double[] right, int length) {
+        for (int i = 0; i < length; i++) {
+            left[i] *= right[i];
+        }
+    }
+
+    /**
+     * Divides left by right, element by element.
+     *
+     * @param left left operands, receives the results
+     * @param right right operands
+     * @param length number of elements
+     */
+    void divide(double[] left, double[] right, int length) {
+        for (int i = 0; i < length; i++) {
+            left[i] /= right[i];
+        }
+    }
+
+    /**
+     * Negates each element.
+     *
+     * @param operands operands, receive the results
+     * @param length number of elements
+     */
+    void negate(double[] operands, int length) {
+        for (int i = 0; i < length; i++) {
+            operands[i] = -operands[i];
+        }
+    }
+
+    /**
+     * Replaces each element with its factorial.
+     *
+     * @param operands operands, receive the results
+     * @param length number of elements
+     */
+    void factorial(double[] operands, int length) {
+        for (int i = 0; i < length; i++) {
+            operands[i] = MathUtils.factorial(operands[i]);
+        }
+    }
+
+    /**
+     * Applies a unary function to each element.
+     *
+     * @param function function to apply
+     * @param first arguments, receive the results
+     * @param length number of elements
+     */
+    void apply(MathFunction function, double[] first, int length) {
+        for (int i = 0; i < length; i++) {
+            first[i] = function.apply(first[i]);
+        }
+    }
+
+    /**
+     * Applies a binary function to each pair of elements.
+     *
+     * @param function function to apply
+     * @param first first arguments, receive the results
+     * @param second second arguments
+     * @param length number of elements
+     */
+    void apply(MathFunction function, double[] first, double[] second, int length) {
+        for (int i = 0; i < length; i++) {
+            first[i] = function.apply(first[i], second[i]);
+        }
+    }
+
+    /**
+     * Applies a ternary function to each triple of elements.
+     *
+     * @param function function to apply
+     * @param first first arguments, receive the results
+     * @param second second arguments
+     * @param third third arguments
+     * @param length number of elements
+     */
+    void apply(MathFunction function, double[] first, double[] second, double[] third,
+               int length) {
+        for (int i = 0; i < length; i++) {
+            first[i] = function.apply(first[i], second[i], third[i]);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class hash-conses an expression tree: structurally equal subtrees
+ * are replaced by a single shared instance, which turns the tree into a
+ * DAG. Engines that compile the DAG, such as {@link ProgramCompiler},
+ * then evaluate each shared subexpression once per evaluation.
+ *
+ * <p>Subtrees are rewritten bottom-up, so by the time a node is interned
+ * its operands are already unique. A node is therefore identified by its
+ * type, its own value, function or slot, and the ids of its operands, which
+ * hashes in constant time instead of walking the whole subtree.
+ */
+final class CommonSubexpressionVisitor extends AbstractRewritingVisitor {
+
+    /**
+     * Unique nodes, keyed on their shallow structure.
+     */
+    private final Map<List<Object>, ExpressionNode> uniqueNodes = new HashMap<>();
+
+    /**
+     * Id of each unique node.
+     */
+    private final Map<ExpressionNode, Integer> ids = new IdentityHashMap<>();
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation rewrites the operands of the node first, and
+     * then returns the unique node equal to the result.
+     */
+    @Override
+    public ExpressionNode visit(ExpressionNode node) {
+        final ExpressionNode rewritten = super.visit(node);
+        final ExpressionNode unique = uniqueNodes.computeIfAbsent(key(rewritten),
+            key -> rewritten);
+        ids.putIfAbsent(unique, ids.size());
+        return unique;
+    }
+
+    /**
+     * Builds the shallow key of a node whose operands are already unique.
+     *
+     * @param node the node to build a key for
+     * @return list of node type, value, function name or slot, and operand ids
+     */
+    private List<Object> key(ExpressionNode node) {
+        final List<ExpressionNode> operands = ParsevaUtils.getOperands(node);
+        final List<Object> key = new ArrayList<>(operands.size() + 2);
+        key.add(node.getClass());
+        if (node instanceof NumberNode numberNode) {
+            key.add(Double.doubleToLongBits(numberNode.value()));
+        }
+        else if (node instanceof ConstantNode constantNode) {
+            key.add(Double.doubleToLongBits(constantNode.value()));
+        }
+        else if (node instanceof MethodNode methodNode) {
+            key.add(methodNode.functionName());
+        }
+        else if (node instanceof VariableNode variableNode) {
+            key.add(variableNode.slot());
+        }
+        for (ExpressionNode operand : operands) {
+            key.add(ids.get(operand));
+        }
+        return key;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+/**
+ * An expression that has been compiled by an {@link Engine} and can be
+ * evaluated repeatedly without being parsed again.
+ */
+@FunctionalInterface
+public interface CompiledExpression {
+
+    /**
+     * Variables array of expressions without variables.
+     */
+    double[] NO_VARIABLES = new double[0];
+
+    /**
+     * Evaluates this expression with the given variables. The array is
+     * indexed by the slot each variable was given when the expression tree
+     * was built, see {@link ParsevaUtils#getVariableNames(ExpressionNode)}.
+     *
+     * @param variables the values of the variables, indexed by slot
+     * @return the value of the expression
+     */
+    double evaluate(double[] variables);
+
+    /**
+     * Evaluates this expression, which must not have any variables.
+     *
+     * @return the value of the expression
+     */
+    default double evaluate() {
+        return evaluate(NO_VARIABLES);
+    }
+}
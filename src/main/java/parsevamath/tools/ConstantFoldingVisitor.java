@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.List;
+
+/**
+ * This class folds every subtree whose operands are all literals into a
+ * single number node. Since all java.lang.Math functions are pure, calls
+ * with literal arguments are folded as well. Values are computed with
+ * {@link DoubleEvaluator}, so folding never changes the result of an
+ * expression.
+ */
+final class ConstantFoldingVisitor extends AbstractRewritingVisitor {
+
+    /**
+     * Evaluates folded subtrees.
+     */
+    private final DoubleEvaluator evaluator = new DoubleEvaluator();
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation rewrites the descendants of the node first,
+     * and then folds the node if all of its operands became literals.
+     */
+    @Override
+    public ExpressionNode visit(ExpressionNode node) {
+        final ExpressionNode rewritten = super.visit(node);
+        final List<ExpressionNode> operands = ParsevaUtils.getOperands(rewritten);
+        ExpressionNode result = rewritten;
+        if (!operands.isEmpty()
+            && operands.stream().allMatch(AbstractRewritingVisitor::isLiteral)) {
+            result = new NumberNode(evaluator.visit(rewritten));
+        }
+        return result;
+    }
+}
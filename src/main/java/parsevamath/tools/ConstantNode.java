@@ -31,15 +31,23 @@ package parsevamath.tools;
 /**
  * A ConstantNode is used to represent a mathematical constant such as pi or e.
  *
+ * @param value the numerical value of this node
  */
-public final class ConstantNode extends NumberNode {
+public record ConstantNode(double value) implements ExpressionNode {
 
     /**
-     * Constructor for ConstantNode class.
-     *
-     * @param value the numerical value of this node
+     * {@inheritDoc}
      */
-    ConstantNode(Double value) {
-        super(value);
+    @Override
+    public <T> T accept(AbstractMathAstVisitor<T> visitor) {
+        return visitor.visit(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double accept(DoubleEvaluator evaluator, double[] variables) {
+        return evaluator.visit(this, variables);
     }
 }
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class builds the constant pool of a class file, reusing entries
+ * that have already been added.
+ */
+final class ConstantPool {
+
+    /**
+     * Largest number of entries allowed in a constant pool.
+     */
+    private static final int MAXIMUM_COUNT = 0xFFFF;
+
+    /**
+     * Tag of a CONSTANT_Utf8 entry.
+     */
+    private static final int UTF8 = 1;
+
+    /**
+     * Tag of a CONSTANT_Double entry.
+     */
+    private static final int DOUBLE = 6;
+
+    /**
+     * Tag of a CONSTANT_Class entry.
+     */
+    private static final int CLASS = 7;
+
+    /**
+     * Tag of a CONSTANT_Methodref entry.
+     */
+    private static final int METHOD_REF = 10;
+
+    /**
+     * Tag of a CONSTANT_NameAndType entry.
+     */
+    private static final int NAME_AND_TYPE = 12;
+
+    /**
+     * Indexes of entries already in this pool, keyed by their contents.
+     */
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    /**
+     * Serialized entries of this pool.
+     */
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    /**
+     * Output stream used to write entries.
+     */
+    private final DataOutputStream output = new DataOutputStream(bytes);
+
+    /**
+     * Index to assign to the next entry; index zero is never used.
+     */
+    private int nextIndex = 1;
+
+    /**
+     * Adds a CONSTANT_Utf8 entry.
+     *
+     * @param value string value
+     * @return index of entry
+     * @throws UncheckedIOException if the entry cannot be written
+     */
+    int utf8(String value) {
+        final String key = "U:" + value;
+        Integer index = indexes.get(key);
+        if (index == null) {
+            index = add(key, 1);
+            write(UTF8);
+            try {
+                output.writeUTF(value);
+            }
+            catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Adds a CONSTANT_Class entry.
+     *
+     * @param internalName internal name of the class, such as java/lang/Math
+     * @return index of entry
+     */
+    int classRef(String internalName) {
+        final String key = "C:" + internalName;
+        Integer index = indexes.get(key);
+        if (index == null) {
+            final int name = utf8(internalName);
+            index = add(key, 1);
+            write(CLASS);
+            writeShort(name);
+        }
+        return index;
+    }
+
+    /**
+     * Adds a CONSTANT_Methodref entry.
+     *
+     * @param owner internal name of the class declaring the method
+     * @param name name of the method
+     * @param descriptor method descriptor
+     * @return index of entry
+     */
+    int methodRef(String owner, String name, String descriptor) {
+        final String key = "M:" + owner + '.' + name + descriptor;
+        Integer index = indexes.get(key);
+        if (index == null) {
+            final int ownerIndex = classRef(owner);
+            final int nameAndType = nameAndType(name, descriptor);
+            index = add(key, 1);
+            write(METHOD_REF);
+            writeShort(ownerIndex);
+            writeShort(nameAndType);
+        }
+        return index;
+    }
+
+    /**
+     * Adds a CONSTANT_Double entry, which takes up two indexes.
+     *
+     * @param value double value
+     * @return index of entry
+     * @throws UncheckedIOException if the entry cannot be written
+     */
+    int doubleConstant(double value) {
+        final long bits = Double.doubleToRawLongBits(value);
+        final String key = "D:" + bits;
+        Integer index = indexes.get(key);
+        if (index == null) {
+            index = add(key, 2);
+            write(DOUBLE);
+            try {
+                output.writeLong(bits);
+            }
+            catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Gets the constant_pool_count of this pool.
+     *
+     * @return one more than the largest index in use
+     */
+    int getCount() {
+        return nextIndex;
+    }
+
+    /**
+     * Gets the serialized entries of this pool.
+     *
+     * @return serialized entries
+     */
+    byte[] toByteArray() {
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Adds a CONSTANT_NameAndType entry.
+     *
+     * @param name name of the member
+     * @param descriptor descriptor of the member
+     * @return index of entry
+     */
+    private int nameAndType(String name, String descriptor) {
+        final String key = "N:" + name + descriptor;
+        Integer index = indexes.get(key);
+        if (index == null) {
+            final int nameIndex = utf8(name);
+            final int descriptorIndex = utf8(descriptor);
+            index = add(key, 1);
+            write(NAME_AND_TYPE);
+            writeShort(nameIndex);
+            writeShort(descriptorIndex);
+        }
+        return index;
+    }
+
+    /**
+     * Reserves indexes for a new entry.
+     *
+     * @param key contents of the entry
+     * @param size number of indexes taken up by the entry
+     * @return index of entry
+     * @throws IllegalStateException if the pool is full
+     */
+    private int add(String key, int size) {
+        final int index = nextIndex;
+        nextIndex += size;
+        if (nextIndex > MAXIMUM_COUNT) {
+            throw new IllegalStateException("Constant pool is full");
+        }
+        indexes.put(key, index);
+        return index;
+    }
+
+    /**
+     * Writes a single byte.
+     *
+     * @param value byte to write
+     */
+    private void write(int value) {
+        bytes.write(value);
+    }
+
+    /**
+     * Writes an unsigned short.
+     *
+     * @param value short to write
+     * @throws UncheckedIOException if the short cannot be written
+     */
+    private void writeShort(int value) {
+        try {
+            output.writeShort(value);
+        }
+        catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
@@ -0,0 +1,507 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * This class differentiates an expression tree symbolically, with respect to
+ * one of its variables. The derivative is built with {@link Simplifier}, and
+ * shares the subtrees of the expression it is taken of, so its variables
+ * keep their slots: the variables array of an expression also evaluates all
+ * of its derivatives.
+ *
+ * <p>Functions that are piecewise constant, such as floor and signum, have a
+ * derivative of zero wherever they have one, and max and min take the
+ * derivative of the argument they select. The factorial of an expression
+ * that depends on the variable, and unknown functions, cannot be
+ * differentiated.
+ */
+final class DerivativeVisitor extends AbstractMathAstVisitor<ExpressionNode> {
+
+    /**
+     * The number three.
+     */
+    private static final NumberNode THREE = new NumberNode(3);
+
+    /**
+     * The number minus one.
+     */
+    private static final NumberNode MINUS_ONE = new NumberNode(-1);
+
+    /**
+     * The natural logarithm of ten.
+     */
+    private static final NumberNode LN10 = new NumberNode(Math.log(10));
+
+    /**
+     * The number of degrees in a radian.
+     */
+    private static final NumberNode DEGREES_PER_RADIAN = new NumberNode(Math.toDegrees(1));
+
+    /**
+     * The number of radians in a degree.
+     */
+    private static final NumberNode RADIANS_PER_DEGREE = new NumberNode(Math.toRadians(1));
+
+    /**
+     * Derivatives of the functions of one argument, given the argument and
+     * the call of the function.
+     */
+    private static final Map<MathFunction, BinaryOperator<ExpressionNode>> DERIVATIVES =
+        createDerivatives();
+
+    /**
+     * Partial derivatives of the functions of several arguments, with
+     * respect to each argument, given the call of the function.
+     */
+    private static final Map<MathFunction, Function<MethodNode, List<ExpressionNode>>>
+        PARTIAL_DERIVATIVES = createPartialDerivatives();
+
+    /**
+     * Name of the variable to differentiate with respect to.
+     */
+    private final String variable;
+
+    /**
+     * Creates a new visitor.
+     *
+     * @param variable name of the variable to differentiate with respect to
+     */
+    private DerivativeVisitor(String variable) {
+        this.variable = variable;
+    }
+
+    /**
+     * Differentiates an expression tree with respect to a variable. The
+     * derivative with respect to a variable the tree does not use is zero.
+     *
+     * @param root root of the expression tree
+     * @param variable name of the variable to differentiate with respect to
+     * @return root of the derivative
+     * @throws IllegalArgumentException if the tree cannot be differentiated
+     */
+    static ExpressionNode derive(ExpressionNode root, String variable) {
+        return new DerivativeVisitor(variable).visit(root);
+    }
+
+    /**
+     * Differentiates an expression tree with respect to each of its
+     * variables.
+     *
+     * @param root root of the expression tree
+     * @return roots of the derivatives, indexed by variable slot
+     * @throws IllegalArgumentException if the tree cannot be differentiated
+     */
+    static List<ExpressionNode> gradient(ExpressionNode root) {
+        final List<String> names = ParsevaUtils.getVariableNames(root);
+        final List<ExpressionNode> derivatives = new ArrayList<>(names.size());
+        for (String name : names) {
+            if (name == null) {
+                derivatives.add(Simplifier.ZERO);
+            }
+            else {
+                derivatives.add(derive(root, name));
+            }
+        }
+        return derivatives;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the sum of the derivatives of this
+     * node's two descendants.
+     */
+    @Override
+    ExpressionNode visit(AdditionNode node) {
+        return Simplifier.add(visit(node.left()), visit(node.right()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the difference of the derivatives of
+     * this node's two descendants.
+     */
+    @Override
+    ExpressionNode visit(SubtractionNode node) {
+        return Simplifier.subtract(visit(node.left()), visit(node.right()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation applies the product rule to this node's two
+     * descendants.
+     */
+    @Override
+    ExpressionNode visit(MultiplicationNode node) {
+        return Simplifier.add(Simplifier.multiply(visit(node.left()), node.right()),
+            Simplifier.multiply(node.left(), visit(node.right())));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation applies the quotient rule to this node's two
+     * descendants, or only divides the derivative of the dividend if the
+     * divisor is constant.
+     */
+    @Override
+    ExpressionNode visit(DivisionNode node) {
+        final ExpressionNode dividend = visit(node.left());
+        final ExpressionNode divisor = visit(node.right());
+        final ExpressionNode result;
+        if (AbstractRewritingVisitor.isNumber(divisor, 0)) {
+            result = Simplifier.divide(dividend, node.right());
+        }
+        else {
+            final ExpressionNode numerator = Simplifier.subtract(
+                Simplifier.multiply(dividend, node.right()),
+                Simplifier.multiply(node.left(), divisor));
+            result = Simplifier.divide(numerator, square(node.right()));
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the derivative of the node's inner node,
+     * negated.
+     */
+    @Override
+    ExpressionNode visit(NegateNode node) {
+        return Simplifier.negate(visit(node.innerNode()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation applies the chain rule, summing the partial
+     * derivative of the function with respect to each argument, times the
+     * derivative of the argument.
+     */
+    @Override
+    ExpressionNode visit(MethodNode node) {
+        if (node.function() == null) {
+            throw new IllegalArgumentException("Cannot differentiate unknown function: "
+                + node.functionName());
+        }
+        final List<ExpressionNode> derivatives = node.arguments().stream()
+            .map(this::visit)
+            .toList();
+        ExpressionNode result = Simplifier.ZERO;
+        if (!derivatives.stream()
+            .allMatch(derivative -> AbstractRewritingVisitor.isNumber(derivative, 0))) {
+            final List<ExpressionNode> partials = getPartialDerivatives(node);
+            for (int index = 0; index < derivatives.size(); index++) {
+                result = Simplifier.add(result,
+                    Simplifier.multiply(partials.get(index), derivatives.get(index)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns zero.
+     */
+    @Override
+    ExpressionNode visit(NumberNode node) {
+        return Simplifier.ZERO;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns zero.
+     */
+    @Override
+    ExpressionNode visit(ConstantNode node) {
+        return Simplifier.ZERO;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns zero, since only the factorial of a
+     * constant can be differentiated.
+     */
+    @Override
+    ExpressionNode visit(FactorialNode node) {
+        if (!AbstractRewritingVisitor.isNumber(visit(node.innerNode()), 0)) {
+            throw new IllegalArgumentException("Cannot differentiate factorial of variable: "
+                + variable);
+        }
+        return Simplifier.ZERO;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns one for the variable of differentiation,
+     * and zero for any other variable.
+     */
+    @Override
+    ExpressionNode visit(VariableNode node) {
+        final ExpressionNode result;
+        if (node.name().equals(variable)) {
+            result = Simplifier.ONE;
+        }
+        else {
+            result = Simplifier.ZERO;
+        }
+        return result;
+    }
+
+    /**
+     * Builds the partial derivatives of a function call, with respect to
+     * each of its arguments.
+     *
+     * @param node the function call
+     * @return partial derivatives, in order of arguments
+     */
+    private static List<ExpressionNode> getPartialDerivatives(MethodNode node) {
+        final BinaryOperator<ExpressionNode> derivative = DERIVATIVES.get(node.function());
+        final List<ExpressionNode> result;
+        if (derivative == null) {
+            result = PARTIAL_DERIVATIVES.get(node.function()).apply(node);
+        }
+        else {
+            result = List.of(derivative.apply(node.arguments().get(0), node));
+        }
+        return result;
+    }
+
+    /**
+     * Builds the square of a node.
+     *
+     * @param node the node to square
+     * @return product of node with itself
+     */
+    private static ExpressionNode square(ExpressionNode node) {
+        return Simplifier.multiply(node, node);
+    }
+
+    /**
+     * Builds the partial derivatives of max or min, which are those of the
+     * argument they select, or the average of both on a tie.
+     *
+     * @param node call of max or min
+     * @param selector one to select the greater argument, minus one to
+     *     select the smaller
+     * @return partial derivatives of the function
+     */
+    private static List<ExpressionNode> select(MethodNode node, ExpressionNode selector) {
+        final ExpressionNode sign = Simplifier.multiply(selector,
+            Simplifier.call(MathFunction.SIGNUM, Simplifier.subtract(node.arguments().get(0),
+                node.arguments().get(1))));
+        return List.of(Simplifier.divide(Simplifier.add(Simplifier.ONE, sign), Simplifier.TWO),
+            Simplifier.divide(Simplifier.subtract(Simplifier.ONE, sign), Simplifier.TWO));
+    }
+
+    /**
+     * Builds the partial derivatives of pow.
+     *
+     * @param node call of pow
+     * @return partial derivatives of pow
+     */
+    private static List<ExpressionNode> power(MethodNode node) {
+        final ExpressionNode base = node.arguments().get(0);
+        final ExpressionNode exponent = node.arguments().get(1);
+        final ExpressionNode reduced = Simplifier.subtract(exponent, Simplifier.ONE);
+        final ExpressionNode reducedPower;
+        if (AbstractRewritingVisitor.isNumber(reduced, 1)) {
+            reducedPower = base;
+        }
+        else {
+            reducedPower = Simplifier.call(MathFunction.POW, base, reduced);
+        }
+        return List.of(Simplifier.multiply(exponent, reducedPower),
+            Simplifier.multiply(node, Simplifier.call(MathFunction.LOG, base)));
+    }
+
+    /**
+     * Builds the partial derivatives of atan2.
+     *
+     * @param node call of atan2
+     * @return partial derivatives of atan2
+     */
+    private static List<ExpressionNode> arcTangent(MethodNode node) {
+        final ExpressionNode ordinate = node.arguments().get(0);
+        final ExpressionNode abscissa = node.arguments().get(1);
+        final ExpressionNode radius = Simplifier.add(square(ordinate), square(abscissa));
+        return List.of(Simplifier.divide(abscissa, radius),
+            Simplifier.divide(Simplifier.negate(ordinate), radius));
+    }
+
+    /**
+     * Builds the partial derivatives of copySign, which are zero with
+     * respect to the sign.
+     *
+     * @param node call of copySign
+     * @return partial derivatives of copySign
+     */
+    private static List<ExpressionNode> copySign(MethodNode node) {
+        return List.of(Simplifier.multiply(
+            Simplifier.call(MathFunction.SIGNUM, node.arguments().get(0)),
+            Simplifier.call(MathFunction.COPY_SIGN, Simplifier.ONE, node.arguments().get(1))),
+            Simplifier.ZERO);
+    }
+
+    /**
+     * Builds the partial derivatives of hypot, each coordinate over the
+     * distance.
+     *
+     * @param node call of hypot
+     * @return partial derivatives of hypot
+     */
+    private static List<ExpressionNode> hypotenuse(MethodNode node) {
+        return List.of(Simplifier.divide(node.arguments().get(0), node),
+            Simplifier.divide(node.arguments().get(1), node));
+    }
+
+    /**
+     * Builds the partial derivatives of IEEEremainder, whose quotient is
+     * piecewise constant.
+     *
+     * @param node call of IEEEremainder
+     * @return partial derivatives of IEEEremainder
+     */
+    private static List<ExpressionNode> remainder(MethodNode node) {
+        return List.of(Simplifier.ONE, Simplifier.negate(Simplifier.call(MathFunction.RINT,
+            Simplifier.divide(node.arguments().get(0), node.arguments().get(1)))));
+    }
+
+    /**
+     * Builds the reciprocal of the square root of one minus the square of
+     * a node, the derivative of asin.
+     *
+     * @param node the argument of asin
+     * @return derivative of asin
+     */
+    private static ExpressionNode arcSineDerivative(ExpressionNode node) {
+        return reciprocal(Simplifier.call(MathFunction.SQRT,
+            Simplifier.subtract(Simplifier.ONE, square(node))));
+    }
+
+    /**
+     * Builds the reciprocal of a node.
+     *
+     * @param node the node to invert
+     * @return one divided by node
+     */
+    private static ExpressionNode reciprocal(ExpressionNode node) {
+        return Simplifier.divide(Simplifier.ONE, node);
+    }
+
+    /**
+     * Creates the derivatives of the functions of one argument.
+     *
+     * @return derivatives, by function
+     */
+    private static Map<MathFunction, BinaryOperator<ExpressionNode>> createDerivatives() {
+        final Map<MathFunction, BinaryOperator<ExpressionNode>> derivatives =
+            new EnumMap<>(MathFunction.class);
+        for (MathFunction function : EnumSet.of(MathFunction.CEIL, MathFunction.FLOOR,
+            MathFunction.GET_EXPONENT, MathFunction.RINT, MathFunction.ROUND,
+            MathFunction.SIGNUM, MathFunction.ULP)) {
+            // These functions are piecewise constant.
+            derivatives.put(function, (argument, node) -> Simplifier.ZERO);
+        }
+        final BinaryOperator<ExpressionNode> identity = (argument, node) -> Simplifier.ONE;
+        derivatives.put(MathFunction.ABS,
+            (argument, node) -> Simplifier.call(MathFunction.SIGNUM, argument));
+        derivatives.put(MathFunction.ACOS,
+            (argument, node) -> Simplifier.negate(arcSineDerivative(argument)));
+        derivatives.put(MathFunction.ASIN, (argument, node) -> arcSineDerivative(argument));
+        derivatives.put(MathFunction.ATAN,
+            (argument, node) -> reciprocal(Simplifier.add(Simplifier.ONE, square(argument))));
+        derivatives.put(MathFunction.CBRT,
+            (argument, node) -> reciprocal(Simplifier.multiply(THREE, square(node))));
+        derivatives.put(MathFunction.COS,
+            (argument, node) -> Simplifier.negate(Simplifier.call(MathFunction.SIN, argument)));
+        derivatives.put(MathFunction.COSH,
+            (argument, node) -> Simplifier.call(MathFunction.SINH, argument));
+        derivatives.put(MathFunction.EXP, (argument, node) -> node);
+        derivatives.put(MathFunction.EXPM1,
+            (argument, node) -> Simplifier.call(MathFunction.EXP, argument));
+        derivatives.put(MathFunction.LOG, (argument, node) -> reciprocal(argument));
+        derivatives.put(MathFunction.LOG10,
+            (argument, node) -> reciprocal(Simplifier.multiply(LN10, argument)));
+        derivatives.put(MathFunction.LOG1P,
+            (argument, node) -> reciprocal(Simplifier.add(Simplifier.ONE, argument)));
+        derivatives.put(MathFunction.NEXT_DOWN, identity);
+        derivatives.put(MathFunction.NEXT_UP, identity);
+        derivatives.put(MathFunction.SIN,
+            (argument, node) -> Simplifier.call(MathFunction.COS, argument));
+        derivatives.put(MathFunction.SINH,
+            (argument, node) -> Simplifier.call(MathFunction.COSH, argument));
+        derivatives.put(MathFunction.SQRT,
+            (argument, node) -> reciprocal(Simplifier.multiply(Simplifier.TWO, node)));
+        derivatives.put(MathFunction.TAN,
+            (argument, node) -> Simplifier.add(Simplifier.ONE, square(node)));
+        derivatives.put(MathFunction.TANH,
+            (argument, node) -> Simplifier.subtract(Simplifier.ONE, square(node)));
+        derivatives.put(MathFunction.TO_DEGREES, (argument, node) -> DEGREES_PER_RADIAN);
+        derivatives.put(MathFunction.TO_RADIANS, (argument, node) -> RADIANS_PER_DEGREE);
+        return derivatives;
+    }
+
+    /**
+     * Creates the partial derivatives of the functions of several arguments.
+     *
+     * @return partial derivatives, by function
+     */
+    private static Map<MathFunction, Function<MethodNode, List<ExpressionNode>>>
+        createPartialDerivatives() {
+        final Map<MathFunction, Function<MethodNode, List<ExpressionNode>>> partials =
+            new EnumMap<>(MathFunction.class);
+        partials.put(MathFunction.ATAN2, DerivativeVisitor::arcTangent);
+        partials.put(MathFunction.COPY_SIGN, DerivativeVisitor::copySign);
+        partials.put(MathFunction.HYPOT, DerivativeVisitor::hypotenuse);
+        partials.put(MathFunction.IEEE_REMAINDER, DerivativeVisitor::remainder);
+        partials.put(MathFunction.MAX, node -> select(node, Simplifier.ONE));
+        partials.put(MathFunction.MIN, node -> select(node, MINUS_ONE));
+        partials.put(MathFunction.NEXT_AFTER, node -> List.of(Simplifier.ONE, Simplifier.ZERO));
+        partials.put(MathFunction.POW, DerivativeVisitor::power);
+        partials.put(MathFunction.FMA,
+            node -> List.of(node.arguments().get(1), node.arguments().get(0), Simplifier.ONE));
+        return partials;
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import parsevamath.tools.grammar.MathBaseVisitor;
+import parsevamath.tools.grammar.MathLexer;
+import parsevamath.tools.grammar.MathParser;
+
+/**
+ * Builds the heterogeneous ast of an expression while it is being parsed,
+ * so that no antlr parse tree is built and walked a second time. This
+ * builder listens to the rule exits of a parser that does not build parse
+ * trees. Rules exit in post order, so each exit turns the operands its
+ * sub-rules left on a stack into a new node. The generated visitor
+ * dispatches each rule context by type, which does not need its children.
+ *
+ * <p>Error recovery may leave a context without its operands, so this
+ * builder must only be used on parsers that give up on the first syntax
+ * error, such as with {@link org.antlr.v4.runtime.BailErrorStrategy}. Such a
+ * parser marks every context still being parsed with the error, and those
+ * contexts are skipped as they exit. Lexer errors are not marked, so tokens
+ * must be read before parsing.
+ */
+final class DirectAstBuilder extends MathBaseVisitor<ExpressionNode> {
+
+    /**
+     * Initial capacity of the stack of rule starts.
+     */
+    private static final int INITIAL_DEPTH = 16;
+
+    /**
+     * Builds numbers and variables, which only need the tokens of their
+     * context, and keeps track of variable slots.
+     */
+    private final MathAstBuilder leafBuilder;
+
+    /**
+     * Nodes of the sub-expressions not yet taken in by their parent.
+     */
+    private final List<ExpressionNode> operands = new ArrayList<>();
+
+    /**
+     * Number of operands on the stack when each rule still being parsed
+     * was entered.
+     */
+    private int[] ruleStarts = new int[INITIAL_DEPTH];
+
+    /**
+     * Number of rules still being parsed.
+     */
+    private int depth;
+
+    /**
+     * Operands on the stack when the rule that just exited was entered.
+     */
+    private int ruleStart;
+
+    /**
+     * Creates a builder.
+     *
+     * @param leafBuilder builds numbers and variables
+     */
+    private DirectAstBuilder(MathAstBuilder leafBuilder) {
+        this.leafBuilder = leafBuilder;
+    }
+
+    /**
+     * Creates a parser whose tokens are not kept as terminal nodes when it
+     * does not build parse trees. A plain parser keeps them as soon as it
+     * has a parse listener, and they would be garbage right away.
+     *
+     * @param tokenStream the tokens to parse
+     * @return new parser
+     */
+    static MathParser createParser(TokenStream tokenStream) {
+        return new TreelessParser(tokenStream);
+    }
+
+    /**
+     * Parses a compilation unit, and builds its ast without a parse tree.
+     *
+     * @param parser the parser, which must not recover from syntax errors
+     * @param leafBuilder builds numbers and variables
+     * @return root of the expression tree
+     */
+    static ExpressionNode buildExpressionTree(MathParser parser, MathAstBuilder leafBuilder) {
+        return new DirectAstBuilder(leafBuilder).parse(parser);
+    }
+
+    /**
+     * Parses a compilation unit, and builds its ast.
+     *
+     * @param parser the parser, which must not recover from syntax errors
+     * @return root of the expression tree
+     */
+    private ExpressionNode parse(MathParser parser) {
+        final ParseTreeListener listener = new RuleExitListener();
+        parser.setBuildParseTree(false);
+        parser.addParseListener(listener);
+        try {
+            parser.compilationUnit();
+        }
+        finally {
+            parser.removeParseListener(listener);
+        }
+        return pop();
+    }
+
+    /**
+     * Removes the operand on top of the stack.
+     *
+     * @return the removed operand
+     */
+    private ExpressionNode pop() {
+        return operands.remove(operands.size() - 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation takes in the two operands on top of the
+     * stack.
+     *
+     * @param ctx rule context
+     * @return new infix ExpressionNode
+     */
+    @Override
+    public ExpressionNode visitInfixExpr(MathParser.InfixExprContext ctx) {
+        final ExpressionNode right = pop();
+        final ExpressionNode left = pop();
+        final Token token = ctx.op;
+        return switch (token.getType()) {
+            case MathLexer.OP_ADD -> new AdditionNode(left, right);
+            case MathLexer.OP_SUB -> new SubtractionNode(left, right);
+            case MathLexer.OP_MUL -> new MultiplicationNode(left, right);
+            case MathLexer.OP_DIV -> new DivisionNode(left, right);
+            default -> throw new IllegalStateException("Unexpected token: " + token.getType());
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation negates the operand on top of the stack, or
+     * leaves it as it is for a plus sign.
+     *
+     * @param ctx rule context
+     * @return new NegateNode, or null for a plus sign
+     */
+    @Override
+    public ExpressionNode visitUnaryExpr(MathParser.UnaryExprContext ctx) {
+        ExpressionNode node = null;
+        if (ctx.op.getType() == MathLexer.OP_SUB) {
+            node = new NegateNode(pop());
+        }
+        return node;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation takes in every operand pushed since the call
+     * was entered, as the arguments of the call.
+     *
+     * @param ctx rule context
+     * @return new method ExpressionNode
+     */
+    @Override
+    public ExpressionNode visitFuncExpr(MathParser.FuncExprContext ctx) {
+        final List<ExpressionNode> arguments = operands.subList(ruleStart, operands.size());
+        final ExpressionNode node = MathAstBuilder.createMethodNode(ctx.func.getText(),
+            arguments);
+        arguments.clear();
+        return node;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation delegates to the leaf builder.
+     *
+     * @param ctx rule context
+     * @return new NumberNode
+     */
+    @Override
+    public ExpressionNode visitNumberExpr(MathParser.NumberExprContext ctx) {
+        return leafBuilder.visitNumberExpr(ctx);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation reads the constant from the first token of
+     * the context.
+     *
+     * @param ctx rule context
+     * @return new ConstantNode
+     */
+    @Override
+    public ExpressionNode visitConstExpr(MathParser.ConstExprContext ctx) {
+        return MathAstBuilder.createConstantNode(ctx.getStart().getText());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation delegates to the leaf builder.
+     *
+     * @param ctx rule context
+     * @return new VariableNode
+     */
+    @Override
+    public ExpressionNode visitVariableExpr(MathParser.VariableExprContext ctx) {
+        return leafBuilder.visitVariableExpr(ctx);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation takes in the operand on top of the stack.
+     *
+     * @param ctx rule context
+     * @return new FactorialNode
+     */
+    @Override
+    public ExpressionNode visitFactorialExpr(MathParser.FactorialExprContext ctx) {
+        return new FactorialNode(pop());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation leaves the inner expression on the stack.
+     *
+     * @param ctx rule context
+     * @return null
+     */
+    @Override
+    public ExpressionNode visitParensExpr(MathParser.ParensExprContext ctx) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation leaves the expression on the stack.
+     *
+     * @param ctx rule context
+     * @return null
+     */
+    @Override
+    public ExpressionNode visitCompilationUnit(MathParser.CompilationUnitContext ctx) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation does nothing, as the constant is built when
+     * its expression exits.
+     *
+     * @param ctx rule context
+     * @return null
+     */
+    @Override
+    public ExpressionNode visitConstant(MathParser.ConstantContext ctx) {
+        return null;
+    }
+
+    /**
+     * A parser that does not create terminal nodes unless it builds parse
+     * trees. Error nodes are not created either, so this parser must not
+     * recover from syntax errors while not building parse trees.
+     */
+    private static final class TreelessParser extends MathParser {
+
+        /**
+         * Creates a parser.
+         *
+         * @param tokenStream the tokens to parse
+         */
+        TreelessParser(TokenStream tokenStream) {
+            super(tokenStream);
+        }
+
+        @Override
+        public Token consume() {
+            final Token token;
+            if (getBuildParseTree()) {
+                token = super.consume();
+            }
+            else {
+                token = getCurrentToken();
+                if (token.getType() != Token.EOF) {
+                    getInputStream().consume();
+                }
+            }
+            return token;
+        }
+    }
+
+    /**
+     * Records the operands on the stack when each rule is entered, and
+     * builds the node of each rule when it exits.
+     */
+    private final class RuleExitListener implements ParseTreeListener {
+
+        @Override
+        public void enterEveryRule(ParserRuleContext ctx) {
+            if (depth == ruleStarts.length) {
+                ruleStarts = Arrays.copyOf(ruleStarts, depth * 2);
+            }
+            ruleStarts[depth] = operands.size();
+            depth++;
+        }
+
+        @Override
+        public void exitEveryRule(ParserRuleContext ctx) {
+            depth--;
+            if (ctx.exception == null) {
+                ruleStart = ruleStarts[depth];
+                final ExpressionNode node = ctx.accept(DirectAstBuilder.this);
+                if (node != null) {
+                    operands.add(node);
+                }
+            }
+        }
+
+        @Override
+        public void visitTerminal(TerminalNode node) {
+            // tokens are read from the rule contexts, and are not even
+            // visited by a TreelessParser
+        }
+
+        @Override
+        public void visitErrorNode(ErrorNode node) {
+            // parsing gives up before error nodes are created
+        }
+    }
+}
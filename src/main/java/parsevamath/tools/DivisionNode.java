@@ -28,9 +28,35 @@
 
 package parsevamath.tools;
 
+import java.util.Objects;
+
 /**
- * This class represents the division node in the ast.
+ * This class represents a division node in the ast.
+ *
+ * @param left left operand
+ * @param right right operand
  */
-class DivisionNode extends InfixExpressionNode {
+record DivisionNode(ExpressionNode left, ExpressionNode right) implements InfixExpressionNode {
+
+    DivisionNode {
+        // Checks that both operands are present.
+        Objects.requireNonNull(left);
+        Objects.requireNonNull(right);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T accept(AbstractMathAstVisitor<T> visitor) {
+        return visitor.visit(this);
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double accept(DoubleEvaluator evaluator, double[] variables) {
+        return evaluator.visit(this, variables);
+    }
 }
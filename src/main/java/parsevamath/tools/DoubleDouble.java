@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.math.BigDecimal;
+
+/**
+ * A double-double number, the unevaluated sum of a high and a low double.
+ * The low part is at most half an ulp of the high part, so a double-double
+ * carries 106 significant bits, or about 32 decimal digits, with hardware
+ * floating point only. Arithmetic is built on error-free transformations:
+ * {@link #twoSum(double, double)} recovers the exact rounding error of an
+ * addition, and {@link #twoProduct(double, double)} the exact rounding
+ * error of a multiplication by way of {@link Math#fma(double, double, double)}.
+ *
+ * <p>Infinities and NaN are carried by the high part, with a low part of
+ * zero, so they propagate as they would in double.
+ *
+ * @param high the double nearest to the value
+ * @param low the difference between the value and the high part
+ */
+public record DoubleDouble(double high, double low) implements Comparable<DoubleDouble> {
+
+    /**
+     * Number of significant decimal digits that a double-double holds.
+     */
+    public static final int DIGITS = 32;
+
+    /**
+     * Zero.
+     */
+    public static final DoubleDouble ZERO = new DoubleDouble(0, 0);
+
+    /**
+     * One.
+     */
+    public static final DoubleDouble ONE = new DoubleDouble(1, 0);
+
+    /**
+     * Creates a double-double. The low part of a value that is not finite
+     * is dropped, since it would be NaN after any arithmetic.
+     *
+     * @param high the double nearest to the value
+     * @param low the difference between the value and the high part
+     */
+    public DoubleDouble {
+        if (!Double.isFinite(high)) {
+            low = 0;
+        }
+    }
+
+    /**
+     * Converts a double to a double-double, exactly.
+     *
+     * @param value the value to convert
+     * @return double-double with a low part of zero
+     */
+    public static DoubleDouble valueOf(double value) {
+        return new DoubleDouble(value, 0);
+    }
+
+    /**
+     * Converts a decimal to the nearest double-double.
+     *
+     * @param value the value to convert
+     * @return double-double nearest to value
+     */
+    public static DoubleDouble valueOf(BigDecimal value) {
+        final double high = value.doubleValue();
+        final DoubleDouble result;
+        if (Double.isFinite(high)) {
+            result = normalize(high, value.subtract(new BigDecimal(high)).doubleValue());
+        }
+        else {
+            result = valueOf(high);
+        }
+        return result;
+    }
+
+    /**
+     * Adds two doubles, keeping the rounding error of the sum.
+     *
+     * @param first the first addend
+     * @param second the second addend
+     * @return the rounded sum in the high part and its error in the low part
+     */
+    public static DoubleDouble twoSum(double first, double second) {
+        final double sum = first + second;
+        final double virtual = sum - first;
+        return new DoubleDouble(sum, (first - (sum - virtual)) + (second - virtual));
+    }
+
+    /**
+     * Multiplies two doubles, keeping the rounding error of the product.
+     *
+     * @param first the multiplicand
+     * @param second the multiplier
+     * @return the rounded product in the high part and its error in the low part
+     */
+    public static DoubleDouble twoProduct(double first, double second) {
+        final double product = first * second;
+        return new DoubleDouble(product, Math.fma(first, second, -product));
+    }
+
+    /**
+     * Adds two doubles, keeping the rounding error of the sum, when the
+     * magnitude of the first is not less than the magnitude of the second.
+     * This takes three operations, where {@link #twoSum(double, double)}
+     * takes six.
+     *
+     * @param high the larger addend
+     * @param low the smaller addend
+     * @return the rounded sum in the high part and its error in the low part
+     */
+    private static DoubleDouble normalize(double high, double low) {
+        final double sum = high + low;
+        return new DoubleDouble(sum, low - (sum - high));
+    }
+
+    /**
+     * Adds a double-double to this one.
+     *
+     * @param addend the value to add
+     * @return this + addend
+     */
+    public DoubleDouble add(DoubleDouble addend) {
+        final DoubleDouble highSum = twoSum(high, addend.high);
+        final DoubleDouble lowSum = twoSum(low, addend.low);
+        final DoubleDouble sum = normalize(highSum.high, highSum.low + lowSum.high);
+        return normalize(sum.high, sum.low + lowSum.low);
+    }
+
+    /**
+     * Adds a double to this double-double.
+     *
+     * @param addend the value to add
+     * @return this + addend
+     */
+    public DoubleDouble add(double addend) {
+        final DoubleDouble sum = twoSum(high, addend);
+        return normalize(sum.high, sum.low + low);
+    }
+
+    /**
+     * Subtracts a double-double from this one.
+     *
+     * @param subtrahend the value to subtract
+     * @return this - subtrahend
+     */
+    public DoubleDouble subtract(DoubleDouble subtrahend) {
+        return add(subtrahend.negate());
+    }
+
+    /**
+     * Multiplies this double-double by another one. The product of the two
+     * low parts is below the precision of the result, and is not computed.
+     * A product that overflows is returned as is, since its cross terms may
+     * overflow with opposite signs and sum to NaN.
+     *
+     * @param multiplier the value to multiply by
+     * @return this * multiplier
+     */
+    public DoubleDouble multiply(DoubleDouble multiplier) {
+        final DoubleDouble product = twoProduct(high, multiplier.high);
+        final DoubleDouble result;
+        if (Double.isFinite(product.high)) {
+            result = normalize(product.high,
+                product.low + (high * multiplier.low + low * multiplier.high));
+        }
+        else {
+            result = product;
+        }
+        return result;
+    }
+
+    /**
+     * Multiplies this double-double by a double. As for a double-double
+     * multiplier, a product that overflows is returned as is.
+     *
+     * @param multiplier the value to multiply by
+     * @return this * multiplier
+     */
+    public DoubleDouble multiply(double multiplier) {
+        final DoubleDouble product = twoProduct(high, multiplier);
+        final DoubleDouble result;
+        if (Double.isFinite(product.high)) {
+            result = normalize(product.high, product.low + low * multiplier);
+        }
+        else {
+            result = product;
+        }
+        return result;
+    }
+
+    /**
+     * Divides this double-double by another one. Each of the three partial
+     * quotients is the high part of the remainder divided by the high part
+     * of the divisor.
+     *
+     * @param divisor the value to divide by
+     * @return this / divisor
+     */
+    public DoubleDouble divide(DoubleDouble divisor) {
+        final double first = high / divisor.high;
+        final DoubleDouble result;
+        if (Double.isFinite(first) && Double.isFinite(divisor.high)) {
+            DoubleDouble remainder = subtract(divisor.multiply(first));
+            final double second = remainder.high / divisor.high;
+            remainder = remainder.subtract(divisor.multiply(second));
+            final double third = remainder.high / divisor.high;
+            result = normalize(first, second).add(third);
+        }
+        else {
+            result = valueOf(first);
+        }
+        return result;
+    }
+
+    /**
+     * Divides this double-double by a double. The remainder of the first
+     * partial quotient is exact, so a second partial quotient suffices.
+     *
+     * @param divisor the value to divide by
+     * @return this / divisor
+     */
+    public DoubleDouble divide(double divisor) {
+        final double first = high / divisor;
+        final DoubleDouble result;
+        if (Double.isFinite(first) && Double.isFinite(divisor)) {
+            final DoubleDouble product = twoProduct(first, divisor);
+            final DoubleDouble difference = twoSum(high, -product.high);
+            final double remainder = difference.high + (difference.low - product.low + low);
+            result = normalize(first, remainder / divisor);
+        }
+        else {
+            result = valueOf(first);
+        }
+        return result;
+    }
+
+    /**
+     * Negates this double-double.
+     *
+     * @return -this
+     */
+    public DoubleDouble negate() {
+        return new DoubleDouble(-high, -low);
+    }
+
+    /**
+     * Gets the absolute value of this double-double.
+     *
+     * @return |this|
+     */
+    public DoubleDouble abs() {
+        DoubleDouble result = this;
+        if (high < 0) {
+            result = negate();
+        }
+        return result;
+    }
+
+    /**
+     * Computes the square root of this double-double with Karp's method: a
+     * single Newton step on the reciprocal square root of the high part.
+     *
+     * @return the square root of this, or NaN if this is negative
+     */
+    public DoubleDouble sqrt() {
+        final DoubleDouble result;
+        if (high > 0 && Double.isFinite(high)) {
+            final double reciprocal = 1 / Math.sqrt(high);
+            final double root = high * reciprocal;
+            final double correction = subtract(twoProduct(root, root)).high * reciprocal / 2;
+            result = twoSum(root, correction);
+        }
+        else {
+            result = valueOf(Math.sqrt(high));
+        }
+        return result;
+    }
+
+    /**
+     * Rounds this double-double to the nearest double.
+     *
+     * @return the nearest double
+     */
+    public double doubleValue() {
+        return high + low;
+    }
+
+    /**
+     * Converts this double-double to a decimal, exactly.
+     *
+     * @return decimal value
+     * @throws ArithmeticException if this is infinite or NaN
+     */
+    public BigDecimal toBigDecimal() {
+        if (!Double.isFinite(high)) {
+            throw new ArithmeticException("Not a finite number: " + high);
+        }
+        return new BigDecimal(high).add(new BigDecimal(low));
+    }
+
+    /**
+     * Compares two double-doubles numerically, ordering NaN after positive
+     * infinity as {@link Double#compare(double, double)} does.
+     *
+     * @param other the double-double to compare to
+     * @return negative, zero or positive if this is less than, equal to or
+     *     greater than other
+     */
+    @Override
+    public int compareTo(DoubleDouble other) {
+        int result = Double.compare(high, other.high);
+        if (result == 0) {
+            result = Double.compare(low, other.low);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class evaluates an expression tree in double-double arithmetic, with
+ * about 32 significant digits, see {@link DoubleDouble}. Every intermediate
+ * result keeps the rounding error of its high part, so that long chains of
+ * sums and differences do not lose digits to cancellation, at a small
+ * multiple of the cost of a double evaluation. Literals are read as the
+ * shortest decimal that rounds to their double, so that {@code 0.1} is one
+ * tenth to 32 digits; variables are taken as the exact value of their
+ * double. The java.lang.Math functions are computed by
+ * {@link DoubleDoubleMath}.
+ *
+ * <p>As in double, results that are not finite numbers evaluate to an
+ * infinity or NaN.
+ */
+public final class DoubleDoubleEvaluator extends AbstractMathAstVisitor<DoubleDouble> {
+
+    /**
+     * Number of significant digits that the decimal of a literal is first
+     * assumed to have. Any two decimals with that many digits are more than
+     * an ulp of a double apart, so only one of them rounds to the literal.
+     */
+    private static final int LITERAL_DIGITS = 15;
+
+    /**
+     * Smallest integer with more digits than a literal is assumed to have.
+     */
+    private static final double LITERAL_DIGITS_LIMIT = 1e15;
+
+    /**
+     * Base of decimal literals.
+     */
+    private static final double RADIX = 10;
+
+    /**
+     * Largest power of ten that is exact in double.
+     */
+    private static final int MAX_EXACT_POWER_OF_TEN = 22;
+
+    /**
+     * Largest magnitude of an integer literal that is exact in double.
+     */
+    private static final double EXACT_INTEGER_LIMIT = 0x1p53;
+
+    /**
+     * Powers of ten that are exact in double.
+     */
+    private static final double[] POWERS_OF_TEN = createPowersOfTen();
+
+    /**
+     * The values of the variables, indexed by slot.
+     */
+    private final double[] variables;
+
+    /**
+     * Nodes whose value is kept once evaluated.
+     */
+    private final Set<ExpressionNode> sharedNodes;
+
+    /**
+     * Values of the shared nodes evaluated so far.
+     */
+    private final Map<ExpressionNode, DoubleDouble> sharedValues = new IdentityHashMap<>();
+
+    /**
+     * Creates an evaluator for expressions without variables.
+     */
+    public DoubleDoubleEvaluator() {
+        this(CompiledExpression.NO_VARIABLES);
+    }
+
+    /**
+     * Creates an evaluator that evaluates variables from the given array.
+     *
+     * @param variables the values of the variables, indexed by slot
+     */
+    public DoubleDoubleEvaluator(double[] variables) {
+        this(variables, Set.of());
+    }
+
+    /**
+     * Creates an evaluator that evaluates each of the given nodes once, as
+     * found by {@link ParsevaUtils#findSharedNodes(ExpressionNode)}. Their
+     * values are never cleared, so such an evaluator must only evaluate one
+     * tree.
+     *
+     * @param variables the values of the variables, indexed by slot
+     * @param sharedNodes nodes shared by several parents
+     */
+    DoubleDoubleEvaluator(double[] variables, Set<ExpressionNode> sharedNodes) {
+        this.variables = variables.clone();
+        this.sharedNodes = sharedNodes;
+    }
+
+    /**
+     * Compiles an expression tree to an expression that walks it in
+     * double-double arithmetic on every evaluation, and rounds its value to
+     * a double. Each evaluation uses a new evaluator, which evaluates the
+     * shared nodes of the tree once.
+     *
+     * @param root the root of the expression tree
+     * @return compiled expression
+     */
+    static CompiledExpression compile(ExpressionNode root) {
+        final Set<ExpressionNode> shared = ParsevaUtils.findSharedNodes(root);
+        return variables -> new DoubleDoubleEvaluator(variables, shared).visit(root).doubleValue();
+    }
+
+    /**
+     * Converts a literal to the double-double nearest to the shortest
+     * decimal that rounds to it. Integers are their own shortest decimal.
+     * Otherwise the literal is rounded to 15 significant digits in
+     * double-double arithmetic, which recovers the decimal it was read from
+     * if that decimal rounds back to it; only literals with more digits, or
+     * out of the range of exact powers of ten, are converted by way of
+     * {@link BigDecimal}.
+     *
+     * @param value the value of the literal
+     * @return double-double value of the literal
+     */
+    private static DoubleDouble literal(double value) {
+        DoubleDouble result = DoubleDouble.valueOf(value);
+        if (Double.isFinite(value)
+            && !(Math.abs(value) < EXACT_INTEGER_LIMIT && value == Math.rint(value))) {
+            int scale = LITERAL_DIGITS - 1 - (int) Math.floor(Math.log10(Math.abs(value)));
+            double decimal = roundToScale(value, scale);
+            if (Math.abs(decimal) >= LITERAL_DIGITS_LIMIT) {
+                scale--;
+                decimal = roundToScale(value, scale);
+            }
+            if (Math.abs(scale) > MAX_EXACT_POWER_OF_TEN) {
+                result = DoubleDouble.valueOf(BigDecimal.valueOf(value));
+            }
+            else {
+                result = scale(DoubleDouble.valueOf(decimal), -scale);
+                if (result.high() != value) {
+                    result = DoubleDouble.valueOf(BigDecimal.valueOf(value));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rounds a double to a number of decimal places, as an integer number
+     * of units in the last place. The high part of the scaled value is
+     * rounded, which only differs from rounding the scaled value when it is
+     * halfway between two integers, and then the literal has more digits
+     * than the scale anyway.
+     *
+     * @param value the value to round
+     * @param scale the number of decimal places, possibly negative
+     * @return value * 10^scale rounded to an integer, or NaN if 10^scale is
+     *     not exact in double
+     */
+    private static double roundToScale(double value, int scale) {
+        double result = Double.NaN;
+        if (Math.abs(scale) <= MAX_EXACT_POWER_OF_TEN) {
+            result = Math.rint(scale(DoubleDouble.valueOf(value), scale).high());
+        }
+        return result;
+    }
+
+    /**
+     * Multiplies a double-double by a power of ten that is exact in double.
+     *
+     * @param value the value to scale
+     * @param scale the power of ten, at most 22 in magnitude
+     * @return value * 10^scale
+     */
+    private static DoubleDouble scale(DoubleDouble value, int scale) {
+        final DoubleDouble result;
+        if (scale >= 0) {
+            result = value.multiply(POWERS_OF_TEN[scale]);
+        }
+        else {
+            result = value.divide(POWERS_OF_TEN[-scale]);
+        }
+        return result;
+    }
+
+    /**
+     * Creates the table of exact powers of ten.
+     *
+     * @return powers of ten from 10^0 to 10^22
+     */
+    private static double[] createPowersOfTen() {
+        final double[] powers = new double[MAX_EXACT_POWER_OF_TEN + 1];
+        powers[0] = 1;
+        for (int i = 1; i < powers.length; i++) {
+            powers[i] = powers[i - 1] * RADIX;
+        }
+        return powers;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation evaluates a shared node once, and reads its
+     * value back when it is reached again.
+     */
+    @Override
+    public DoubleDouble visit(ExpressionNode node) {
+        DoubleDouble result = null;
+        final boolean shared = sharedNodes.contains(node);
+        if (shared) {
+            result = sharedValues.get(node);
+        }
+        if (result == null) {
+            result = super.visit(node);
+            if (shared) {
+                sharedValues.put(node, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the sum of this node's two descendants.
+     */
+    @Override
+    DoubleDouble visit(AdditionNode node) {
+        return visit(node.left()).add(visit(node.right()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the difference of this node's two descendants.
+     */
+    @Override
+    DoubleDouble visit(SubtractionNode node) {
+        return visit(node.left()).subtract(visit(node.right()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the product of this node's two descendants.
+     */
+    @Override
+    DoubleDouble visit(MultiplicationNode node) {
+        return visit(node.left()).multiply(visit(node.right()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the quotient of two descendants.
+     */
+    @Override
+    DoubleDouble visit(DivisionNode node) {
+        return visit(node.left()).divide(visit(node.right()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the value of the node's inner node, negated.
+     */
+    @Override
+    DoubleDouble visit(NegateNode node) {
+        return visit(node.innerNode()).negate();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the factorial of an integer up to 170
+     * rounded from its exact value. The factorial of any other number is
+     * computed in double precision.
+     */
+    @Override
+    DoubleDouble visit(FactorialNode node) {
+        return DoubleDoubleMath.factorial(visit(node.innerNode()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation applies the double-double implementation of
+     * the java.lang.Math function to the node's arguments, or returns NaN
+     * if the function was not resolved.
+     */
+    @Override
+    DoubleDouble visit(MethodNode node) {
+        DoubleDouble result = DoubleDouble.valueOf(Double.NaN);
+        if (node.function() != null) {
+            final List<DoubleDouble> arguments = new ArrayList<>(node.arguments().size());
+            for (ExpressionNode argument : node.arguments()) {
+                arguments.add(visit(argument));
+            }
+            result = DoubleDoubleMath.apply(node.function(), arguments);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the shortest decimal that rounds to
+     * the value of the literal, to 32 digits.
+     */
+    @Override
+    DoubleDouble visit(NumberNode node) {
+        return literal(node.value());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns pi and e to 32 digits.
+     */
+    @Override
+    DoubleDouble visit(ConstantNode node) {
+        final DoubleDouble result;
+        if (node.value() == Math.PI) {
+            result = DoubleDoubleMath.PI;
+        }
+        else if (node.value() == Math.E) {
+            result = DoubleDoubleMath.E;
+        }
+        else {
+            result = DoubleDouble.valueOf(node.value());
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the value in the slot of this variable.
+     */
+    @Override
+    DoubleDouble visit(VariableNode node) {
+        return DoubleDouble.valueOf(variables[node.slot()]);
+    }
+}
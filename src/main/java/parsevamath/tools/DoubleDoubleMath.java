@@ -0,0 +1,864 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+import java.util.function.UnaryOperator;
+
+/**
+ * Double-double implementations of the java.lang.Math functions that can be
+ * called from an expression. The algebraic functions take a Newton step from
+ * the double result, exp sums a Taylor series on a reduced argument, and the
+ * other transcendental functions take a Newton step on exp, sin or cos.
+ * Functions that only make sense for doubles, such as ulp or nextUp, are
+ * computed on the high part in double precision.
+ */
+final class DoubleDoubleMath {
+
+    /**
+     * Precision of the decimal constants that the double-double constants
+     * are rounded from.
+     */
+    private static final MathContext CONSTANT_CONTEXT = new MathContext(40);
+
+    /**
+     * Relative size of the last term of a Taylor series.
+     */
+    private static final double EPSILON = 0x1p-106;
+
+    /**
+     * Number of terms in the table of reciprocals of factorials.
+     */
+    private static final int SERIES_TERMS = 32;
+
+    /**
+     * Number of times the reduced argument of exp is halved before its
+     * Taylor series is summed.
+     */
+    private static final int EXP_HALVINGS = 9;
+
+    /**
+     * Factor that halves the reduced argument of exp once per halving.
+     */
+    private static final double EXP_SCALE = 0x1p-9;
+
+    /**
+     * Largest magnitude of an argument of expm1 that is not reduced by a
+     * multiple of log(2), about half of log(2).
+     */
+    private static final double EXPM1_DIRECT_ARGUMENT = 0.34;
+
+    /**
+     * Largest magnitude of an argument of log1p that is not added to one
+     * first.
+     */
+    private static final double LOG1P_DIRECT_ARGUMENT = 0.5;
+
+    /**
+     * Smallest magnitude of an argument of sinh and cosh that is computed
+     * with exp, since no digits cancel beyond it.
+     */
+    private static final double HYPERBOLIC_EXP_ARGUMENT = 20;
+
+    /**
+     * Smallest magnitude of an argument of tanh whose result rounds to one.
+     */
+    private static final double TANH_SATURATION_ARGUMENT = 40;
+
+    /**
+     * Largest magnitude of an integer exponent raised by repeated squaring.
+     */
+    private static final double MAX_INTEGER_EXPONENT = 0x1p31;
+
+    /**
+     * Three.
+     */
+    private static final int THREE = 3;
+
+    /**
+     * Magnitude of the angles below which the nearest multiple of pi/2 is
+     * an exact integer in double.
+     */
+    private static final double MAX_REDUCIBLE = 0x1p52;
+
+    /**
+     * Magnitude below which rounding to the nearest integer stays within
+     * the range of a long.
+     */
+    private static final double MAX_EXACT_ROUND = 0x1p63;
+
+    /**
+     * Number of quarter turns in a full turn.
+     */
+    private static final int QUARTER_TURNS = 4;
+
+    /**
+     * The largest argument of the factorial table.
+     */
+    private static final int MAX_FACTORIAL_ARGUMENT = FactorialUtils.MAX_FACTORIAL_ARGUMENT;
+
+    /**
+     * One half.
+     */
+    private static final double HALF = 0.5;
+
+    /**
+     * Degrees in half a turn.
+     */
+    private static final int HALF_TURN_DEGREES = 180;
+
+    /**
+     * Pi.
+     */
+    static final DoubleDouble PI = DoubleDouble.valueOf(BigDecimalMath.pi(CONSTANT_CONTEXT));
+
+    /**
+     * Euler's number.
+     */
+    static final DoubleDouble E =
+        DoubleDouble.valueOf(BigDecimalMath.exp(BigDecimal.ONE, CONSTANT_CONTEXT));
+
+    /**
+     * Pi divided by two.
+     */
+    private static final DoubleDouble HALF_PI = PI.multiply(HALF);
+
+    /**
+     * The natural logarithm of two.
+     */
+    private static final DoubleDouble LN2 =
+        DoubleDouble.valueOf(BigDecimalMath.log(BigDecimal.valueOf(2), CONSTANT_CONTEXT));
+
+    /**
+     * The natural logarithm of ten.
+     */
+    private static final DoubleDouble LN10 =
+        DoubleDouble.valueOf(BigDecimalMath.log(BigDecimal.TEN, CONSTANT_CONTEXT));
+
+    /**
+     * Degrees in a radian.
+     */
+    private static final DoubleDouble DEGREES_PER_RADIAN = DoubleDouble.valueOf(
+        BigDecimal.valueOf(HALF_TURN_DEGREES)
+            .divide(BigDecimalMath.pi(CONSTANT_CONTEXT), CONSTANT_CONTEXT));
+
+    /**
+     * Radians in a degree.
+     */
+    private static final DoubleDouble RADIANS_PER_DEGREE = DoubleDouble.valueOf(
+        BigDecimalMath.pi(CONSTANT_CONTEXT)
+            .divide(BigDecimal.valueOf(HALF_TURN_DEGREES), CONSTANT_CONTEXT));
+
+    /**
+     * Factorials of the integers from 0 to 170, rounded from their exact
+     * values.
+     */
+    private static final DoubleDouble[] FACTORIALS = createFactorials();
+
+    /**
+     * Reciprocals of the factorials of the integers up to the number of
+     * terms of the longest Taylor series, so that the series only multiply.
+     */
+    private static final DoubleDouble[] INVERSE_FACTORIALS = createInverseFactorials();
+
+    /**
+     * Functions of one argument, by function.
+     */
+    private static final Map<MathFunction, UnaryOperator<DoubleDouble>> UNARY_FUNCTIONS =
+        createUnaryFunctions();
+
+    /**
+     * Functions of two arguments, by function.
+     */
+    private static final Map<MathFunction, BinaryOperator<DoubleDouble>> BINARY_FUNCTIONS =
+        createBinaryFunctions();
+
+    /**
+     * Prevent instantiation.
+     */
+    private DoubleDoubleMath() {
+    }
+
+    /**
+     * Applies a function to its arguments.
+     *
+     * @param function the function to apply
+     * @param arguments the arguments of the function
+     * @return the result of the function
+     */
+    static DoubleDouble apply(MathFunction function, List<DoubleDouble> arguments) {
+        final DoubleDouble first = arguments.get(0);
+        final UnaryOperator<DoubleDouble> unaryFunction = UNARY_FUNCTIONS.get(function);
+        final BinaryOperator<DoubleDouble> binaryFunction = BINARY_FUNCTIONS.get(function);
+        final DoubleDouble result;
+        if (unaryFunction != null) {
+            result = unaryFunction.apply(first);
+        }
+        else if (binaryFunction != null) {
+            result = binaryFunction.apply(first, arguments.get(1));
+        }
+        else if (function == MathFunction.FMA) {
+            result = first.multiply(arguments.get(1)).add(arguments.get(2));
+        }
+        else {
+            result = applyInDoublePrecision(function, arguments);
+        }
+        return result;
+    }
+
+    /**
+     * Applies a function to the high parts of its arguments.
+     *
+     * @param function the function to apply
+     * @param arguments the arguments of the function
+     * @return the result of the function
+     */
+    private static DoubleDouble applyInDoublePrecision(MathFunction function,
+                                                       List<DoubleDouble> arguments) {
+        final double first = arguments.get(0).high();
+        final double result = switch (arguments.size()) {
+            case 1 -> function.apply(first);
+            case 2 -> function.apply(first, arguments.get(1).high());
+            default -> function.apply(first, arguments.get(1).high(),
+                arguments.get(2).high());
+        };
+        return DoubleDouble.valueOf(result);
+    }
+
+    /**
+     * Computes the factorial of a double-double. Integers up to 170 are read
+     * from a table of exact factorials, other arguments are computed in
+     * double precision.
+     *
+     * @param argument the argument of the factorial
+     * @return the factorial of argument
+     */
+    static DoubleDouble factorial(DoubleDouble argument) {
+        final double high = argument.high();
+        final DoubleDouble result;
+        if (high >= 0 && high <= MAX_FACTORIAL_ARGUMENT && high == Math.rint(high)
+            && argument.low() == 0) {
+            result = FACTORIALS[(int) high];
+        }
+        else {
+            result = DoubleDouble.valueOf(FactorialUtils.factorial(argument.doubleValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Computes Euler's number raised to a power.
+     *
+     * @param argument the exponent
+     * @return e raised to the power of argument
+     */
+    static DoubleDouble exp(DoubleDouble argument) {
+        final double estimate = Math.exp(argument.high());
+        final DoubleDouble result;
+        if (estimate == 0 || !Double.isFinite(estimate)) {
+            result = DoubleDouble.valueOf(estimate);
+        }
+        else {
+            final double multiple = Math.rint(argument.high() / LN2.high());
+            result = scale(reducedExpm1(argument, multiple).add(1), (int) multiple);
+        }
+        return result;
+    }
+
+    /**
+     * Computes Euler's number raised to a power, minus one, without
+     * cancellation for small arguments.
+     *
+     * @param argument the exponent
+     * @return e raised to the power of argument, minus one
+     */
+    static DoubleDouble expm1(DoubleDouble argument) {
+        final DoubleDouble result;
+        if (Math.abs(argument.high()) <= EXPM1_DIRECT_ARGUMENT) {
+            result = reducedExpm1(argument, 0);
+        }
+        else {
+            result = exp(argument).subtract(DoubleDouble.ONE);
+        }
+        return result;
+    }
+
+    /**
+     * Computes {@code exp(argument - multiple * log(2)) - 1}. The reduced
+     * argument is at most half of log(2); it is halved nine more times so
+     * that its Taylor series takes about ten terms, and the sum is squared
+     * back with {@code (1 + s)^2 - 1 = 2s + s^2}, which keeps its digits.
+     *
+     * @param argument the exponent
+     * @param multiple the multiple of log(2) to subtract from the exponent
+     * @return exp of the reduced argument, minus one
+     */
+    private static DoubleDouble reducedExpm1(DoubleDouble argument, double multiple) {
+        final DoubleDouble reduced =
+            argument.subtract(LN2.multiply(multiple)).multiply(EXP_SCALE);
+        DoubleDouble power = reduced;
+        DoubleDouble term = reduced;
+        DoubleDouble sum = reduced;
+        for (int n = 2; n < INVERSE_FACTORIALS.length
+            && Math.abs(term.high()) > EPSILON * Math.abs(sum.high()); n++) {
+            power = power.multiply(reduced);
+            term = power.multiply(INVERSE_FACTORIALS[n]);
+            sum = sum.add(term);
+        }
+        for (int i = 0; i < EXP_HALVINGS; i++) {
+            sum = sum.add(sum).add(sum.multiply(sum));
+        }
+        return sum;
+    }
+
+    /**
+     * Multiplies a double-double by a power of two, exactly unless the
+     * result is subnormal.
+     *
+     * @param value the value to scale
+     * @param exponent the power of two
+     * @return value * 2^exponent
+     */
+    private static DoubleDouble scale(DoubleDouble value, int exponent) {
+        return new DoubleDouble(Math.scalb(value.high(), exponent),
+            Math.scalb(value.low(), exponent));
+    }
+
+    /**
+     * Computes the natural logarithm of a double-double with a Newton step
+     * on exp, {@code y + x / exp(y) - 1}, from the double logarithm y.
+     *
+     * @param argument the argument of the logarithm
+     * @return the natural logarithm of argument, or NaN if it is negative
+     */
+    static DoubleDouble log(DoubleDouble argument) {
+        final double estimate = Math.log(argument.high());
+        final DoubleDouble result;
+        if (argument.high() > 0 && Double.isFinite(estimate)) {
+            final DoubleDouble guess = DoubleDouble.valueOf(estimate);
+            result = guess.add(argument.divide(exp(guess)).subtract(DoubleDouble.ONE));
+        }
+        else {
+            result = DoubleDouble.valueOf(estimate);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the natural logarithm of one plus a double-double, without
+     * losing the digits of small arguments, with a Newton step on expm1.
+     *
+     * @param argument the argument to add to one
+     * @return the natural logarithm of one plus argument
+     */
+    static DoubleDouble log1p(DoubleDouble argument) {
+        final DoubleDouble result;
+        if (Math.abs(argument.high()) <= LOG1P_DIRECT_ARGUMENT) {
+            final DoubleDouble guess = DoubleDouble.valueOf(Math.log1p(argument.high()));
+            final DoubleDouble power = expm1(guess);
+            result = guess.add(argument.subtract(power).divide(power.add(1)));
+        }
+        else {
+            result = log(argument.add(1));
+        }
+        return result;
+    }
+
+    /**
+     * Raises a double-double to a power. Integer exponents are raised by
+     * repeated squaring, so that negative bases keep their sign; other
+     * exponents are computed as {@code exp(exponent * log(base))}.
+     *
+     * @param base the base
+     * @param exponent the exponent
+     * @return base raised to the power of exponent
+     */
+    static DoubleDouble pow(DoubleDouble base, DoubleDouble exponent) {
+        final double power = exponent.high();
+        final DoubleDouble result;
+        if (power == Math.rint(power) && exponent.low() == 0
+            && Math.abs(power) <= MAX_INTEGER_EXPONENT) {
+            result = integerPower(base, (long) power);
+        }
+        else if (base.high() > 0) {
+            result = exp(exponent.multiply(log(base)));
+        }
+        else {
+            result = DoubleDouble.valueOf(Math.pow(base.high(), power));
+        }
+        return result;
+    }
+
+    /**
+     * Raises a double-double to an integer power by repeated squaring. A
+     * negative power is the reciprocal of the positive one, unless the
+     * positive power overflows: the result is then at most subnormal, where
+     * a double-double holds no more digits than a double, and it is
+     * computed in double precision.
+     *
+     * @param base the base
+     * @param exponent the exponent
+     * @return base raised to the power of exponent
+     */
+    private static DoubleDouble integerPower(DoubleDouble base, long exponent) {
+        DoubleDouble result = DoubleDouble.ONE;
+        DoubleDouble square = base;
+        for (long bits = Math.abs(exponent); bits != 0; bits >>= 1) {
+            if ((bits & 1) != 0) {
+                result = result.multiply(square);
+            }
+            square = square.multiply(square);
+        }
+        if (exponent < 0 && Double.isInfinite(result.high())) {
+            result = DoubleDouble.valueOf(Math.pow(base.high(), exponent));
+        }
+        else if (exponent < 0) {
+            result = DoubleDouble.ONE.divide(result);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the cube root of a double-double with a Newton step from the
+     * double cube root y, {@code y - (y^3 - x) / (3 y^2)}.
+     *
+     * @param argument the argument of the cube root
+     * @return the cube root of argument
+     */
+    static DoubleDouble cbrt(DoubleDouble argument) {
+        final double estimate = Math.cbrt(argument.high());
+        final DoubleDouble result;
+        if (estimate != 0 && Double.isFinite(estimate)) {
+            final DoubleDouble guess = DoubleDouble.valueOf(estimate);
+            final DoubleDouble square = guess.multiply(guess);
+            result = guess.subtract(square.multiply(guess).subtract(argument)
+                .divide(square.multiply(THREE)));
+        }
+        else {
+            result = DoubleDouble.valueOf(estimate);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the sine of a double-double.
+     *
+     * @param argument the angle in radians
+     * @return the sine of argument
+     */
+    static DoubleDouble sin(DoubleDouble argument) {
+        return sinOfQuarterTurns(argument, 0);
+    }
+
+    /**
+     * Computes the cosine of a double-double.
+     *
+     * @param argument the angle in radians
+     * @return the cosine of argument
+     */
+    static DoubleDouble cos(DoubleDouble argument) {
+        return sinOfQuarterTurns(argument, 1);
+    }
+
+    /**
+     * Computes the tangent of a double-double.
+     *
+     * @param argument the angle in radians
+     * @return the tangent of argument
+     */
+    static DoubleDouble tan(DoubleDouble argument) {
+        return sin(argument).divide(cos(argument));
+    }
+
+    /**
+     * Computes the sine of an angle plus a number of quarter turns. The
+     * angle is reduced by the nearest multiple of pi/2 to at most pi/4, the
+     * Taylor series of the sine of the reduced angle is summed, and its
+     * cosine is the square root of one minus its square, since the cosine
+     * of such an angle is at least 0.7. Angles of 2^52 or more, where the
+     * nearest multiple of pi/2 is no longer exact in double, are computed
+     * in double precision; infinite and NaN angles give NaN.
+     *
+     * @param argument the angle in radians
+     * @param quarterTurns the number of quarter turns to add to the angle
+     * @return {@code sin(argument + quarterTurns * pi / 2)}
+     */
+    private static DoubleDouble sinOfQuarterTurns(DoubleDouble argument, int quarterTurns) {
+        final DoubleDouble result;
+        if (!(Math.abs(argument.high()) < MAX_REDUCIBLE)) {
+            if (quarterTurns == 0) {
+                result = DoubleDouble.valueOf(Math.sin(argument.high()));
+            }
+            else {
+                result = DoubleDouble.valueOf(Math.cos(argument.high()));
+            }
+        }
+        else {
+            final double multiple = Math.rint(argument.high() / HALF_PI.high());
+            final DoubleDouble reduced = argument.subtract(HALF_PI.multiply(multiple));
+            final DoubleDouble square = reduced.negate().multiply(reduced);
+            DoubleDouble power = reduced;
+            DoubleDouble term = reduced;
+            DoubleDouble sine = reduced;
+            for (int n = THREE; n < INVERSE_FACTORIALS.length
+                && Math.abs(term.high()) > EPSILON * Math.abs(sine.high()); n += 2) {
+                power = power.multiply(square);
+                term = power.multiply(INVERSE_FACTORIALS[n]);
+                sine = sine.add(term);
+            }
+            final int quadrant = (int) ((multiple % QUARTER_TURNS + QUARTER_TURNS + quarterTurns)
+                % QUARTER_TURNS);
+            result = switch (quadrant) {
+                case 0 -> sine;
+                case 1 -> DoubleDouble.ONE.subtract(sine.multiply(sine)).sqrt();
+                case 2 -> sine.negate();
+                default -> DoubleDouble.ONE.subtract(sine.multiply(sine)).sqrt().negate();
+            };
+        }
+        return result;
+    }
+
+    /**
+     * Computes the arc sine of a double-double, as
+     * {@code atan2(x, sqrt((1 - x)(1 + x)))}.
+     *
+     * @param argument the sine of the angle
+     * @return the angle in radians, or NaN if argument is out of [-1, 1]
+     */
+    static DoubleDouble asin(DoubleDouble argument) {
+        return atan2(argument, cosineOfSine(argument));
+    }
+
+    /**
+     * Computes the arc cosine of a double-double, as
+     * {@code atan2(sqrt((1 - x)(1 + x)), x)}.
+     *
+     * @param argument the cosine of the angle
+     * @return the angle in radians, or NaN if argument is out of [-1, 1]
+     */
+    static DoubleDouble acos(DoubleDouble argument) {
+        return atan2(cosineOfSine(argument), argument);
+    }
+
+    /**
+     * Computes {@code sqrt(1 - x^2)}, the cosine of an angle from its sine
+     * or the reverse, without cancellation near one.
+     *
+     * @param argument the sine or cosine of the angle
+     * @return the cosine or sine of the angle, or NaN if argument is out of [-1, 1]
+     */
+    private static DoubleDouble cosineOfSine(DoubleDouble argument) {
+        return DoubleDouble.ONE.subtract(argument).multiply(argument.add(1)).sqrt();
+    }
+
+    /**
+     * Computes the angle of a point with a Newton step from the double angle
+     * z. The point is scaled onto the unit circle, and z is corrected with
+     * the sine or the cosine of z, whichever is larger.
+     *
+     * @param ordinate the ordinate of the point
+     * @param abscissa the abscissa of the point
+     * @return the angle of the point in radians, in [-pi, pi]
+     */
+    static DoubleDouble atan2(DoubleDouble ordinate, DoubleDouble abscissa) {
+        final double estimate = Math.atan2(ordinate.high(), abscissa.high());
+        final DoubleDouble result;
+        if (Double.isFinite(ordinate.high()) && Double.isFinite(abscissa.high())
+            && (ordinate.high() != 0 || abscissa.high() != 0)) {
+            final DoubleDouble angle = DoubleDouble.valueOf(estimate);
+            final DoubleDouble radius = hypot(ordinate, abscissa);
+            final DoubleDouble sine = ordinate.divide(radius);
+            final DoubleDouble cosine = abscissa.divide(radius);
+            if (Math.abs(cosine.high()) > Math.abs(sine.high())) {
+                result = angle.add(sine.subtract(sin(angle)).divide(cos(angle)));
+            }
+            else {
+                result = angle.subtract(cosine.subtract(cos(angle)).divide(sin(angle)));
+            }
+        }
+        else {
+            result = DoubleDouble.valueOf(estimate);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the distance of a point from the origin. The coordinates are
+     * scaled by a power of two first, so that their squares do not overflow.
+     *
+     * @param first the first coordinate
+     * @param second the second coordinate
+     * @return {@code sqrt(first^2 + second^2)}
+     */
+    static DoubleDouble hypot(DoubleDouble first, DoubleDouble second) {
+        final int exponent =
+            Math.getExponent(Math.max(Math.abs(first.high()), Math.abs(second.high())));
+        final DoubleDouble scaledFirst = scale(first, -exponent);
+        final DoubleDouble scaledSecond = scale(second, -exponent);
+        final DoubleDouble sum =
+            scaledFirst.multiply(scaledFirst).add(scaledSecond.multiply(scaledSecond));
+        return scale(sum.sqrt(), exponent);
+    }
+
+    /**
+     * Computes the hyperbolic sine of a double-double. Small arguments are
+     * computed from {@code E = expm1(x)} as {@code E (E + 2) / (2 (E + 1))},
+     * which does not cancel.
+     *
+     * @param argument the argument of the function
+     * @return the hyperbolic sine of argument
+     */
+    static DoubleDouble sinh(DoubleDouble argument) {
+        final DoubleDouble result;
+        if (Math.abs(argument.high()) < HYPERBOLIC_EXP_ARGUMENT) {
+            final DoubleDouble power = expm1(argument);
+            result = power.multiply(power.add(2)).divide(power.add(1).multiply(2));
+        }
+        else {
+            result = exp(argument).subtract(exp(argument.negate())).multiply(HALF);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the hyperbolic cosine of a double-double.
+     *
+     * @param argument the argument of the function
+     * @return the hyperbolic cosine of argument
+     */
+    static DoubleDouble cosh(DoubleDouble argument) {
+        return exp(argument).add(exp(argument.negate())).multiply(HALF);
+    }
+
+    /**
+     * Computes the hyperbolic tangent of a double-double from
+     * {@code E = expm1(2x)} as {@code E / (E + 2)}, which does not cancel.
+     *
+     * @param argument the argument of the function
+     * @return the hyperbolic tangent of argument
+     */
+    static DoubleDouble tanh(DoubleDouble argument) {
+        final DoubleDouble result;
+        if (Math.abs(argument.high()) < TANH_SATURATION_ARGUMENT) {
+            final DoubleDouble power = expm1(argument.multiply(2));
+            result = power.divide(power.add(2));
+        }
+        else {
+            result = DoubleDouble.valueOf(Math.signum(argument.high()));
+        }
+        return result;
+    }
+
+    /**
+     * Rounds a double-double down to an integer.
+     *
+     * @param argument the value to round
+     * @return the largest integer not greater than argument
+     */
+    static DoubleDouble floor(DoubleDouble argument) {
+        final double high = Math.floor(argument.high());
+        final DoubleDouble result;
+        if (high == argument.high()) {
+            result = new DoubleDouble(high, 0).add(Math.floor(argument.low()));
+        }
+        else {
+            result = DoubleDouble.valueOf(high);
+        }
+        return result;
+    }
+
+    /**
+     * Rounds a double-double up to an integer.
+     *
+     * @param argument the value to round
+     * @return the smallest integer not less than argument
+     */
+    static DoubleDouble ceil(DoubleDouble argument) {
+        return floor(argument.negate()).negate();
+    }
+
+    /**
+     * Rounds a double-double to the nearest integer, rounding halves up.
+     * As {@link Math#round(double)} returns a long, results out of the range
+     * of a long saturate, and NaN rounds to zero.
+     *
+     * @param argument the value to round
+     * @return the rounded value
+     */
+    static DoubleDouble round(DoubleDouble argument) {
+        final DoubleDouble result;
+        if (Math.abs(argument.high()) < MAX_EXACT_ROUND) {
+            result = floor(argument.add(HALF));
+        }
+        else {
+            result = DoubleDouble.valueOf(Math.round(argument.high()));
+        }
+        return result;
+    }
+
+    /**
+     * Rounds a double-double to the nearest integer, rounding halves to
+     * even as {@link Math#rint(double)} does.
+     *
+     * @param argument the value to round
+     * @return the integer nearest to argument
+     */
+    static DoubleDouble rint(DoubleDouble argument) {
+        DoubleDouble result = floor(argument.add(HALF));
+        final DoubleDouble excess = result.subtract(argument);
+        if (excess.high() == HALF && excess.low() == 0
+            && Math.abs(result.high() % 2 + result.low() % 2) == 1) {
+            result = result.subtract(DoubleDouble.ONE);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the larger of two double-doubles, or NaN if either is NaN.
+     *
+     * @param first the first value
+     * @param second the second value
+     * @return the larger value
+     */
+    static DoubleDouble max(DoubleDouble first, DoubleDouble second) {
+        DoubleDouble result = first;
+        if (Double.isNaN(second.high()) || second.compareTo(first) > 0) {
+            result = second;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the smaller of two double-doubles, or NaN if either is NaN.
+     *
+     * @param first the first value
+     * @param second the second value
+     * @return the smaller value
+     */
+    static DoubleDouble min(DoubleDouble first, DoubleDouble second) {
+        DoubleDouble result = second;
+        if (Double.isNaN(first.high()) || first.compareTo(second) < 0) {
+            result = first;
+        }
+        return result;
+    }
+
+    /**
+     * Creates the table of factorials.
+     *
+     * @return factorials of the integers from 0 to 170
+     */
+    private static DoubleDouble[] createFactorials() {
+        final DoubleDouble[] factorials = new DoubleDouble[MAX_FACTORIAL_ARGUMENT + 1];
+        for (int n = 0; n < factorials.length; n++) {
+            factorials[n] = DoubleDouble.valueOf(new BigDecimal(FactorialUtils.exactFactorial(n)));
+        }
+        return factorials;
+    }
+
+    /**
+     * Creates the table of reciprocals of factorials. The sine of pi/4
+     * needs the most terms, up to the 29th power.
+     *
+     * @return reciprocals of the factorials of the integers from 0 to 31
+     */
+    private static DoubleDouble[] createInverseFactorials() {
+        final DoubleDouble[] inverses = new DoubleDouble[SERIES_TERMS];
+        for (int n = 0; n < inverses.length; n++) {
+            inverses[n] = DoubleDouble.valueOf(BigDecimal.ONE.divide(
+                new BigDecimal(FactorialUtils.exactFactorial(n)), CONSTANT_CONTEXT));
+        }
+        return inverses;
+    }
+
+    /**
+     * Creates the functions of one argument.
+     *
+     * @return functions of one argument, by function
+     */
+    private static Map<MathFunction, UnaryOperator<DoubleDouble>> createUnaryFunctions() {
+        final Map<MathFunction, UnaryOperator<DoubleDouble>> functions =
+            new EnumMap<>(MathFunction.class);
+        functions.put(MathFunction.ABS, DoubleDouble::abs);
+        functions.put(MathFunction.ACOS, DoubleDoubleMath::acos);
+        functions.put(MathFunction.ASIN, DoubleDoubleMath::asin);
+        functions.put(MathFunction.ATAN, argument -> atan2(argument, DoubleDouble.ONE));
+        functions.put(MathFunction.CBRT, DoubleDoubleMath::cbrt);
+        functions.put(MathFunction.CEIL, DoubleDoubleMath::ceil);
+        functions.put(MathFunction.COS, DoubleDoubleMath::cos);
+        functions.put(MathFunction.COSH, DoubleDoubleMath::cosh);
+        functions.put(MathFunction.EXP, DoubleDoubleMath::exp);
+        functions.put(MathFunction.EXPM1, DoubleDoubleMath::expm1);
+        functions.put(MathFunction.FLOOR, DoubleDoubleMath::floor);
+        functions.put(MathFunction.LOG, DoubleDoubleMath::log);
+        functions.put(MathFunction.LOG10, argument -> log(argument).divide(LN10));
+        functions.put(MathFunction.LOG1P, DoubleDoubleMath::log1p);
+        functions.put(MathFunction.RINT, DoubleDoubleMath::rint);
+        functions.put(MathFunction.ROUND, DoubleDoubleMath::round);
+        functions.put(MathFunction.SIGNUM, argument -> {
+            return DoubleDouble.valueOf(Math.signum(argument.high()));
+        });
+        functions.put(MathFunction.SIN, DoubleDoubleMath::sin);
+        functions.put(MathFunction.SINH, DoubleDoubleMath::sinh);
+        functions.put(MathFunction.SQRT, DoubleDouble::sqrt);
+        functions.put(MathFunction.TAN, DoubleDoubleMath::tan);
+        functions.put(MathFunction.TANH, DoubleDoubleMath::tanh);
+        functions.put(MathFunction.TO_DEGREES, argument -> argument.multiply(DEGREES_PER_RADIAN));
+        functions.put(MathFunction.TO_RADIANS, argument -> argument.multiply(RADIANS_PER_DEGREE));
+        return functions;
+    }
+
+    /**
+     * Creates the functions of two arguments.
+     *
+     * @return functions of two arguments, by function
+     */
+    private static Map<MathFunction, BinaryOperator<DoubleDouble>> createBinaryFunctions() {
+        final Map<MathFunction, BinaryOperator<DoubleDouble>> functions =
+            new EnumMap<>(MathFunction.class);
+        functions.put(MathFunction.ATAN2, DoubleDoubleMath::atan2);
+        functions.put(MathFunction.COPY_SIGN, (magnitude, sign) -> {
+            DoubleDouble result = magnitude.abs();
+            if (Math.copySign(1.0, sign.high()) < 0) {
+                result = result.negate();
+            }
+            return result;
+        });
+        functions.put(MathFunction.HYPOT, DoubleDoubleMath::hypot);
+        functions.put(MathFunction.MAX, DoubleDoubleMath::max);
+        functions.put(MathFunction.MIN, DoubleDoubleMath::min);
+        functions.put(MathFunction.POW, DoubleDoubleMath::pow);
+        return functions;
+    }
+}
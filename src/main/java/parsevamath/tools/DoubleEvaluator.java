@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class evaluates an expression tree using primitive doubles only.
+ * Unlike {@link EvaluateExpressionVisitor}, no intermediate result is
+ * boxed, so evaluating a tree does not allocate.
+ *
+ * <p>An evaluator created by {@link #compile(ExpressionNode)} for a tree
+ * with shared nodes keeps the value of each shared node in a register, as
+ * {@link Program} does, so that a node with several parents is evaluated
+ * once per evaluation.
+ */
+public final class DoubleEvaluator {
+
+    /**
+     * Register of each node shared by several parents.
+     */
+    private final Map<ExpressionNode, Integer> registers;
+
+    /**
+     * Value of each register, once computed.
+     */
+    private final double[] registerValues;
+
+    /**
+     * Whether each register holds the value of its node.
+     */
+    private final boolean[] computed;
+
+    /**
+     * Creates an evaluator that evaluates every node each time it is
+     * reached.
+     */
+    public DoubleEvaluator() {
+        this(Map.of());
+    }
+
+    /**
+     * Creates an evaluator that keeps the value of the given nodes in
+     * registers. Registers are never cleared, so such an evaluator must
+     * only evaluate one tree with one set of variables.
+     *
+     * @param registers register of each node shared by several parents,
+     *     numbered from zero
+     */
+    private DoubleEvaluator(Map<ExpressionNode, Integer> registers) {
+        this.registers = registers;
+        registerValues = new double[registers.size()];
+        computed = new boolean[registers.size()];
+    }
+
+    /**
+     * Compiles an expression tree to an expression that walks it on every
+     * evaluation. If the tree has shared nodes, each evaluation uses a new
+     * evaluator, whose registers hold the values of the shared nodes.
+     *
+     * @param root the root of the expression tree
+     * @return compiled expression
+     */
+    static CompiledExpression compile(ExpressionNode root) {
+        final Map<ExpressionNode, Integer> registers = new IdentityHashMap<>();
+        for (ExpressionNode node : ParsevaUtils.findSharedNodes(root)) {
+            registers.put(node, registers.size());
+        }
+        final CompiledExpression result;
+        if (registers.isEmpty()) {
+            final DoubleEvaluator evaluator = new DoubleEvaluator();
+            result = variables -> evaluator.visit(root, variables);
+        }
+        else {
+            result = variables -> new DoubleEvaluator(registers).visit(root, variables);
+        }
+        return result;
+    }
+
+    /**
+     * Visit an addition node.
+     *
+     * @param node addition node
+     * @param variables the values of the variables, indexed by slot
+     * @return the sum of this node's two descendants
+     */
+    double visit(AdditionNode node, double[] variables) {
+        return visit(node.left(), variables) + visit(node.right(), variables);
+    }
+
+    /**
+     * Visit a subtraction node.
+     *
+     * @param node subtraction node
+     * @param variables the values of the variables, indexed by slot
+     * @return the difference of this node's two descendants
+     */
+    double visit(SubtractionNode node, double[] variables) {
+        return visit(node.left(), variables) - visit(node.right(), variables);
+    }
+
+    /**
+     * Visit a multiplication node.
+     *
+     * @param node multiplication node
+     * @param variables the values of the variables, indexed by slot
+     * @return the product of this node's two descendants
+     */
+    double visit(MultiplicationNode node, double[] variables) {
+        return visit(node.left(), variables) * visit(node.right(), variables);
+    }
+
+    /**
+     * Visit a division node.
+     *
+     * @param node division node
+     * @param variables the values of the variables, indexed by slot
+     * @return the quotient of this node's two descendants
+     */
+    double visit(DivisionNode node, double[] variables) {
+        return visit(node.left(), variables) / visit(node.right(), variables);
+    }
+
+    /**
+     * Visit a negation node.
+     *
+     * @param node negate node
+     * @param variables the values of the variables, indexed by slot
+     * @return the value of the node's inner node, negated
+     */
+    double visit(NegateNode node, double[] variables) {
+        return -visit(node.innerNode(), variables);
+    }
+
+    /**
+     * Visit a factorial node.
+     *
+     * @param node factorial node
+     * @param variables the values of the variables, indexed by slot
+     * @return the factorial of the inner node
+     */
+    double visit(FactorialNode node, double[] variables) {
+        return MathUtils.factorial(visit(node.innerNode(), variables));
+    }
+
+    /**
+     * Visit a method node. The java.lang.Math function resolved when the
+     * ast was built is applied to the node's arguments.
+     *
+     * @param node method node
+     * @param variables the values of the variables, indexed by slot
+     * @return the result of the function, or NaN if it was not resolved
+     */
+    double visit(MethodNode node, double[] variables) {
+        final MathFunction function = node.function();
+        final List<ExpressionNode> arguments = node.arguments();
+        final double result;
+        if (function == null) {
+            result = Double.NaN;
+        }
+        else {
+            final double first = visit(arguments.get(0), variables);
+            result = switch (arguments.size()) {
+                case 1 -> function.apply(first);
+                case 2 -> function.apply(first, visit(arguments.get(1), variables));
+                default -> function.apply(first, visit(arguments.get(1), variables),
+                    visit(arguments.get(2), variables));
+            };
+        }
+        return result;
+    }
+
+    /**
+     * Visit a number node.
+     *
+     * @param node number node
+     * @param variables the values of the variables, indexed by slot
+     * @return the value of the numerical expression
+     */
+    double visit(NumberNode node, double[] variables) {
+        return node.value();
+    }
+
+    /**
+     * Visit a constant node.
+     *
+     * @param node constant node
+     * @param variables the values of the variables, indexed by slot
+     * @return the value of this constant
+     */
+    double visit(ConstantNode node, double[] variables) {
+        return node.value();
+    }
+
+    /**
+     * Visit a variable node.
+     *
+     * @param node variable node
+     * @param variables the values of the variables, indexed by slot
+     * @return the value in the slot of this variable
+     */
+    double visit(VariableNode node, double[] variables) {
+        return variables[node.slot()];
+    }
+
+    /**
+     * Evaluates an expression tree by letting each node call the visit
+     * method for its own type.
+     *
+     * @param node the root of the expression tree
+     * @param variables the values of the variables, indexed by slot
+     * @return the value of the expression
+     */
+    public double visit(ExpressionNode node, double[] variables) {
+        final double result;
+        if (registerValues.length == 0) {
+            result = node.accept(this, variables);
+        }
+        else {
+            result = visitShared(node, variables);
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates an expression tree without variables.
+     *
+     * @param node the root of the expression tree
+     * @return the value of the expression
+     */
+    public double visit(ExpressionNode node) {
+        return visit(node, CompiledExpression.NO_VARIABLES);
+    }
+
+    /**
+     * Evaluates a node, or reads its value from its register if it is
+     * shared and was already evaluated.
+     *
+     * @param node the node to evaluate
+     * @param variables the values of the variables, indexed by slot
+     * @return the value of the node
+     */
+    private double visitShared(ExpressionNode node, double[] variables) {
+        final Integer register = registers.get(node);
+        final double result;
+        if (register == null) {
+            result = node.accept(this, variables);
+        }
+        else if (computed[register]) {
+            result = registerValues[register];
+        }
+        else {
+            result = node.accept(this, variables);
+            registerValues[register] = result;
+            computed[register] = true;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+/**
+ * The engines that parseva-math can use to evaluate an expression tree.
+ */
+public enum Engine {
+
+    /**
+     * Walks the expression tree with {@link DoubleEvaluator} on every
+     * evaluation. Shared nodes are evaluated once per evaluation.
+     */
+    TREE {
+        @Override
+        public CompiledExpression compile(ExpressionNode root) {
+            return DoubleEvaluator.compile(root);
+        }
+    },
+
+    /**
+     * Lowers the expression tree to a flat postfix {@link Program} with
+     * {@link ProgramCompiler}, and runs it on a small stack machine.
+     */
+    VM {
+        @Override
+        public CompiledExpression compile(ExpressionNode root) {
+            return ProgramCompiler.compile(root);
+        }
+    },
+
+    /**
+     * Compiles the expression tree to a hidden class with
+     * {@link BytecodeCompiler}, so that the JIT can inline the whole
+     * expression.
+     */
+    BYTECODE {
+        @Override
+        public CompiledExpression compile(ExpressionNode root) {
+            return BytecodeCompiler.compile(root);
+        }
+    },
+
+    /**
+     * Walks the expression tree with {@link DoubleDoubleEvaluator}, carrying
+     * about 32 significant digits through every node, and rounds the value
+     * to a double, so that sums and differences that cancel keep their
+     * digits. Shared nodes are evaluated once per evaluation.
+     */
+    DOUBLE_DOUBLE {
+        @Override
+        public CompiledExpression compile(ExpressionNode root) {
+            return DoubleDoubleEvaluator.compile(root);
+        }
+    };
+
+    /**
+     * Compiles an expression tree with this engine.
+     *
+     * @param root root of the expression tree
+     * @return compiled expression
+     */
+    public abstract CompiledExpression compile(ExpressionNode root);
+}
@@ -28,20 +28,38 @@
 
 package parsevamath.tools;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
-import org.tinylog.Logger;
-
 /**
  * This class handles the evaluation of all expressions by visiting each
  * node of the math AST and performing operations as it traverses the tree.
  */
 public class EvaluateExpressionVisitor extends AbstractMathAstVisitor<Double> {
 
+    /**
+     * Evaluates method nodes.
+     */
+    private final DoubleEvaluator methodEvaluator = new DoubleEvaluator();
+
+    /**
+     * The values of the variables, indexed by slot.
+     */
+    private final double[] variables;
+
+    /**
+     * Creates a visitor for expressions without variables.
+     */
+    public EvaluateExpressionVisitor() {
+        this(CompiledExpression.NO_VARIABLES);
+    }
+
+    /**
+     * Creates a visitor that evaluates variables from the given array.
+     *
+     * @param variables the values of the variables, indexed by slot
+     */
+    public EvaluateExpressionVisitor(double[] variables) {
+        this.variables = variables.clone();
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -49,7 +67,7 @@ public class EvaluateExpressionVisitor extends AbstractMathAstVisitor<Double> {
      */
     @Override
     Double visit(AdditionNode node) {
-        return visit(node.getLeft()) + visit(node.getRight());
+        return visit(node.left()) + visit(node.right());
     }
 
     /**
@@ -59,7 +77,7 @@ public class EvaluateExpressionVisitor extends AbstractMathAstVisitor<Double> {
      */
     @Override
     Double visit(SubtractionNode node) {
-        return visit(node.getLeft()) - visit(node.getRight());
+        return visit(node.left()) - visit(node.right());
     }
 
     /**
@@ -69,7 +87,7 @@ public class EvaluateExpressionVisitor extends AbstractMathAstVisitor<Double> {
      */
     @Override
     Double visit(MultiplicationNode node) {
-        return visit(node.getLeft()) * visit(node.getRight());
+        return visit(node.left()) * visit(node.right());
     }
 
     /**
@@ -79,7 +97,7 @@ public class EvaluateExpressionVisitor extends AbstractMathAstVisitor<Double> {
      */
     @Override
     Double visit(DivisionNode node) {
-        return visit(node.getLeft()) / visit(node.getRight());
+        return visit(node.left()) / visit(node.right());
     }
 
     /**
@@ -89,7 +107,7 @@ public class EvaluateExpressionVisitor extends AbstractMathAstVisitor<Double> {
      */
     @Override
     Double visit(NegateNode node) {
-        return -visit(node.getInnerNode());
+        return -visit(node.innerNode());
     }
 
     /**
@@ -99,58 +117,21 @@ public class EvaluateExpressionVisitor extends AbstractMathAstVisitor<Double> {
      */
     @Override
     Double visit(FactorialNode node) {
-        final ExpressionNode innerNode = node.getInnerNode();
-        return MathUtils.getFactorial(visit(innerNode));
+        final ExpressionNode innerNode = node.innerNode();
+        return MathUtils.factorial(visit(innerNode));
     }
 
     /**
      * {@inheritDoc}
      *
-     * <p>This implementation extracts a method from a MethodNode and applies it
-     * to a specified argument, returning the result.
+     * <p>This implementation applies the java.lang.Math function resolved
+     * when the ast was built to the node's arguments, by evaluating the
+     * whole call with {@link DoubleEvaluator}. If the function could not be
+     * resolved, the result is NaN.
      */
     @Override
     Double visit(MethodNode node) {
-        final List<Double> argumentValues = new ArrayList<>();
-        node.getArguments().forEach(arg -> {
-            argumentValues.add(visit(arg));
-        });
-
-        Method method = null;
-
-        try {
-            // Here we fill array with double.class, since this is
-            // what all Math methods accept as parameters. The size
-            // of this array is the number of arguments to the function.
-            final Class<?>[] paramTypes =
-                new Class[argumentValues.size()];
-            Arrays.fill(paramTypes, double.class);
-
-            // Use reflection to get Math method
-            method = Math.class.getMethod(node.getFunctionName(), paramTypes);
-        }
-        catch (NoSuchMethodException noSuchMethodException) {
-            final String infoString = "Failed to get 'java.lang.Math' method '"
-                + node.getFunctionName() + "'";
-            Logger.info(infoString, noSuchMethodException);
-        }
-
-        Double returnVal = Double.NaN;
-        if (method != null) {
-            try {
-                returnVal =
-                    (Double) method.invoke(method.getClass(),
-                        argumentValues.toArray());
-            }
-            catch (IllegalAccessException | InvocationTargetException exception) {
-                final String infoString = "Failed to invoke method '"
-                    + method.getName()
-                    + "' on arguement '"
-                    + node.getArguments();
-                Logger.info(infoString, exception);
-            }
-        }
-        return returnVal;
+        return methodEvaluator.visit(node, variables);
     }
 
     /**
@@ -160,7 +141,7 @@ public class EvaluateExpressionVisitor extends AbstractMathAstVisitor<Double> {
      */
     @Override
     Double visit(NumberNode node) {
-        return node.getValue();
+        return node.value();
     }
 
     /**
@@ -170,7 +151,16 @@ public class EvaluateExpressionVisitor extends AbstractMathAstVisitor<Double> {
      */
     @Override
     Double visit(ConstantNode node) {
-        return node.getValue();
+        return node.value();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the value in the slot of this variable.
+     */
+    @Override
+    Double visit(VariableNode node) {
+        return variables[node.slot()];
+    }
 }
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.tinylog.Logger;
+
+/**
+ * A long running server evaluating expressions sent over a local TCP or
+ * Unix domain socket, so that clients do not pay for starting a JVM per
+ * expression. The protocol is line based: a client sends one expression per
+ * line, and gets one line back per expression, in order, with either the
+ * value of the expression or an {@value BatchRunner#ERROR_PREFIX} line.
+ *
+ * <p>Each connection is handled by its own thread, blocking on the socket,
+ * and the number of connections handled at once is limited; further clients
+ * wait in the accept backlog until a connection closes. Expressions are
+ * compiled once with the engine of the server and kept in an
+ * {@link ExpressionCache} shared by all connections.
+ */
+public final class EvaluationServer implements Closeable {
+
+    /**
+     * Default maximum number of connections handled at once.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 256;
+
+    /**
+     * Prefix of the addresses of Unix domain sockets.
+     */
+    private static final String UNIX_PREFIX = "unix:";
+
+    /**
+     * Separates the host from the port of TCP addresses.
+     */
+    private static final char PORT_SEPARATOR = ':';
+
+    /**
+     * Accepts connections.
+     */
+    private final ServerSocketChannel serverChannel;
+
+    /**
+     * Address this server listens on.
+     */
+    private final SocketAddress localAddress;
+
+    /**
+     * Limits the number of connections handled at once.
+     */
+    private final Semaphore connectionPermits;
+
+    /**
+     * Runs one thread per connection.
+     */
+    private final ExecutorService connectionExecutor;
+
+    /**
+     * Compiled expressions shared by all connections.
+     */
+    private final ExpressionCache<CompiledExpression> cache;
+
+    /**
+     * Evaluates the lines of a connection.
+     */
+    private final BatchRunner runner;
+
+    /**
+     * Creates a server and binds it to an address. Connections are only
+     * accepted once {@link #serve()} is called.
+     *
+     * @param address TCP or Unix domain socket address to listen on
+     * @param engine engine compiling each expression
+     * @param optimizer optimizer run over each expression before compiling it
+     * @param maxConnections maximum number of connections handled at once
+     * @throws IOException if the address cannot be bound
+     * @throws IllegalArgumentException if maxConnections is not positive
+     */
+    private EvaluationServer(SocketAddress address, Engine engine, Optimizer optimizer,
+                             int maxConnections) throws IOException {
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("Maximum connections must be positive: "
+                + maxConnections);
+        }
+        cache = new ExpressionCache<>(ExpressionCache.DEFAULT_MAXIMUM_SIZE,
+            exprInput -> compile(exprInput, engine, optimizer));
+        runner = new BatchRunner(line -> cache.get(line.toString()).evaluate());
+        connectionPermits = new Semaphore(maxConnections);
+        connectionExecutor = Executors.newCachedThreadPool(task -> {
+            final Thread thread = new Thread(task, "parseva-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (address instanceof UnixDomainSocketAddress) {
+            serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        }
+        else {
+            serverChannel = ServerSocketChannel.open();
+        }
+        serverChannel.bind(address);
+        localAddress = serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Creates a server and binds it to an address, given either as
+     * {@code unix:<path>} for a Unix domain socket, or as
+     * {@code [<host>]:<port>} for a TCP socket. The host defaults to the
+     * loopback address.
+     *
+     * @param address address to listen on
+     * @param engine engine compiling each expression
+     * @param optimizer optimizer run over each expression before compiling it
+     * @param maxConnections maximum number of connections handled at once
+     * @return server bound to the address
+     * @throws IOException if the address cannot be bound
+     */
+    public static EvaluationServer open(String address, Engine engine, Optimizer optimizer,
+                                        int maxConnections) throws IOException {
+        return new EvaluationServer(parseAddress(address), engine, optimizer, maxConnections);
+    }
+
+    /**
+     * Parses an address given either as {@code unix:<path>} or as
+     * {@code [<host>]:<port>}.
+     *
+     * @param address address to parse
+     * @return socket address
+     * @throws IllegalArgumentException if the port is not a number
+     */
+    static SocketAddress parseAddress(String address) {
+        final SocketAddress socketAddress;
+        if (address.startsWith(UNIX_PREFIX)) {
+            socketAddress = UnixDomainSocketAddress.of(address.substring(UNIX_PREFIX.length()));
+        }
+        else {
+            final int separator = address.lastIndexOf(PORT_SEPARATOR);
+            final String host = address.substring(0, Math.max(0, separator));
+            final int port = Integer.parseInt(address.substring(separator + 1));
+            if (host.isEmpty()) {
+                socketAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+            }
+            else {
+                socketAddress = new InetSocketAddress(host, port);
+            }
+        }
+        return socketAddress;
+    }
+
+    /**
+     * Compiles an expression, which must not have any variables.
+     *
+     * @param exprInput the expression to compile
+     * @param engine engine compiling the expression
+     * @param optimizer optimizer run over the expression before compiling it
+     * @return compiled expression
+     * @throws IllegalArgumentException on a syntax error
+     * @throws IllegalStateException if the expression has variables
+     */
+    private static CompiledExpression compile(String exprInput, Engine engine,
+                                              Optimizer optimizer) {
+        final ExpressionNode root = ExpressionParser.buildExpressionTreeStrictly(exprInput);
+        Main.bindVariables(root, Map.of());
+        return engine.compile(optimizer.optimize(root).root());
+    }
+
+    /**
+     * Accepts connections until this server is closed. Each connection is
+     * handled on its own thread, once fewer than the maximum number of
+     * connections are being handled. A connection that cannot be accepted,
+     * for instance because the process is out of file descriptors, is
+     * logged and the server keeps accepting.
+     */
+    public void serve() {
+        boolean open = true;
+        while (open) {
+            connectionPermits.acquireUninterruptibly();
+            try {
+                dispatch(serverChannel.accept());
+            }
+            catch (ClosedChannelException exception) {
+                connectionPermits.release();
+                open = false;
+            }
+            catch (IOException exception) {
+                connectionPermits.release();
+                Logger.warn(exception, "Could not accept connection");
+            }
+        }
+    }
+
+    /**
+     * Hands an accepted connection to its own thread. If the server was
+     * closed in the meantime, the connection is closed and its permit is
+     * released instead.
+     *
+     * @param channel accepted connection
+     */
+    private void dispatch(SocketChannel channel) {
+        try {
+            connectionExecutor.execute(() -> handle(channel));
+        }
+        catch (RejectedExecutionException rejection) {
+            connectionPermits.release();
+            try {
+                channel.close();
+            }
+            catch (IOException exception) {
+                Logger.debug(exception, "Could not close rejected connection");
+            }
+        }
+    }
+
+    /**
+     * Closes this server when the JVM shuts down, so that the socket file of
+     * a Unix domain socket does not outlive the server.
+     */
+    public void closeOnShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                close();
+            }
+            catch (IOException exception) {
+                Logger.warn(exception, "Could not close server");
+            }
+        }));
+    }
+
+    /**
+     * Evaluates the lines of a connection until the client closes it.
+     *
+     * @param channel connection to a client
+     */
+    private void handle(SocketChannel channel) {
+        try (channel;
+             BufferedReader input = new BufferedReader(
+                 Channels.newReader(channel, StandardCharsets.UTF_8));
+             Writer output = new BufferedWriter(
+                 Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+            runner.run(input, output);
+        }
+        catch (IOException exception) {
+            Logger.debug(exception, "Connection failed");
+        }
+        finally {
+            connectionPermits.release();
+        }
+    }
+
+    /**
+     * Gets the address this server listens on, with the actual port if it
+     * was bound to port 0.
+     *
+     * @return local address
+     */
+    public SocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    /**
+     * Gets the compiled expressions shared by all connections.
+     *
+     * @return expression cache
+     */
+    public ExpressionCache<CompiledExpression> getCache() {
+        return cache;
+    }
+
+    /**
+     * Stops accepting connections, closes open connections, and deletes the
+     * socket file of a Unix domain socket. Closing a closed server has no
+     * effect.
+     *
+     * @throws IOException if the socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        serverChannel.close();
+        connectionExecutor.shutdownNow();
+        if (localAddress instanceof UnixDomainSocketAddress unixAddress) {
+            Files.deleteIfExists(unixAddress.getPath());
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe cache of compiled expressions. Entries are keyed
+ * on the normalized text of an expression, so that expressions which only
+ * differ in whitespace share a single entry. Once the cache holds its
+ * maximum number of entries, the least recently used entry is evicted.
+ *
+ * @param <V> the type of compiled expression held by this cache
+ */
+public final class ExpressionCache<V> {
+
+    /**
+     * Default maximum number of entries held by a cache.
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 4096;
+
+    /**
+     * Initial capacity of the backing map.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Load factor of the backing map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * Cached entries, in least to most recently used order.
+     */
+    private final Map<String, V> entries;
+
+    /**
+     * Builds the compiled form of an expression on a cache miss.
+     */
+    private final Function<String, V> loader;
+
+    /**
+     * Maximum number of entries held by this cache.
+     */
+    private final int maximumSize;
+
+    /**
+     * Number of lookups that found a cached entry.
+     */
+    private final LongAdder hitCount = new LongAdder();
+
+    /**
+     * Number of lookups that had to load a new entry.
+     */
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * Number of entries evicted to respect the maximum size.
+     */
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Creates a new expression cache.
+     *
+     * @param maximumSize maximum number of entries to hold
+     * @param loader builds the compiled form of a normalized expression
+     * @throws IllegalArgumentException if maximumSize is not positive
+     */
+    public ExpressionCache(int maximumSize, Function<String, V> loader) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive: "
+                + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.loader = loader;
+        entries = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+    }
+
+    /**
+     * Gets the compiled form of an expression, loading it if it is not
+     * already cached. The loader is called without holding the cache lock,
+     * so concurrent misses on the same expression may load it more than
+     * once; only the first loaded value is kept.
+     *
+     * @param expression the expression text
+     * @return compiled form of the expression
+     */
+    public V get(String expression) {
+        final String key = normalize(expression);
+        V value;
+        synchronized (entries) {
+            value = entries.get(key);
+        }
+
+        if (value == null) {
+            missCount.increment();
+            final V loaded = loader.apply(key);
+            synchronized (entries) {
+                value = entries.putIfAbsent(key, loaded);
+                if (value == null) {
+                    value = loaded;
+                    evictIfNecessary();
+                }
+            }
+        }
+        else {
+            hitCount.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Removes least recently used entries until this cache respects its
+     * maximum size. Must be called while holding the lock on entries.
+     */
+    private void evictIfNecessary() {
+        final Iterator<String> iterator = entries.keySet().iterator();
+        while (entries.size() > maximumSize) {
+            iterator.next();
+            iterator.remove();
+            evictionCount.increment();
+        }
+    }
+
+    /**
+     * Removes all entries from this cache. Counters are not reset.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Gets the number of entries currently held by this cache.
+     *
+     * @return number of cached entries
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Gets the maximum number of entries held by this cache.
+     *
+     * @return maximum size
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Gets the number of lookups that found a cached entry.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Gets the number of lookups that had to load a new entry.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Gets the number of entries evicted to respect the maximum size.
+     *
+     * @return eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Normalizes the whitespace in an expression. Whitespace is dropped,
+     * except for a single space between two characters that could
+     * otherwise merge into one token, such as the digits in "1 2".
+     *
+     * @param expression the expression text
+     * @return normalized expression text
+     */
+    public static String normalize(String expression) {
+        final StringBuilder builder = new StringBuilder(expression.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < expression.length(); i++) {
+            final char character = expression.charAt(i);
+            if (isWhitespace(character)) {
+                pendingSpace = builder.length() > 0;
+            }
+            else {
+                if (pendingSpace && isWordCharacter(character)
+                    && isWordCharacter(builder.charAt(builder.length() - 1))) {
+                    builder.append(' ');
+                }
+                builder.append(character);
+                pendingSpace = false;
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Determines if a character is whitespace according to the grammar.
+     *
+     * @param character the character to check
+     * @return true if character is skipped by the lexer
+     */
+    private static boolean isWhitespace(char character) {
+        return character == ' ' || character == '\t'
+            || character == '\r' || character == '\n';
+    }
+
+    /**
+     * Determines if a character can be part of a number or identifier.
+     *
+     * @param character the character to check
+     * @return true if character is a letter, digit or decimal point
+     */
+    private static boolean isWordCharacter(char character) {
+        return Character.isLetterOrDigit(character) || character == '.';
+    }
+}
@@ -29,10 +29,28 @@
 package parsevamath.tools;
 
 /**
- * This class represents the ancestor of all ast nodes.
- *
- * @noinspection MarkerInterface
+ * This interface represents the ancestor of all ast nodes. The hierarchy is
+ * sealed, and every node is immutable.
  */
-public interface ExpressionNode {
+public sealed interface ExpressionNode
+    permits InfixExpressionNode, NegateNode, MethodNode, NumberNode,
+    ConstantNode, FactorialNode, VariableNode {
+
+    /**
+     * Calls the visit method of the visitor for this node's concrete type.
+     *
+     * @param visitor the visitor to accept
+     * @param <T> the return type of the visitor
+     * @return the result of visiting this node
+     */
+    <T> T accept(AbstractMathAstVisitor<T> visitor);
 
+    /**
+     * Calls the visit method of the evaluator for this node's concrete type.
+     *
+     * @param evaluator the evaluator to accept
+     * @param variables the values of the variables, indexed by slot
+     * @return the value of this node
+     */
+    double accept(DoubleEvaluator evaluator, double[] variables);
 }
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+
+import parsevamath.tools.grammar.MathParser;
+
+/**
+ * This class is the parsing front-end of parseva-math, turning expression
+ * text into either a heterogeneous or homogeneous ast.
+ *
+ * <p>Expressions are parsed in two stages. The first stage uses the cheaper
+ * SLL prediction mode, without error recovery or reporting, and gives up on
+ * the first syntax error. Only then is the expression parsed again in full
+ * LL mode, with the usual error recovery and reporting. As SLL is enough
+ * for every valid expression of the grammar, the second stage only runs for
+ * invalid ones. When building a heterogeneous ast, the first stage builds
+ * it directly while parsing, without a parse tree.
+ *
+ * <p>Each thread reuses its own {@link TwoStageParser} instances, so that
+ * parsing a short expression does not pay for setting up a lexer and a
+ * parser.
+ */
+public final class ExpressionParser {
+
+    /**
+     * Reports syntax errors by throwing, instead of printing them and
+     * recovering from them.
+     */
+    private static final ANTLRErrorListener SYNTAX_ERROR_THROWER = new BaseErrorListener() {
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol,
+                                int line, int charPositionInLine, String msg,
+                                RecognitionException exception) {
+            throw new IllegalArgumentException("line " + line + ":" + charPositionInLine
+                + " " + msg, exception);
+        }
+    };
+
+    /**
+     * Parsers of each thread that print syntax errors and recover from
+     * them.
+     */
+    private static final ThreadLocal<TwoStageParser> LENIENT_PARSERS =
+        ThreadLocal.withInitial(() -> new TwoStageParser(ConsoleErrorListener.INSTANCE));
+
+    /**
+     * Parsers of each thread that throw on the first syntax error.
+     */
+    private static final ThreadLocal<TwoStageParser> STRICT_PARSERS =
+        ThreadLocal.withInitial(() -> new TwoStageParser(SYNTAX_ERROR_THROWER));
+
+    /**
+     * Prevent instantiation.
+     */
+    private ExpressionParser() {
+    }
+
+    /**
+     * Parses an expression into an antlr parse tree.
+     *
+     * @param exprInput the expression to parse
+     * @return compilation unit of expression
+     */
+    public static MathParser.CompilationUnitContext parse(String exprInput) {
+        return parseTwoStage(LENIENT_PARSERS.get(), CharStreams.fromString(exprInput));
+    }
+
+    /**
+     * Parses an expression into an antlr parse tree, failing on the first
+     * syntax error instead of recovering from it.
+     *
+     * @param exprInput the expression to parse
+     * @return compilation unit of expression
+     * @throws IllegalArgumentException on a syntax error
+     */
+    public static MathParser.CompilationUnitContext parseStrictly(String exprInput) {
+        return parseStrictly(CharStreams.fromString(exprInput));
+    }
+
+    /**
+     * Parses the characters of an expression into an antlr parse tree,
+     * failing on the first syntax error instead of recovering from it.
+     *
+     * @param input the characters of the expression to parse
+     * @return compilation unit of expression
+     * @throws IllegalArgumentException on a syntax error
+     */
+    public static MathParser.CompilationUnitContext parseStrictly(CharStream input) {
+        return parseTwoStage(STRICT_PARSERS.get(), input);
+    }
+
+    /**
+     * Builds the heterogeneous ast of an expression. Each variable gets the
+     * next free slot, in order of first appearance.
+     *
+     * @param exprInput the expression to build ast for
+     * @return root of the expression tree
+     */
+    public static ExpressionNode buildExpressionTree(String exprInput) {
+        return buildTwoStage(LENIENT_PARSERS.get(), CharStreams.fromString(exprInput),
+            MathAstBuilder::new);
+    }
+
+    /**
+     * Builds the heterogeneous ast of an expression, giving each variable
+     * the slot of its name in the given list.
+     *
+     * @param exprInput the expression to build ast for
+     * @param variableNames names of the allowed variables, in slot order
+     * @return root of the expression tree
+     */
+    public static ExpressionNode buildExpressionTree(String exprInput,
+                                                     List<String> variableNames) {
+        return buildTwoStage(LENIENT_PARSERS.get(), CharStreams.fromString(exprInput),
+            () -> new MathAstBuilder(variableNames));
+    }
+
+    /**
+     * Builds the heterogeneous ast of an expression, failing on the first
+     * syntax error. Each variable gets the next free slot, in order of
+     * first appearance.
+     *
+     * @param exprInput the expression to build ast for
+     * @return root of the expression tree
+     * @throws IllegalArgumentException on a syntax error
+     */
+    public static ExpressionNode buildExpressionTreeStrictly(String exprInput) {
+        return buildExpressionTreeStrictly(CharStreams.fromString(exprInput));
+    }
+
+    /**
+     * Builds the heterogeneous ast of the characters of an expression,
+     * failing on the first syntax error. Each variable gets the next free
+     * slot, in order of first appearance.
+     *
+     * @param input the characters of the expression to build ast for
+     * @return root of the expression tree
+     * @throws IllegalArgumentException on a syntax error
+     */
+    public static ExpressionNode buildExpressionTreeStrictly(CharStream input) {
+        return buildTwoStage(STRICT_PARSERS.get(), input, MathAstBuilder::new);
+    }
+
+    /**
+     * Builds the homogeneous ast of an expression.
+     *
+     * @param exprInput the expression to build ast for
+     * @return MathAstNode of expression
+     */
+    public static MathAstNode buildMathAstNodeTree(String exprInput) {
+        return new HomogeneousAstVisitor().visit(parse(exprInput));
+    }
+
+    /**
+     * Parses the characters of an expression into an antlr parse tree.
+     *
+     * @param parsers the parser of the current thread
+     * @param input the characters of the expression
+     * @return compilation unit of expression
+     */
+    private static MathParser.CompilationUnitContext parseTwoStage(TwoStageParser parsers,
+                                                                   CharStream input) {
+        return parsers.parse(input, MathParser::compilationUnit, MathParser::compilationUnit);
+    }
+
+    /**
+     * Builds the heterogeneous ast of the characters of an expression. The
+     * first stage builds the ast with {@link DirectAstBuilder} as it
+     * parses, without a parse tree. If that fails, the second stage parses
+     * into a parse tree, and builds the ast from it.
+     *
+     * @param parsers the parser of the current thread
+     * @param input the characters of the expression
+     * @param builders creates the ast builder of each stage
+     * @return root of the expression tree
+     */
+    private static ExpressionNode buildTwoStage(TwoStageParser parsers, CharStream input,
+                                                Supplier<MathAstBuilder> builders) {
+        return parsers.parse(input,
+            parser -> DirectAstBuilder.buildExpressionTree(parser, builders.get()),
+            parser -> builders.get().visitCompilationUnit(parser.compilationUnit()));
+    }
+
+    /**
+     * Gets the number of expressions parsed since the JVM started.
+     *
+     * @return parse count
+     */
+    public static long getParseCount() {
+        return TwoStageParser.getParseCount();
+    }
+
+    /**
+     * Gets the number of expressions that failed to parse in SLL mode, and
+     * were parsed again in full LL mode.
+     *
+     * @return fallback count
+     */
+    public static long getFallbackCount() {
+        return TwoStageParser.getFallbackCount();
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.stream.Collectors;
+
+/**
+ * This class prints an expression tree as the text of an expression, which
+ * parses back to a tree of the same value. Parentheses are only added where
+ * the precedence of the grammar requires them; since the factorial has the
+ * lowest precedence, its operand and its uses are always parenthesized.
+ * Numbers that are not finite, which only constant folding produces, print
+ * as the parenthesized division by zero that evaluates to them.
+ */
+final class ExpressionPrinter extends AbstractMathAstVisitor<String> {
+
+    /**
+     * Precedence of the factorial.
+     */
+    private static final int FACTORIAL = 0;
+
+    /**
+     * Precedence of addition and subtraction.
+     */
+    private static final int ADDITIVE = 1;
+
+    /**
+     * Precedence of multiplication and division.
+     */
+    private static final int MULTIPLICATIVE = 2;
+
+    /**
+     * Precedence of negation, and of negative numbers.
+     */
+    private static final int PREFIX = 3;
+
+    /**
+     * Precedence of numbers, constants, variables and function calls.
+     */
+    private static final int PRIMARY = 4;
+
+    /**
+     * Magnitude below which every integer is exactly representable as a
+     * double.
+     */
+    private static final double MAX_EXACT_INTEGER = 0x1p53;
+
+    /**
+     * Prevent instantiation outside of {@link #print(ExpressionNode)}.
+     */
+    private ExpressionPrinter() {
+    }
+
+    /**
+     * Prints an expression tree.
+     *
+     * @param root root of the expression tree
+     * @return text of the expression
+     */
+    static String print(ExpressionNode root) {
+        return new ExpressionPrinter().visit(root);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation prints the sum of this node's two descendants.
+     */
+    @Override
+    String visit(AdditionNode node) {
+        return printOperation(node, " + ", ADDITIVE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation prints the difference of this node's two
+     * descendants.
+     */
+    @Override
+    String visit(SubtractionNode node) {
+        return printOperation(node, " - ", ADDITIVE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation prints the product of this node's two
+     * descendants.
+     */
+    @Override
+    String visit(MultiplicationNode node) {
+        return printOperation(node, " * ", MULTIPLICATIVE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation prints the quotient of this node's two
+     * descendants.
+     */
+    @Override
+    String visit(DivisionNode node) {
+        return printOperation(node, " / ", MULTIPLICATIVE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation prints the node's inner node after a minus sign,
+     * parenthesized unless it is a prefix or primary expression.
+     */
+    @Override
+    String visit(NegateNode node) {
+        return "-" + printOperand(node.innerNode(), precedence(node.innerNode()) < PREFIX);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation prints the name of the function followed by its
+     * arguments in parentheses.
+     */
+    @Override
+    String visit(MethodNode node) {
+        return node.functionName() + enclose(node.arguments().stream()
+            .map(this::visit)
+            .collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation prints integers without a fractional part,
+     * infinities and NaN as {@code (1 / 0)}, {@code (-1 / 0)} and
+     * {@code (0 / 0)}, and other numbers as {@link Double#toString(double)}
+     * does.
+     */
+    @Override
+    String visit(NumberNode node) {
+        final double value = node.value();
+        final String result;
+        if (Double.isNaN(value)) {
+            result = "(0 / 0)";
+        }
+        else if (value == Double.POSITIVE_INFINITY) {
+            result = "(1 / 0)";
+        }
+        else if (value == Double.NEGATIVE_INFINITY) {
+            result = "(-1 / 0)";
+        }
+        else if (value == Math.rint(value) && Math.abs(value) < MAX_EXACT_INTEGER) {
+            result = Long.toString((long) value);
+        }
+        else {
+            result = Double.toString(value);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation prints the name of this constant.
+     */
+    @Override
+    String visit(ConstantNode node) {
+        final String result;
+        if (node.value() == Math.PI) {
+            result = "pi";
+        }
+        else {
+            result = "e";
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation prints the node's inner node followed by an
+     * exclamation mark, parenthesized unless it is a primary expression.
+     */
+    @Override
+    String visit(FactorialNode node) {
+        return printOperand(node.innerNode(), precedence(node.innerNode()) < PRIMARY) + "!";
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation prints the name of this variable.
+     */
+    @Override
+    String visit(VariableNode node) {
+        return node.name();
+    }
+
+    /**
+     * Prints an infix operation. Operators of equal precedence are left
+     * associative, so only a right operand of equal precedence is
+     * parenthesized.
+     *
+     * @param node the operation to print
+     * @param operator text of the operator
+     * @param precedence precedence of the operator
+     * @return text of the operation
+     */
+    private String printOperation(InfixExpressionNode node, String operator, int precedence) {
+        return printOperand(node.left(), precedence(node.left()) < precedence) + operator
+            + printOperand(node.right(), precedence(node.right()) <= precedence);
+    }
+
+    /**
+     * Prints an operand.
+     *
+     * @param node the operand to print
+     * @param parenthesize whether to enclose the operand in parentheses
+     * @return text of the operand
+     */
+    private String printOperand(ExpressionNode node, boolean parenthesize) {
+        final String text = visit(node);
+        final String result;
+        if (parenthesize) {
+            result = enclose(text);
+        }
+        else {
+            result = text;
+        }
+        return result;
+    }
+
+    /**
+     * Encloses text in parentheses.
+     *
+     * @param text the text to enclose
+     * @return text in parentheses
+     */
+    private static String enclose(String text) {
+        return "(" + text + ")";
+    }
+
+    /**
+     * Gets the precedence of the operation at the root of a tree.
+     *
+     * @param node root of the tree
+     * @return precedence of node
+     */
+    private static int precedence(ExpressionNode node) {
+        final int result;
+        if (node instanceof AdditionNode || node instanceof SubtractionNode) {
+            result = ADDITIVE;
+        }
+        else if (node instanceof MultiplicationNode || node instanceof DivisionNode) {
+            result = MULTIPLICATIVE;
+        }
+        else if (node instanceof NegateNode
+            || node instanceof NumberNode number
+            && number.value() < 0 && number.value() != Double.NEGATIVE_INFINITY) {
+            result = PREFIX;
+        }
+        else if (node instanceof FactorialNode) {
+            result = FACTORIAL;
+        }
+        else {
+            result = PRIMARY;
+        }
+        return result;
+    }
+}
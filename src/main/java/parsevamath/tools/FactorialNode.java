@@ -28,32 +28,35 @@
 
 package parsevamath.tools;
 
+import java.util.Objects;
+
 /**
  * This class represents a factorial node in the ast.
+ *
+ * @param innerNode the node to calculate the factorial of
  */
-public class FactorialNode implements ExpressionNode {
+public record FactorialNode(ExpressionNode innerNode) implements ExpressionNode {
 
     /**
-     * This node is the actual numerical value of this node.
+     * Checks that the inner node is present.
      */
-    private ExpressionNode innerNode;
+    public FactorialNode {
+        Objects.requireNonNull(innerNode);
+    }
 
     /**
-     * Gets the inner node of this factorial node.
-     *
-     * @return innerNode
+     * {@inheritDoc}
      */
-    public ExpressionNode getInnerNode() {
-        return innerNode;
+    @Override
+    public <T> T accept(AbstractMathAstVisitor<T> visitor) {
+        return visitor.visit(this);
     }
 
     /**
-     * Sets the inner node.
-     *
-     * @param innerNode the node to set as inner.
+     * {@inheritDoc}
      */
-    public void setInnerNode(ExpressionNode innerNode) {
-        this.innerNode = innerNode;
+    @Override
+    public double accept(DoubleEvaluator evaluator, double[] variables) {
+        return evaluator.visit(this, variables);
     }
-
 }
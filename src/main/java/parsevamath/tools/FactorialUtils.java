@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Utility methods for factorials and the gamma function. Factorials of
+ * integers are read from a table of correctly rounded values, and the
+ * factorials of all other numbers are computed as {@code gamma(value + 1)}
+ * with the Lanczos approximation. Exact factorials are computed with the
+ * prime swing algorithm.
+ */
+public final class FactorialUtils {
+
+    /**
+     * Largest integer whose factorial is finite as a double.
+     */
+    public static final int MAX_FACTORIAL_ARGUMENT = 170;
+
+    /**
+     * Largest argument for which the gamma function is finite as a double.
+     */
+    private static final double MAX_GAMMA_ARGUMENT = 171.624_376_956_302_7;
+
+    /**
+     * Largest integer whose factorial fits in a long.
+     */
+    private static final int MAX_LONG_FACTORIAL_ARGUMENT = 20;
+
+    /**
+     * Number of factors multiplied one by one, rather than split in halves,
+     * when computing a product of many factors.
+     */
+    private static final int PRODUCT_LEAF_SIZE = 16;
+
+    /**
+     * One half.
+     */
+    private static final double HALF = 0.5;
+
+    /**
+     * Parameter g of the Lanczos approximation.
+     */
+    private static final double LANCZOS_G = 7;
+
+    /**
+     * Coefficients of the Lanczos approximation for g = 7 and n = 9.
+     */
+    private static final double[] LANCZOS_COEFFICIENTS = {
+        0.999_999_999_999_809_93,
+        676.520_368_121_885_1,
+        -1259.139_216_722_402_8,
+        771.323_428_777_653_13,
+        -176.615_029_162_140_59,
+        12.507_343_278_686_905,
+        -0.138_571_095_265_720_12,
+        9.984_369_578_019_571_6e-6,
+        1.505_632_735_149_311_6e-7,
+    };
+
+    /**
+     * Square root of two pi.
+     */
+    private static final double SQRT_TWO_PI = Math.sqrt(2 * Math.PI);
+
+    /**
+     * Factorials of 0 to {@value #MAX_LONG_FACTORIAL_ARGUMENT}.
+     */
+    private static final long[] LONG_FACTORIALS = createLongFactorials();
+
+    /**
+     * Factorials of 0 to {@value #MAX_FACTORIAL_ARGUMENT}, each rounded from
+     * its exact value.
+     */
+    private static final double[] FACTORIALS = createFactorials();
+
+    /**
+     * Prevent instantiation.
+     */
+    private FactorialUtils() {
+    }
+
+    /**
+     * Calculates the factorial of a value. Integer values are looked up,
+     * while other values are extended to the real numbers through the gamma
+     * function, so that {@code 0.5!} is half the square root of pi.
+     * The factorial of a negative integer is undefined and returns NaN.
+     *
+     * @param value value to calculate the factorial of
+     * @return factorial of value
+     */
+    public static double factorial(double value) {
+        final double result;
+        if (value != Math.rint(value)) {
+            result = gamma(value + 1);
+        }
+        else if (value < 0) {
+            result = Double.NaN;
+        }
+        else if (value <= MAX_FACTORIAL_ARGUMENT) {
+            result = FACTORIALS[(int) value];
+        }
+        else {
+            result = Double.POSITIVE_INFINITY;
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the gamma function of a value. The gamma function has a
+     * pole at every integer that is not positive, where this method
+     * returns NaN.
+     *
+     * @param value value to calculate the gamma function of
+     * @return gamma function of value
+     */
+    public static double gamma(double value) {
+        final boolean integer = value == Math.rint(value);
+        final double result;
+        if (integer && value <= 0) {
+            result = Double.NaN;
+        }
+        else if (value > MAX_GAMMA_ARGUMENT) {
+            result = Double.POSITIVE_INFINITY;
+        }
+        else if (integer) {
+            result = FACTORIALS[(int) value - 1];
+        }
+        else if (value < HALF) {
+            // reflection formula, since the approximation needs value >= 0.5
+            result = Math.PI / (sinPi(value) * gamma(1 - value));
+        }
+        else {
+            result = lanczos(value);
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the exact factorial of an integer with the prime swing
+     * algorithm. The factorial is split as {@code n! = (n/2)!^2 * swing(n)},
+     * where the swing is the product of few prime powers, so that most of
+     * the work is spent squaring rather than on multiplying n small factors.
+     *
+     * @param value integer to calculate the factorial of
+     * @return exact factorial of value
+     * @throws IllegalArgumentException if value is negative
+     */
+    public static BigInteger exactFactorial(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Factorial of a negative integer: " + value);
+        }
+        final BigInteger result;
+        if (value <= MAX_LONG_FACTORIAL_ARGUMENT) {
+            result = BigInteger.valueOf(LONG_FACTORIALS[value]);
+        }
+        else {
+            result = primeSwingFactorial(value, primesUpTo(value));
+        }
+        return result;
+    }
+
+    /**
+     * Calculates an exact factorial recursively, as the square of the
+     * factorial of half the value times the swing of the value.
+     *
+     * @param value integer to calculate the factorial of
+     * @param primes all primes up to at least value
+     * @return exact factorial of value
+     */
+    private static BigInteger primeSwingFactorial(int value, int[] primes) {
+        final BigInteger result;
+        if (value <= MAX_LONG_FACTORIAL_ARGUMENT) {
+            result = BigInteger.valueOf(LONG_FACTORIALS[value]);
+        }
+        else {
+            final BigInteger half = primeSwingFactorial(value / 2, primes);
+            result = half.multiply(half).multiply(swing(value, primes));
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the swing of an integer, {@code n! / (n/2)!^2}. Each prime
+     * p divides the swing as many times as there are odd quotients
+     * {@code n / p^k}, and the resulting prime power never exceeds n.
+     *
+     * @param value integer to calculate the swing of
+     * @param primes all primes up to at least value
+     * @return swing of value
+     */
+    private static BigInteger swing(int value, int[] primes) {
+        final int[] factors = new int[primes.length];
+        int count = 0;
+        for (int i = 0; i < primes.length && primes[i] <= value; i++) {
+            final int prime = primes[i];
+            int power = 1;
+            int quotient = value / prime;
+            while (quotient > 0) {
+                if ((quotient & 1) == 1) {
+                    power *= prime;
+                }
+                quotient /= prime;
+            }
+            if (power > 1) {
+                factors[count] = power;
+                count++;
+            }
+        }
+        return product(factors, 0, count);
+    }
+
+    /**
+     * Multiplies a range of factors. Large ranges are split in halves, so
+     * that both operands of the final multiplications have similar sizes.
+     *
+     * @param factors the factors to multiply
+     * @param start index of the first factor, inclusive
+     * @param end index of the last factor, exclusive
+     * @return product of the factors
+     */
+    private static BigInteger product(int[] factors, int start, int end) {
+        BigInteger result = BigInteger.ONE;
+        if (end - start <= PRODUCT_LEAF_SIZE) {
+            for (int i = start; i < end; i++) {
+                result = result.multiply(BigInteger.valueOf(factors[i]));
+            }
+        }
+        else {
+            final int middle = (start + end) >>> 1;
+            result = product(factors, start, middle)
+                .multiply(product(factors, middle, end));
+        }
+        return result;
+    }
+
+    /**
+     * Finds all primes up to a value with the sieve of Eratosthenes.
+     *
+     * @param value largest candidate
+     * @return primes up to value, in ascending order
+     */
+    private static int[] primesUpTo(int value) {
+        final boolean[] composite = new boolean[value + 1];
+        final int[] primes = new int[value + 1];
+        int count = 0;
+        for (int candidate = 2; candidate <= value; candidate++) {
+            if (!composite[candidate]) {
+                primes[count] = candidate;
+                count++;
+                for (long multiple = (long) candidate * candidate; multiple <= value;
+                     multiple += candidate) {
+                    composite[(int) multiple] = true;
+                }
+            }
+        }
+        return Arrays.copyOf(primes, count);
+    }
+
+    /**
+     * Calculates the gamma function with the Lanczos approximation, which
+     * is accurate to about 15 significant digits.
+     *
+     * @param value value to calculate the gamma function of, at least 0.5
+     * @return gamma function of value
+     */
+    private static double lanczos(double value) {
+        final double shifted = value - 1;
+        double sum = LANCZOS_COEFFICIENTS[0];
+        for (int i = 1; i < LANCZOS_COEFFICIENTS.length; i++) {
+            sum += LANCZOS_COEFFICIENTS[i] / (shifted + i);
+        }
+        final double base = shifted + LANCZOS_G + HALF;
+        // base^(shifted + 0.5) is split in two factors so that it does
+        // not overflow before it is scaled down by exp(-base)
+        final double root = Math.pow(base, (shifted + HALF) / 2);
+        return SQRT_TWO_PI * root * Math.exp(-base) * root * sum;
+    }
+
+    /**
+     * Calculates {@code sin(pi * value)}, reducing the value first so that
+     * no precision is lost for large arguments.
+     *
+     * @param value the value to multiply by pi
+     * @return sine of pi times value
+     */
+    private static double sinPi(double value) {
+        return Math.sin(Math.PI * (value % 2));
+    }
+
+    /**
+     * Creates the table of factorials that fit in a long.
+     *
+     * @return factorials of 0 to {@value #MAX_LONG_FACTORIAL_ARGUMENT}
+     */
+    private static long[] createLongFactorials() {
+        final long[] factorials = new long[MAX_LONG_FACTORIAL_ARGUMENT + 1];
+        factorials[0] = 1;
+        for (int i = 1; i < factorials.length; i++) {
+            factorials[i] = factorials[i - 1] * i;
+        }
+        return factorials;
+    }
+
+    /**
+     * Creates the table of factorials that are finite as doubles. The
+     * factorials are computed exactly and rounded once, since multiplying
+     * doubles would accumulate a rounding error at every step.
+     *
+     * @return factorials of 0 to {@value #MAX_FACTORIAL_ARGUMENT}
+     */
+    private static double[] createFactorials() {
+        final double[] factorials = new double[MAX_FACTORIAL_ARGUMENT + 1];
+        BigInteger factorial = BigInteger.ONE;
+        factorials[0] = 1;
+        for (int i = 1; i < factorials.length; i++) {
+            factorial = factorial.multiply(BigInteger.valueOf(i));
+            factorials[i] = factorial.doubleValue();
+        }
+        return factorials;
+    }
+}
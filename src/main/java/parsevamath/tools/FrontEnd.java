@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * The parsing front-ends that parseva-math can use to turn expression text
+ * into an expression tree. Both front-ends build the same tree, and fail on
+ * the first syntax error.
+ */
+public enum FrontEnd {
+
+    /**
+     * Parses with the antlr generated lexer and parser, and builds the tree
+     * from the parse tree with {@link MathAstBuilder}.
+     */
+    ANTLR {
+        @Override
+        public ExpressionNode buildExpressionTree(String exprInput) {
+            return ExpressionParser.buildExpressionTreeStrictly(exprInput);
+        }
+
+        @Override
+        public ExpressionNode buildExpressionTree(CharStream input) {
+            return ExpressionParser.buildExpressionTreeStrictly(input);
+        }
+    },
+
+    /**
+     * Parses with the hand-written {@link PrattParser}, which builds the
+     * tree in a single pass.
+     */
+    PRATT {
+        @Override
+        public ExpressionNode buildExpressionTree(String exprInput) {
+            return PrattParser.buildExpressionTree(exprInput);
+        }
+
+        @Override
+        public ExpressionNode buildExpressionTree(CharStream input) {
+            return PrattParser.buildExpressionTree(input.getText(
+                Interval.of(0, input.size() - 1)));
+        }
+    };
+
+    /**
+     * Builds the expression tree of an expression. Each variable gets the
+     * next free slot, in order of first appearance.
+     *
+     * @param exprInput the expression to build ast for
+     * @return root of the expression tree
+     * @throws IllegalArgumentException on a syntax error
+     */
+    public abstract ExpressionNode buildExpressionTree(String exprInput);
+
+    /**
+     * Builds the expression tree of the characters of an expression. Each
+     * variable gets the next free slot, in order of first appearance.
+     *
+     * @param input the characters of the expression to build ast for
+     * @return root of the expression tree
+     * @throws IllegalArgumentException on a syntax error
+     */
+    public abstract ExpressionNode buildExpressionTree(CharStream input);
+}
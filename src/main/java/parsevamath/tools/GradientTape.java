@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.Arrays;
+
+import parsevamath.tools.MathFunction.DoubleTernaryOperator;
+
+/**
+ * A flattened expression that evaluates its gradient by reverse-mode
+ * automatic differentiation. Each operation of the expression is one entry
+ * of the tape, in postfix order, with its opcode in one int array and the
+ * indexes of its operand entries in another. A forward sweep computes the
+ * value of every entry, and a backward sweep then propagates the
+ * derivative of the result to every entry, ending at the variables: the
+ * whole gradient costs about as much as two evaluations, however many
+ * variables the expression has.
+ *
+ * <p>Subtrees that do not depend on a variable are folded into a single
+ * constant entry when the tape is built, so the sweeps only visit entries
+ * with a derivative. Subexpressions shared by several parents are one entry,
+ * whose derivative sums the contributions of every parent.
+ *
+ * <p>Tapes are built by {@link GradientTapeCompiler} and are immutable. The
+ * values and derivatives of the entries are held in a frame supplied by the
+ * caller, so a tape can be evaluated any number of times, by any number of
+ * threads with a frame each, without allocating.
+ */
+public final class GradientTape implements CompiledExpression {
+
+    /**
+     * Reads a constant from the pool. Operand: index in the pool.
+     */
+    static final int CONST = 0;
+
+    /**
+     * Reads a variable. Operand: slot of the variable.
+     */
+    static final int VARIABLE = 1;
+
+    /**
+     * Adds two entries.
+     */
+    static final int ADD = 2;
+
+    /**
+     * Subtracts two entries.
+     */
+    static final int SUB = 3;
+
+    /**
+     * Multiplies two entries.
+     */
+    static final int MUL = 4;
+
+    /**
+     * Divides two entries.
+     */
+    static final int DIV = 5;
+
+    /**
+     * Negates an entry.
+     */
+    static final int NEG = 6;
+
+    /**
+     * Applies a unary function to an entry. Operands: the entry, and the
+     * index in the function table.
+     */
+    static final int CALL1 = 7;
+
+    /**
+     * Applies a binary function to two entries. Operands: the entries, and
+     * the index in the function table.
+     */
+    static final int CALL2 = 8;
+
+    /**
+     * Computes the fused multiply-add of three entries.
+     */
+    static final int FMA = 9;
+
+    /**
+     * Number of operands stored for each entry.
+     */
+    static final int OPERAND_COUNT = 3;
+
+    /**
+     * Message of the exception thrown on an unknown opcode.
+     */
+    private static final String UNKNOWN_OPCODE = "Unknown opcode: ";
+
+    /**
+     * Opcode of each entry, in postfix order.
+     */
+    private final int[] opcodes;
+
+    /**
+     * Operands of each entry, {@link #OPERAND_COUNT} per entry.
+     */
+    private final int[] operands;
+
+    /**
+     * Constant pool.
+     */
+    private final double[] constants;
+
+    /**
+     * Function table.
+     */
+    private final MathFunction[] functions;
+
+    /**
+     * Partial derivative of each function of the table with respect to its
+     * first argument, given the arguments and the value of the function.
+     */
+    private final DoubleTernaryOperator[] firstPartials;
+
+    /**
+     * Partial derivative of each binary function of the table with respect
+     * to its second argument, given the arguments and the value of the
+     * function; null for unary functions.
+     */
+    private final DoubleTernaryOperator[] secondPartials;
+
+    /**
+     * Number of variable slots read by this tape.
+     */
+    private final int variableCount;
+
+    /**
+     * Creates a new tape. The arrays are not copied.
+     *
+     * @param opcodes opcode of each entry, in postfix order
+     * @param operands operands of each entry
+     * @param constants constant pool
+     * @param functions function table
+     * @param firstPartials partial derivatives by the first argument
+     * @param secondPartials partial derivatives by the second argument
+     * @param variableCount number of variable slots read by the tape
+     */
+    GradientTape(int[] opcodes, int[] operands, double[] constants, MathFunction[] functions,
+                 DoubleTernaryOperator[] firstPartials, DoubleTernaryOperator[] secondPartials,
+                 int variableCount) {
+        this.opcodes = opcodes;
+        this.operands = operands;
+        this.constants = constants;
+        this.functions = functions;
+        this.firstPartials = firstPartials;
+        this.secondPartials = secondPartials;
+        this.variableCount = variableCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation allocates a new frame for each evaluation; use
+     * {@link #evaluate(double[], double[])} to reuse one.
+     */
+    @Override
+    public double evaluate(double[] variables) {
+        return evaluate(variables, new double[getFrameSize()]);
+    }
+
+    /**
+     * Evaluates this tape on the given frame, without its gradient.
+     *
+     * @param variables the values of the variables, indexed by slot
+     * @param frame frame of at least {@link #getFrameSize()} slots
+     * @return the value of the expression
+     */
+    public double evaluate(double[] variables, double[] frame) {
+        forward(variables, frame);
+        return frame[opcodes.length - 1];
+    }
+
+    /**
+     * Evaluates this tape and its gradient on the given frame.
+     *
+     * @param variables the values of the variables, indexed by slot
+     * @param gradient receives the partial derivative of the expression with
+     *     respect to each variable, indexed by slot; it must have at least
+     *     {@link #getVariableCount()} slots
+     * @param frame frame of at least {@link #getFrameSize()} slots
+     * @return the value of the expression
+     */
+    public double evaluate(double[] variables, double[] gradient, double[] frame) {
+        forward(variables, frame);
+        Arrays.fill(gradient, 0, variableCount, 0);
+        backward(frame, gradient);
+        return frame[opcodes.length - 1];
+    }
+
+    /**
+     * Evaluates the gradient of this tape. This method allocates the
+     * gradient and a frame; use {@link #evaluate(double[], double[], double[])}
+     * to reuse them.
+     *
+     * @param variables the values of the variables, indexed by slot
+     * @return the partial derivative of the expression with respect to each
+     *     variable, indexed by slot
+     */
+    public double[] gradient(double[] variables) {
+        final double[] gradient = new double[variableCount];
+        evaluate(variables, gradient, new double[getFrameSize()]);
+        return gradient;
+    }
+
+    /**
+     * Computes the value of every entry, in tape order.
+     *
+     * @param variables the values of the variables, indexed by slot
+     * @param frame receives the value of each entry
+     * @throws IllegalStateException on unknown opcode
+     */
+    private void forward(double[] variables, double[] frame) {
+        for (int entry = 0; entry < opcodes.length; entry++) {
+            final int operand = entry * OPERAND_COUNT;
+            final int first = operands[operand];
+            final int second = operands[operand + 1];
+            final int third = operands[operand + 2];
+            final int opcode = opcodes[entry];
+            frame[entry] = switch (opcode) {
+                case CONST -> constants[first];
+                case VARIABLE -> variables[first];
+                case ADD -> frame[first] + frame[second];
+                case SUB -> frame[first] - frame[second];
+                case MUL -> frame[first] * frame[second];
+                case DIV -> frame[first] / frame[second];
+                case NEG -> -frame[first];
+                case CALL1 -> functions[second].apply(frame[first]);
+                case CALL2 -> functions[third].apply(frame[first], frame[second]);
+                case FMA -> Math.fma(frame[first], frame[second], frame[third]);
+                default -> throw new IllegalStateException(UNKNOWN_OPCODE + opcode);
+            };
+        }
+    }
+
+    /**
+     * Propagates the derivative of the result to every entry, in reverse
+     * tape order, and adds the derivative of each variable entry to the
+     * gradient. Entries whose derivative is zero are skipped, so that an
+     * infinite partial derivative behind them does not turn it into NaN.
+     *
+     * @param frame the value of each entry, followed by room for the
+     *     derivative of each entry
+     * @param gradient receives the derivative of each variable
+     * @throws IllegalStateException on unknown opcode
+     */
+    private void backward(double[] frame, double[] gradient) {
+        final int length = opcodes.length;
+        Arrays.fill(frame, length, 2 * length - 1, 0);
+        frame[2 * length - 1] = 1;
+        for (int entry = length - 1; entry >= 0; entry--) {
+            final double adjoint = frame[length + entry];
+            if (adjoint != 0) {
+                final int operand = entry * OPERAND_COUNT;
+                final int first = operands[operand];
+                final int second = operands[operand + 1];
+                final int third = operands[operand + 2];
+                final int opcode = opcodes[entry];
+                switch (opcode) {
+                    case CONST -> {
+                        // Constants have no operands.
+                    }
+                    case VARIABLE -> {
+                        gradient[first] += adjoint;
+                    }
+                    case ADD -> {
+                        frame[length + first] += adjoint;
+                        frame[length + second] += adjoint;
+                    }
+                    case SUB -> {
+                        frame[length + first] += adjoint;
+                        frame[length + second] -= adjoint;
+                    }
+                    case MUL -> {
+                        frame[length + first] += adjoint * frame[second];
+                        frame[length + second] += adjoint * frame[first];
+                    }
+                    case DIV -> {
+                        frame[length + first] += adjoint / frame[second];
+                        frame[length + second] -= adjoint * frame[entry] / frame[second];
+                    }
+                    case NEG -> {
+                        frame[length + first] -= adjoint;
+                    }
+                    case CALL1 -> {
+                        frame[length + first] += adjoint
+                            * firstPartials[second].applyAsDouble(frame[first], 0, frame[entry]);
+                    }
+                    case CALL2 -> {
+                        frame[length + first] += adjoint * firstPartials[third]
+                            .applyAsDouble(frame[first], frame[second], frame[entry]);
+                        frame[length + second] += adjoint * secondPartials[third]
+                            .applyAsDouble(frame[first], frame[second], frame[entry]);
+                    }
+                    case FMA -> {
+                        frame[length + first] += adjoint * frame[second];
+                        frame[length + second] += adjoint * frame[first];
+                        frame[length + third] += adjoint;
+                    }
+                    default -> throw new IllegalStateException(UNKNOWN_OPCODE + opcode);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of entries of this tape.
+     *
+     * @return length of the tape
+     */
+    public int getLength() {
+        return opcodes.length;
+    }
+
+    /**
+     * Gets the number of variable slots read by this tape, which is one
+     * more than the highest slot of its variables.
+     *
+     * @return number of variable slots
+     */
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    /**
+     * Gets the number of slots in a frame passed to the evaluate methods:
+     * the value of each entry, followed by its derivative.
+     *
+     * @return frame size
+     */
+    public int getFrameSize() {
+        return 2 * opcodes.length;
+    }
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import parsevamath.tools.MathFunction.DoubleTernaryOperator;
+
+/**
+ * This class lowers an expression tree into a {@link GradientTape}. Nodes
+ * are emitted in postfix order, each node once however many parents share
+ * it, and subtrees without variables are evaluated and emitted as a single
+ * constant. Functions are resolved, together with their partial
+ * derivatives, into a function table.
+ *
+ * <p>Each visit method emits the entry of a node and returns its index.
+ * The partial derivatives follow the same rules as {@link DerivativeVisitor},
+ * so the factorial of an expression that depends on a variable, and
+ * unknown functions of such an expression, cannot be compiled.
+ */
+public final class GradientTapeCompiler extends AbstractMathAstVisitor<Integer> {
+
+    /**
+     * Initial capacity of the entry buffers.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The number three.
+     */
+    private static final double THREE = 3;
+
+    /**
+     * The natural logarithm of ten.
+     */
+    private static final double LN10 = Math.log(10);
+
+    /**
+     * The number of degrees in a radian.
+     */
+    private static final double DEGREES_PER_RADIAN = Math.toDegrees(1);
+
+    /**
+     * The number of radians in a degree.
+     */
+    private static final double RADIANS_PER_DEGREE = Math.toRadians(1);
+
+    /**
+     * Partial derivative of each function with respect to its first
+     * argument, given the arguments and the value of the function.
+     */
+    private static final Map<MathFunction, DoubleTernaryOperator> FIRST_PARTIALS =
+        new EnumMap<>(MathFunction.class);
+
+    /**
+     * Partial derivative of each binary function with respect to its
+     * second argument, given the arguments and the value of the function.
+     */
+    private static final Map<MathFunction, DoubleTernaryOperator> SECOND_PARTIALS =
+        new EnumMap<>(MathFunction.class);
+
+    static {
+        putUnaryPartials();
+        putBinaryPartials();
+    }
+
+    /**
+     * Opcode buffer.
+     */
+    private int[] opcodes = new int[INITIAL_CAPACITY];
+
+    /**
+     * Operand buffer.
+     */
+    private int[] operands = new int[INITIAL_CAPACITY * GradientTape.OPERAND_COUNT];
+
+    /**
+     * Number of entries emitted so far.
+     */
+    private int length;
+
+    /**
+     * Index of each constant in the pool, keyed on the bits of the value.
+     */
+    private final Map<Long, Integer> constantIndexes = new TreeMap<>();
+
+    /**
+     * Constant pool, in index order.
+     */
+    private final List<Double> constants = new ArrayList<>();
+
+    /**
+     * Function table, in index order.
+     */
+    private final List<MathFunction> functions = new ArrayList<>();
+
+    /**
+     * Entry of each node emitted so far.
+     */
+    private final Map<ExpressionNode, Integer> entries = new IdentityHashMap<>();
+
+    /**
+     * Whether each node examined so far is free of variables.
+     */
+    private final Map<ExpressionNode, Boolean> constantNodes = new IdentityHashMap<>();
+
+    /**
+     * Evaluates the subtrees that are free of variables.
+     */
+    private final DoubleEvaluator evaluator = new DoubleEvaluator();
+
+    /**
+     * One more than the highest variable slot emitted so far.
+     */
+    private int variableCount;
+
+    /**
+     * Prevent instantiation outside of {@link #compile(ExpressionNode)}.
+     */
+    private GradientTapeCompiler() {
+    }
+
+    /**
+     * Compiles an expression tree into a gradient tape.
+     *
+     * @param root root of the expression tree
+     * @return compiled tape
+     * @throws IllegalArgumentException if the tree cannot be differentiated
+     */
+    public static GradientTape compile(ExpressionNode root) {
+        final GradientTapeCompiler compiler = new GradientTapeCompiler();
+        compiler.visit(root);
+        final double[] pool = compiler.constants.stream()
+            .mapToDouble(Double::doubleValue)
+            .toArray();
+        final MathFunction[] table = compiler.functions.toArray(new MathFunction[0]);
+        final DoubleTernaryOperator[] firstPartials = new DoubleTernaryOperator[table.length];
+        final DoubleTernaryOperator[] secondPartials = new DoubleTernaryOperator[table.length];
+        for (int index = 0; index < table.length; index++) {
+            firstPartials[index] = FIRST_PARTIALS.get(table[index]);
+            secondPartials[index] = SECOND_PARTIALS.get(table[index]);
+        }
+        return new GradientTape(Arrays.copyOf(compiler.opcodes, compiler.length),
+            Arrays.copyOf(compiler.operands, compiler.length * GradientTape.OPERAND_COUNT),
+            pool, table, firstPartials, secondPartials, compiler.variableCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns the entry of nodes that were already
+     * emitted, and emits subtrees free of variables as their value.
+     */
+    @Override
+    public Integer visit(ExpressionNode node) {
+        Integer entry = entries.get(node);
+        if (entry == null) {
+            if (isConstant(node)) {
+                entry = emitConstant(evaluator.visit(node));
+            }
+            else {
+                entry = super.visit(node);
+            }
+            entries.put(node, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits an add entry.
+     */
+    @Override
+    Integer visit(AdditionNode node) {
+        return emitInfix(node, GradientTape.ADD);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a sub entry.
+     */
+    @Override
+    Integer visit(SubtractionNode node) {
+        return emitInfix(node, GradientTape.SUB);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a mul entry.
+     */
+    @Override
+    Integer visit(MultiplicationNode node) {
+        return emitInfix(node, GradientTape.MUL);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a div entry.
+     */
+    @Override
+    Integer visit(DivisionNode node) {
+        return emitInfix(node, GradientTape.DIV);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a neg entry.
+     */
+    @Override
+    Integer visit(NegateNode node) {
+        return emit(GradientTape.NEG, visit(node.innerNode()), 0, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits the arguments followed by a call entry
+     * for the arity of the function, or an fma entry.
+     *
+     * @throws IllegalArgumentException if the function could not be resolved
+     */
+    @Override
+    Integer visit(MethodNode node) {
+        final MathFunction function = node.function();
+        if (function == null) {
+            throw new IllegalArgumentException("Cannot differentiate unknown function: "
+                + node.functionName());
+        }
+        final int[] arguments = node.arguments().stream()
+            .mapToInt(this::visit)
+            .toArray();
+        final int entry;
+        if (function == MathFunction.FMA) {
+            entry = emit(GradientTape.FMA, arguments[0], arguments[1], arguments[2]);
+        }
+        else if (arguments.length == 1) {
+            entry = emit(GradientTape.CALL1, arguments[0], functionIndex(function), 0);
+        }
+        else {
+            entry = emit(GradientTape.CALL2, arguments[0], arguments[1],
+                functionIndex(function));
+        }
+        return entry;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a const entry.
+     */
+    @Override
+    Integer visit(NumberNode node) {
+        return emitConstant(node.value());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a const entry.
+     */
+    @Override
+    Integer visit(ConstantNode node) {
+        return emitConstant(node.value());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>A factorial reaches this method only if its operand depends on a
+     * variable, which has no derivative.
+     *
+     * @throws IllegalArgumentException always
+     */
+    @Override
+    Integer visit(FactorialNode node) {
+        throw new IllegalArgumentException(
+            "Cannot differentiate factorial of expression with variables");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a variable entry.
+     */
+    @Override
+    Integer visit(VariableNode node) {
+        variableCount = Math.max(variableCount, node.slot() + 1);
+        return emit(GradientTape.VARIABLE, node.slot(), 0, 0);
+    }
+
+    /**
+     * Determines if a subtree is free of variables.
+     *
+     * @param node root of the subtree
+     * @return true if no variable is reachable from node
+     */
+    private boolean isConstant(ExpressionNode node) {
+        Boolean constant = constantNodes.get(node);
+        if (constant == null) {
+            constant = !(node instanceof VariableNode)
+                && ParsevaUtils.getOperands(node).stream().allMatch(this::isConstant);
+            constantNodes.put(node, constant);
+        }
+        return constant;
+    }
+
+    /**
+     * Emits the entries of both operands of an infix node, followed by the
+     * entry of the operator.
+     *
+     * @param node infix node
+     * @param opcode opcode of the operator
+     * @return entry of node
+     */
+    private int emitInfix(InfixExpressionNode node, int opcode) {
+        final int left = visit(node.left());
+        final int right = visit(node.right());
+        return emit(opcode, left, right, 0);
+    }
+
+    /**
+     * Emits a const entry, adding the value to the pool if needed.
+     *
+     * @param value constant value
+     * @return entry of the constant
+     */
+    private int emitConstant(double value) {
+        final Integer index = constantIndexes.computeIfAbsent(
+            Double.doubleToRawLongBits(value), bits -> {
+                constants.add(value);
+                return constants.size() - 1;
+            });
+        return emit(GradientTape.CONST, index, 0, 0);
+    }
+
+    /**
+     * Gets the index of a function in the table, adding it if needed.
+     *
+     * @param function function to look up
+     * @return index of function
+     */
+    private int functionIndex(MathFunction function) {
+        int index = functions.indexOf(function);
+        if (index < 0) {
+            functions.add(function);
+            index = functions.size() - 1;
+        }
+        return index;
+    }
+
+    /**
+     * Appends an entry to the tape.
+     *
+     * @param opcode opcode of the entry
+     * @param first first operand
+     * @param second second operand
+     * @param third third operand
+     * @return index of the entry
+     */
+    private int emit(int opcode, int first, int second, int third) {
+        if (length == opcodes.length) {
+            opcodes = Arrays.copyOf(opcodes, length * 2);
+            operands = Arrays.copyOf(operands, operands.length * 2);
+        }
+        final int operand = length * GradientTape.OPERAND_COUNT;
+        opcodes[length] = opcode;
+        operands[operand] = first;
+        operands[operand + 1] = second;
+        operands[operand + 2] = third;
+        length++;
+        return length - 1;
+    }
+
+    /**
+     * Computes the reciprocal of the square root of one minus the square of
+     * a number, the derivative of asin.
+     *
+     * @param argument the argument of asin
+     * @return derivative of asin
+     */
+    private static double arcSineDerivative(double argument) {
+        return 1 / Math.sqrt(1 - argument * argument);
+    }
+
+    /**
+     * Registers the derivatives of the functions of one argument, given the
+     * argument, an unused operand and the value of the function.
+     */
+    private static void putUnaryPartials() {
+        for (MathFunction function : EnumSet.of(MathFunction.CEIL, MathFunction.FLOOR,
+            MathFunction.GET_EXPONENT, MathFunction.RINT, MathFunction.ROUND,
+            MathFunction.SIGNUM, MathFunction.ULP)) {
+            // These functions are piecewise constant.
+            FIRST_PARTIALS.put(function, (argument, unused, value) -> 0);
+        }
+        FIRST_PARTIALS.put(MathFunction.ABS, (argument, unused, value) -> Math.signum(argument));
+        FIRST_PARTIALS.put(MathFunction.ACOS,
+            (argument, unused, value) -> -arcSineDerivative(argument));
+        FIRST_PARTIALS.put(MathFunction.ASIN,
+            (argument, unused, value) -> arcSineDerivative(argument));
+        FIRST_PARTIALS.put(MathFunction.ATAN,
+            (argument, unused, value) -> 1 / (1 + argument * argument));
+        FIRST_PARTIALS.put(MathFunction.CBRT,
+            (argument, unused, value) -> 1 / (THREE * value * value));
+        FIRST_PARTIALS.put(MathFunction.COS, (argument, unused, value) -> -Math.sin(argument));
+        FIRST_PARTIALS.put(MathFunction.COSH, (argument, unused, value) -> Math.sinh(argument));
+        FIRST_PARTIALS.put(MathFunction.EXP, (argument, unused, value) -> value);
+        FIRST_PARTIALS.put(MathFunction.EXPM1, (argument, unused, value) -> value + 1);
+        FIRST_PARTIALS.put(MathFunction.LOG, (argument, unused, value) -> 1 / argument);
+        FIRST_PARTIALS.put(MathFunction.LOG10, (argument, unused, value) -> 1 / (LN10 * argument));
+        FIRST_PARTIALS.put(MathFunction.LOG1P, (argument, unused, value) -> 1 / (1 + argument));
+        FIRST_PARTIALS.put(MathFunction.NEXT_DOWN, (argument, unused, value) -> 1);
+        FIRST_PARTIALS.put(MathFunction.NEXT_UP, (argument, unused, value) -> 1);
+        FIRST_PARTIALS.put(MathFunction.SIN, (argument, unused, value) -> Math.cos(argument));
+        FIRST_PARTIALS.put(MathFunction.SINH, (argument, unused, value) -> Math.cosh(argument));
+        FIRST_PARTIALS.put(MathFunction.SQRT, (argument, unused, value) -> 1 / (2 * value));
+        FIRST_PARTIALS.put(MathFunction.TAN, (argument, unused, value) -> 1 + value * value);
+        FIRST_PARTIALS.put(MathFunction.TANH, (argument, unused, value) -> 1 - value * value);
+        FIRST_PARTIALS.put(MathFunction.TO_DEGREES,
+            (argument, unused, value) -> DEGREES_PER_RADIAN);
+        FIRST_PARTIALS.put(MathFunction.TO_RADIANS,
+            (argument, unused, value) -> RADIANS_PER_DEGREE);
+    }
+
+    /**
+     * Registers the partial derivatives of the functions of two arguments,
+     * given the arguments and the value of the function. The partial
+     * derivatives of max and min select the greater or smaller argument,
+     * and average both on a tie.
+     */
+    private static void putBinaryPartials() {
+        FIRST_PARTIALS.put(MathFunction.ATAN2,
+            (first, second, value) -> second / (first * first + second * second));
+        SECOND_PARTIALS.put(MathFunction.ATAN2,
+            (first, second, value) -> -first / (first * first + second * second));
+        FIRST_PARTIALS.put(MathFunction.COPY_SIGN,
+            (first, second, value) -> Math.signum(first) * Math.copySign(1, second));
+        SECOND_PARTIALS.put(MathFunction.COPY_SIGN, (first, second, value) -> 0);
+        FIRST_PARTIALS.put(MathFunction.HYPOT, (first, second, value) -> first / value);
+        SECOND_PARTIALS.put(MathFunction.HYPOT, (first, second, value) -> second / value);
+        FIRST_PARTIALS.put(MathFunction.IEEE_REMAINDER, (first, second, value) -> 1);
+        SECOND_PARTIALS.put(MathFunction.IEEE_REMAINDER,
+            (first, second, value) -> -Math.rint(first / second));
+        FIRST_PARTIALS.put(MathFunction.MAX,
+            (first, second, value) -> (1 + Math.signum(first - second)) / 2);
+        SECOND_PARTIALS.put(MathFunction.MAX,
+            (first, second, value) -> (1 - Math.signum(first - second)) / 2);
+        FIRST_PARTIALS.put(MathFunction.MIN, SECOND_PARTIALS.get(MathFunction.MAX));
+        SECOND_PARTIALS.put(MathFunction.MIN, FIRST_PARTIALS.get(MathFunction.MAX));
+        FIRST_PARTIALS.put(MathFunction.NEXT_AFTER, (first, second, value) -> 1);
+        SECOND_PARTIALS.put(MathFunction.NEXT_AFTER, (first, second, value) -> 0);
+        FIRST_PARTIALS.put(MathFunction.POW,
+            (first, second, value) -> second * Math.pow(first, second - 1));
+        SECOND_PARTIALS.put(MathFunction.POW, (first, second, value) -> value * Math.log(first));
+    }
+}
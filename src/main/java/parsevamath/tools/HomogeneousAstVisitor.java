@@ -235,4 +235,17 @@ public class HomogeneousAstVisitor
         astNode.setTokenType(TokenTypes.CONSTANT);
         return astNode;
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation creates an ID node named after the variable.
+     */
+    @Override
+    public MathAstNode visitVariableExpr(MathParser.VariableExprContext ctx) {
+        final MathAstNode astNode = new MathAstNodeImpl();
+        astNode.setText(ctx.getText());
+        astNode.setTokenType(TokenTypes.ID);
+        return astNode;
+    }
 }
@@ -108,4 +108,12 @@ public interface HomogeneousAstVisitorInterface extends ParseTreeVisitor<MathAst
      * @return MathAstNode tree
      */
     MathAstNode visitConstant(MathParser.ConstantContext ctx);
+
+    /**
+     * Build a variable expression node.
+     *
+     * @param ctx context to analyze
+     * @return MathAstNode tree
+     */
+    MathAstNode visitVariableExpr(MathParser.VariableExprContext ctx);
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+/**
+ * This class removes operations that leave their operand unchanged:
+ * {@code x + 0}, {@code 0 + x}, {@code x - 0}, {@code x * 1},
+ * {@code 1 * x}, {@code x / 1} and {@code --x}. The only difference this
+ * can make to a result is the sign of a zero, since {@code -0 + 0} is
+ * {@code +0}.
+ */
+final class IdentityRemovalVisitor extends AbstractRewritingVisitor {
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation drops a zero operand.
+     */
+    @Override
+    ExpressionNode visit(AdditionNode node) {
+        final ExpressionNode left = visit(node.left());
+        final ExpressionNode right = visit(node.right());
+        final ExpressionNode result;
+        if (isNumber(right, 0)) {
+            result = left;
+        }
+        else if (isNumber(left, 0)) {
+            result = right;
+        }
+        else {
+            result = new AdditionNode(left, right);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation drops a zero right operand.
+     */
+    @Override
+    ExpressionNode visit(SubtractionNode node) {
+        final ExpressionNode left = visit(node.left());
+        final ExpressionNode right = visit(node.right());
+        final ExpressionNode result;
+        if (isNumber(right, 0)) {
+            result = left;
+        }
+        else {
+            result = new SubtractionNode(left, right);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation drops an operand of one.
+     */
+    @Override
+    ExpressionNode visit(MultiplicationNode node) {
+        final ExpressionNode left = visit(node.left());
+        final ExpressionNode right = visit(node.right());
+        final ExpressionNode result;
+        if (isNumber(right, 1)) {
+            result = left;
+        }
+        else if (isNumber(left, 1)) {
+            result = right;
+        }
+        else {
+            result = new MultiplicationNode(left, right);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation drops a right operand of one.
+     */
+    @Override
+    ExpressionNode visit(DivisionNode node) {
+        final ExpressionNode left = visit(node.left());
+        final ExpressionNode right = visit(node.right());
+        final ExpressionNode result;
+        if (isNumber(right, 1)) {
+            result = left;
+        }
+        else {
+            result = new DivisionNode(left, right);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation cancels out a double negation.
+     */
+    @Override
+    ExpressionNode visit(NegateNode node) {
+        final ExpressionNode inner = visit(node.innerNode());
+        final ExpressionNode result;
+        if (inner instanceof NegateNode negateNode) {
+            result = negateNode.innerNode();
+        }
+        else {
+            result = new NegateNode(inner);
+        }
+        return result;
+    }
+}
@@ -29,53 +29,22 @@
 package parsevamath.tools;
 
 /**
- * This class represents an infixed operator in the ast.
+ * This interface represents an infixed operator in the ast.
  */
-class InfixExpressionNode implements ExpressionNode {
-
-    /**
-     * Left operand of this infix operator.
-     */
-    private ExpressionNode left;
-
-    /**
-     * Right operand of this infix operator.
-     */
-    private ExpressionNode right;
+sealed interface InfixExpressionNode extends ExpressionNode
+    permits AdditionNode, SubtractionNode, MultiplicationNode, DivisionNode {
 
     /**
      * Gets the left descendant of this node.
      *
      * @return left operand
      */
-    public ExpressionNode getLeft() {
-        return left;
-    }
-
-    /**
-     * Sets the left descendant of this node.
-     *
-     * @param left the node to set as left hand operand
-     */
-    public void setLeft(ExpressionNode left) {
-        this.left = left;
-    }
+    ExpressionNode left();
 
     /**
      * Gets the right descendant of this node.
      *
      * @return right operand
      */
-    public ExpressionNode getRight() {
-        return right;
-    }
-
-    /**
-     * Sets the right descendant of this node.
-     *
-     * @param right the node to set as right hand operand
-     */
-    public void setRight(ExpressionNode right) {
-        this.right = right;
-    }
+    ExpressionNode right();
 }
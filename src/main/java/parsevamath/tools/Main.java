@@ -28,15 +28,18 @@
 
 package parsevamath.tools;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
-import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
+import org.tinylog.Logger;
 
-import parsevamath.tools.grammar.MathLexer;
-import parsevamath.tools.grammar.MathParser;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -48,6 +51,19 @@ import picocli.CommandLine.Parameters;
  */
 public final class Main {
 
+    /**
+     * Prefix of the line printed for an expression that cannot be evaluated
+     * or differentiated.
+     */
+    private static final String ERROR_PREFIX = "error: ";
+
+    /**
+     * Cache of expression trees used by {@link #evaluate(String)}.
+     */
+    private static final ExpressionCache<ExpressionNode> EXPRESSION_CACHE =
+        new ExpressionCache<>(Integer.getInteger("parsevamath.cache.size",
+            ExpressionCache.DEFAULT_MAXIMUM_SIZE), Main::buildExpressionTree);
+
     private Main() {
         // prevent instantiation
     }
@@ -70,11 +86,19 @@ public final class Main {
 
         try {
             if (cliOptions.interactiveMode) {
-                runInteractive();
+                runInteractive(cliOptions);
+            }
+            else if (cliOptions.batchInput != null) {
+                runBatch(cliOptions);
+            }
+            else if (cliOptions.serveAddress != null) {
+                runServer(cliOptions);
+            }
+            else if (cliOptions.deriveVariable != null) {
+                printDerivative(cliOptions);
             }
             else if (cliOptions.evaluationMode) {
-                final double value = evaluate(cliOptions.expression);
-                printOutput(value);
+                printOutput(cliOptions.expression, cliOptions);
             }
             else if (commandLine.isVersionHelpRequested()) {
                 System.out.println(ParsevaUtils.getParsevaVersion());
@@ -96,9 +120,10 @@ public final class Main {
      * This method handles the "interactive mode" loop where
      * the user is prompted to enter an expression to be evaluated.
      *
+     * @param cliOptions the options to evaluate expressions with
      * @noinspection UseOfSystemOutOrSystemErr
      */
-    private static void runInteractive() {
+    private static void runInteractive(CliOptions cliOptions) {
         final Scanner scan = new Scanner(System.in,
             StandardCharsets.UTF_8);
         while (true) {
@@ -107,28 +132,257 @@ public final class Main {
             if (exprInput.isBlank()) {
                 break;
             }
-            final double value = evaluate(exprInput);
-            printOutput(value);
+            printOutput(exprInput, cliOptions);
         }
         scan.close();
     }
 
     /**
-     * This method handles the actual evaluation of the expression ast.
+     * This method handles the "batch mode", where newline delimited
+     * expressions are streamed from a file or standard input, and their
+     * values are written in the same order to a file or standard output.
+     * Syntax errors are reported on the output line of the expression. Lines
+     * are parsed as they are, without the expression cache, so that the
+     * position of a syntax error matches the input.
+     *
+     * @param cliOptions the options to evaluate expressions with
+     */
+    private static void runBatch(CliOptions cliOptions) {
+        final Optimizer optimizer = new Optimizer(cliOptions.passes);
+        final BatchRunner runner = new BatchRunner(exprInput -> {
+            final ExpressionNode root = cliOptions.frontEnd.buildExpressionTree(exprInput);
+            final double[] variables = bindVariables(root, cliOptions.variables);
+            return cliOptions.engine.compile(optimizer.optimize(root).root()).evaluate(variables);
+        });
+
+        try {
+            Logger.info(runner.run(cliOptions.batchInput, cliOptions.batchOutput));
+        }
+        catch (IOException exception) {
+            Logger.error(exception, "Could not run batch");
+        }
+    }
+
+    /**
+     * This method handles the "server mode", where expressions are evaluated
+     * for clients connecting to a local socket until the JVM is stopped.
+     *
+     * @param cliOptions the options to evaluate expressions with
+     */
+    private static void runServer(CliOptions cliOptions) {
+        try (EvaluationServer server = EvaluationServer.open(cliOptions.serveAddress,
+            cliOptions.engine, new Optimizer(cliOptions.passes), cliOptions.maxConnections)) {
+            server.closeOnShutdown();
+            Logger.info("Listening on " + server.getLocalAddress());
+            server.serve();
+        }
+        catch (IOException exception) {
+            Logger.error(exception, "Could not run server");
+        }
+    }
+
+    /**
+     * This method handles the actual evaluation of the expression ast. The
+     * expression tree is taken from the expression cache, so repeated
+     * evaluations of the same expression are only parsed once.
      *
      * @param exprInput the expression to evaluate
      * @return the value of the expression
      */
     public static Double evaluate(String exprInput) {
-        final CharStream codePointCharStream = CharStreams.fromString(exprInput);
-        final MathLexer lexer = new MathLexer(codePointCharStream);
-        final CommonTokenStream tokenStream = new CommonTokenStream(lexer);
-        final MathParser parser = new MathParser(tokenStream);
+        final ExpressionNode ast = EXPRESSION_CACHE.get(exprInput);
+        return new DoubleEvaluator().visit(ast, bindVariables(ast, Map.of()));
+    }
+
+    /**
+     * Evaluates an expression with the given engine. The expression tree is
+     * taken from the expression cache, but is compiled again on every call;
+     * use {@link #compile(String, Engine)} to evaluate an expression repeatedly.
+     *
+     * @param exprInput the expression to evaluate
+     * @param engine the engine to evaluate the expression with
+     * @return the value of the expression
+     */
+    public static double evaluate(String exprInput, Engine engine) {
+        return compile(exprInput, engine).evaluate();
+    }
+
+    /**
+     * Evaluates an expression with the given variables.
+     *
+     * @param exprInput the expression to evaluate
+     * @param engine the engine to evaluate the expression with
+     * @param variables the value of each variable, by name
+     * @return the value of the expression
+     */
+    public static double evaluate(String exprInput, Engine engine,
+                                  Map<String, Double> variables) {
+        final ExpressionNode root = EXPRESSION_CACHE.get(exprInput);
+        return engine.compile(root).evaluate(bindVariables(root, variables));
+    }
+
+    /**
+     * Evaluates an expression in decimal arithmetic with the given number of
+     * significant digits, see {@link BigDecimalEvaluator#evaluate(ExpressionNode)}.
+     * The expression tree is taken from the expression cache.
+     *
+     * @param exprInput the expression to evaluate
+     * @param digits the number of significant digits of the value
+     * @param variables the value of each variable, by name
+     * @return the value of the expression
+     * @throws ArithmeticException if the value is not a finite number
+     */
+    public static BigDecimal evaluate(String exprInput, int digits,
+                                      Map<String, Double> variables) {
+        final ExpressionNode root = EXPRESSION_CACHE.get(exprInput);
+        return BigDecimalEvaluator.withPrecision(digits, bindVariables(root, variables))
+            .evaluate(root);
+    }
+
+    /**
+     * Evaluates an expression as requested on the command line, logging
+     * the statistics of each optimization pass.
+     *
+     * @param exprInput the expression to evaluate
+     * @param cliOptions the command line options
+     * @return the value of the expression
+     */
+    private static double evaluate(String exprInput, CliOptions cliOptions) {
+        final ExpressionNode root = EXPRESSION_CACHE.get(exprInput);
+        final double[] variables = bindVariables(root, cliOptions.variables);
+        final Optimizer optimizer = new Optimizer(cliOptions.passes);
+        final Optimizer.Result result = optimizer.optimize(root);
+        for (Optimizer.PassStatistics statistics : result.statistics()) {
+            Logger.info(statistics);
+        }
+        return cliOptions.engine.compile(result.root()).evaluate(variables);
+    }
+
+    /**
+     * Compiles an expression with the given engine.
+     *
+     * @param exprInput the expression to compile
+     * @param engine the engine to compile the expression with
+     * @return the compiled expression
+     */
+    public static CompiledExpression compile(String exprInput, Engine engine) {
+        return engine.compile(EXPRESSION_CACHE.get(exprInput));
+    }
+
+    /**
+     * Optimizes an expression, and compiles it with the given engine.
+     *
+     * @param exprInput the expression to compile
+     * @param engine the engine to compile the expression with
+     * @param optimizer the optimizer to run over the expression tree
+     * @return the compiled expression
+     */
+    public static CompiledExpression compile(String exprInput, Engine engine,
+                                             Optimizer optimizer) {
+        return engine.compile(optimizer.optimize(EXPRESSION_CACHE.get(exprInput)).root());
+    }
+
+    /**
+     * Differentiates an expression symbolically with respect to a variable.
+     * The derivative is simplified, and its variables keep the slots they
+     * have in the expression.
+     *
+     * @param exprInput the expression to differentiate
+     * @param variable name of the variable to differentiate with respect to
+     * @return root of the derivative
+     * @throws IllegalArgumentException if the expression cannot be differentiated
+     */
+    public static ExpressionNode derive(String exprInput, String variable) {
+        return DerivativeVisitor.derive(EXPRESSION_CACHE.get(exprInput), variable);
+    }
+
+    /**
+     * Differentiates an expression symbolically with respect to each of its
+     * variables, and compiles each derivative with the given engine. A
+     * gradient then costs one evaluation per variable, with the variables
+     * array of the expression.
+     *
+     * @param exprInput the expression to differentiate
+     * @param engine the engine to compile the derivatives with
+     * @return the compiled derivatives, indexed by variable slot
+     * @throws IllegalArgumentException if the expression cannot be differentiated
+     */
+    public static List<CompiledExpression> compileGradient(String exprInput, Engine engine) {
+        return DerivativeVisitor.gradient(EXPRESSION_CACHE.get(exprInput)).stream()
+            .map(engine::compile)
+            .toList();
+    }
+
+    /**
+     * Compiles an expression into a tape that evaluates its gradient by
+     * reverse-mode automatic differentiation, in one forward and one
+     * backward sweep whatever the number of variables.
+     *
+     * @param exprInput the expression to compile
+     * @return the compiled tape
+     * @throws IllegalArgumentException if the expression cannot be differentiated
+     */
+    public static GradientTape compileGradientTape(String exprInput) {
+        return GradientTapeCompiler.compile(EXPRESSION_CACHE.get(exprInput));
+    }
 
-        final MathParser.CompilationUnitContext mathTree = parser.compilationUnit();
-        final ExpressionNode ast = new MathAstBuilder().visitCompilationUnit(mathTree);
+    /**
+     * Builds the variables array of an expression tree from variable values
+     * given by name.
+     *
+     * @param root root of the expression tree
+     * @param values the value of each variable, by name
+     * @return the values of the variables, indexed by slot
+     * @throws IllegalStateException if a variable of the tree has no value
+     */
+    public static double[] bindVariables(ExpressionNode root, Map<String, Double> values) {
+        final List<String> names = ParsevaUtils.getVariableNames(root);
+        final double[] variables = new double[names.size()];
+        for (int slot = 0; slot < variables.length; slot++) {
+            final String name = names.get(slot);
+            final Double value = values.get(name);
+            if (value == null) {
+                throw new IllegalStateException("Variable '" + name + "' is not bound");
+            }
+            variables[slot] = value;
+        }
+        return variables;
+    }
+
+    /**
+     * Builds the heterogeneous ast of an expression, bypassing the
+     * expression cache.
+     *
+     * @param exprInput the expression to build ast for
+     * @return root of the expression tree
+     */
+    public static ExpressionNode buildExpressionTree(String exprInput) {
+        return ExpressionParser.buildExpressionTree(exprInput);
+    }
+
+    /**
+     * Builds the heterogeneous ast of an expression, giving each variable
+     * the slot of its name in the given list. The expression cache is
+     * bypassed.
+     *
+     * @param exprInput the expression to build ast for
+     * @param variableNames names of the allowed variables, in slot order
+     * @return root of the expression tree
+     */
+    public static ExpressionNode buildExpressionTree(String exprInput,
+                                                     List<String> variableNames) {
+        return ExpressionParser.buildExpressionTree(exprInput, variableNames);
+    }
 
-        return new EvaluateExpressionVisitor().visit(ast);
+    /**
+     * Gets the cache of expression trees used by {@link #evaluate(String)}.
+     * Its maximum size can be set with the system property
+     * {@code parsevamath.cache.size}.
+     *
+     * @return the expression cache
+     */
+    public static ExpressionCache<ExpressionNode> getExpressionCache() {
+        return EXPRESSION_CACHE;
     }
 
     /**
@@ -138,12 +392,7 @@ public final class Main {
      * @return MathNodeAst of expression
      */
     public static MathAstNode buildMathAstNodeTree(String exprInput) {
-        final CharStream codePointCharStream = CharStreams.fromString(exprInput);
-        final MathLexer lexer = new MathLexer(codePointCharStream);
-        final CommonTokenStream tokenStream = new CommonTokenStream(lexer);
-        final MathParser parser = new MathParser(tokenStream);
-        final MathParser.CompilationUnitContext compilationUnit = parser.compilationUnit();
-        return new HomogeneousAstVisitor().visit(compilationUnit);
+        return ExpressionParser.buildMathAstNodeTree(exprInput);
     }
 
     /**
@@ -157,6 +406,55 @@ public final class Main {
         System.out.println(output);
     }
 
+    /**
+     * Evaluates an expression as requested on the command line, and prints
+     * its value. With a precision, the expression is evaluated in decimal
+     * arithmetic, and the engine and optimization passes do not apply; a
+     * value that is not a finite number is reported as an error. A variable
+     * without a value is reported as an error in either case.
+     *
+     * @param exprInput the expression to evaluate
+     * @param cliOptions the command line options
+     * @noinspection UseOfSystemOutOrSystemErr
+     */
+    private static void printOutput(String exprInput, CliOptions cliOptions) {
+        try {
+            if (cliOptions.precision > 0) {
+                final BigDecimal value =
+                    evaluate(exprInput, cliOptions.precision, cliOptions.variables);
+                System.out.println(String.format("= %s\n", value.toPlainString()));
+            }
+            else {
+                printOutput(evaluate(exprInput, cliOptions));
+            }
+        }
+        catch (ArithmeticException | IllegalStateException exception) {
+            System.out.println(ERROR_PREFIX + exception.getMessage());
+        }
+    }
+
+    /**
+     * Differentiates an expression as requested on the command line, and
+     * prints the derivative; in tree mode, the ast of the derivative is
+     * printed as well.
+     *
+     * @param cliOptions the command line options
+     * @noinspection UseOfSystemOutOrSystemErr
+     */
+    private static void printDerivative(CliOptions cliOptions) {
+        try {
+            final String derivative = ParsevaUtils.toExpressionString(
+                derive(cliOptions.expression, cliOptions.deriveVariable));
+            System.out.println(derivative);
+            if (cliOptions.treeMode) {
+                System.out.println(ParsevaUtils.toStringTree(buildMathAstNodeTree(derivative)));
+            }
+        }
+        catch (IllegalArgumentException exception) {
+            System.out.println(ERROR_PREFIX + exception.getMessage());
+        }
+    }
+
     /**
      * Command line options.
      *
@@ -207,6 +505,103 @@ public final class Main {
             defaultValue = "false")
         private boolean treeMode;
 
+        /**
+         * The variable to differentiate the expression with respect to.
+         */
+        @Option(names = "--derive",
+            paramLabel = "<variable>",
+            description = "Derivative mode. This option differentiates the given expression"
+                + " with respect to a variable, and prints the simplified derivative."
+                + " Example: '--derive x \"x * sin(x)\"'")
+        private String deriveVariable;
+
+        /**
+         * The file of expressions to evaluate in batch mode, or "-" for
+         * standard input.
+         */
+        @Option(names = "--batch",
+            paramLabel = "<file|->",
+            description = "Batch mode. This option evaluates each line of the given file,"
+                + " or of standard input for '-', and writes one result per line.")
+        private String batchInput;
+
+        /**
+         * The file receiving the results of batch mode.
+         */
+        @Option(names = "--output",
+            paramLabel = "<file>",
+            description = "File receiving the results of batch mode. Default: standard output.")
+        private Path batchOutput;
+
+        /**
+         * The address that server mode listens on.
+         */
+        @Option(names = "--serve",
+            paramLabel = "<address>",
+            description = "Server mode. This option listens on 'unix:<path>' or"
+                + " '[<host>]:<port>', and evaluates each line sent by clients.")
+        private String serveAddress;
+
+        /**
+         * The maximum number of connections handled at once in server mode.
+         */
+        @Option(names = "--max-connections",
+            paramLabel = "<count>",
+            description = "Maximum number of connections handled at once in server mode."
+                + " Default: ${DEFAULT-VALUE}.",
+            defaultValue = "" + EvaluationServer.DEFAULT_MAX_CONNECTIONS)
+        private int maxConnections;
+
+        /**
+         * The engine used to evaluate expressions.
+         */
+        @Option(names = "--engine",
+            description = "Evaluation engine, one of: ${COMPLETION-CANDIDATES}."
+                + " Default: ${DEFAULT-VALUE}.",
+            defaultValue = "TREE")
+        private Engine engine;
+
+        /**
+         * The front-end used to parse expressions in batch mode.
+         */
+        @Option(names = "--parser",
+            description = "Parsing front-end of batch mode, one of: ${COMPLETION-CANDIDATES}."
+                + " Default: ${DEFAULT-VALUE}.",
+            defaultValue = "ANTLR")
+        private FrontEnd frontEnd;
+
+        /**
+         * The optimization passes to run before evaluating expressions.
+         */
+        @Option(names = "--optimize",
+            arity = "0..1",
+            split = ",",
+            paramLabel = "<pass>",
+            fallbackValue = "CONSTANT_FOLDING,IDENTITY_REMOVAL,STRENGTH_REDUCTION,"
+                + "COMMON_SUBEXPRESSION_ELIMINATION",
+            description = "Optimization passes to run before evaluating, any of:"
+                + " ${COMPLETION-CANDIDATES}. All passes run if none are given.")
+        private List<OptimizationPass> passes = new ArrayList<>();
+
+        /**
+         * The values of the variables used in expressions.
+         */
+        @Option(names = "--variable",
+            paramLabel = "<name>=<value>",
+            description = "Value of a variable used in the expression. Example:"
+                + " '--variable x=2 -e \"x * x\"'")
+        private Map<String, Double> variables = new HashMap<>();
+
+        /**
+         * The number of significant digits of decimal evaluation, or zero to
+         * evaluate in double.
+         */
+        @Option(names = "--precision",
+            paramLabel = "<digits>",
+            description = "Evaluate in decimal arithmetic with the given number of"
+                + " significant digits, instead of in double.")
+        private int precision;
+
         /**
          * The actual expression we are evaluating.
          */
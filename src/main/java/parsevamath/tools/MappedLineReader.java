@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.antlr.v4.runtime.CharStream;
+
+/**
+ * Reads the lines of a file through memory mapped windows. Lines are found
+ * by scanning the mapped bytes for newlines, and are handed out as
+ * {@link ByteBufferCharStream} views over the mapping, so the bytes of the
+ * file are never copied or decoded into strings.
+ *
+ * <p>A mapping is limited to 2 GiB, so larger files are mapped one window at
+ * a time. Each window ends after its last newline, and the next window
+ * starts there, so no line is split across windows.
+ */
+final class MappedLineReader {
+
+    /**
+     * Default number of bytes mapped at a time.
+     */
+    static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+    /**
+     * Ends a line.
+     */
+    private static final byte NEWLINE = '\n';
+
+    /**
+     * Ends a line together with a following newline.
+     */
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    /**
+     * Prevent instantiation.
+     */
+    private MappedLineReader() {
+    }
+
+    /**
+     * Handles each line of a file with the default window size.
+     *
+     * @param path path of the file
+     * @param handler handles each line
+     * @return number of lines
+     * @throws IOException if the file cannot be read, or the handler fails
+     */
+    static long forEachLine(Path path, LineHandler handler) throws IOException {
+        return forEachLine(path, DEFAULT_WINDOW_SIZE, handler);
+    }
+
+    /**
+     * Handles each line of a file. Windows grow as needed to hold lines that
+     * are longer than the window size.
+     *
+     * @param path path of the file
+     * @param windowSize number of bytes mapped at a time
+     * @param handler handles each line
+     * @return number of lines
+     * @throws IOException if the file cannot be read, or the handler fails
+     */
+    static long forEachLine(Path path, int windowSize, LineHandler handler)
+            throws IOException {
+        long lineCount = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            long windowStart = 0;
+            int size = windowSize;
+            while (windowStart < fileSize) {
+                final int length = (int) Math.min(size, fileSize - windowStart);
+                final MappedByteBuffer window =
+                    channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+                final int end = getLinesEnd(window, length, windowStart + length == fileSize);
+                if (end == 0) {
+                    size = grow(size, windowStart);
+                }
+                else {
+                    lineCount += handleLines(window, end, handler);
+                    windowStart += end;
+                }
+            }
+        }
+        return lineCount;
+    }
+
+    /**
+     * Gets the end of the complete lines of a window: after its last newline,
+     * or the end of the window if it is the end of the file.
+     *
+     * @param window mapped window
+     * @param length number of bytes in the window
+     * @param endOfFile true if the window ends at the end of the file
+     * @return number of bytes of complete lines, 0 if there are none
+     */
+    private static int getLinesEnd(MappedByteBuffer window, int length, boolean endOfFile) {
+        int end = length;
+        if (!endOfFile) {
+            end = length - 1;
+            while (end >= 0 && window.get(end) != NEWLINE) {
+                end--;
+            }
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Doubles the window size, up to the largest possible mapping.
+     *
+     * @param size current window size
+     * @param windowStart offset of the window in the file
+     * @return new window size
+     * @throws IOException if the window cannot grow
+     */
+    private static int grow(int size, long windowStart) throws IOException {
+        if (size == Integer.MAX_VALUE) {
+            throw new IOException("Line at offset " + windowStart + " is longer than "
+                + Integer.MAX_VALUE + " bytes");
+        }
+        return (int) Math.min(2L * size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Handles each line of the given range of a window. A carriage return
+     * before a newline is not part of the line.
+     *
+     * @param window mapped window
+     * @param end number of bytes of complete lines
+     * @param handler handles each line
+     * @return number of lines
+     * @throws IOException if the handler fails
+     */
+    private static long handleLines(MappedByteBuffer window, int end, LineHandler handler)
+            throws IOException {
+        long lineCount = 0;
+        int lineStart = 0;
+        for (int index = 0; index < end; index++) {
+            if (window.get(index) == NEWLINE) {
+                int lineEnd = index;
+                if (lineEnd > lineStart && window.get(lineEnd - 1) == CARRIAGE_RETURN) {
+                    lineEnd--;
+                }
+                handler.handle(new ByteBufferCharStream(window, lineStart, lineEnd));
+                lineCount++;
+                lineStart = index + 1;
+            }
+        }
+        if (lineStart < end) {
+            handler.handle(new ByteBufferCharStream(window, lineStart, end));
+            lineCount++;
+        }
+        return lineCount;
+    }
+
+    /**
+     * Handles one line of a file.
+     */
+    @FunctionalInterface
+    interface LineHandler {
+
+        /**
+         * Handles one line. The line is only valid during the call.
+         *
+         * @param line the characters of the line, without the line terminator
+         * @throws IOException if the line cannot be handled
+         */
+        void handle(CharStream line) throws IOException;
+    }
+}
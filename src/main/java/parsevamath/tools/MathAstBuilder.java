@@ -28,9 +28,15 @@
 
 package parsevamath.tools;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 
 import org.antlr.v4.runtime.Token;
+import org.tinylog.Logger;
 
 import parsevamath.tools.grammar.MathBaseVisitor;
 import parsevamath.tools.grammar.MathLexer;
@@ -48,6 +54,39 @@ public class MathAstBuilder
      */
     private static final String UNEXPECTED_TOKEN = "Unexpected token: ";
 
+    /**
+     * Slot of each variable name.
+     */
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /**
+     * Whether variables not in slots get the next free slot, or are
+     * rejected.
+     */
+    private final boolean assignSlots;
+
+    /**
+     * Creates a builder that gives each variable the next free slot, in
+     * order of first appearance in the expression.
+     */
+    public MathAstBuilder() {
+        assignSlots = true;
+    }
+
+    /**
+     * Creates a builder that gives each variable the slot of its name in
+     * the given list, so that the layout of the variables array is known
+     * before the expression is parsed.
+     *
+     * @param variableNames names of the allowed variables, in slot order
+     */
+    public MathAstBuilder(List<String> variableNames) {
+        assignSlots = false;
+        for (String name : variableNames) {
+            slots.putIfAbsent(name, slots.size());
+        }
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -74,17 +113,15 @@ public class MathAstBuilder
     @Override
     public ExpressionNode visitInfixExpr(MathParser.InfixExprContext ctx) {
         final Token token = ctx.op;
-        final InfixExpressionNode node = switch (token.getType()) {
-            case MathLexer.OP_ADD -> new AdditionNode();
-            case MathLexer.OP_SUB -> new SubtractionNode();
-            case MathLexer.OP_MUL -> new MultiplicationNode();
-            case MathLexer.OP_DIV -> new DivisionNode();
+        final ExpressionNode left = visit(ctx.left);
+        final ExpressionNode right = visit(ctx.right);
+        return switch (token.getType()) {
+            case MathLexer.OP_ADD -> new AdditionNode(left, right);
+            case MathLexer.OP_SUB -> new SubtractionNode(left, right);
+            case MathLexer.OP_MUL -> new MultiplicationNode(left, right);
+            case MathLexer.OP_DIV -> new DivisionNode(left, right);
             default -> throw new IllegalStateException(UNEXPECTED_TOKEN + token.getType());
         };
-
-        node.setLeft(visit(ctx.left));
-        node.setRight(visit(ctx.right));
-        return node;
     }
 
     /**
@@ -102,11 +139,7 @@ public class MathAstBuilder
         final Token token = ctx.op;
         return switch (token.getType()) {
             case MathLexer.OP_ADD -> visit(ctx.expr());
-            case MathLexer.OP_SUB -> {
-                final NegateNode negateNode = new NegateNode();
-                negateNode.setInnerNode(visit(ctx.expr()));
-                yield negateNode;
-            }
+            case MathLexer.OP_SUB -> new NegateNode(visit(ctx.expr()));
             default -> throw new IllegalStateException(UNEXPECTED_TOKEN + token.getType());
         };
     }
@@ -114,25 +147,18 @@ public class MathAstBuilder
     /**
      * {@inheritDoc}
      *
-     * <p>This implementation uses reflection to get the specified method
-     * from java.lang.Math and creates a new MethodNode.
+     * <p>This implementation creates a new MethodNode, and resolves the
+     * java.lang.Math function it calls by name and number of arguments, so
+     * that evaluation does not need reflection.
      *
      * @param ctx rule context
      * @return new method ExpressionNode
      */
     @Override
     public ExpressionNode visitFuncExpr(MathParser.FuncExprContext ctx) {
-        final MethodNode methodNode = new MethodNode();
-        methodNode.setFunctionName(ctx.func.getText());
-
-        // Each COMMA token delimits an argument.
-        final int numberOfArguments = ctx.COMMA().size();
-
-        for (int i = 0; i <= numberOfArguments; i++) {
-            methodNode.addArgument(visit(ctx.expr(i)));
-        }
-
-        return methodNode;
+        final List<ExpressionNode> arguments = new ArrayList<>();
+        ctx.expr().forEach(argument -> arguments.add(visit(argument)));
+        return createMethodNode(ctx.func.getText(), arguments);
     }
 
     /**
@@ -158,13 +184,30 @@ public class MathAstBuilder
      */
     @Override
     public ExpressionNode visitConstExpr(MathParser.ConstExprContext ctx) {
-        final Double value = switch (ctx.getText().toUpperCase(Locale.ROOT)) {
-            case "E" -> Math.E;
-            case "PI" -> Math.PI;
-            default -> throw new IllegalStateException("Unexpected value: "
-                + ctx.getText().toUpperCase(Locale.ROOT));
-        };
-        return new ConstantNode(value);
+        return createConstantNode(ctx.getText());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation resolves the variable to its slot.
+     *
+     * @param ctx rule context
+     * @return new VariableNode
+     * @throws IllegalStateException if the variable was not declared
+     */
+    @Override
+    public ExpressionNode visitVariableExpr(MathParser.VariableExprContext ctx) {
+        final String name = ctx.name.getText();
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            if (!assignSlots) {
+                throw new IllegalStateException("Unknown variable: " + name);
+            }
+            slot = slots.size();
+            slots.put(name, slot);
+        }
+        return new VariableNode(name, slot);
     }
 
     /**
@@ -188,8 +231,43 @@ public class MathAstBuilder
      */
     @Override
     public ExpressionNode visitFactorialExpr(MathParser.FactorialExprContext ctx) {
-        final FactorialNode node = new FactorialNode();
-        node.setInnerNode(visit(ctx.expr()));
-        return node;
+        return new FactorialNode(visit(ctx.expr()));
+    }
+
+    /**
+     * Creates a new MethodNode, and resolves the java.lang.Math function it
+     * calls by name and number of arguments. An unknown function is logged,
+     * and only fails when the expression is evaluated.
+     *
+     * @param functionName name of the function
+     * @param arguments the arguments of the call
+     * @return new MethodNode
+     */
+    static ExpressionNode createMethodNode(String functionName,
+                                           List<ExpressionNode> arguments) {
+        final Optional<MathFunction> function =
+            MathFunction.lookup(functionName, arguments.size());
+        if (function.isEmpty()) {
+            Logger.info("Failed to get 'java.lang.Math' method '" + functionName + "'");
+        }
+
+        return new MethodNode(functionName, function.orElse(null), arguments);
+    }
+
+    /**
+     * Creates a new ConstantNode for the name of a constant.
+     *
+     * @param text name of the constant, one of e, E, pi or PI
+     * @return new ConstantNode
+     * @throws IllegalStateException if the constant is unknown
+     */
+    static ExpressionNode createConstantNode(String text) {
+        final double value = switch (text.toUpperCase(Locale.ROOT)) {
+            case "E" -> Math.E;
+            case "PI" -> Math.PI;
+            default -> throw new IllegalStateException("Unexpected value: "
+                + text.toUpperCase(Locale.ROOT));
+        };
+        return new ConstantNode(value);
     }
 }
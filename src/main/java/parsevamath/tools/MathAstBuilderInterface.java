@@ -85,6 +85,14 @@ public interface MathAstBuilderInterface extends ParseTreeVisitor<ExpressionNode
      */
     ExpressionNode visitConstExpr(MathParser.ConstExprContext ctx);
 
+    /**
+     * Return a variable expression.
+     *
+     * @param ctx rule context to analyze
+     * @return variable
+     */
+    ExpressionNode visitVariableExpr(MathParser.VariableExprContext ctx);
+
     /**
      * Evaluate a parenthetical expression.
      *
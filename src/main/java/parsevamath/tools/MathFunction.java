@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * This enum is the registry of the java.lang.Math functions that can be
+ * called from an expression. A function is resolved by name and arity once,
+ * when the ast is built, and is then applied directly without reflection.
+ */
+public enum MathFunction {
+
+    /** Absolute value. */
+    ABS("abs", Math::abs),
+
+    /** Arc cosine. */
+    ACOS("acos", Math::acos),
+
+    /** Arc sine. */
+    ASIN("asin", Math::asin),
+
+    /** Arc tangent. */
+    ATAN("atan", Math::atan),
+
+    /** Cube root. */
+    CBRT("cbrt", Math::cbrt),
+
+    /** Ceiling. */
+    CEIL("ceil", Math::ceil),
+
+    /** Cosine. */
+    COS("cos", Math::cos),
+
+    /** Hyperbolic cosine. */
+    COSH("cosh", Math::cosh),
+
+    /** Euler's number raised to a power. */
+    EXP("exp", Math::exp),
+
+    /** Euler's number raised to a power, minus one. */
+    EXPM1("expm1", Math::expm1),
+
+    /** Floor. */
+    FLOOR("floor", Math::floor),
+
+    /** Unbiased exponent. */
+    GET_EXPONENT("getExponent", Math::getExponent),
+
+    /** Natural logarithm. */
+    LOG("log", Math::log),
+
+    /** Base 10 logarithm. */
+    LOG10("log10", Math::log10),
+
+    /** Natural logarithm of one plus the argument. */
+    LOG1P("log1p", Math::log1p),
+
+    /** Adjacent value towards negative infinity. */
+    NEXT_DOWN("nextDown", Math::nextDown),
+
+    /** Adjacent value towards positive infinity. */
+    NEXT_UP("nextUp", Math::nextUp),
+
+    /** Closest mathematical integer. */
+    RINT("rint", Math::rint),
+
+    /** Closest long, ties rounding up. */
+    ROUND("round", Math::round),
+
+    /** Signum. */
+    SIGNUM("signum", Math::signum),
+
+    /** Sine. */
+    SIN("sin", Math::sin),
+
+    /** Hyperbolic sine. */
+    SINH("sinh", Math::sinh),
+
+    /** Square root. */
+    SQRT("sqrt", Math::sqrt),
+
+    /** Tangent. */
+    TAN("tan", Math::tan),
+
+    /** Hyperbolic tangent. */
+    TANH("tanh", Math::tanh),
+
+    /** Radians to degrees. */
+    TO_DEGREES("toDegrees", Math::toDegrees),
+
+    /** Degrees to radians. */
+    TO_RADIANS("toRadians", Math::toRadians),
+
+    /** Size of an ulp. */
+    ULP("ulp", Math::ulp),
+
+    /** Angle of a rectangular coordinate. */
+    ATAN2("atan2", Math::atan2),
+
+    /** First argument with the sign of the second. */
+    COPY_SIGN("copySign", Math::copySign),
+
+    /** Hypotenuse. */
+    HYPOT("hypot", Math::hypot),
+
+    /** IEEE 754 remainder. */
+    IEEE_REMAINDER("IEEEremainder", Math::IEEEremainder),
+
+    /** Greater of two values. */
+    MAX("max", Math::max),
+
+    /** Smaller of two values. */
+    MIN("min", Math::min),
+
+    /** Adjacent value in the direction of the second argument. */
+    NEXT_AFTER("nextAfter", Math::nextAfter),
+
+    /** First argument raised to the power of the second. */
+    POW("pow", Math::pow),
+
+    /** Fused multiply-add. */
+    FMA("fma", Math::fma);
+
+    /**
+     * Functions keyed by name and arity.
+     */
+    private static final Map<String, MathFunction> FUNCTIONS = new HashMap<>();
+
+    static {
+        for (MathFunction function : values()) {
+            FUNCTIONS.put(key(function.functionName, function.arity), function);
+        }
+    }
+
+    /**
+     * Name of the java.lang.Math method.
+     */
+    private final String functionName;
+
+    /**
+     * Number of arguments taken by this function.
+     */
+    private final int arity;
+
+    /**
+     * Implementation of a function taking one argument.
+     */
+    private final DoubleUnaryOperator unaryOperator;
+
+    /**
+     * Implementation of a function taking two arguments.
+     */
+    private final DoubleBinaryOperator binaryOperator;
+
+    /**
+     * Implementation of a function taking three arguments.
+     */
+    private final DoubleTernaryOperator ternaryOperator;
+
+    /**
+     * Creates a function taking one argument.
+     *
+     * @param functionName name of the java.lang.Math method
+     * @param operator implementation of the function
+     */
+    MathFunction(String functionName, DoubleUnaryOperator operator) {
+        this(functionName, 1, operator, null, null);
+    }
+
+    /**
+     * Creates a function taking two arguments.
+     *
+     * @param functionName name of the java.lang.Math method
+     * @param operator implementation of the function
+     */
+    MathFunction(String functionName, DoubleBinaryOperator operator) {
+        this(functionName, 2, null, operator, null);
+    }
+
+    /**
+     * Creates a function taking three arguments.
+     *
+     * @param functionName name of the java.lang.Math method
+     * @param operator implementation of the function
+     */
+    MathFunction(String functionName, DoubleTernaryOperator operator) {
+        this(functionName, DoubleTernaryOperator.ARITY, null, null, operator);
+    }
+
+    /**
+     * Creates a function.
+     *
+     * @param functionName name of the java.lang.Math method
+     * @param arity number of arguments
+     * @param unaryOperator implementation of a unary function
+     * @param binaryOperator implementation of a binary function
+     * @param ternaryOperator implementation of a ternary function
+     */
+    MathFunction(String functionName, int arity, DoubleUnaryOperator unaryOperator,
+                 DoubleBinaryOperator binaryOperator, DoubleTernaryOperator ternaryOperator) {
+        this.functionName = functionName;
+        this.arity = arity;
+        this.unaryOperator = unaryOperator;
+        this.binaryOperator = binaryOperator;
+        this.ternaryOperator = ternaryOperator;
+    }
+
+    /**
+     * Finds the function with the given name and number of arguments.
+     *
+     * @param functionName name of the java.lang.Math method
+     * @param arity number of arguments
+     * @return the function, or an empty optional if there is none
+     */
+    public static Optional<MathFunction> lookup(String functionName, int arity) {
+        return Optional.ofNullable(FUNCTIONS.get(key(functionName, arity)));
+    }
+
+    /**
+     * Gets the name of the java.lang.Math method.
+     *
+     * @return name of function
+     */
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    /**
+     * Gets the number of arguments taken by this function.
+     *
+     * @return arity of function
+     */
+    public int getArity() {
+        return arity;
+    }
+
+    /**
+     * Applies this function to one argument.
+     *
+     * @param argument the argument
+     * @return result of the function
+     */
+    public double apply(double argument) {
+        return unaryOperator.applyAsDouble(argument);
+    }
+
+    /**
+     * Applies this function to two arguments.
+     *
+     * @param first the first argument
+     * @param second the second argument
+     * @return result of the function
+     */
+    public double apply(double first, double second) {
+        return binaryOperator.applyAsDouble(first, second);
+    }
+
+    /**
+     * Applies this function to three arguments.
+     *
+     * @param first the first argument
+     * @param second the second argument
+     * @param third the third argument
+     * @return result of the function
+     */
+    public double apply(double first, double second, double third) {
+        return ternaryOperator.applyAsDouble(first, second, third);
+    }
+
+    /**
+     * Builds the registry key of a function.
+     *
+     * @param functionName name of the function
+     * @param arity number of arguments
+     * @return registry key
+     */
+    private static String key(String functionName, int arity) {
+        return functionName + '/' + arity;
+    }
+
+    /**
+     * Represents an operation on three double operands that produces a
+     * double result.
+     */
+    @FunctionalInterface
+    interface DoubleTernaryOperator {
+
+        /**
+         * Number of operands.
+         */
+        int ARITY = 3;
+
+        /**
+         * Applies this operator to the given operands.
+         *
+         * @param first the first operand
+         * @param second the second operand
+         * @param third the third operand
+         * @return the operator result
+         */
+        double applyAsDouble(double first, double second, double third);
+    }
+}
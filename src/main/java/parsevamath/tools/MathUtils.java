@@ -95,10 +95,18 @@ public final class MathUtils {
      * @return factorial of value
      */
     public static Double getFactorial(Double value) {
-        double factorial = 1.0;
-        for (int i = 1; i <= value; i++) {
-            factorial *= i;
-        }
-        return factorial;
+        return factorial(value);
+    }
+
+    /**
+     * This method calculates the factorial of a given value, without
+     * boxing the value or the result.
+     *
+     * @param value value to calculate the factorial of
+     * @return factorial of value
+     * @see FactorialUtils#factorial(double)
+     */
+    public static double factorial(double value) {
+        return FactorialUtils.factorial(value);
     }
 }
@@ -28,67 +28,37 @@
 
 package parsevamath.tools;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
  * This class represents a mathematical function node in the ast.
+ *
+ * @param functionName unchecked name of mathematical function
+ * @param function the java.lang.Math function resolved from the name and
+ *     number of arguments, or null if there is no such function
+ * @param arguments the arguments to supply to this function
  */
-class MethodNode implements ExpressionNode {
-
-    /**
-     * The arguments to supply to this function.
-     */
-    private final List<ExpressionNode> arguments;
-
-    /**
-     * Unchecked name of mathematical function.
-     */
-    private String functionName;
+record MethodNode(String functionName, MathFunction function, List<ExpressionNode> arguments)
+    implements ExpressionNode {
 
-    /**
-     * Default constructor.
-     */
-    MethodNode() {
-        arguments = new ArrayList<>();
+    MethodNode {
+        // Makes an immutable copy of the arguments.
+        arguments = List.copyOf(arguments);
     }
 
     /**
-     * Gets the given function name.
-     *
-     * @return name of function
+     * {@inheritDoc}
      */
-    public String getFunctionName() {
-        return functionName;
+    @Override
+    public <T> T accept(AbstractMathAstVisitor<T> visitor) {
+        return visitor.visit(this);
     }
 
     /**
-     * Sets the function name for this node.
-     *
-     * @param functionName name to set
+     * {@inheritDoc}
      */
-    public void setFunctionName(String functionName) {
-        this.functionName = functionName;
+    @Override
+    public double accept(DoubleEvaluator evaluator, double[] variables) {
+        return evaluator.visit(this, variables);
     }
-
-    /**
-     * Gets the arguments supplied to this node to evaluate.
-     *
-     * @return list of numerical expressions
-     */
-    public List<ExpressionNode> getArguments() {
-        return Collections.unmodifiableList(arguments);
-    }
-
-    /**
-     * Add argument (ExpressionNode) to list of arguments.
-     *
-     * @param node ExpressioNode to add
-     */
-    public void addArgument(ExpressionNode node) {
-        arguments.add(node);
-
-    }
-
 }
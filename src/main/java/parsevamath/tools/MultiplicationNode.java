@@ -28,9 +28,36 @@
 
 package parsevamath.tools;
 
+import java.util.Objects;
+
 /**
  * This class represents a multiplication node in the ast.
+ *
+ * @param left left operand
+ * @param right right operand
  */
-class MultiplicationNode extends InfixExpressionNode {
+record MultiplicationNode(ExpressionNode left, ExpressionNode right)
+    implements InfixExpressionNode {
+
+    MultiplicationNode {
+        // Checks that both operands are present.
+        Objects.requireNonNull(left);
+        Objects.requireNonNull(right);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T accept(AbstractMathAstVisitor<T> visitor) {
+        return visitor.visit(this);
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double accept(DoubleEvaluator evaluator, double[] variables) {
+        return evaluator.visit(this, variables);
+    }
 }
@@ -28,31 +28,33 @@
 
 package parsevamath.tools;
 
+import java.util.Objects;
+
 /**
  * This class represents a numerical value(inner node), negated, in the ast.
+ *
+ * @param innerNode the node to negate
  */
-class NegateNode extends InfixExpressionNode {
+record NegateNode(ExpressionNode innerNode) implements ExpressionNode {
 
-    /**
-     * This node is the actual numerical value of this node.
-     */
-    private ExpressionNode innerNode;
+    NegateNode {
+        // Checks that the inner node is present.
+        Objects.requireNonNull(innerNode);
+    }
 
     /**
-     * Gets the inner node of this negation node.
-     *
-     * @return innerNode
+     * {@inheritDoc}
      */
-    public ExpressionNode getInnerNode() {
-        return innerNode;
+    @Override
+    public <T> T accept(AbstractMathAstVisitor<T> visitor) {
+        return visitor.visit(this);
     }
 
     /**
-     * Sets the inner node.
-     *
-     * @param innerNode the node to set as inner.
+     * {@inheritDoc}
      */
-    public void setInnerNode(ExpressionNode innerNode) {
-        this.innerNode = innerNode;
+    @Override
+    public double accept(DoubleEvaluator evaluator, double[] variables) {
+        return evaluator.visit(this, variables);
     }
 }
@@ -30,29 +30,24 @@ package parsevamath.tools;
 
 /**
  * This class represents a numerical expression node in the ast.
+ *
+ * @param value the numerical value of this node
  */
-class NumberNode implements ExpressionNode {
-
-    /**
-     * The numerical value of this number node.
-     */
-    private Double value;
+record NumberNode(double value) implements ExpressionNode {
 
     /**
-     * Constructor for NumberNode class.
-     *
-     * @param value the numerical value of this node
+     * {@inheritDoc}
      */
-    NumberNode(Double value) {
-        this.value = value;
+    @Override
+    public <T> T accept(AbstractMathAstVisitor<T> visitor) {
+        return visitor.visit(this);
     }
 
     /**
-     * Gets the value of this number node.
-     *
-     * @return the value of this node
+     * {@inheritDoc}
      */
-    public Double getValue() {
-        return value;
+    @Override
+    public double accept(DoubleEvaluator evaluator, double[] variables) {
+        return evaluator.visit(this, variables);
     }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+/**
+ * The passes that {@link Optimizer} can run over an expression tree, in
+ * the order they are run.
+ */
+public enum OptimizationPass {
+
+    /**
+     * Folds subtrees whose operands are all literals, including calls to
+     * java.lang.Math functions and factorials.
+     */
+    CONSTANT_FOLDING {
+        @Override
+        public ExpressionNode apply(ExpressionNode root) {
+            return new ConstantFoldingVisitor().visit(root);
+        }
+    },
+
+    /**
+     * Removes operations that leave their operand unchanged, such as
+     * {@code x * 1}, {@code x + 0} and {@code --x}.
+     */
+    IDENTITY_REMOVAL {
+        @Override
+        public ExpressionNode apply(ExpressionNode root) {
+            return new IdentityRemovalVisitor().visit(root);
+        }
+    },
+
+    /**
+     * Replaces divisions by a power of two with multiplications.
+     */
+    STRENGTH_REDUCTION {
+        @Override
+        public ExpressionNode apply(ExpressionNode root) {
+            return new StrengthReductionVisitor().visit(root);
+        }
+    },
+
+    /**
+     * Shares structurally equal subtrees, which turns the tree into a DAG
+     * whose shared nodes are evaluated once by the VM and bytecode engines.
+     * This pass runs last, since the other passes rebuild every node.
+     */
+    COMMON_SUBEXPRESSION_ELIMINATION {
+        @Override
+        public ExpressionNode apply(ExpressionNode root) {
+            return new CommonSubexpressionVisitor().visit(root);
+        }
+    };
+
+    /**
+     * Runs this pass over an expression tree.
+     *
+     * @param root root of the expression tree
+     * @return root of the rewritten tree
+     */
+    public abstract ExpressionNode apply(ExpressionNode root);
+}
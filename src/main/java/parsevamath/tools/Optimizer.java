@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class runs a selection of {@link OptimizationPass optimization
+ * passes} over an expression tree, and records the number of nodes in
+ * the tree before and after each pass.
+ */
+public final class Optimizer {
+
+    /**
+     * Passes run by this optimizer, in enum order.
+     */
+    private final Set<OptimizationPass> passes = EnumSet.noneOf(OptimizationPass.class);
+
+    /**
+     * Creates a new optimizer.
+     *
+     * @param passes the passes to run; duplicates and order are ignored
+     */
+    public Optimizer(Collection<OptimizationPass> passes) {
+        this.passes.addAll(passes);
+    }
+
+    /**
+     * Creates an optimizer that runs every pass.
+     *
+     * @return new optimizer
+     */
+    public static Optimizer allPasses() {
+        return new Optimizer(EnumSet.allOf(OptimizationPass.class));
+    }
+
+    /**
+     * Gets the passes run by this optimizer.
+     *
+     * @return unmodifiable set of passes
+     */
+    public Set<OptimizationPass> getPasses() {
+        return Collections.unmodifiableSet(passes);
+    }
+
+    /**
+     * Runs the passes of this optimizer over an expression tree.
+     *
+     * @param root root of the expression tree
+     * @return the optimized tree and per-pass statistics
+     */
+    public Result optimize(ExpressionNode root) {
+        final List<PassStatistics> statistics = new ArrayList<>(passes.size());
+        ExpressionNode current = root;
+        int nodeCount = ParsevaUtils.countNodes(root);
+        for (OptimizationPass pass : passes) {
+            current = pass.apply(current);
+            final int nodesAfter = ParsevaUtils.countNodes(current);
+            statistics.add(new PassStatistics(pass, nodeCount, nodesAfter));
+            nodeCount = nodesAfter;
+        }
+        return new Result(current, List.copyOf(statistics));
+    }
+
+    /**
+     * The number of nodes in a tree before and after a pass.
+     *
+     * @param pass the pass that was run
+     * @param nodesBefore number of nodes before the pass
+     * @param nodesAfter number of nodes after the pass
+     */
+    public record PassStatistics(OptimizationPass pass, int nodesBefore, int nodesAfter) {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return pass + ": " + nodesBefore + " -> " + nodesAfter + " nodes";
+        }
+    }
+
+    /**
+     * The outcome of optimizing a tree.
+     *
+     * @param root root of the optimized tree
+     * @param statistics statistics of each pass, in the order they were run
+     */
+    public record Result(ExpressionNode root, List<PassStatistics> statistics) {
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates large batches on all the workers of a {@link ForkJoinPool}. A
+ * batch, either the rows of a set of columns or a list of expressions, is
+ * split in halves until each task holds at most a threshold number of
+ * items, and idle workers steal the remaining halves from busy ones.
+ *
+ * <p>Every task writes the results of its own range of items, at the same
+ * index as the item, so the output does not depend on the number of
+ * workers or on the order in which tasks run.
+ */
+public final class ParallelEvaluator {
+
+    /**
+     * Default maximum number of items evaluated by one task.
+     */
+    public static final int DEFAULT_THRESHOLD = 16_384;
+
+    /**
+     * Minimum number of tasks per worker that a batch is split into, so
+     * that workers which finish early have tasks to steal.
+     */
+    private static final int TASKS_PER_WORKER = 4;
+
+    /**
+     * Pool running the tasks.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Maximum number of items evaluated by one task.
+     */
+    private final int threshold;
+
+    /**
+     * Creates a parallel evaluator on the common pool with the default
+     * threshold.
+     */
+    public ParallelEvaluator() {
+        this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Creates a parallel evaluator.
+     *
+     * @param pool pool running the tasks
+     * @param threshold maximum number of items evaluated by one task
+     * @throws IllegalArgumentException if threshold is not positive
+     */
+    public ParallelEvaluator(ForkJoinPool pool, int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+        }
+        this.pool = Objects.requireNonNull(pool);
+        this.threshold = threshold;
+    }
+
+    /**
+     * Evaluates the first rows of the given columns in parallel.
+     *
+     * @param evaluator evaluates the rows of each task
+     * @param columns the values of the variables, one column per slot
+     * @param rowCount number of rows to evaluate
+     * @return the value of the expression for each row
+     */
+    public double[] evaluate(BatchEvaluator evaluator, double[][] columns, int rowCount) {
+        final double[] output = new double[rowCount];
+        evaluate(evaluator, columns, output);
+        return output;
+    }
+
+    /**
+     * Evaluates as many rows of the given columns as output can hold, in
+     * parallel.
+     *
+     * @param evaluator evaluates the rows of each task
+     * @param columns the values of the variables, one column per slot
+     * @param output receives the value of the expression for each row
+     */
+    public void evaluate(BatchEvaluator evaluator, double[][] columns, double[] output) {
+        pool.invoke(new RowsTask(evaluator, columns, output, 0, output.length,
+            getTaskSize(output.length)));
+    }
+
+    /**
+     * Evaluates a list of expressions without variables in parallel, with
+     * {@link Main#evaluate(String)}. Repeated expressions are found before
+     * the batch is split, and each distinct expression is looked up in the
+     * expression cache and evaluated only once, so that the workers do not
+     * contend on the cache lock for every item.
+     *
+     * <p>An expression that cannot be evaluated aborts the whole batch: its
+     * exception is thrown once the running tasks end, and no values are
+     * returned.
+     *
+     * @param expressions the expressions to evaluate
+     * @return the value of each expression, in the same order
+     * @throws IllegalStateException if an expression has variables
+     */
+    public double[] evaluate(List<String> expressions) {
+        final Map<String, Integer> distinctIndices = new HashMap<>();
+        final List<String> distinctExpressions = new ArrayList<>();
+        final int[] indices = new int[expressions.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = distinctIndices.computeIfAbsent(expressions.get(i), expression -> {
+                distinctExpressions.add(expression);
+                return distinctExpressions.size() - 1;
+            });
+        }
+
+        final double[] values = new double[distinctExpressions.size()];
+        pool.invoke(new ExpressionsTask(distinctExpressions, values, 0, values.length,
+            getTaskSize(values.length)));
+        final double[] output = new double[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            output[i] = values[indices[i]];
+        }
+        return output;
+    }
+
+    /**
+     * Gets the maximum number of items evaluated by one task.
+     *
+     * @return threshold
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Gets the pool running the tasks.
+     *
+     * @return fork/join pool
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Gets the maximum number of items evaluated by one task for a batch of
+     * the given size. This is the threshold, unless the batch is too small
+     * to give every worker a few tasks.
+     *
+     * @param itemCount number of items in the batch
+     * @return maximum number of items per task
+     */
+    private int getTaskSize(int itemCount) {
+        final int taskCount = pool.getParallelism() * TASKS_PER_WORKER;
+        return Math.max(1, Math.min(threshold, (itemCount + taskCount - 1) / taskCount));
+    }
+
+    /**
+     * Evaluates a range of rows, splitting it in halves while it holds more
+     * than a given number of rows.
+     */
+    private static final class RowsTask extends RecursiveAction {
+
+        /**
+         * Version of the serialized form.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Evaluates the rows once the range is small enough.
+         */
+        private final transient BatchEvaluator evaluator;
+
+        /**
+         * The values of the variables, one column per slot.
+         */
+        private final double[][] columns;
+
+        /**
+         * Receives the value of the expression for each row.
+         */
+        private final double[] output;
+
+        /**
+         * First row of the range, inclusive.
+         */
+        private final int fromRow;
+
+        /**
+         * Last row of the range, exclusive.
+         */
+        private final int toRow;
+
+        /**
+         * Maximum number of rows evaluated without splitting.
+         */
+        private final int taskSize;
+
+        /**
+         * Creates a task over a range of rows.
+         *
+         * @param evaluator evaluates the rows
+         * @param columns the values of the variables, one column per slot
+         * @param output receives the value of the expression for each row
+         * @param fromRow first row of the range, inclusive
+         * @param toRow last row of the range, exclusive
+         * @param taskSize maximum number of rows evaluated without splitting
+         */
+        RowsTask(BatchEvaluator evaluator, double[][] columns, double[] output,
+                 int fromRow, int toRow, int taskSize) {
+            this.evaluator = evaluator;
+            this.columns = columns;
+            this.output = output;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.taskSize = taskSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= taskSize) {
+                evaluator.evaluate(columns, output, fromRow, toRow);
+            }
+            else {
+                final int middle = (fromRow + toRow) >>> 1;
+                invokeAll(new RowsTask(evaluator, columns, output, fromRow, middle, taskSize),
+                    new RowsTask(evaluator, columns, output, middle, toRow, taskSize));
+            }
+        }
+    }
+
+    /**
+     * Evaluates a range of a list of expressions, splitting it in halves
+     * while it holds more than a given number of expressions.
+     */
+    private static final class ExpressionsTask extends RecursiveAction {
+
+        /**
+         * Version of the serialized form.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The expressions to evaluate.
+         */
+        private final transient List<String> expressions;
+
+        /**
+         * Receives the value of each expression.
+         */
+        private final double[] output;
+
+        /**
+         * First index of the range, inclusive.
+         */
+        private final int fromIndex;
+
+        /**
+         * Last index of the range, exclusive.
+         */
+        private final int toIndex;
+
+        /**
+         * Maximum number of expressions evaluated without splitting.
+         */
+        private final int taskSize;
+
+        /**
+         * Creates a task over a range of expressions.
+         *
+         * @param expressions the expressions to evaluate
+         * @param output receives the value of each expression
+         * @param fromIndex first index of the range, inclusive
+         * @param toIndex last index of the range, exclusive
+         * @param taskSize maximum number of expressions evaluated without splitting
+         */
+        ExpressionsTask(List<String> expressions, double[] output, int fromIndex, int toIndex,
+                        int taskSize) {
+            this.expressions = expressions;
+            this.output = output;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.taskSize = taskSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (toIndex - fromIndex <= taskSize) {
+                for (int i = fromIndex; i < toIndex; i++) {
+                    output[i] = Main.evaluate(expressions.get(i));
+                }
+            }
+            else {
+                final int middle = (fromIndex + toIndex) >>> 1;
+                invokeAll(new ExpressionsTask(expressions, output, fromIndex, middle, taskSize),
+                    new ExpressionsTask(expressions, output, middle, toIndex, taskSize));
+            }
+        }
+    }
+}
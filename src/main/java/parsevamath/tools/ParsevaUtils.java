@@ -31,8 +31,11 @@ package parsevamath.tools;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
 import org.tinylog.Logger;
 
@@ -61,16 +64,135 @@ public final class ParsevaUtils {
     public static Double extractValue(ExpressionNode node) {
         final Double value;
         if (node instanceof NegateNode negateNode) {
-            final NumberNode innerNode = (NumberNode) negateNode.getInnerNode();
-            value = innerNode.getValue();
+            value = extractValue(negateNode.innerNode());
+        }
+        else if (node instanceof ConstantNode constantNode) {
+            value = constantNode.value();
         }
         else {
             final NumberNode numberNode = (NumberNode) node;
-            value = numberNode.getValue();
+            value = numberNode.value();
         }
         return value;
     }
 
+    /**
+     * Gets the direct operands of a node, in evaluation order.
+     *
+     * @param node the node to get operands of
+     * @return operands of node, empty for numbers and constants
+     */
+    public static List<ExpressionNode> getOperands(ExpressionNode node) {
+        final List<ExpressionNode> operands;
+        if (node instanceof InfixExpressionNode infixNode) {
+            operands = List.of(infixNode.left(), infixNode.right());
+        }
+        else if (node instanceof NegateNode negateNode) {
+            operands = List.of(negateNode.innerNode());
+        }
+        else if (node instanceof FactorialNode factorialNode) {
+            operands = List.of(factorialNode.innerNode());
+        }
+        else if (node instanceof MethodNode methodNode) {
+            operands = methodNode.arguments();
+        }
+        else {
+            operands = List.of();
+        }
+        return operands;
+    }
+
+    /**
+     * Counts the distinct nodes of an expression tree. Nodes that are shared
+     * by several parents, as in the DAGs built by common subexpression
+     * elimination, are only counted once.
+     *
+     * @param root root of the expression tree
+     * @return number of distinct nodes in the tree
+     */
+    public static int countNodes(ExpressionNode root) {
+        final Set<ExpressionNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        collectNodes(root, visited, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return visited.size();
+    }
+
+    /**
+     * Finds the operation nodes that are referenced more than once in an
+     * expression tree. Numbers and constants are never reported, since
+     * they are as cheap to evaluate again as to share.
+     *
+     * @param root root of the expression tree
+     * @return identity set of shared nodes
+     */
+    public static Set<ExpressionNode> findSharedNodes(ExpressionNode root) {
+        final Set<ExpressionNode> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+        collectNodes(root, Collections.newSetFromMap(new IdentityHashMap<>()), shared);
+        return shared;
+    }
+
+    /**
+     * Walks every distinct node of an expression tree once.
+     *
+     * @param node the node to walk
+     * @param visited nodes walked so far
+     * @param shared operation nodes reached more than once so far
+     */
+    private static void collectNodes(ExpressionNode node, Set<ExpressionNode> visited,
+                                     Set<ExpressionNode> shared) {
+        final List<ExpressionNode> operands = getOperands(node);
+        if (visited.add(node)) {
+            for (ExpressionNode operand : operands) {
+                collectNodes(operand, visited, shared);
+            }
+        }
+        else if (!operands.isEmpty()) {
+            shared.add(node);
+        }
+    }
+
+    /**
+     * Gets the names of the variables of an expression tree, indexed by
+     * slot. Slots that no variable of the tree uses are null.
+     *
+     * @param root root of the expression tree
+     * @return variable names, indexed by slot
+     */
+    public static List<String> getVariableNames(ExpressionNode root) {
+        final List<String> names = new ArrayList<>();
+        collectVariableNames(root, names);
+        return names;
+    }
+
+    /**
+     * Adds the names of the variables of a subtree to a list, at the index
+     * of their slot.
+     *
+     * @param node root of the subtree
+     * @param names variable names found so far, indexed by slot
+     */
+    private static void collectVariableNames(ExpressionNode node, List<String> names) {
+        if (node instanceof VariableNode variableNode) {
+            while (names.size() <= variableNode.slot()) {
+                names.add(null);
+            }
+            names.set(variableNode.slot(), variableNode.name());
+        }
+        for (ExpressionNode operand : getOperands(node)) {
+            collectVariableNames(operand, names);
+        }
+    }
+
+    /**
+     * Builds the text of an expression tree, which parses back to a tree of
+     * the same value.
+     *
+     * @param root root of the expression tree
+     * @return text of the expression
+     */
+    public static String toExpressionString(ExpressionNode root) {
+        return ExpressionPrinter.print(root);
+    }
+
     /**
      * Gets the version number from properties file.
      *
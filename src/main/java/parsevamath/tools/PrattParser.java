@@ -0,0 +1,616 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A hand-written parsing front-end for parseva-math, turning expression
+ * text straight into a heterogeneous ast. Tokens are scanned on demand in a
+ * single pass over the text, and the tree is built by precedence climbing,
+ * without a parse tree in between. Precedence and associativity mirror
+ * {@code Math.g4}: a sign binds tighter than any infix operator, {@code *}
+ * and {@code /} bind tighter than {@code +} and {@code -}, all infix
+ * operators are left associative, and the postfix {@code !} has the lowest
+ * precedence of all. For every valid expression this parser builds the same
+ * tree as {@link ExpressionParser}, which stays the reference
+ * implementation; syntax errors are reported by throwing.
+ */
+public final class PrattParser {
+
+    /**
+     * Precedence an expression is parsed at when any operator may follow.
+     */
+    private static final int LOWEST_PRECEDENCE = 0;
+
+    /**
+     * Precedence of the postfix factorial operator.
+     */
+    private static final int FACTORIAL_PRECEDENCE = 1;
+
+    /**
+     * Precedence of the additive infix operators.
+     */
+    private static final int ADDITIVE_PRECEDENCE = 6;
+
+    /**
+     * Precedence of the multiplicative infix operators.
+     */
+    private static final int MULTIPLICATIVE_PRECEDENCE = 7;
+
+    /**
+     * Precedence the operand of a sign is parsed at, so that no infix or
+     * postfix operator is taken into the operand.
+     */
+    private static final int UNARY_OPERAND_PRECEDENCE = 8;
+
+    /**
+     * Quotes the text of a token in syntax errors.
+     */
+    private static final String QUOTE = "'";
+
+    /**
+     * Symbol of the tokens that are not a single character.
+     */
+    private static final char NO_SYMBOL = 0;
+
+    /**
+     * The expression text.
+     */
+    private final String input;
+
+    /**
+     * Slot of each variable name.
+     */
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /**
+     * Whether variables not in slots get the next free slot, or are
+     * rejected.
+     */
+    private final boolean assignSlots;
+
+    /**
+     * Offset of the next character to scan.
+     */
+    private int position;
+
+    /**
+     * Line of the current token, starting at 1.
+     */
+    private int line = 1;
+
+    /**
+     * Offset of the first character of the current line.
+     */
+    private int lineStart;
+
+    /**
+     * Kind of the current token.
+     */
+    private TokenKind kind;
+
+    /**
+     * Offset of the first character of the current token.
+     */
+    private int tokenStart;
+
+    /**
+     * Creates a parser for an expression.
+     *
+     * @param input the expression text
+     * @param variableNames names of the allowed variables, in slot order,
+     *                      or null to give each variable the next free slot
+     */
+    private PrattParser(String input, List<String> variableNames) {
+        this.input = input;
+        assignSlots = variableNames == null;
+        if (variableNames != null) {
+            for (String name : variableNames) {
+                slots.putIfAbsent(name, slots.size());
+            }
+        }
+    }
+
+    /**
+     * Builds the heterogeneous ast of an expression. Each variable gets the
+     * next free slot, in order of first appearance.
+     *
+     * @param exprInput the expression to build ast for
+     * @return root of the expression tree
+     * @throws IllegalArgumentException on a syntax error
+     */
+    public static ExpressionNode buildExpressionTree(String exprInput) {
+        return new PrattParser(exprInput, null).parse();
+    }
+
+    /**
+     * Builds the heterogeneous ast of an expression, giving each variable
+     * the slot of its name in the given list.
+     *
+     * @param exprInput the expression to build ast for
+     * @param variableNames names of the allowed variables, in slot order
+     * @return root of the expression tree
+     * @throws IllegalArgumentException on a syntax error
+     * @throws IllegalStateException if a variable is not in the list
+     */
+    public static ExpressionNode buildExpressionTree(String exprInput,
+                                                     List<String> variableNames) {
+        return new PrattParser(exprInput, List.copyOf(variableNames)).parse();
+    }
+
+    /**
+     * Parses the whole expression.
+     *
+     * @return root of the expression tree
+     */
+    private ExpressionNode parse() {
+        nextToken();
+        final ExpressionNode root = parseExpression(LOWEST_PRECEDENCE);
+        if (kind != TokenKind.END) {
+            throw unexpectedToken();
+        }
+        return root;
+    }
+
+    /**
+     * Parses an expression, taking in every infix or postfix operator whose
+     * precedence is at least the given one. Infix operators are left
+     * associative, so their right operand is parsed one level higher.
+     *
+     * @param precedence the lowest precedence of an operator to take in
+     * @return root of the expression
+     */
+    private ExpressionNode parseExpression(int precedence) {
+        ExpressionNode left = parsePrimary();
+        while (kind.precedence >= precedence) {
+            final TokenKind operator = kind;
+            nextToken();
+            left = switch (operator) {
+                case PLUS -> new AdditionNode(left, parseExpression(operator.precedence + 1));
+                case MINUS -> new SubtractionNode(left, parseExpression(operator.precedence + 1));
+                case STAR -> new MultiplicationNode(left,
+                    parseExpression(operator.precedence + 1));
+                case SLASH -> new DivisionNode(left, parseExpression(operator.precedence + 1));
+                default -> new FactorialNode(left);
+            };
+        }
+        return left;
+    }
+
+    /**
+     * Parses an expression that starts with a number, constant, name,
+     * parenthesis or sign.
+     *
+     * @return root of the expression
+     * @throws IllegalArgumentException if no expression starts at the
+     *     current token
+     */
+    private ExpressionNode parsePrimary() {
+        return switch (kind) {
+            case NUMBER -> new NumberNode(Double.parseDouble(consume()));
+            case CONSTANT -> MathAstBuilder.createConstantNode(consume());
+            case IDENTIFIER -> parseName(consume());
+            case LPAREN -> parseParenthesized();
+            case PLUS -> parseSigned(false);
+            case MINUS -> parseSigned(true);
+            default -> throw unexpectedToken();
+        };
+    }
+
+    /**
+     * Parses a function call or a variable, once its name is consumed.
+     *
+     * @param name name of the function or variable
+     * @return new MethodNode or VariableNode
+     */
+    private ExpressionNode parseName(String name) {
+        final ExpressionNode node;
+        if (kind == TokenKind.LPAREN) {
+            nextToken();
+            final List<ExpressionNode> arguments = new ArrayList<>();
+            arguments.add(parseExpression(LOWEST_PRECEDENCE));
+            while (kind == TokenKind.COMMA) {
+                nextToken();
+                arguments.add(parseExpression(LOWEST_PRECEDENCE));
+            }
+            expect(TokenKind.RPAREN);
+            node = MathAstBuilder.createMethodNode(name, arguments);
+        }
+        else {
+            node = new VariableNode(name, getSlot(name));
+        }
+        return node;
+    }
+
+    /**
+     * Parses an expression between parentheses.
+     *
+     * @return root of the inner expression
+     */
+    private ExpressionNode parseParenthesized() {
+        nextToken();
+        final ExpressionNode inner = parseExpression(LOWEST_PRECEDENCE);
+        expect(TokenKind.RPAREN);
+        return inner;
+    }
+
+    /**
+     * Parses the operand of a sign.
+     *
+     * @param negate whether the sign is a minus
+     * @return the operand, negated if needed
+     */
+    private ExpressionNode parseSigned(boolean negate) {
+        nextToken();
+        ExpressionNode operand = parseExpression(UNARY_OPERAND_PRECEDENCE);
+        if (negate) {
+            operand = new NegateNode(operand);
+        }
+        return operand;
+    }
+
+    /**
+     * Gets the slot of a variable, giving it the next free slot if allowed.
+     *
+     * @param name name of the variable
+     * @return slot of the variable
+     * @throws IllegalStateException if the variable was not declared
+     */
+    private int getSlot(String name) {
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            if (!assignSlots) {
+                throw new IllegalStateException("Unknown variable: " + name);
+            }
+            slot = slots.size();
+            slots.put(name, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Checks that the current token is of the given kind, and moves past
+     * it.
+     *
+     * @param expected the expected kind of token
+     * @throws IllegalArgumentException if the current token is of another
+     *     kind
+     */
+    private void expect(TokenKind expected) {
+        if (kind != expected) {
+            throw syntaxError(tokenStart, "mismatched input " + describeToken()
+                + " expecting " + expected.description);
+        }
+        nextToken();
+    }
+
+    /**
+     * Moves past the current token.
+     *
+     * @return text of the token
+     */
+    private String consume() {
+        final String text = input.substring(tokenStart, position);
+        nextToken();
+        return text;
+    }
+
+    /**
+     * Scans the next token, skipping whitespace.
+     *
+     * @throws IllegalArgumentException if a character cannot start a token
+     */
+    private void nextToken() {
+        skipWhitespace();
+        tokenStart = position;
+        if (position == input.length()) {
+            kind = TokenKind.END;
+        }
+        else {
+            final char character = input.charAt(position);
+            if (isDigit(character)) {
+                scanNumber();
+            }
+            else if (isLetter(character)) {
+                scanName();
+            }
+            else {
+                kind = TokenKind.forSymbol(character);
+                if (kind == null) {
+                    throw syntaxError(position,
+                        "token recognition error at: " + QUOTE + character + QUOTE);
+                }
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Skips the whitespace from the current position, keeping track of
+     * lines.
+     */
+    private void skipWhitespace() {
+        while (position < input.length() && isWhitespace(input.charAt(position))) {
+            if (input.charAt(position) == '\n') {
+                line++;
+                lineStart = position + 1;
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Scans a number, with an optional fraction and exponent. Like the
+     * generated lexer, a fraction or exponent without digits is left out of
+     * the number.
+     */
+    private void scanNumber() {
+        position = skipDigits(position);
+        if (isCharacterAt(position, '.', '.') && isDigitAt(position + 1)) {
+            position = skipDigits(position + 1);
+        }
+        if (isCharacterAt(position, 'e', 'E')) {
+            int exponent = position + 1;
+            if (isCharacterAt(exponent, '+', '-')) {
+                exponent++;
+            }
+            if (isDigitAt(exponent)) {
+                position = skipDigits(exponent);
+            }
+        }
+        kind = TokenKind.NUMBER;
+    }
+
+    /**
+     * Scans a name, which is either a constant or an identifier.
+     */
+    private void scanName() {
+        while (position < input.length() && isLetter(input.charAt(position))) {
+            position++;
+        }
+        final String name = input.substring(tokenStart, position);
+        if ("e".equalsIgnoreCase(name) || "pi".equals(name) || "PI".equals(name)) {
+            kind = TokenKind.CONSTANT;
+        }
+        else {
+            kind = TokenKind.IDENTIFIER;
+        }
+    }
+
+    /**
+     * Skips the digits from an offset.
+     *
+     * @param from offset of the first character to check
+     * @return offset of the first character that is not a digit
+     */
+    private int skipDigits(int from) {
+        int offset = from;
+        while (isDigitAt(offset)) {
+            offset++;
+        }
+        return offset;
+    }
+
+    /**
+     * Determines if the character at an offset is one of two characters.
+     *
+     * @param offset offset of the character to check, possibly past the end
+     * @param first the first character to look for
+     * @param second the second character to look for
+     * @return true if the character at offset is first or second
+     */
+    private boolean isCharacterAt(int offset, char first, char second) {
+        return offset < input.length()
+            && (input.charAt(offset) == first || input.charAt(offset) == second);
+    }
+
+    /**
+     * Determines if the character at an offset is a digit.
+     *
+     * @param offset offset of the character to check, possibly past the end
+     * @return true if the character at offset is a digit
+     */
+    private boolean isDigitAt(int offset) {
+        return offset < input.length() && isDigit(input.charAt(offset));
+    }
+
+    /**
+     * Creates the error thrown when the current token cannot be parsed.
+     *
+     * @return syntax error
+     */
+    private IllegalArgumentException unexpectedToken() {
+        return syntaxError(tokenStart, "unexpected " + describeToken());
+    }
+
+    /**
+     * Describes the current token for a syntax error.
+     *
+     * @return quoted text of the token, or a description of the end of input
+     */
+    private String describeToken() {
+        final String description;
+        if (kind == TokenKind.END) {
+            description = kind.description;
+        }
+        else {
+            description = QUOTE + input.substring(tokenStart, position) + QUOTE;
+        }
+        return description;
+    }
+
+    /**
+     * Creates a syntax error at an offset, in the same format as the
+     * errors of {@link ExpressionParser#parseStrictly(String)}.
+     *
+     * @param offset offset of the offending character
+     * @param message what went wrong
+     * @return syntax error
+     */
+    private IllegalArgumentException syntaxError(int offset, String message) {
+        return new IllegalArgumentException("line " + line + ":" + (offset - lineStart)
+            + " " + message);
+    }
+
+    /**
+     * Determines if a character is whitespace according to the grammar.
+     *
+     * @param character the character to check
+     * @return true if the character is skipped
+     */
+    private static boolean isWhitespace(char character) {
+        return character == ' ' || character == '\t'
+            || character == '\r' || character == '\n';
+    }
+
+    /**
+     * Determines if a character is an ascii digit.
+     *
+     * @param character the character to check
+     * @return true if the character is a digit
+     */
+    private static boolean isDigit(char character) {
+        return character >= '0' && character <= '9';
+    }
+
+    /**
+     * Determines if a character is an ascii letter.
+     *
+     * @param character the character to check
+     * @return true if the character is a letter
+     */
+    private static boolean isLetter(char character) {
+        return character >= 'a' && character <= 'z' || character >= 'A' && character <= 'Z';
+    }
+
+    /**
+     * The kinds of token of the grammar. Single character tokens carry
+     * their character, and operators carry the precedence they are taken in
+     * at; other tokens never are.
+     */
+    private enum TokenKind {
+
+        /** A number. */
+        NUMBER("number", NO_SYMBOL, -1),
+
+        /** One of the constants e, E, pi or PI. */
+        CONSTANT("constant", NO_SYMBOL, -1),
+
+        /** A function or variable name. */
+        IDENTIFIER("name", NO_SYMBOL, -1),
+
+        /** The plus operator. */
+        PLUS("'+'", '+', ADDITIVE_PRECEDENCE),
+
+        /** The minus operator. */
+        MINUS("'-'", '-', ADDITIVE_PRECEDENCE),
+
+        /** The multiplication operator. */
+        STAR("'*'", '*', MULTIPLICATIVE_PRECEDENCE),
+
+        /** The division operator. */
+        SLASH("'/'", '/', MULTIPLICATIVE_PRECEDENCE),
+
+        /** The factorial operator. */
+        BANG("'!'", '!', FACTORIAL_PRECEDENCE),
+
+        /** An opening parenthesis. */
+        LPAREN("'('", '(', -1),
+
+        /** A closing parenthesis. */
+        RPAREN("')'", ')', -1),
+
+        /** The separator of function arguments. */
+        COMMA("','", ',', -1),
+
+        /** The end of the input. */
+        END("<EOF>", NO_SYMBOL, -1);
+
+        /**
+         * Kind of the single character token of each ascii character.
+         */
+        private static final TokenKind[] BY_SYMBOL = new TokenKind[Byte.MAX_VALUE + 1];
+
+        static {
+            for (TokenKind kind : values()) {
+                if (kind.symbol != NO_SYMBOL) {
+                    BY_SYMBOL[kind.symbol] = kind;
+                }
+            }
+        }
+
+        /**
+         * Describes this kind of token in syntax errors.
+         */
+        private final String description;
+
+        /**
+         * Character of this single character token, or NO_SYMBOL.
+         */
+        private final char symbol;
+
+        /**
+         * Precedence of this operator, or -1 if this is not an infix or
+         * postfix operator.
+         */
+        private final int precedence;
+
+        /**
+         * Creates a kind of token.
+         *
+         * @param description describes this kind of token in syntax errors
+         * @param symbol character of this single character token, or NO_SYMBOL
+         * @param precedence precedence of this operator, or -1
+         */
+        TokenKind(String description, char symbol, int precedence) {
+            this.description = description;
+            this.symbol = symbol;
+            this.precedence = precedence;
+        }
+
+        /**
+         * Gets the kind of the single character token of a character.
+         *
+         * @param character the character of the token
+         * @return kind of the token, or null if the character cannot start a
+         *     single character token
+         */
+        private static TokenKind forSymbol(char character) {
+            TokenKind kind = null;
+            if (character < BY_SYMBOL.length) {
+                kind = BY_SYMBOL[character];
+            }
+            return kind;
+        }
+    }
+}
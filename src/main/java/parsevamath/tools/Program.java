@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+/**
+ * A flattened expression, run by a small stack machine. The instructions
+ * of the expression are stored in postfix order in one int array, with
+ * operands inline after their opcode. Numbers are held in a constant
+ * pool and functions in a table resolved at compile time, so evaluating
+ * a program walks three arrays instead of a tree of objects.
+ *
+ * <p>Subexpressions shared by several parents, as in the DAGs built by
+ * {@link OptimizationPass#COMMON_SUBEXPRESSION_ELIMINATION}, are computed
+ * once and kept in registers, which are stored after the stack in the
+ * same array.
+ *
+ * <p>Programs are built by {@link ProgramCompiler} and are immutable, so
+ * one program can be evaluated by any number of threads at once.
+ */
+public final class Program implements CompiledExpression {
+
+    /**
+     * Pushes a constant from the pool. Operand: index in the pool.
+     */
+    static final int CONST = 0;
+
+    /**
+     * Pops two values and pushes their sum.
+     */
+    static final int ADD = 1;
+
+    /**
+     * Pops two values and pushes their difference.
+     */
+    static final int SUB = 2;
+
+    /**
+     * Pops two values and pushes their product.
+     */
+    static final int MUL = 3;
+
+    /**
+     * Pops two values and pushes their quotient.
+     */
+    static final int DIV = 4;
+
+    /**
+     * Negates the value on top of the stack.
+     */
+    static final int NEG = 5;
+
+    /**
+     * Replaces the value on top of the stack with its factorial.
+     */
+    static final int FACT = 6;
+
+    /**
+     * Applies a unary function to the value on top of the stack.
+     * Operand: index in the function table.
+     */
+    static final int CALL1 = 7;
+
+    /**
+     * Pops two values and pushes the result of a binary function.
+     * Operand: index in the function table.
+     */
+    static final int CALL2 = 8;
+
+    /**
+     * Pops three values and pushes the result of a ternary function.
+     * Operand: index in the function table.
+     */
+    static final int CALL3 = 9;
+
+    /**
+     * Pushes the value of a register. Operand: index of the register.
+     */
+    static final int LOAD = 10;
+
+    /**
+     * Copies the value on top of the stack into a register, without
+     * popping it. Operand: index of the register.
+     */
+    static final int STORE = 11;
+
+    /**
+     * Pushes the value of a variable. Operand: slot of the variable.
+     */
+    static final int VARIABLE = 12;
+
+    /**
+     * Instructions, in postfix order.
+     */
+    private final int[] code;
+
+    /**
+     * Constant pool.
+     */
+    private final double[] constants;
+
+    /**
+     * Function table.
+     */
+    private final MathFunction[] functions;
+
+    /**
+     * Number of stack slots needed to run this program.
+     */
+    private final int maxStack;
+
+    /**
+     * Number of registers holding shared subexpressions.
+     */
+    private final int registerCount;
+
+    /**
+     * Number of variable slots read by this program.
+     */
+    private final int variableCount;
+
+    /**
+     * Creates a new program. The arrays are not copied.
+     *
+     * @param code instructions, in postfix order
+     * @param constants constant pool
+     * @param functions function table
+     * @param maxStack number of stack slots needed to run the program
+     * @param registerCount number of registers used by the program
+     * @param variableCount number of variable slots read by the program
+     */
+    Program(int[] code, double[] constants, MathFunction[] functions, int maxStack,
+            int registerCount, int variableCount) {
+        this.code = code;
+        this.constants = constants;
+        this.functions = functions;
+        this.maxStack = maxStack;
+        this.registerCount = registerCount;
+        this.variableCount = variableCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation allocates a new frame for each evaluation; use
+     * {@link #evaluate(double[], double[])} to reuse one.
+     */
+    @Override
+    public double evaluate(double[] variables) {
+        return evaluate(variables, new double[getFrameSize()]);
+    }
+
+    /**
+     * Evaluates this program on the given frame, which holds the stack
+     * followed by the registers.
+     *
+     * @param variables the values of the variables, indexed by slot
+     * @param stack frame of at least {@link #getFrameSize()} slots
+     * @return the value of the expression
+     * @throws IllegalStateException on unknown opcode
+     */
+    public double evaluate(double[] variables, double[] stack) {
+        int top = -1;
+        int position = 0;
+        while (position < code.length) {
+            final int opcode = code[position];
+            position++;
+            switch (opcode) {
+                case CONST -> {
+                    top++;
+                    stack[top] = constants[code[position++]];
+                }
+                case ADD -> {
+                    top--;
+                    stack[top] += stack[top + 1];
+                }
+                case SUB -> {
+                    top--;
+                    stack[top] -= stack[top + 1];
+                }
+                case MUL -> {
+                    top--;
+                    stack[top] *= stack[top + 1];
+                }
+                case DIV -> {
+                    top--;
+                    stack[top] /= stack[top + 1];
+                }
+                case NEG -> {
+                    stack[top] = -stack[top];
+                }
+                case FACT -> {
+                    stack[top] = MathUtils.factorial(stack[top]);
+                }
+                case CALL1 -> {
+                    stack[top] = functions[code[position++]].apply(stack[top]);
+                }
+                case CALL2 -> {
+                    top--;
+                    stack[top] = functions[code[position++]].apply(stack[top], stack[top + 1]);
+                }
+                case CALL3 -> {
+                    top -= 2;
+                    stack[top] = functions[code[position++]].apply(stack[top], stack[top + 1],
+                        stack[top + 2]);
+                }
+                case LOAD -> {
+                    top++;
+                    stack[top] = stack[maxStack + code[position++]];
+                }
+                case STORE -> {
+                    stack[maxStack + code[position++]] = stack[top];
+                }
+                case VARIABLE -> {
+                    top++;
+                    stack[top] = variables[code[position++]];
+                }
+                default -> throw new IllegalStateException("Unknown opcode: " + opcode);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Gets the number of stack slots needed to run this program.
+     *
+     * @return maximum stack depth
+     */
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Gets the number of registers holding shared subexpressions.
+     *
+     * @return number of registers
+     */
+    public int getRegisterCount() {
+        return registerCount;
+    }
+
+    /**
+     * Gets the number of variable slots read by this program, which is one
+     * more than the highest slot of its variables.
+     *
+     * @return number of variable slots
+     */
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    /**
+     * Gets the number of slots in a frame passed to
+     * {@link #evaluate(double[], double[])}: the stack followed by the
+     * registers.
+     *
+     * @return frame size
+     */
+    public int getFrameSize() {
+        return maxStack + registerCount;
+    }
+
+    /**
+     * Gets the number of ints in the instruction array of this program,
+     * counting opcodes and their operands.
+     *
+     * @return length of the code
+     */
+    public int getCodeLength() {
+        return code.length;
+    }
+
+    /**
+     * Gets the number of entries in the constant pool of this program.
+     *
+     * @return size of the constant pool
+     */
+    public int getConstantCount() {
+        return constants.length;
+    }
+
+    /**
+     * Gets the number of entries in the function table of this program.
+     *
+     * @return size of the function table
+     */
+    public int getFunctionCount() {
+        return functions.length;
+    }
+
+    /**
+     * Gets the instructions of this program. The array is not copied.
+     *
+     * @return instructions, in postfix order
+     */
+    int[] getCode() {
+        return code;
+    }
+
+    /**
+     * Gets the constant pool of this program. The array is not copied.
+     *
+     * @return constant pool
+     */
+    double[] getConstants() {
+        return constants;
+    }
+
+    /**
+     * Gets the function table of this program. The array is not copied.
+     *
+     * @return function table
+     */
+    MathFunction[] getFunctions() {
+        return functions;
+    }
+}
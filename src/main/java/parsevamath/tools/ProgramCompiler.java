@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * This class lowers an expression tree into a {@link Program}. Nodes are
+ * emitted in postfix order, numbers are de-duplicated into a constant pool
+ * and functions into a function table.
+ *
+ * <p>Each visit method emits the instructions of a node and returns the
+ * number of stack slots needed to evaluate it. Nodes shared by several
+ * parents are emitted once, and their value is kept in a register for
+ * the other parents.
+ */
+public final class ProgramCompiler extends AbstractMathAstVisitor<Integer> {
+
+    /**
+     * Initial capacity of the instruction buffer.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Instruction buffer.
+     */
+    private int[] code = new int[INITIAL_CAPACITY];
+
+    /**
+     * Number of ints used in the instruction buffer.
+     */
+    private int codeLength;
+
+    /**
+     * Index of each constant in the pool, keyed on the bits of the value.
+     */
+    private final Map<Long, Integer> constantIndexes = new TreeMap<>();
+
+    /**
+     * Constant pool, in index order.
+     */
+    private final List<Double> constants = new ArrayList<>();
+
+    /**
+     * Function table, in index order.
+     */
+    private final List<MathFunction> functions = new ArrayList<>();
+
+    /**
+     * Nodes referenced by more than one parent.
+     */
+    private final Set<ExpressionNode> sharedNodes;
+
+    /**
+     * Register of each shared node emitted so far.
+     */
+    private final Map<ExpressionNode, Integer> registers = new IdentityHashMap<>();
+
+    /**
+     * One more than the highest variable slot emitted so far.
+     */
+    private int variableCount;
+
+    /**
+     * Creates a compiler for the given expression tree.
+     *
+     * @param root root of the expression tree
+     */
+    private ProgramCompiler(ExpressionNode root) {
+        sharedNodes = ParsevaUtils.findSharedNodes(root);
+    }
+
+    /**
+     * Compiles an expression tree into a program.
+     *
+     * @param root root of the expression tree
+     * @return compiled program
+     */
+    public static Program compile(ExpressionNode root) {
+        final ProgramCompiler compiler = new ProgramCompiler(root);
+        final int maxStack = compiler.visit(root);
+        final double[] pool = compiler.constants.stream()
+            .mapToDouble(Double::doubleValue)
+            .toArray();
+        return new Program(Arrays.copyOf(compiler.code, compiler.codeLength), pool,
+            compiler.functions.toArray(new MathFunction[0]), maxStack,
+            compiler.registers.size(), compiler.variableCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation loads shared nodes from their register once
+     * they have been emitted, and stores them after emitting them.
+     */
+    @Override
+    public Integer visit(ExpressionNode node) {
+        final Integer register = registers.get(node);
+        int maxStack = 1;
+        if (register == null) {
+            maxStack = super.visit(node);
+            if (sharedNodes.contains(node)) {
+                final int newRegister = registers.size();
+                registers.put(node, newRegister);
+                emit(Program.STORE);
+                emit(newRegister);
+            }
+        }
+        else {
+            emit(Program.LOAD);
+            emit(register);
+        }
+        return maxStack;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits an add instruction.
+     */
+    @Override
+    Integer visit(AdditionNode node) {
+        return emitInfix(node, Program.ADD);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a sub instruction.
+     */
+    @Override
+    Integer visit(SubtractionNode node) {
+        return emitInfix(node, Program.SUB);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a mul instruction.
+     */
+    @Override
+    Integer visit(MultiplicationNode node) {
+        return emitInfix(node, Program.MUL);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a div instruction.
+     */
+    @Override
+    Integer visit(DivisionNode node) {
+        return emitInfix(node, Program.DIV);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a neg instruction.
+     */
+    @Override
+    Integer visit(NegateNode node) {
+        final int maxStack = visit(node.innerNode());
+        emit(Program.NEG);
+        return maxStack;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits the arguments followed by a call
+     * instruction for the arity of the function. If the function could not
+     * be resolved, a NaN constant is emitted instead.
+     */
+    @Override
+    Integer visit(MethodNode node) {
+        final List<ExpressionNode> arguments = node.arguments();
+        final MathFunction function = node.function();
+
+        int maxStack = 1;
+        if (function == null) {
+            emitConstant(Double.NaN);
+        }
+        else {
+            for (int i = 0; i < arguments.size(); i++) {
+                maxStack = Math.max(maxStack, i + visit(arguments.get(i)));
+            }
+            final int opcode = switch (function.getArity()) {
+                case 1 -> Program.CALL1;
+                case 2 -> Program.CALL2;
+                default -> Program.CALL3;
+            };
+            emit(opcode);
+            emit(functionIndex(function));
+        }
+        return maxStack;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a const instruction.
+     */
+    @Override
+    Integer visit(NumberNode node) {
+        emitConstant(node.value());
+        return 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a const instruction.
+     */
+    @Override
+    Integer visit(ConstantNode node) {
+        emitConstant(node.value());
+        return 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a fact instruction.
+     */
+    @Override
+    Integer visit(FactorialNode node) {
+        final int maxStack = visit(node.innerNode());
+        emit(Program.FACT);
+        return maxStack;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation emits a var instruction.
+     */
+    @Override
+    Integer visit(VariableNode node) {
+        emit(Program.VARIABLE);
+        emit(node.slot());
+        variableCount = Math.max(variableCount, node.slot() + 1);
+        return 1;
+    }
+
+    /**
+     * Emits both operands of an infix node, followed by the operator.
+     *
+     * @param node infix node
+     * @param opcode opcode of the operator
+     * @return number of stack slots needed to evaluate node
+     */
+    private int emitInfix(InfixExpressionNode node, int opcode) {
+        final int left = visit(node.left());
+        final int right = visit(node.right());
+        emit(opcode);
+        return Math.max(left, 1 + right);
+    }
+
+    /**
+     * Emits a const instruction, adding the value to the pool if needed.
+     *
+     * @param value constant value
+     */
+    private void emitConstant(double value) {
+        final Integer index = constantIndexes.computeIfAbsent(
+            Double.doubleToRawLongBits(value), bits -> {
+                constants.add(value);
+                return constants.size() - 1;
+            });
+        emit(Program.CONST);
+        emit(index);
+    }
+
+    /**
+     * Gets the index of a function in the table, adding it if needed.
+     *
+     * @param function function to look up
+     * @return index of function
+     */
+    private int functionIndex(MathFunction function) {
+        int index = functions.indexOf(function);
+        if (index < 0) {
+            functions.add(function);
+            index = functions.size() - 1;
+        }
+        return index;
+    }
+
+    /**
+     * Appends an int to the instruction buffer.
+     *
+     * @param value opcode or operand
+     */
+    private void emit(int value) {
+        if (codeLength == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[codeLength] = value;
+        codeLength++;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.List;
+
+/**
+ * This class builds expression nodes, simplifying each node as it is built.
+ * Literal operands are folded, terms that are zero are dropped, factors
+ * that are one are removed and negations are moved out of products. The
+ * simplifications follow the rules of real arithmetic, so that {@code 0 * x}
+ * is zero even where {@code x} is not finite; they suit expressions that are
+ * derived from another one, such as derivatives, where a zero stands for a
+ * term that cancels exactly.
+ */
+final class Simplifier {
+
+    /**
+     * The number zero.
+     */
+    static final NumberNode ZERO = new NumberNode(0);
+
+    /**
+     * The number one.
+     */
+    static final NumberNode ONE = new NumberNode(1);
+
+    /**
+     * The number two.
+     */
+    static final NumberNode TWO = new NumberNode(2);
+
+    /**
+     * Prevent instantiation.
+     */
+    private Simplifier() {
+    }
+
+    /**
+     * Builds the sum of two nodes.
+     *
+     * @param left the left operand
+     * @param right the right operand
+     * @return simplified sum
+     */
+    static ExpressionNode add(ExpressionNode left, ExpressionNode right) {
+        final ExpressionNode result;
+        if (left instanceof NumberNode number) {
+            result = addNumber(number.value(), right);
+        }
+        else if (right instanceof NumberNode number) {
+            result = addNumber(number.value(), left);
+        }
+        else if (right instanceof NegateNode negateNode) {
+            result = subtract(left, negateNode.innerNode());
+        }
+        else if (left.equals(right)) {
+            result = multiply(TWO, left);
+        }
+        else {
+            result = new AdditionNode(left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Builds the sum of a number and a node.
+     *
+     * @param value the number
+     * @param node the node
+     * @return simplified sum
+     */
+    private static ExpressionNode addNumber(double value, ExpressionNode node) {
+        final ExpressionNode result;
+        if (value == 0) {
+            result = node;
+        }
+        else if (node instanceof NumberNode number) {
+            result = new NumberNode(value + number.value());
+        }
+        else {
+            result = new AdditionNode(new NumberNode(value), node);
+        }
+        return result;
+    }
+
+    /**
+     * Builds the difference of two nodes.
+     *
+     * @param left the left operand
+     * @param right the right operand
+     * @return simplified difference
+     */
+    static ExpressionNode subtract(ExpressionNode left, ExpressionNode right) {
+        final ExpressionNode result;
+        if (right instanceof NumberNode number) {
+            result = addNumber(-number.value(), left);
+        }
+        else if (AbstractRewritingVisitor.isNumber(left, 0)) {
+            result = negate(right);
+        }
+        else if (right instanceof NegateNode negateNode) {
+            result = add(left, negateNode.innerNode());
+        }
+        else {
+            result = new SubtractionNode(left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Builds the product of two nodes. A literal factor is kept on the left,
+     * and a reciprocal factor becomes a division.
+     *
+     * @param left the left operand
+     * @param right the right operand
+     * @return simplified product
+     */
+    static ExpressionNode multiply(ExpressionNode left, ExpressionNode right) {
+        final ExpressionNode result;
+        if (left instanceof NumberNode number) {
+            result = scale(number.value(), right);
+        }
+        else if (right instanceof NumberNode number) {
+            result = scale(number.value(), left);
+        }
+        else if (left instanceof NegateNode negateNode) {
+            result = negate(multiply(negateNode.innerNode(), right));
+        }
+        else if (right instanceof NegateNode negateNode) {
+            result = negate(multiply(left, negateNode.innerNode()));
+        }
+        else if (left instanceof DivisionNode quotient
+            && AbstractRewritingVisitor.isNumber(quotient.left(), 1)) {
+            result = divide(right, quotient.right());
+        }
+        else if (right instanceof DivisionNode quotient
+            && AbstractRewritingVisitor.isNumber(quotient.left(), 1)) {
+            result = divide(left, quotient.right());
+        }
+        else {
+            result = new MultiplicationNode(left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Builds the product of a number and a node. The number is merged into
+     * a literal factor or numerator of the node.
+     *
+     * @param factor the number
+     * @param node the node
+     * @return simplified product
+     */
+    private static ExpressionNode scale(double factor, ExpressionNode node) {
+        final ExpressionNode result;
+        if (factor == 0) {
+            result = ZERO;
+        }
+        else if (factor == 1) {
+            result = node;
+        }
+        else if (node instanceof NumberNode number) {
+            result = new NumberNode(factor * number.value());
+        }
+        else if (node instanceof NegateNode negateNode) {
+            result = scale(-factor, negateNode.innerNode());
+        }
+        else if (node instanceof MultiplicationNode product
+            && product.left() instanceof NumberNode number) {
+            result = scale(factor * number.value(), product.right());
+        }
+        else if (node instanceof DivisionNode quotient
+            && quotient.left() instanceof NumberNode number) {
+            result = divide(new NumberNode(factor * number.value()), quotient.right());
+        }
+        else if (factor == -1) {
+            result = new NegateNode(node);
+        }
+        else {
+            result = new MultiplicationNode(new NumberNode(factor), node);
+        }
+        return result;
+    }
+
+    /**
+     * Builds the quotient of two nodes.
+     *
+     * @param left the dividend
+     * @param right the divisor
+     * @return simplified quotient
+     */
+    static ExpressionNode divide(ExpressionNode left, ExpressionNode right) {
+        final ExpressionNode result;
+        if (AbstractRewritingVisitor.isNumber(left, 0)) {
+            result = ZERO;
+        }
+        else if (AbstractRewritingVisitor.isNumber(right, 1)) {
+            result = left;
+        }
+        else if (left instanceof NumberNode dividend && right instanceof NumberNode divisor) {
+            result = new NumberNode(dividend.value() / divisor.value());
+        }
+        else if (left instanceof NegateNode negateNode) {
+            result = negate(divide(negateNode.innerNode(), right));
+        }
+        else {
+            result = new DivisionNode(left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Builds the negation of a node.
+     *
+     * @param node the node to negate
+     * @return simplified negation
+     */
+    static ExpressionNode negate(ExpressionNode node) {
+        return scale(-1, node);
+    }
+
+    /**
+     * Builds a call of a function.
+     *
+     * @param function the function to call
+     * @param arguments the arguments of the call
+     * @return call of function
+     */
+    static ExpressionNode call(MathFunction function, ExpressionNode... arguments) {
+        return new MethodNode(function.getFunctionName(), function, List.of(arguments));
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+/**
+ * This class replaces a division by a power of two with a multiplication
+ * by its reciprocal. The reciprocal of a power of two is exact, so both
+ * forms round to the same result, but a multiplication is cheaper.
+ */
+final class StrengthReductionVisitor extends AbstractRewritingVisitor {
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation turns {@code x / c} into {@code x * (1 / c)}
+     * when c is a normal power of two, whose reciprocal is always exact.
+     */
+    @Override
+    ExpressionNode visit(DivisionNode node) {
+        final ExpressionNode left = visit(node.left());
+        final ExpressionNode right = visit(node.right());
+        final ExpressionNode result;
+        if (right instanceof NumberNode number && hasExactReciprocal(number.value())) {
+            result = new MultiplicationNode(left, new NumberNode(1 / number.value()));
+        }
+        else {
+            result = new DivisionNode(left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Determines if the reciprocal of a value is exactly representable.
+     *
+     * @param value the divisor
+     * @return true if value is a finite, normal power of two
+     */
+    static boolean hasExactReciprocal(double value) {
+        final double magnitude = Math.abs(value);
+        return magnitude >= Double.MIN_NORMAL && magnitude <= Double.MAX_VALUE
+            && magnitude == Math.scalb(1.0, Math.getExponent(magnitude));
+    }
+}
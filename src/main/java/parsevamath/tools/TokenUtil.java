@@ -88,6 +88,7 @@ public final class TokenUtil {
      *
      * @param name the token name to look up
      * @return token ID
+     * @throws IllegalArgumentException if the token name is not defined
      */
     public static Integer getTokenID(String name) {
         final Map.Entry<Integer, String> tokenEntry =
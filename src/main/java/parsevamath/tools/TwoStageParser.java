@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.ANTLRErrorStrategy;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import parsevamath.tools.grammar.MathLexer;
+import parsevamath.tools.grammar.MathParser;
+
+/**
+ * A reusable lexer, token stream and parser, which parse expressions in
+ * two stages. The first stage uses the cheaper SLL prediction mode, without
+ * error recovery or reporting, and gives up on the first syntax error.
+ * Only then are the tokens parsed again in full LL mode, with the usual
+ * error recovery, and errors reported to the error listener.
+ *
+ * <p>Creating a lexer and parser sets up their interpreters and listener
+ * lists, which costs more than parsing a short expression. Instances are
+ * therefore kept per thread and pointed at each new input. An instance is
+ * not thread-safe; a parse that starts while another one is running on
+ * the same instance gets a fresh instance.
+ */
+final class TwoStageParser {
+
+    /**
+     * Number of expressions parsed.
+     */
+    private static final LongAdder PARSE_COUNT = new LongAdder();
+
+    /**
+     * Number of expressions that had to be parsed again in full LL mode.
+     */
+    private static final LongAdder FALLBACK_COUNT = new LongAdder();
+
+    /**
+     * Reports the syntax errors of the lexer, and of the parser in full LL
+     * mode.
+     */
+    private final ANTLRErrorListener errorListener;
+
+    /**
+     * The reused lexer.
+     */
+    private final MathLexer lexer;
+
+    /**
+     * The reused token stream, reading from the lexer.
+     */
+    private final CommonTokenStream tokenStream;
+
+    /**
+     * The reused parser, reading from the token stream.
+     */
+    private final MathParser parser;
+
+    /**
+     * Gives up on the first syntax error, in the first stage.
+     */
+    private final ANTLRErrorStrategy bailStrategy = new BailErrorStrategy();
+
+    /**
+     * Recovers from syntax errors, in the second stage.
+     */
+    private final ANTLRErrorStrategy recoveryStrategy = new DefaultErrorStrategy();
+
+    /**
+     * Whether a parse is running on this instance.
+     */
+    private boolean busy;
+
+    /**
+     * Creates a parser.
+     *
+     * @param errorListener reports syntax errors of the lexer, and of the
+     *                      parser in full LL mode
+     */
+    TwoStageParser(ANTLRErrorListener errorListener) {
+        this.errorListener = errorListener;
+        lexer = new MathLexer(null);
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(errorListener);
+        tokenStream = new CommonTokenStream(lexer);
+        parser = DirectAstBuilder.createParser(tokenStream);
+    }
+
+    /**
+     * Parses the characters of an expression in two stages. Both stages
+     * start from the first token; tokens are read before the first stage,
+     * so that lexer errors are reported before parsing begins, and the
+     * lexer only runs once.
+     *
+     * @param <T> the type of the result
+     * @param input the characters of the expression
+     * @param firstStage parses with a parser that gives up on the first
+     *                   syntax error, by throwing ParseCancellationException
+     * @param secondStage parses with a parser that recovers from syntax
+     *                    errors and reports them
+     * @return result of the stage that succeeded
+     */
+    <T> T parse(CharStream input, Function<MathParser, T> firstStage,
+                Function<MathParser, T> secondStage) {
+        final T result;
+        if (busy) {
+            result = new TwoStageParser(errorListener).parse(input, firstStage, secondStage);
+        }
+        else {
+            busy = true;
+            try {
+                result = parseTwoStage(input, firstStage, secondStage);
+            }
+            finally {
+                release();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs the first stage, and the second stage if the first one fails.
+     *
+     * @param <T> the type of the result
+     * @param input the characters of the expression
+     * @param firstStage parses with a parser that gives up on the first
+     *                   syntax error
+     * @param secondStage parses with a parser that recovers from syntax
+     *                    errors
+     * @return result of the stage that succeeded
+     */
+    private <T> T parseTwoStage(CharStream input, Function<MathParser, T> firstStage,
+                                Function<MathParser, T> secondStage) {
+        lexer.setInputStream(input);
+        tokenStream.setTokenSource(lexer);
+        tokenStream.fill();
+        parser.setTokenStream(tokenStream);
+        parser.removeErrorListeners();
+        parser.setErrorHandler(bailStrategy);
+        parser.setBuildParseTree(true);
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        PARSE_COUNT.increment();
+
+        T result;
+        try {
+            result = firstStage.apply(parser);
+        }
+        catch (ParseCancellationException exception) {
+            FALLBACK_COUNT.increment();
+            parser.reset();
+            parser.addErrorListener(errorListener);
+            parser.setErrorHandler(recoveryStrategy);
+            parser.setBuildParseTree(true);
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            result = secondStage.apply(parser);
+        }
+        return result;
+    }
+
+    /**
+     * Drops the input and tokens of the last parse, so that they are not
+     * kept alive by this instance, and makes it available again.
+     */
+    private void release() {
+        lexer.setInputStream(null);
+        tokenStream.setTokenSource(lexer);
+        busy = false;
+    }
+
+    /**
+     * Gets the number of expressions parsed since the JVM started.
+     *
+     * @return parse count
+     */
+    static long getParseCount() {
+        return PARSE_COUNT.sum();
+    }
+
+    /**
+     * Gets the number of expressions that failed to parse in SLL mode, and
+     * were parsed again in full LL mode.
+     *
+     * @return fallback count
+     */
+    static long getFallbackCount() {
+        return FALLBACK_COUNT.sum();
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels built on the incubating Vector API, which run the arithmetic of a
+ * chunk in the widest vector lanes supported by the CPU, such as AVX on
+ * x86-64 or NEON on AArch64. The elements after the last full vector are
+ * handled with scalar code.
+ *
+ * <p>Only operations whose vector form gives the same results as
+ * {@link Math} are overridden: the four arithmetic operators, negation,
+ * and the sqrt, abs, min, max and fma functions. Other functions and
+ * factorial fall back to the scalar loops of {@link ColumnKernels}.
+ *
+ * <p>This class must only be loaded when
+ * {@link ColumnKernels#isVectorSupported()} is true.
+ */
+final class VectorKernels extends ColumnKernels {
+
+    /**
+     * The only instance of this class.
+     */
+    static final VectorKernels INSTANCE = new VectorKernels();
+
+    /**
+     * Widest vector shape supported by the CPU.
+     */
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * Creates the vector kernels.
+     */
+    private VectorKernels() {
+        // singleton
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation returns true.
+     */
+    @Override
+    boolean isVectorized() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation adds whole vectors of lanes at once.
+     */
+    @Override
+    void add(double[] left, double[] right, int length) {
+        final int bound = SPECIES.loopBound(length);
+        int index = 0;
+        for (; index < bound; index += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, left, index)
+                .add(DoubleVector.fromArray(SPECIES, right, index))
+                .intoArray(left, index);
+        }
+        for (; index < length; index++) {
+            left[index] += right[index];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation subtracts whole vectors of lanes at once.
+     */
+    @Override
+    void subtract(double[] left, double[] right, int length) {
+        final int bound = SPECIES.loopBound(length);
+        int index = 0;
+        for (; index < bound; index += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, left, index)
+                .sub(DoubleVector.fromArray(SPECIES, right, index))
+                .intoArray(left, index);
+        }
+        for (; index < length; index++) {
+            left[index] -= right[index];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation multiplies whole vectors of lanes at once.
+     */
+    @Override
+    void multiply(double[] left, double[] right, int length) {
+        final int bound = SPECIES.loopBound(length);
+        int index = 0;
+        for (; index < bound; index += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, left, index)
+                .mul(DoubleVector.fromArray(SPECIES, right, index))
+                .intoArray(left, index);
+        }
+        for (; index < length; index++) {
+            left[index] *= right[index];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation divides whole vectors of lanes at once.
+     */
+    @Override
+    void divide(double[] left, double[] right, int length) {
+        final int bound = SPECIES.loopBound(length);
+        int index = 0;
+        for (; index < bound; index += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, left, index)
+                .div(DoubleVector.fromArray(SPECIES, right, index))
+                .intoArray(left, index);
+        }
+        for (; index < length; index++) {
+            left[index] /= right[index];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation negates whole vectors of lanes at once.
+     */
+    @Override
+    void negate(double[] operands, int length) {
+        final int bound = SPECIES.loopBound(length);
+        int index = 0;
+        for (; index < bound; index += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, operands, index)
+                .neg()
+                .intoArray(operands, index);
+        }
+        for (; index < length; index++) {
+            operands[index] = -operands[index];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation vectorizes sqrt and abs.
+     */
+    @Override
+    void apply(MathFunction function, double[] first, int length) {
+        final int bound = SPECIES.loopBound(length);
+        int index = 0;
+        if (function == MathFunction.SQRT) {
+            for (; index < bound; index += SPECIES.length()) {
+                DoubleVector.fromArray(SPECIES, first, index).sqrt().intoArray(first, index);
+            }
+        }
+        else if (function == MathFunction.ABS) {
+            for (; index < bound; index += SPECIES.length()) {
+                DoubleVector.fromArray(SPECIES, first, index).abs().intoArray(first, index);
+            }
+        }
+        for (; index < length; index++) {
+            first[index] = function.apply(first[index]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation vectorizes min and max.
+     */
+    @Override
+    void apply(MathFunction function, double[] first, double[] second, int length) {
+        final int bound = SPECIES.loopBound(length);
+        int index = 0;
+        if (function == MathFunction.MIN) {
+            for (; index < bound; index += SPECIES.length()) {
+                DoubleVector.fromArray(SPECIES, first, index)
+                    .min(DoubleVector.fromArray(SPECIES, second, index))
+                    .intoArray(first, index);
+            }
+        }
+        else if (function == MathFunction.MAX) {
+            for (; index < bound; index += SPECIES.length()) {
+                DoubleVector.fromArray(SPECIES, first, index)
+                    .max(DoubleVector.fromArray(SPECIES, second, index))
+                    .intoArray(first, index);
+            }
+        }
+        for (; index < length; index++) {
+            first[index] = function.apply(first[index], second[index]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation vectorizes fma.
+     */
+    @Override
+    void apply(MathFunction function, double[] first, double[] second, double[] third,
+               int length) {
+        int index = 0;
+        if (function == MathFunction.FMA) {
+            final int bound = SPECIES.loopBound(length);
+            for (; index < bound; index += SPECIES.length()) {
+                DoubleVector.fromArray(SPECIES, first, index)
+                    .fma(DoubleVector.fromArray(SPECIES, second, index),
+                        DoubleVector.fromArray(SPECIES, third, index))
+                    .intoArray(first, index);
+            }
+        }
+        for (; index < length; index++) {
+            first[index] = function.apply(first[index], second[index], third[index]);
+        }
+    }
+}
@@ -18,6 +18,7 @@ expr
     |   left=expr op=( OP_MUL | OP_DIV ) right=expr    # infixExpr
     |   left=expr op=( OP_ADD | OP_SUB ) right=expr    # infixExpr
     |   func=ID lparen=LPAREN expr (COMMA expr)* rparen=RPAREN  # funcExpr
+    |   name=ID                              # variableExpr
     |   value=NUM                            # numberExpr
     |   constant                            #constExpr
     |   expr fact=OP_FACT                        #factorialExpr
@@ -36,9 +36,11 @@ import org.antlr.v4.runtime.InputMismatchException;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Vocabulary;
 import org.antlr.v4.runtime.VocabularyImpl;
+import org.antlr.v4.runtime.tree.TerminalNode;
 import org.junit.jupiter.api.Test;
 
 import parsevamath.tools.MathUtils;
+import parsevamath.tools.grammar.MathBaseVisitor;
 import parsevamath.tools.grammar.MathLexer;
 import parsevamath.tools.grammar.MathParser;
 
@@ -185,4 +187,42 @@ class MathParserTest {
             .that(sempred2)
             .isTrue();
     }
+
+    @Test
+    void testVariableExpr() {
+        final MathParser parser = getMathParser("x");
+        final MathParser.ExprContext actual = parser.expr();
+
+        assertWithMessage("")
+            .that(actual)
+            .isInstanceOf(MathParser.VariableExprContext.class);
+        assertWithMessage("")
+            .that(((MathParser.VariableExprContext) actual).ID().getText())
+            .isEqualTo("x");
+    }
+
+    @Test
+    void testBaseVisitorVisitsAllTerminals() {
+        final MathParser parser = getMathParser("-(x + 2) * sqrt(pi, 1)!");
+        final Integer actual = new MathBaseVisitor<Integer>() {
+            @Override
+            public Integer visitTerminal(TerminalNode node) {
+                return 1;
+            }
+
+            @Override
+            protected Integer defaultResult() {
+                return 0;
+            }
+
+            @Override
+            protected Integer aggregateResult(Integer aggregate, Integer nextResult) {
+                return aggregate + nextResult;
+            }
+        }.visit(parser.compilationUnit());
+
+        assertWithMessage("Every token and EOF should be visited")
+            .that(actual)
+            .isEqualTo(15);
+    }
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class BatchEvaluatorTest {
+
+    private static final String[] EXPRESSIONS = {
+        "x * y - 2 * x + sqrt(y) / 3",
+        "sin(x) * sin(x) + cos(y) * cos(y) - -x",
+        "pow(x, 2) + max(x, y) - fma(x, y, 1)",
+        "((abs(x) / 100)!) + e * pi",
+        "sqrt(x * x + y * y) / (1 + sqrt(x * x + y * y))",
+    };
+
+    private static double[][] columns(int rowCount) {
+        final double[][] columns = new double[2][rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            columns[0][row] = row - rowCount / 2.0;
+            columns[1][row] = row * 0.25;
+        }
+        return columns;
+    }
+
+    @Test
+    void testMatchesPerRowEvaluation() {
+        final int rowCount = 1000;
+        final double[][] columns = columns(rowCount);
+        for (String expression : EXPRESSIONS) {
+            final ExpressionNode root = Main.buildExpressionTree(expression);
+            final ExpressionNode optimized = Optimizer.allPasses().optimize(root).root();
+            final double[] expected = new double[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                expected[row] = new DoubleEvaluator()
+                    .visit(root, new double[] {columns[0][row], columns[1][row]});
+            }
+
+            for (int chunkSize : new int[] {1, 7, 64, BatchEvaluator.DEFAULT_CHUNK_SIZE}) {
+                assertWithMessage(expression + " in chunks of " + chunkSize)
+                    .that(new BatchEvaluator(ProgramCompiler.compile(root), chunkSize)
+                        .evaluate(columns, rowCount))
+                    .isEqualTo(expected);
+                assertWithMessage(expression + " optimized, in chunks of " + chunkSize)
+                    .that(new BatchEvaluator(ProgramCompiler.compile(optimized), chunkSize)
+                        .evaluate(columns, rowCount))
+                    .isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void testVectorizedMatchesScalar() {
+        assertWithMessage("tests run with --add-modules jdk.incubator.vector")
+            .that(BatchEvaluator.isVectorSupported())
+            .isTrue();
+        final int rowCount = 1003;
+        final double[][] columns = columns(rowCount);
+        final double[] special = {
+            Double.NaN, -0.0, 0.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.MIN_VALUE, -Double.MAX_VALUE,
+        };
+        for (int i = 0; i < special.length; i++) {
+            columns[0][i * 3] = special[i];
+            columns[1][i * 5] = special[special.length - 1 - i];
+        }
+
+        final String[] expressions = {
+            "(x + y) * (x - y) / -y",
+            "sqrt(x) + abs(y) - min(x, y) * max(y, x)",
+            "fma(x, y, x) + cbrt(y) - hypot(x, y)",
+        };
+        for (String expression : expressions) {
+            final Program program = ProgramCompiler.compile(Main.buildExpressionTree(expression));
+            for (int chunkSize : new int[] {1, 7, 64, BatchEvaluator.DEFAULT_CHUNK_SIZE}) {
+                final BatchEvaluator vectorized = new BatchEvaluator(program, chunkSize, true);
+                assertThat(vectorized.isVectorized()).isTrue();
+                assertWithMessage(expression + " in chunks of " + chunkSize)
+                    .that(vectorized.evaluate(columns, rowCount))
+                    .isEqualTo(new BatchEvaluator(program, chunkSize).evaluate(columns, rowCount));
+            }
+        }
+    }
+
+    @Test
+    void testRowRange() {
+        final double[][] columns = columns(100);
+        final BatchEvaluator evaluator =
+            new BatchEvaluator(ProgramCompiler.compile(Main.buildExpressionTree("x + y")), 8);
+        final double[] output = new double[100];
+        Arrays.fill(output, -1);
+        evaluator.evaluate(columns, output, 10, 30);
+
+        for (int row = 0; row < output.length; row++) {
+            final double expected;
+            if (row >= 10 && row < 30) {
+                expected = columns[0][row] + columns[1][row];
+            }
+            else {
+                expected = -1;
+            }
+            assertWithMessage("row " + row).that(output[row]).isEqualTo(expected);
+        }
+
+        evaluator.evaluate(columns, output, 50, 50);
+        assertThat(output[50]).isEqualTo(-1.0);
+        assertThrows(IndexOutOfBoundsException.class,
+            () -> evaluator.evaluate(columns, output, 90, 101));
+    }
+
+    @Test
+    void testWithoutVariables() {
+        final BatchEvaluator evaluator =
+            new BatchEvaluator(ProgramCompiler.compile(Main.buildExpressionTree("2 * 3 + 1")));
+        final double[] output = new double[5];
+        evaluator.evaluate(new double[0][], output);
+        assertThat(output).usingExactEquality().containsExactly(7, 7, 7, 7, 7);
+        assertThat(evaluator.getChunkSize()).isEqualTo(BatchEvaluator.DEFAULT_CHUNK_SIZE);
+        assertThat(evaluator.isVectorized()).isFalse();
+    }
+
+    @Test
+    void testInvalidArguments() {
+        final Program program = ProgramCompiler.compile(Main.buildExpressionTree("x - y"));
+        assertThat(program.getVariableCount()).isEqualTo(2);
+
+        final IllegalArgumentException chunkSize = assertThrows(IllegalArgumentException.class,
+            () -> new BatchEvaluator(program, 0));
+        assertThat(chunkSize).hasMessageThat().isEqualTo("Chunk size must be positive: 0");
+
+        final BatchEvaluator evaluator = new BatchEvaluator(program);
+        final IllegalArgumentException missing = assertThrows(IllegalArgumentException.class,
+            () -> evaluator.evaluate(new double[1][10], 10));
+        assertThat(missing).hasMessageThat().isEqualTo("Expected 2 columns, but got 1");
+
+        final IllegalArgumentException shortColumn = assertThrows(
+            IllegalArgumentException.class,
+            () -> evaluator.evaluate(new double[][] {new double[10], new double[5]}, 10));
+        assertThat(shortColumn).hasMessageThat()
+            .isEqualTo("Column 1 has 5 rows, but 10 are needed");
+
+        final IllegalArgumentException nullColumn = assertThrows(
+            IllegalArgumentException.class,
+            () -> evaluator.evaluate(new double[][] {new double[10], null}, 10));
+        assertThat(nullColumn).hasMessageThat().isEqualTo("Missing column for slot 1");
+    }
+
+    @Test
+    void testUnreadColumnMayBeNull() {
+        final BatchEvaluator evaluator = new BatchEvaluator(
+            ProgramCompiler.compile(Main.buildExpressionTree("y * 2", List.of("x", "y"))));
+        assertThat(evaluator.evaluate(new double[][] {null, {1, 2, 3}}, 3))
+            .usingExactEquality().containsExactly(2, 4, 6).inOrder();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BatchRunnerTest {
+
+    @Test
+    void testResultsAndInlineErrors() throws IOException {
+        final BatchRunner runner = new BatchRunner(
+            line -> new DoubleEvaluator().visit(ExpressionParser.buildExpressionTreeStrictly(line)));
+        final StringWriter output = new StringWriter();
+        final BatchRunner.Summary summary = runner.run(new BufferedReader(new StringReader(
+            "1 + 2\n\n2 +* 3\n(3!)\n  \n1 / 0\n4 4")), output);
+
+        assertThat(output.toString()).isEqualTo("3.0\n\n"
+            + "error: line 1:3 extraneous input '*' expecting "
+            + "{'e', 'E', 'pi', 'PI', '+', '-', '(', NUM, ID}\n"
+            + "6.0\n\nInfinity\n"
+            + "error: line 1:2 extraneous input '4' expecting <EOF>\n");
+        assertThat(summary.lineCount()).isEqualTo(7);
+        assertThat(summary.errorCount()).isEqualTo(2);
+        assertThat(summary.toString()).isEqualTo("Evaluated 7 lines, 2 errors");
+    }
+
+    @Test
+    void testStrictParsing() {
+        assertThat(ExpressionParser.buildExpressionTreeStrictly("x * 2"))
+            .isEqualTo(Main.buildExpressionTree("x * 2"));
+        final IllegalArgumentException actual = assertThrows(IllegalArgumentException.class,
+            () -> ExpressionParser.buildExpressionTreeStrictly("2 $ 3"));
+        assertThat(actual).hasMessageThat().isEqualTo("line 1:2 token recognition error at: '$'");
+    }
+
+    @Test
+    void testMainBatchToFile(@TempDir Path directory) throws IOException {
+        final Path input = directory.resolve("input.txt");
+        final Path output = directory.resolve("output.txt");
+        Files.write(input, List.of("x * x", "sqrt(x) + y", "2 * 3"));
+
+        Main.main("--batch", input.toString(), "--output", output.toString(),
+            "--variable", "x=4", "--engine", "vm", "--optimize");
+
+        assertThat(Files.readAllLines(output))
+            .containsExactly("16.0", "error: Variable 'y' is not bound", "6.0")
+            .inOrder();
+    }
+}
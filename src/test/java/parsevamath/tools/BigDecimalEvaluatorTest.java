@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class BigDecimalEvaluatorTest {
+
+    private static final MathContext FIFTY_DIGITS = new MathContext(50);
+
+    private static BigDecimal evaluateExactly(String expression, MathContext context) {
+        return new BigDecimalEvaluator(context).visit(Main.buildExpressionTree(expression));
+    }
+
+    private static void assertDigits(String expression, String expected) {
+        final BigDecimal actual = evaluateExactly(expression, FIFTY_DIGITS);
+        assertThat(actual.toPlainString()).isEqualTo(expected);
+    }
+
+    @Test
+    void testDecimalLiterals() {
+        assertThat(evaluateExactly("0.1 + 0.2", MathContext.DECIMAL64))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("0.3"));
+        assertThat(evaluateExactly("1.1 * 1.1", MathContext.DECIMAL64))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("1.21"));
+        assertThat(evaluateExactly("-(2.5 - 0.25) / 3", new MathContext(4)))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("-0.7500"));
+    }
+
+    @Test
+    void testRoundingMode() {
+        assertThat(evaluateExactly("2 / 3", new MathContext(3, RoundingMode.DOWN)))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("0.666"));
+        assertThat(evaluateExactly("2 / 3", new MathContext(3, RoundingMode.HALF_UP)))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("0.667"));
+    }
+
+    @Test
+    void testConstants() {
+        assertDigits("pi", "3.1415926535897932384626433832795028841971693993751");
+        assertDigits("e", "2.7182818284590452353602874713526624977572470937000");
+    }
+
+    @Test
+    void testFunctionsToFiftyDigits() {
+        assertDigits("sqrt(2)", "1.4142135623730950488016887242096980785696718753769");
+        assertDigits("log(2)", "0.69314718055994530941723212145817656807550013436026");
+        assertDigits("log(10)", "2.3025850929940456840179914546843642076011014886288");
+        assertDigits("exp(1)", "2.7182818284590452353602874713526624977572470937000");
+        assertDigits("sin(1)", "0.84147098480789650665250232163029899962256306079837");
+        assertDigits("cos(1)", "0.54030230586813971740093660744297660373231042061792");
+        assertDigits("atan(1) * 4", "3.1415926535897932384626433832795028841971693993751");
+        assertDigits("asin(0.5) * 6", "3.1415926535897932384626433832795028841971693993751");
+        assertDigits("acos(-1)", "3.1415926535897932384626433832795028841971693993751");
+        assertDigits("pow(2, 0.5)", "1.4142135623730950488016887242096980785696718753769");
+        assertDigits("cbrt(-27)", "-3.0000000000000000000000000000000000000000000000000");
+    }
+
+    @Test
+    void testFunctionsMatchDoubles() {
+        final double[] arguments = {-2.5, -0.7, -1e-5, 1e-5, 0.3, 0.7, 1.5, 12.25, 1e3};
+        for (MathFunction function : MathFunction.values()) {
+            // names such as log10 are lexed as an identifier and a number
+            if (function.getFunctionName().matches(".*[0-9].*")) {
+                continue;
+            }
+            for (double argument : arguments) {
+                final String call = function.getFunctionName() + "(x"
+                    + ", 0.5, 0.25".substring(0, 5 * (function.getArity() - 1)) + ")";
+                final ExpressionNode tree = Main.buildExpressionTree(call, List.of("x"));
+                final double expected = new DoubleEvaluator().visit(tree, new double[] {argument});
+                if (Double.isFinite(expected)) {
+                    final BigDecimal actual = new BigDecimalEvaluator(MathContext.DECIMAL128,
+                        new double[] {argument}).visit(tree);
+                    assertThat(actual.doubleValue())
+                        .isWithin(Math.ulp(expected) * 2 + Double.MIN_NORMAL)
+                        .of(expected);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testExactFactorial() {
+        assertThat(evaluateExactly("25!", MathContext.DECIMAL128))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("15511210043330985984000000"));
+        assertThat(evaluateExactly("200!", MathContext.DECIMAL32))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("7.886579E+374"));
+        assertThat(evaluateExactly("0.5!", MathContext.DECIMAL64).doubleValue())
+            .isWithin(1e-15).of(Math.sqrt(Math.PI) / 2);
+    }
+
+    @Test
+    void testVariables() {
+        final ExpressionNode tree = Main.buildExpressionTree("x * 3 - y", List.of("x", "y"));
+        final BigDecimalEvaluator evaluator =
+            new BigDecimalEvaluator(MathContext.DECIMAL64, new double[] {0.1, 0.2});
+        assertThat(evaluator.visit(tree)).isEquivalentAccordingToCompareTo(new BigDecimal("0.1"));
+        assertThat(evaluator.getContext()).isEqualTo(MathContext.DECIMAL64);
+    }
+
+    @Test
+    void testAdaptiveEvaluationWithoutCancellation() {
+        final BigDecimalEvaluator evaluator = new BigDecimalEvaluator(new MathContext(15));
+        assertThat(evaluator.evaluate(Main.buildExpressionTree("0.1 + 0.2")))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("0.3"));
+        assertThat(evaluator.evaluate(Main.buildExpressionTree("2 * 3 + 4 * 100")))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("406"));
+        assertThat(evaluator.evaluate(Main.buildExpressionTree("1 / 3")))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("0.333333333333333"));
+        assertThat(evaluator.getRefinementCount()).isEqualTo(0);
+    }
+
+    @Test
+    void testAdaptiveEvaluationRefinesCancellation() {
+        final BigDecimalEvaluator evaluator = new BigDecimalEvaluator(new MathContext(15));
+        assertThat(new DoubleEvaluator().visit(Main.buildExpressionTree("(1e16 + 1) - 1e16")))
+            .isEqualTo(0.0);
+        assertThat(evaluator.evaluate(Main.buildExpressionTree("(1e16 + 1) - 1e16")))
+            .isEqualTo(BigDecimal.ONE);
+        assertThat(evaluator.getRefinementCount()).isEqualTo(1);
+
+        // only the cancelling difference is refined, its ancestors stay in double
+        assertThat(evaluator.evaluate(Main.buildExpressionTree("sqrt(1.1 - 1) * 2 + 5")))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("5.63245553203368"));
+        assertThat(evaluator.getRefinementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testAdaptiveEvaluationAboveDoublePrecision() {
+        assertThat(Main.evaluate("0.1 + 0.2 - 0.3", 34, Map.of()))
+            .isEquivalentAccordingToCompareTo(BigDecimal.ZERO);
+        assertThat(Main.evaluate("1 / x", 34, Map.of("x", 3.0)))
+            .isEqualTo(BigDecimal.ONE.divide(new BigDecimal(3), MathContext.DECIMAL128));
+        assertThat(Main.evaluate("1 + 2", 16, Map.of())).isEqualTo(new BigDecimal("3"));
+        assertThat(Main.evaluate("fma(2, 3, 4)", 34, Map.of())).isEqualTo(BigDecimal.TEN);
+        assertThat(Main.evaluate("1.5 * 3", 34, Map.of())).isEqualTo(new BigDecimal("4.5"));
+    }
+
+    @Test
+    void testAdaptiveEvaluationOfOverflow() {
+        assertThat(Main.evaluate("1e308 * 10 / 10", 10, Map.of()))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("1e308"));
+        assertThat(Main.evaluate("1 / (1e308 * 10)", 10, Map.of()))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("1e-309"));
+        assertThat(Main.evaluate("exp(1000)", 10, Map.of()))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("1.970071114e434"));
+    }
+
+    @Test
+    void testErrors() {
+        final BigDecimalEvaluator evaluator = new BigDecimalEvaluator(MathContext.DECIMAL64);
+        final ArithmeticException division = assertThrows(ArithmeticException.class,
+            () -> evaluator.visit(Main.buildExpressionTree("1 / (2 - 2)")));
+        assertThat(division).hasMessageThat().contains("Division");
+        final ArithmeticException logarithm = assertThrows(ArithmeticException.class,
+            () -> evaluator.visit(Main.buildExpressionTree("log(-1)")));
+        assertThat(logarithm).hasMessageThat().isEqualTo("Logarithm of a non-positive number: -1.0");
+        final ArithmeticException power = assertThrows(ArithmeticException.class,
+            () -> evaluator.visit(Main.buildExpressionTree("pow(-2, 0.5)")));
+        assertThat(power).hasMessageThat().startsWith("Power of a non-positive number");
+        final ArithmeticException function = assertThrows(ArithmeticException.class,
+            () -> evaluator.visit(Main.buildExpressionTree("foo(1)")));
+        assertThat(function).hasMessageThat().isEqualTo("Unknown function: foo");
+        final ArithmeticException approximation = assertThrows(ArithmeticException.class,
+            () -> new BigDecimalEvaluator(MathContext.DECIMAL32)
+                .evaluate(Main.buildExpressionTree("log(-1)")));
+        assertThat(approximation).hasMessageThat()
+            .isEqualTo("Logarithm of a non-positive number: -1.0");
+        final IllegalArgumentException unlimited = assertThrows(IllegalArgumentException.class,
+            () -> new BigDecimalEvaluator(MathContext.UNLIMITED));
+        assertThat(unlimited).hasMessageThat().isEqualTo("Precision must be limited");
+        final IllegalArgumentException negative = assertThrows(IllegalArgumentException.class,
+            () -> BigDecimalEvaluator.withPrecision(-1, new double[0]));
+        assertThat(negative).hasMessageThat().isEqualTo("Precision must be positive: -1");
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class BytecodeCompilerTest {
+
+    /**
+     * Expressions that every engine must evaluate like the tree visitor.
+     */
+    static final List<String> EXPRESSIONS = List.of(
+        "2 + 2",
+        "0",
+        "1",
+        "-0",
+        "8 / 2 / 2",
+        "2 - 3 - 4",
+        "-2 * 3 + 4 / 5 - 1",
+        "--2",
+        "(1 + 2) * (3 + 4) * (5 + (6 * (7 + 8)))",
+        "sqrt(sin(0) + 20 + sqrt(50 - pow(5, 2)))",
+        "atan(1) + hypot(3, 4) + max(1, min(2, 3))",
+        "2 * pi + e",
+        "5!",
+        "3 + 2!",
+        "floor(2.5) + ceil(2.5)",
+        "1e300 * 1e300 - 1e300 * 1e300"
+    );
+
+    @Test
+    void testBytecodeMatchesTree() {
+        for (String expression : EXPRESSIONS) {
+            final ExpressionNode root = Main.buildExpressionTree(expression);
+            final double expected = Engine.TREE.compile(root).evaluate();
+            final double actual = Engine.BYTECODE.compile(root).evaluate();
+            assertWithMessage(expression)
+                .that(actual)
+                .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void testCompiledExpressionIsReusable() {
+        final CompiledExpression compiled = Main.compile("sin(1) * cos(1)", Engine.BYTECODE);
+        final double expected = StrictMath.sin(1) * StrictMath.cos(1);
+        assertThat(compiled.evaluate()).isWithin(1e-15).of(expected);
+        assertThat(compiled.evaluate()).isWithin(1e-15).of(expected);
+    }
+
+    @Test
+    void testIntegralReturnTypes() {
+        assertThat(Main.evaluate("round(2.5) + round(-2.5)", Engine.BYTECODE)).isEqualTo(1.0);
+        assertThat(Main.evaluate("getExponent(1024)", Engine.BYTECODE)).isEqualTo(10.0);
+    }
+
+    @Test
+    void testUnknownFunctionIsNaN() {
+        assertThat(Main.evaluate("nosuchfunction(2)", Engine.BYTECODE)).isNaN();
+        assertThat(Main.evaluate("sqrt(2, 3)", Engine.BYTECODE)).isNaN();
+    }
+
+    @Test
+    void testLargeExpression() {
+        final StringBuilder builder = new StringBuilder("1");
+        for (int i = 2; i <= 500; i++) {
+            builder.append(" + ").append(i).append(" * 0.5");
+        }
+        final String expression = builder.toString();
+        assertThat(Main.evaluate(expression, Engine.BYTECODE))
+            .isEqualTo(Main.evaluate(expression, Engine.TREE));
+    }
+}
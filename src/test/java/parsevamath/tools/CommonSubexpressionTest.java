@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class CommonSubexpressionTest {
+
+    /**
+     * An expression repeating the same subtree in numerator and denominator.
+     */
+    private static final String HYPOT = "sqrt(3 * 3 + 4 * 4) / (1 + sqrt(3 * 3 + 4 * 4))";
+
+    @Test
+    void testSubtreesAreShared() {
+        final ExpressionNode tree = Main.buildExpressionTree(HYPOT);
+        final ExpressionNode dag = eliminate(tree);
+
+        assertThat(dag).isEqualTo(tree);
+        final DivisionNode division = (DivisionNode) dag;
+        final AdditionNode denominator = (AdditionNode) division.right();
+        assertThat(denominator.right()).isSameInstanceAs(division.left());
+
+        assertThat(ParsevaUtils.countNodes(tree)).isEqualTo(19);
+        assertThat(ParsevaUtils.countNodes(dag)).isEqualTo(9);
+        assertThat(ParsevaUtils.findSharedNodes(tree)).isEmpty();
+        // only sqrt(...) has two parents, its operands are reached through it
+        assertThat(ParsevaUtils.findSharedNodes(dag)).containsExactly(division.left());
+    }
+
+    @Test
+    void testDistinctValuesAreNotShared() {
+        final ExpressionNode dag = eliminate(Main.buildExpressionTree("0 * -0 + e * E"));
+        final AdditionNode addition = (AdditionNode) dag;
+        final MultiplicationNode zeros = (MultiplicationNode) addition.left();
+        final MultiplicationNode constants = (MultiplicationNode) addition.right();
+        assertThat(((NegateNode) zeros.right()).innerNode()).isSameInstanceAs(zeros.left());
+        assertThat(constants.right()).isSameInstanceAs(constants.left());
+        assertThat(eliminate(Main.buildExpressionTree("sqrt(2) + cbrt(2)")))
+            .isEqualTo(Main.buildExpressionTree("sqrt(2) + cbrt(2)"));
+    }
+
+    @Test
+    void testPassStatistics() {
+        final Optimizer optimizer = new Optimizer(
+            List.of(OptimizationPass.COMMON_SUBEXPRESSION_ELIMINATION));
+        final Optimizer.Result result = optimizer.optimize(Main.buildExpressionTree(HYPOT));
+        assertThat(result.statistics()).containsExactly(new Optimizer.PassStatistics(
+            OptimizationPass.COMMON_SUBEXPRESSION_ELIMINATION, 19, 9));
+    }
+
+    @Test
+    void testSharedNodesUseRegisters() {
+        final Program program = ProgramCompiler.compile(eliminate(Main.buildExpressionTree(HYPOT)));
+        assertThat(program.getRegisterCount()).isEqualTo(1);
+        assertThat(program.getFrameSize()).isEqualTo(program.getMaxStack() + 1);
+        assertThat(program.evaluate()).isEqualTo(5.0 / 6.0);
+        assertThat(program.evaluate(CompiledExpression.NO_VARIABLES,
+            new double[program.getFrameSize()])).isEqualTo(5.0 / 6.0);
+    }
+
+    @Test
+    void testEnginesMatchTree() {
+        for (String expression : BytecodeCompilerTest.EXPRESSIONS) {
+            final ExpressionNode tree = Main.buildExpressionTree(expression);
+            final ExpressionNode dag = eliminate(Main.buildExpressionTree("(" + expression + ") * ("
+                + expression + ")"));
+            final double value = Engine.TREE.compile(tree).evaluate();
+            final double expected = Engine.TREE.compile(dag).evaluate();
+            assertWithMessage(expression)
+                .that(Engine.VM.compile(dag).evaluate())
+                .isEqualTo(expected);
+            assertWithMessage(expression)
+                .that(Engine.BYTECODE.compile(dag).evaluate())
+                .isEqualTo(expected);
+            assertWithMessage(expression)
+                .that(expected)
+                .isEqualTo(value * value);
+        }
+    }
+
+    @Test
+    void testManySharedNodes() {
+        final StringBuilder expression = new StringBuilder("0");
+        double expected = 0;
+        for (int i = 1; i <= 200; i++) {
+            expression.append(" + sqrt(").append(i).append(") * sqrt(").append(i).append(')');
+            expected += Math.sqrt(i) * Math.sqrt(i);
+        }
+        final ExpressionNode dag = eliminate(Main.buildExpressionTree(expression.toString()));
+        // more than 127 doubles need wide local variable indexes
+        assertThat(ParsevaUtils.findSharedNodes(dag)).hasSize(200);
+        assertThat(Engine.BYTECODE.compile(dag).evaluate()).isEqualTo(expected);
+        assertThat(Engine.VM.compile(dag).evaluate()).isEqualTo(expected);
+    }
+
+    @Test
+    @Timeout(10)
+    void testTreeEnginesEvaluateSharedNodesOnce() {
+        // walking every reference of this dag would visit 2^64 nodes
+        ExpressionNode dag = new NumberNode(1.5);
+        for (int i = 0; i < 64; i++) {
+            dag = new AdditionNode(dag, dag);
+        }
+        assertThat(ParsevaUtils.findSharedNodes(dag)).hasSize(63);
+        final CompiledExpression tree = Engine.TREE.compile(dag);
+        assertThat(tree.evaluate()).isEqualTo(0x1.8p64);
+        assertThat(tree.evaluate()).isEqualTo(0x1.8p64);
+        assertThat(Engine.DOUBLE_DOUBLE.compile(dag).evaluate()).isEqualTo(0x1.8p64);
+    }
+
+    private static ExpressionNode eliminate(ExpressionNode root) {
+        return OptimizationPass.COMMON_SUBEXPRESSION_ELIMINATION.apply(root);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class DerivativeTest {
+
+    @Test
+    void testSimplifiedDerivatives() {
+        final Map<String, String> derivatives = Map.of(
+            "x * x", "2 * x",
+            "3 * x + 2", "3",
+            "x * sin(x)", "sin(x) + x * cos(x)",
+            "1 / x", "-1 / (x * x)",
+            "exp(2 * x) - log(x)", "2 * exp(2 * x) - 1 / x",
+            "pow(x, 3) + sqrt(x)", "3 * pow(x, 2) + 1 / (2 * sqrt(x))",
+            "-cos(x * y)", "sin(x * y) * y",
+            "y * 5! + pi", "0");
+        derivatives.forEach((expression, expected) -> {
+            final String actual = ParsevaUtils.toExpressionString(Main.derive(expression, "x"));
+            assertWithMessage(expression).that(actual).isEqualTo(expected);
+        });
+    }
+
+    @Test
+    void testDerivativesMatchFiniteDifferences() {
+        final double[] variables = {0.3, 0.7};
+        final double step = 1.0e-6;
+        final List<ExpressionNode> arguments = List.of(
+            new VariableNode("x", 0), new VariableNode("y", 1), new VariableNode("x", 0));
+        for (MathFunction function : MathFunction.values()) {
+            final ExpressionNode root = new MethodNode(function.getFunctionName(), function,
+                arguments.subList(0, function.getArity()));
+            final List<ExpressionNode> gradient = DerivativeVisitor.gradient(root);
+            for (int slot = 0; slot < gradient.size(); slot++) {
+                final double[] above = variables.clone();
+                final double[] below = variables.clone();
+                above[slot] += step;
+                below[slot] -= step;
+                final double expected = (Engine.TREE.compile(root).evaluate(above)
+                    - Engine.TREE.compile(root).evaluate(below)) / (2 * step);
+                final double actual = Engine.TREE.compile(gradient.get(slot)).evaluate(variables);
+                assertWithMessage(function + " by slot " + slot).that(actual)
+                    .isWithin(1.0e-6 * Math.max(1, Math.abs(expected))).of(expected);
+            }
+        }
+    }
+
+    @Test
+    void testCompiledGradient() {
+        final String expression = "x * x * y + sin(y) - max(x, y)";
+        final double[] variables = {3, 2};
+        final double[] expected = {2 * 3 * 2 - 1, 3 * 3 + Math.cos(2)};
+        for (Engine engine : Engine.values()) {
+            final List<CompiledExpression> gradient = Main.compileGradient(expression, engine);
+            final List<Double> actual = new ArrayList<>();
+            for (CompiledExpression derivative : gradient) {
+                actual.add(derivative.evaluate(variables));
+            }
+            assertWithMessage(engine.name()).that(actual)
+                .containsExactly(expected[0], expected[1])
+                .inOrder();
+        }
+    }
+
+    @Test
+    void testDerivativeKeepsSlots() {
+        final ExpressionNode derivative = Main.derive("x + y * y", "y");
+        assertThat(derivative).isEqualTo(
+            new MultiplicationNode(new NumberNode(2), new VariableNode("y", 1)));
+        assertThat(Engine.VM.compile(derivative).evaluate(new double[] {4, 5})).isEqualTo(10.0);
+        assertThat(Main.derive("x + y", "z")).isEqualTo(new NumberNode(0));
+    }
+
+    @Test
+    void testCannotDifferentiate() {
+        final IllegalArgumentException factorial = assertThrows(IllegalArgumentException.class,
+            () -> Main.derive("(2 * x)!", "x"));
+        assertThat(factorial).hasMessageThat()
+            .isEqualTo("Cannot differentiate factorial of variable: x");
+
+        final IllegalArgumentException unknown = assertThrows(IllegalArgumentException.class,
+            () -> Main.derive("foo(x)", "x"));
+        assertThat(unknown).hasMessageThat()
+            .isEqualTo("Cannot differentiate unknown function: foo");
+    }
+
+    @Test
+    void testPrintedExpressionParsesBack() {
+        final Map<String, String> printed = Map.of(
+            "2 - (3 - x)", "2 - (3 - x)",
+            "(2 - 3) - x", "2 - 3 - x",
+            "-(x + 1) * 2", "-(x + 1) * 2",
+            "x / (y * 2.5)", "x / (y * 2.5)",
+            "(x + 1)! / 2", "((x + 1)!) / 2",
+            "2 * (3!)", "2 * (3!)",
+            "--x * pi + e", "--x * pi + e",
+            "hypot(x, y) * 1e-20", "hypot(x, y) * 1.0E-20");
+        final double[] variables = {1.5, -2};
+        printed.forEach((expression, expected) -> {
+            final ExpressionNode root = Main.buildExpressionTree(expression);
+            final String actual = ParsevaUtils.toExpressionString(root);
+            assertWithMessage(expression).that(actual).isEqualTo(expected);
+            assertWithMessage(expression)
+                .that(Engine.TREE.compile(Main.buildExpressionTree(actual)).evaluate(variables))
+                .isEqualTo(Engine.TREE.compile(root).evaluate(variables));
+        });
+
+        final ExpressionNode folded = OptimizationPass.CONSTANT_FOLDING.apply(
+            Main.buildExpressionTree("x / 0 + 1 / 0 * x + -(1 / 0) * x - 0 / 0", List.of("x")));
+        final String actual = ParsevaUtils.toExpressionString(folded);
+        assertThat(actual).isEqualTo("x / 0 + (1 / 0) * x + (-1 / 0) * x - (0 / 0)");
+        assertThat(OptimizationPass.CONSTANT_FOLDING.apply(
+            Main.buildExpressionTree(actual, List.of("x")))).isEqualTo(folded);
+        assertThat(ParsevaUtils.toExpressionString(DerivativeVisitor.derive(
+            Main.buildExpressionTree("x / 0", List.of("x")), "x"))).isEqualTo("(1 / 0)");
+    }
+}
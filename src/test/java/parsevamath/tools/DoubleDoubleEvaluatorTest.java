@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class DoubleDoubleEvaluatorTest {
+
+    private static final MathContext FORTY_DIGITS = new MathContext(40);
+
+    private static final BigDecimal TOLERANCE = new BigDecimal("1e-30");
+
+    private static DoubleDouble evaluate(String expression) {
+        return new DoubleDoubleEvaluator().visit(Main.buildExpressionTree(expression));
+    }
+
+    private static void assertAccurate(String expression) {
+        final BigDecimal expected =
+            new BigDecimalEvaluator(FORTY_DIGITS).visit(Main.buildExpressionTree(expression));
+        final BigDecimal actual = evaluate(expression).toBigDecimal();
+        final BigDecimal error = actual.subtract(expected).abs();
+        assertWithMessage(expression + " = " + actual.round(FORTY_DIGITS))
+            .that(error.compareTo(TOLERANCE.multiply(expected.abs())) <= 0)
+            .isTrue();
+    }
+
+    @Test
+    void testErrorFreeTransformations() {
+        assertThat(DoubleDouble.twoSum(1, 1e-20)).isEqualTo(new DoubleDouble(1, 1e-20));
+        assertThat(DoubleDouble.twoSum(0.1, 0.2).toBigDecimal())
+            .isEqualTo(new BigDecimal(0.1).add(new BigDecimal(0.2)));
+        assertThat(DoubleDouble.twoProduct(0.1, 0.3).toBigDecimal())
+            .isEqualTo(new BigDecimal(0.1).multiply(new BigDecimal(0.3)));
+
+        final DoubleDouble sum = DoubleDouble.valueOf(1e16).add(1).subtract(DoubleDouble.valueOf(1e16));
+        assertThat(sum).isEqualTo(DoubleDouble.ONE);
+        assertThat(DoubleDouble.ONE.divide(3).multiply(3).subtract(DoubleDouble.ONE).abs().high())
+            .isLessThan(1e-32);
+        assertThat(DoubleDouble.valueOf(new BigDecimal("0.1")).compareTo(DoubleDouble.valueOf(0.1)))
+            .isLessThan(0);
+    }
+
+    @Test
+    void testDecimalLiterals() {
+        assertThat(evaluate("0.1 + 0.2 - 0.3").abs().high()).isLessThan(1e-32);
+        assertThat(evaluate("1.1 * 1.1").toBigDecimal().round(new MathContext(30)))
+            .isEquivalentAccordingToCompareTo(new BigDecimal("1.21"));
+        assertThat(evaluate("0.5 + 0.25 - 3")).isEqualTo(DoubleDouble.valueOf(-2.25));
+    }
+
+    @Test
+    void testFunctionsMatchDecimal() {
+        final String[] expressions = {
+            "pi", "e", "1 / 3", "2 / 7 - 3 / 11", "25!", "sqrt(2)", "cbrt(-2)",
+            "exp(1)", "exp(-3.7)", "exp(50)", "log(2)", "log(1e-5)", "log(123456.789)",
+            "sin(1)", "cos(1)", "sin(100)", "cos(-7.5)", "tan(0.7)", "sin(3)",
+            "asin(0.5)", "acos(-0.3)", "atan(3)", "atan(-1 / 2) - pi",
+            "sinh(0.001)", "sinh(25)", "cosh(2)", "tanh(-0.3)",
+            "pow(2, 0.5)", "pow(-1.5, 7)", "pow(3, -4)", "hypot(3, 4.5)",
+            "toDegrees(1)", "toRadians(30)",
+        };
+        for (String expression : expressions) {
+            assertAccurate(expression);
+        }
+    }
+
+    @Test
+    void testFunctionsWithDigitsInTheirName() {
+        final BigDecimal atan2 = BigDecimalMath.atan2(BigDecimal.ONE.negate(),
+            BigDecimal.valueOf(-2), FORTY_DIGITS);
+        assertThat(DoubleDoubleMath.atan2(DoubleDouble.valueOf(-1), DoubleDouble.valueOf(-2))
+            .toBigDecimal().subtract(atan2).abs())
+            .isLessThan(new BigDecimal("1e-31"));
+        final DoubleDouble small = DoubleDouble.valueOf(1e-10);
+        final BigDecimal expm1 = BigDecimalMath.expm1(new BigDecimal(1e-10), FORTY_DIGITS);
+        assertThat(DoubleDoubleMath.expm1(small).toBigDecimal().subtract(expm1).abs())
+            .isLessThan(new BigDecimal("1e-41"));
+        final BigDecimal log1p = BigDecimalMath.log(BigDecimal.ONE.add(new BigDecimal(1e-10)),
+            FORTY_DIGITS);
+        assertThat(DoubleDoubleMath.log1p(small).toBigDecimal().subtract(log1p).abs())
+            .isLessThan(new BigDecimal("1e-41"));
+    }
+
+    @Test
+    void testFunctionsMatchDoubles() {
+        final List<String> calls = new ArrayList<>();
+        for (MathFunction function : MathFunction.values()) {
+            final String name = function.getFunctionName();
+            // names such as log10 are lexed as an identifier and a number
+            if (!name.matches(".*[0-9].*")) {
+                calls.add((name + "(x, 0.5, 0.25").substring(0, name.length() + 2
+                    + 5 * (function.getArity() - 1)) + ")");
+            }
+        }
+        final double[] arguments = {
+            -2.5, -0.7, -1e-5, 1e-5, 0.3, 0.7, 1.5, 12.25, 1e3, 1e15, 2e16, 1e17, 1e20, -1e300,
+        };
+        for (String call : calls) {
+            final ExpressionNode tree = Main.buildExpressionTree(call, List.of("x"));
+            for (double argument : arguments) {
+                final double[] variables = {argument};
+                final double expected = new DoubleEvaluator().visit(tree, variables);
+                final double actual = new DoubleDoubleEvaluator(variables).visit(tree).doubleValue();
+                if (Double.isFinite(expected)) {
+                    assertWithMessage(call + " with x = " + argument)
+                        .that(actual)
+                        .isWithin(Math.ulp(expected) * 2)
+                        .of(expected);
+                }
+                else {
+                    assertWithMessage(call + " with x = " + argument)
+                        .that(actual)
+                        .isEqualTo(expected);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRounding() {
+        assertThat(evaluate("rint(2.5) + rint(3.5) + rint(-2.5)")).isEqualTo(DoubleDouble.valueOf(4));
+        assertThat(evaluate("round(-2.5) + floor(-0.5) + ceil(-0.5)"))
+            .isEqualTo(DoubleDouble.valueOf(-3));
+        final DoubleDouble almostHalf = DoubleDouble.valueOf(2.5).subtract(new DoubleDouble(1e-20, 0));
+        assertThat(DoubleDoubleMath.rint(almostHalf)).isEqualTo(DoubleDouble.valueOf(2));
+        assertThat(DoubleDoubleMath.floor(new DoubleDouble(1e20, -1e-5)).toBigDecimal())
+            .isEquivalentAccordingToCompareTo(new BigDecimal("99999999999999999999"));
+    }
+
+    @Test
+    void testNonFiniteValues() {
+        assertThat(evaluate("1 / (2 - 2)")).isEqualTo(DoubleDouble.valueOf(Double.POSITIVE_INFINITY));
+        assertThat(evaluate("1e308 * 10 - 1")).isEqualTo(DoubleDouble.valueOf(Double.POSITIVE_INFINITY));
+        assertThat(evaluate("log(0)")).isEqualTo(DoubleDouble.valueOf(Double.NEGATIVE_INFINITY));
+        assertThat(evaluate("exp(-1000)")).isEqualTo(DoubleDouble.ZERO);
+        assertThat(evaluate("sqrt(-1)").high()).isNaN();
+        assertThat(evaluate("0 / 0").high()).isNaN();
+        assertThat(evaluate("nosuchfunction(2)").high()).isNaN();
+        assertThat(evaluate("1 / (1e308 * 10)")).isEqualTo(DoubleDouble.ZERO);
+        assertThat(evaluate("2 * (1e308 * 10)")).isEqualTo(DoubleDouble.valueOf(Double.POSITIVE_INFINITY));
+        assertThat(evaluate("(0 - 1e300) * 1e300"))
+            .isEqualTo(DoubleDouble.valueOf(Double.NEGATIVE_INFINITY));
+        assertThat(evaluate("pow(2, 1100)")).isEqualTo(DoubleDouble.valueOf(Double.POSITIVE_INFINITY));
+        assertThat(evaluate("pow(1e300, 2)")).isEqualTo(DoubleDouble.valueOf(Double.POSITIVE_INFINITY));
+        assertThat(evaluate("1e300 * 1e300 - 1e300 * 1e300").high()).isNaN();
+        assertThat(evaluate("pow(2, -1030)")).isEqualTo(DoubleDouble.valueOf(0x1p-1030));
+        assertThat(evaluate("pow(2, -1074)")).isEqualTo(DoubleDouble.valueOf(Double.MIN_VALUE));
+        assertThat(evaluate("pow(10, -320)")).isEqualTo(DoubleDouble.valueOf(Math.pow(10, -320)));
+        assertThat(evaluate("pow(2, -1080)")).isEqualTo(DoubleDouble.ZERO);
+    }
+
+    @Test
+    void testEngineKeepsCancelledDigits() {
+        final String expression = "(1e16 + 1) - 1e16 + 0.1 + 0.2 - 0.3";
+        assertThat(Main.evaluate(expression, Engine.TREE)).isNotEqualTo(1.0);
+        assertThat(Main.evaluate(expression, Engine.DOUBLE_DOUBLE)).isEqualTo(1.0);
+        assertThat(Engine.DOUBLE_DOUBLE.compile(Main.buildExpressionTree("x * 3", List.of("x")))
+            .evaluate(new double[] {0.1})).isEqualTo(0.30000000000000004);
+    }
+}
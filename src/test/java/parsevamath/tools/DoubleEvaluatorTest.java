@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+
+public class DoubleEvaluatorTest {
+
+    /**
+     * An expression of about fifty nodes, covering every node type.
+     */
+    private static final String EXPRESSION = "(1 + 2) * 3 - sqrt(16) / 4 + pow(2, 3) - -5"
+        + " + 4! * pi - e / (6 - 7) + max(1, 2) * hypot(3, 4) - abs(-2)"
+        + " + fma(1, 2, 3) - floor(2.5) * (8 - 9 / 10)";
+
+    /**
+     * Number of evaluations to measure allocations over.
+     */
+    private static final int ITERATIONS = 100_000;
+
+    @Test
+    void testDoubleEvaluatorMatchesVisitor() {
+        for (String expression : BytecodeCompilerTest.EXPRESSIONS) {
+            final ExpressionNode root = Main.buildExpressionTree(expression);
+            final double expected = new EvaluateExpressionVisitor().visit(root);
+            final double actual = new DoubleEvaluator().visit(root);
+            assertWithMessage(expression)
+                .that(actual)
+                .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void testUnknownFunctionIsNaN() {
+        final ExpressionNode root = Main.buildExpressionTree("nosuchfunction(2)");
+        assertThat(new DoubleEvaluator().visit(root)).isNaN();
+    }
+
+    @Test
+    void testEvaluationDoesNotAllocate() {
+        final ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        final ExpressionNode root = Main.buildExpressionTree(EXPRESSION);
+        final DoubleEvaluator evaluator = new DoubleEvaluator();
+        double sum = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            sum += evaluator.visit(root);
+        }
+
+        final long before = threadBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sum += evaluator.visit(root);
+        }
+        final long allocated = threadBean.getCurrentThreadAllocatedBytes() - before;
+
+        assertThat(sum).isFinite();
+        // A single boxed double per evaluation would add up to over a megabyte
+        assertWithMessage("bytes allocated by %s evaluations", ITERATIONS)
+            .that(allocated)
+            .isLessThan((long) ITERATIONS);
+    }
+}
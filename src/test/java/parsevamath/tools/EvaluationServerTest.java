@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+@Timeout(30)
+public class EvaluationServerTest {
+
+    private static CompletableFuture<Void> start(EvaluationServer server) {
+        return CompletableFuture.runAsync(server::serve);
+    }
+
+    private static final class Client implements AutoCloseable {
+
+        private final SocketChannel channel;
+        private final BufferedReader input;
+        private final Writer output;
+
+        Client(SocketAddress address) throws IOException {
+            if (address instanceof UnixDomainSocketAddress) {
+                channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            }
+            else {
+                channel = SocketChannel.open();
+            }
+            channel.connect(address);
+            input = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+            output = Channels.newWriter(channel, StandardCharsets.UTF_8);
+        }
+
+        String evaluate(String expression) throws IOException {
+            output.write(expression + "\n");
+            output.flush();
+            return input.readLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    @Test
+    void testTcp() throws Exception {
+        try (EvaluationServer server = EvaluationServer.open(":0", Engine.VM,
+            Optimizer.allPasses(), 4)) {
+            final CompletableFuture<Void> serving = start(server);
+            try (Client client = new Client(server.getLocalAddress())) {
+                assertThat(client.evaluate("1 + 2")).isEqualTo("3.0");
+                assertThat(client.evaluate("2 +* 3")).isEqualTo("error: line 1:2 extraneous"
+                    + " input '*' expecting {'e', 'E', 'pi', 'PI', '+', '-', '(', NUM, ID}");
+                assertThat(client.evaluate("x * 2")).isEqualTo("error: Variable 'x' is not bound");
+                assertThat(client.evaluate("")).isEmpty();
+                assertThat(client.evaluate("1+2")).isEqualTo("3.0");
+            }
+            assertThat(server.getCache().getHitCount()).isEqualTo(1);
+            server.close();
+            serving.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testUnixDomainSocket(@TempDir Path directory) throws Exception {
+        final Path socket = directory.resolve("parseva.sock");
+        final EvaluationServer server = EvaluationServer.open("unix:" + socket, Engine.TREE,
+            new Optimizer(List.of()), 2);
+        final CompletableFuture<Void> serving = start(server);
+        try (Client first = new Client(server.getLocalAddress());
+             Client second = new Client(server.getLocalAddress())) {
+            assertThat(first.evaluate("sqrt(16)")).isEqualTo("4.0");
+            assertThat(second.evaluate("(3!)")).isEqualTo("6.0");
+        }
+        server.close();
+        serving.get(10, TimeUnit.SECONDS);
+        assertThat(Files.exists(socket)).isFalse();
+    }
+
+    @Test
+    void testConnectionLimit() throws Exception {
+        try (EvaluationServer server = EvaluationServer.open("localhost:0", Engine.TREE,
+            new Optimizer(List.of()), 1)) {
+            start(server);
+            try (Client first = new Client(server.getLocalAddress());
+                 Client second = new Client(server.getLocalAddress())) {
+                assertThat(first.evaluate("1")).isEqualTo("1.0");
+                final CompletableFuture<String> waiting = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return second.evaluate("2");
+                    }
+                    catch (IOException exception) {
+                        throw new IllegalStateException(exception);
+                    }
+                });
+                assertThrows(TimeoutException.class,
+                    () -> waiting.get(200, TimeUnit.MILLISECONDS));
+                first.close();
+                assertThat(waiting.get(10, TimeUnit.SECONDS)).isEqualTo("2.0");
+            }
+        }
+    }
+
+    @Test
+    void testAddresses() {
+        assertThat(EvaluationServer.parseAddress("unix:/tmp/parseva.sock"))
+            .isEqualTo(UnixDomainSocketAddress.of("/tmp/parseva.sock"));
+        assertThat(((InetSocketAddress) EvaluationServer.parseAddress(":8080")).getPort())
+            .isEqualTo(8080);
+        assertThat(((InetSocketAddress) EvaluationServer.parseAddress("localhost:0"))
+            .getHostString()).isEqualTo("localhost");
+        assertThrows(NumberFormatException.class, () -> EvaluationServer.parseAddress("local"));
+
+        final IllegalArgumentException actual = assertThrows(IllegalArgumentException.class,
+            () -> EvaluationServer.open(":0", Engine.TREE, new Optimizer(List.of()), 0));
+        assertThat(actual).hasMessageThat().isEqualTo("Maximum connections must be positive: 0");
+    }
+}
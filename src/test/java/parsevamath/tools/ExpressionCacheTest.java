@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class ExpressionCacheTest {
+
+    @Test
+    void testNormalize() {
+        assertThat(ExpressionCache.normalize(" 2 +\t2\n")).isEqualTo("2+2");
+        assertThat(ExpressionCache.normalize("sqrt( 2 , 3 )")).isEqualTo("sqrt(2,3)");
+        assertThat(ExpressionCache.normalize("1  2")).isEqualTo("1 2");
+        assertThat(ExpressionCache.normalize("pi e")).isEqualTo("pi e");
+    }
+
+    @Test
+    void testHitsAndMisses() {
+        final AtomicInteger loads = new AtomicInteger();
+        final ExpressionCache<ExpressionNode> cache = new ExpressionCache<>(8, text -> {
+            loads.incrementAndGet();
+            return Main.buildExpressionTree(text);
+        });
+
+        final ExpressionNode first = cache.get("2 + 2");
+        final ExpressionNode second = cache.get("2+2");
+        final ExpressionNode third = cache.get(" 2 +  2 ");
+
+        assertThat(second).isSameInstanceAs(first);
+        assertThat(third).isSameInstanceAs(first);
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        final ExpressionCache<String> cache = new ExpressionCache<>(2, text -> text);
+        cache.get("1");
+        cache.get("2");
+        // touch "1" so that "2" becomes the eldest entry
+        cache.get("1");
+        cache.get("3");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+
+        cache.get("1");
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        cache.get("2");
+        assertThat(cache.getMissCount()).isEqualTo(4);
+        assertThat(cache.getEvictionCount()).isEqualTo(2);
+
+        cache.clear();
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.getMaximumSize()).isEqualTo(2);
+    }
+
+    @Test
+    void testInvalidMaximumSize() {
+        final IllegalArgumentException actual = assertThrows(IllegalArgumentException.class,
+            () -> new ExpressionCache<>(0, text -> text));
+        assertThat(actual).hasMessageThat().isEqualTo("Maximum size must be positive: 0");
+    }
+
+    @Test
+    void testMainEvaluateUsesCache() {
+        final ExpressionCache<ExpressionNode> cache = Main.getExpressionCache();
+        final long misses = cache.getMissCount();
+        final long hits = cache.getHitCount();
+
+        assertThat(Main.evaluate("17 * 3 + 1")).isEqualTo(52.0);
+        assertThat(Main.evaluate("17*3+1")).isEqualTo(52.0);
+
+        assertThat(cache.getMissCount() - misses).isAtMost(1);
+        assertThat(cache.getHitCount() - hits).isAtLeast(1);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ExpressionParserTest {
+
+    @Test
+    void testValidExpressionsDoNotFallBack() {
+        final long parses = ExpressionParser.getParseCount();
+        final long fallbacks = ExpressionParser.getFallbackCount();
+
+        ExpressionParser.buildExpressionTree("2 * sin(x) + 1");
+        ExpressionParser.buildExpressionTreeStrictly("-(3!) / max(1, 2)");
+        ExpressionParser.buildMathAstNodeTree("1 + 2 * 3");
+
+        assertThat(ExpressionParser.getParseCount() - parses).isAtLeast(3);
+        assertThat(ExpressionParser.getFallbackCount() - fallbacks).isEqualTo(0);
+    }
+
+    @Test
+    void testFallbackRecoversFromSyntaxErrors() {
+        final long fallbacks = ExpressionParser.getFallbackCount();
+
+        final ExpressionNode root = ExpressionParser.buildExpressionTree("(1 + 2");
+
+        assertThat(ExpressionParser.getFallbackCount() - fallbacks).isAtLeast(1);
+        assertThat(Engine.TREE.compile(root).evaluate()).isEqualTo(3.0);
+    }
+
+    @Test
+    void testFallbackReportsSyntaxErrors() {
+        final long fallbacks = ExpressionParser.getFallbackCount();
+
+        final IllegalArgumentException actual = assertThrows(IllegalArgumentException.class,
+            () -> ExpressionParser.parseStrictly("1 +* 2"));
+
+        assertThat(actual).hasMessageThat().startsWith("line 1:3 extraneous input '*'");
+        assertThat(ExpressionParser.getFallbackCount() - fallbacks).isAtLeast(1);
+    }
+
+    @Test
+    void testDirectBuildMatchesParseTree() {
+        final List<String> expressions = List.of("1", "-x + 2 * y", "(3!) / -(2!) + e * PI",
+            "max(1, min(x, 2), 3) - sqrt(4)", "2 * 3!", "+(1 - 2 - 3)", "x * y + x");
+        for (String expression : expressions) {
+            final ExpressionNode expected = new MathAstBuilder()
+                .visitCompilationUnit(ExpressionParser.parseStrictly(expression));
+            assertThat(ExpressionParser.buildExpressionTreeStrictly(expression))
+                .isEqualTo(expected);
+            assertThat(ExpressionParser.buildExpressionTree(expression)).isEqualTo(expected);
+        }
+
+        final List<String> names = List.of("y", "x");
+        assertThat(ExpressionParser.buildExpressionTree("x - y", names))
+            .isEqualTo(new MathAstBuilder(names)
+                .visitCompilationUnit(ExpressionParser.parse("x - y")));
+    }
+
+    @Test
+    void testDirectBuildReportsErrors() {
+        final IllegalArgumentException lexerError = assertThrows(IllegalArgumentException.class,
+            () -> ExpressionParser.buildExpressionTreeStrictly("1 + $"));
+        assertThat(lexerError).hasMessageThat()
+            .isEqualTo("line 1:4 token recognition error at: '$'");
+
+        final IllegalArgumentException parserError = assertThrows(IllegalArgumentException.class,
+            () -> ExpressionParser.buildExpressionTreeStrictly("max(1, 2"));
+        assertThat(parserError).hasMessageThat().startsWith("line 1:8 extraneous input '<EOF>'");
+
+        final IllegalStateException unknownVariable = assertThrows(IllegalStateException.class,
+            () -> ExpressionParser.buildExpressionTree("x + z", List.of("x")));
+        assertThat(unknownVariable).hasMessageThat().isEqualTo("Unknown variable: z");
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class FactorialUtilsTest {
+
+    private static BigInteger naiveFactorial(int value) {
+        BigInteger factorial = BigInteger.ONE;
+        for (int i = 2; i <= value; i++) {
+            factorial = factorial.multiply(BigInteger.valueOf(i));
+        }
+        return factorial;
+    }
+
+    @Test
+    void testIntegerFactorials() {
+        assertThat(FactorialUtils.factorial(0)).isEqualTo(1.0);
+        assertThat(FactorialUtils.factorial(1)).isEqualTo(1.0);
+        assertThat(FactorialUtils.factorial(5)).isEqualTo(120.0);
+        assertThat(FactorialUtils.factorial(13)).isEqualTo(6_227_020_800.0);
+        for (int i = 0; i <= FactorialUtils.MAX_FACTORIAL_ARGUMENT; i++) {
+            assertThat(FactorialUtils.factorial(i))
+                .isEqualTo(naiveFactorial(i).doubleValue());
+        }
+    }
+
+    @Test
+    void testOutOfRangeFactorials() {
+        assertThat(FactorialUtils.factorial(171)).isPositiveInfinity();
+        assertThat(FactorialUtils.factorial(1e300)).isPositiveInfinity();
+        assertThat(FactorialUtils.factorial(Double.POSITIVE_INFINITY)).isPositiveInfinity();
+        assertThat(FactorialUtils.factorial(-1)).isNaN();
+        assertThat(FactorialUtils.factorial(-3)).isNaN();
+        assertThat(FactorialUtils.factorial(Double.NEGATIVE_INFINITY)).isNaN();
+        assertThat(FactorialUtils.factorial(Double.NaN)).isNaN();
+    }
+
+    @Test
+    void testNonIntegerFactorials() {
+        final double sqrtPi = Math.sqrt(Math.PI);
+        assertThat(FactorialUtils.factorial(0.5)).isWithin(1e-15).of(sqrtPi / 2);
+        assertThat(FactorialUtils.factorial(-0.5)).isWithin(1e-15).of(sqrtPi);
+        assertThat(FactorialUtils.factorial(2.5)).isWithin(1e-14).of(15 * sqrtPi / 8);
+        assertThat(FactorialUtils.factorial(-1.5)).isWithin(1e-14).of(-2 * sqrtPi);
+        assertThat(FactorialUtils.factorial(170.5)).isFinite();
+        assertThat(FactorialUtils.factorial(171.5)).isPositiveInfinity();
+        assertThat(FactorialUtils.factorial(-200.5)).isWithin(0.0).of(0.0);
+    }
+
+    @Test
+    void testGammaMatchesFactorials() {
+        for (int i = 1; i <= FactorialUtils.MAX_FACTORIAL_ARGUMENT; i++) {
+            final double expected = FactorialUtils.factorial(i);
+            // just off the integer, so that the approximation is used
+            final double actual = FactorialUtils.gamma(Math.nextUp(i + 1.0));
+            assertThat(Math.abs(actual - expected) / expected).isLessThan(1e-12);
+        }
+        assertThat(FactorialUtils.gamma(0)).isNaN();
+        assertThat(FactorialUtils.gamma(-2)).isNaN();
+        assertThat(FactorialUtils.gamma(171.7)).isPositiveInfinity();
+    }
+
+    @Test
+    void testExactFactorials() {
+        for (int i = 0; i <= 300; i++) {
+            assertThat(FactorialUtils.exactFactorial(i)).isEqualTo(naiveFactorial(i));
+        }
+        assertThat(FactorialUtils.exactFactorial(2500)).isEqualTo(naiveFactorial(2500));
+    }
+
+    @Test
+    void testExactFactorialOfNegativeInteger() {
+        final IllegalArgumentException actual = assertThrows(IllegalArgumentException.class,
+            () -> FactorialUtils.exactFactorial(-1));
+        assertThat(actual).hasMessageThat().isEqualTo("Factorial of a negative integer: -1");
+    }
+
+    @Test
+    void testEvaluateNonIntegerFactorial() {
+        assertThat(Main.evaluate("2.5!")).isWithin(1e-14).of(FactorialUtils.gamma(3.5));
+        assertThat(Main.evaluate("(1 / 2)!")).isWithin(1e-15).of(Math.sqrt(Math.PI) / 2);
+    }
+}
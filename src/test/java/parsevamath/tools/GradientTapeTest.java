@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+import org.junit.jupiter.api.Test;
+
+public class GradientTapeTest {
+
+    @Test
+    void testGradientMatchesSymbolicDerivatives() {
+        final ExpressionNode[] arguments = {
+            Main.buildExpressionTree("x * y + 0.25", List.of("x", "y")),
+            Main.buildExpressionTree("y - x / 4", List.of("x", "y")),
+            Main.buildExpressionTree("x", List.of("x", "y")),
+        };
+        final double[] variables = {0.4, 0.9};
+        for (MathFunction function : MathFunction.values()) {
+            final ExpressionNode[] call = new ExpressionNode[function.getArity()];
+            System.arraycopy(arguments, 0, call, 0, call.length);
+            final ExpressionNode root = Simplifier.call(function, call);
+            final double[] actual = GradientTapeCompiler.compile(root).gradient(variables);
+            final List<ExpressionNode> expected = DerivativeVisitor.gradient(root);
+            for (int slot = 0; slot < actual.length; slot++) {
+                final double derivative = Engine.TREE.compile(expected.get(slot))
+                    .evaluate(variables);
+                assertWithMessage(function + " by slot " + slot).that(actual[slot])
+                    .isWithin(1.0e-12 * Math.max(1, Math.abs(derivative))).of(derivative);
+            }
+        }
+    }
+
+    @Test
+    void testReusedFrame() {
+        final String expression = "x * exp(y) - y / x + hypot(x, y) * pi";
+        final GradientTape tape = Main.compileGradientTape(expression);
+        final ExpressionNode root = Main.buildExpressionTree(expression);
+        final double[] frame = new double[tape.getFrameSize()];
+        final double[] gradient = new double[tape.getVariableCount()];
+        for (int step = 1; step <= 3; step++) {
+            final double x = step;
+            final double y = 0.5 * step;
+            final double[] variables = {x, y};
+            final double value = tape.evaluate(variables, gradient, frame);
+            assertThat(value).isEqualTo(new DoubleEvaluator().visit(root, variables));
+            assertThat(tape.evaluate(variables, frame)).isEqualTo(value);
+            assertThat(gradient[0])
+                .isWithin(1.0e-12).of(Math.exp(y) + y / (x * x) + Math.PI * x / Math.hypot(x, y));
+            assertThat(gradient[1])
+                .isWithin(1.0e-12).of(x * Math.exp(y) - 1 / x + Math.PI * y / Math.hypot(x, y));
+        }
+    }
+
+    @Test
+    void testSharedAndConstantEntries() {
+        final ExpressionNode root = Main.buildExpressionTree("sin(x) * sin(x) + 2 * (3!)");
+        final ExpressionNode shared = Optimizer.allPasses().optimize(root).root();
+        final GradientTape tape = GradientTapeCompiler.compile(shared);
+        // x, sin(x), the product, the folded constant and the sum
+        assertThat(tape.getLength()).isEqualTo(5);
+        assertThat(tape.getFrameSize()).isEqualTo(10);
+        assertThat(GradientTapeCompiler.compile(root).getLength()).isEqualTo(7);
+
+        final double[] variables = {0.75};
+        assertThat(tape.evaluate(variables)).isEqualTo(Engine.TREE.compile(root).evaluate(variables));
+        assertThat(tape.gradient(variables)[0])
+            .isWithin(1.0e-15).of(2 * Math.sin(0.75) * Math.cos(0.75));
+        assertThat(Main.compileGradientTape("4! / 2").gradient(CompiledExpression.NO_VARIABLES))
+            .isEmpty();
+    }
+
+    @Test
+    void testManyVariables() {
+        final int count = 300;
+        final List<String> names = new ArrayList<>();
+        final StringJoiner expression = new StringJoiner(" + ");
+        final double[] variables = new double[count];
+        for (int slot = 0; slot < count; slot++) {
+            names.add("v" + (char) ('a' + slot / 26 % 26) + (char) ('a' + slot % 26));
+            variables[slot] = slot * 0.01;
+            if (slot > 0) {
+                expression.add(names.get(slot - 1) + " * " + names.get(slot));
+            }
+        }
+        final GradientTape tape = GradientTapeCompiler.compile(
+            Main.buildExpressionTree(expression.toString(), names));
+        assertThat(tape.getVariableCount()).isEqualTo(count);
+
+        final double[] gradient = tape.gradient(variables);
+        for (int slot = 0; slot < count; slot++) {
+            double expected = 0;
+            if (slot > 0) {
+                expected += variables[slot - 1];
+            }
+            if (slot < count - 1) {
+                expected += variables[slot + 1];
+            }
+            assertWithMessage(names.get(slot)).that(gradient[slot]).isWithin(1.0e-12).of(expected);
+        }
+    }
+
+    @Test
+    void testUnusedSlots() {
+        final GradientTape tape =
+            GradientTapeCompiler.compile(Main.buildExpressionTree("b * b", List.of("a", "b")));
+        assertThat(tape.gradient(new double[] {7, 3})).usingExactEquality()
+            .containsExactly(0.0, 6.0)
+            .inOrder();
+    }
+
+    @Test
+    void testCannotDifferentiate() {
+        final IllegalArgumentException factorial = assertThrows(IllegalArgumentException.class,
+            () -> Main.compileGradientTape("(x + 1)!"));
+        assertThat(factorial).hasMessageThat()
+            .isEqualTo("Cannot differentiate factorial of expression with variables");
+
+        final IllegalArgumentException unknown = assertThrows(IllegalArgumentException.class,
+            () -> Main.compileGradientTape("bar(x)"));
+        assertThat(unknown).hasMessageThat()
+            .isEqualTo("Cannot differentiate unknown function: bar");
+    }
+}
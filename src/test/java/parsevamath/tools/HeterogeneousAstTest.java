@@ -29,26 +29,97 @@
 package parsevamath.tools;
 
 import static com.google.common.truth.Truth.assertThat;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
 public class HeterogeneousAstTest {
 
     @Test
-    void testAbstractMathAstVisitorException() {
-        final EvaluateExpressionVisitor visitor =
-            new EvaluateExpressionVisitor();
-        final ExpressionNode expressionNode = new ExpressionNode() {};
+    void testAbstractMathAstVisitorDispatch() {
+        final ExpressionNode root = Main.buildExpressionTree("-(1 + 2 - 3 * x / sin(pi))!");
+        final List<String> visited = new ArrayList<>();
+        new AbstractMathAstVisitor<Void>() {
+            @Override
+            Void visit(AdditionNode node) {
+                return visitInfix(node);
+            }
+
+            @Override
+            Void visit(SubtractionNode node) {
+                return visitInfix(node);
+            }
+
+            @Override
+            Void visit(MultiplicationNode node) {
+                return visitInfix(node);
+            }
+
+            @Override
+            Void visit(DivisionNode node) {
+                return visitInfix(node);
+            }
+
+            @Override
+            Void visit(NegateNode node) {
+                visited.add("NegateNode");
+                return visit(node.innerNode());
+            }
+
+            @Override
+            Void visit(MethodNode node) {
+                visited.add("MethodNode");
+                node.arguments().forEach(this::visit);
+                return null;
+            }
 
-        final String expected = "Unexpected value:"
-            + " class parsevamath.tools.HeterogeneousAstTest$1";
+            @Override
+            Void visit(NumberNode node) {
+                visited.add("NumberNode");
+                return null;
+            }
 
-        final IllegalStateException actual = assertThrows(IllegalStateException.class,
-            () -> visitor.visit(expressionNode));
+            @Override
+            Void visit(ConstantNode node) {
+                visited.add("ConstantNode");
+                return null;
+            }
 
-        assertThat(actual)
-            .hasMessageThat()
-            .isEqualTo(expected);
+            @Override
+            Void visit(FactorialNode node) {
+                visited.add("FactorialNode");
+                return visit(node.innerNode());
+            }
+
+            @Override
+            Void visit(VariableNode node) {
+                visited.add("VariableNode");
+                return null;
+            }
+
+            private Void visitInfix(InfixExpressionNode node) {
+                visited.add(node.getClass().getSimpleName());
+                visit(node.left());
+                return visit(node.right());
+            }
+        }.visit(root);
+
+        assertThat(visited)
+            .containsExactly("FactorialNode", "NegateNode", "SubtractionNode",
+                "AdditionNode", "NumberNode", "NumberNode", "DivisionNode",
+                "MultiplicationNode", "NumberNode", "VariableNode", "MethodNode",
+                "ConstantNode")
+            .inOrder();
+    }
+
+    @Test
+    void testNodesAreValues() {
+        final ExpressionNode first = Main.buildExpressionTree("sqrt(2) * (1 + e)");
+        final ExpressionNode second = Main.buildExpressionTree("sqrt( 2 )*(1+e)");
+        assertThat(first).isEqualTo(second);
+        assertThat(first.hashCode()).isEqualTo(second.hashCode());
+        assertThat(first).isNotEqualTo(Main.buildExpressionTree("sqrt(2) * (1 + pi)"));
     }
 }
@@ -300,4 +300,17 @@ public class HomogeneousAstTest {
             .hasMessageThat()
             .isEqualTo(expected);
     }
+
+    @Test
+    void testVariable() {
+        final String expression = "x * e";
+        final String expected = """
+            '- OP_MUL -> *
+               |- ID -> x
+               '- CONSTANT -> e
+            """;
+        final String actual =
+            ParsevaUtils.toStringTree(Main.buildMathAstNodeTree(expression));
+        assertThat(actual).isEqualTo(expected);
+    }
 }
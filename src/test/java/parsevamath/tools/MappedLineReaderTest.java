@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import parsevamath.tools.grammar.MathLexer;
+
+public class MappedLineReaderTest {
+
+    private static List<String> readLines(Path path, int windowSize) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        final long lineCount = MappedLineReader.forEachLine(path, windowSize,
+            line -> lines.add(line.toString()));
+        assertThat(lineCount).isEqualTo(lines.size());
+        return lines;
+    }
+
+    @Test
+    void testLinesMatchReader(@TempDir Path directory) throws IOException {
+        final String[] contents = {
+            "",
+            "\n",
+            "1 + 2",
+            "1 + 2\n",
+            "1 + 2\r\n\r\nsqrt(2) * pi\n\nx\r\n",
+            "a very long line of more than one window\nb\nccccccccccccccccccccccc",
+        };
+        final Path path = directory.resolve("expressions.txt");
+        for (String content : contents) {
+            Files.writeString(path, content);
+            final List<String> expected = Files.readAllLines(path);
+            for (int windowSize : new int[] {1, 4, 7, MappedLineReader.DEFAULT_WINDOW_SIZE}) {
+                assertThat(readLines(path, windowSize)).isEqualTo(expected);
+            }
+            final List<String> lines = new ArrayList<>();
+            MappedLineReader.forEachLine(path, line -> lines.add(line.toString()));
+            assertThat(lines).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void testLexerTokensMatchStringStream() {
+        final String expression = "sqrt(x) * -2.5e3 + pi! $";
+        final byte[] bytes = ("##" + expression + "##").getBytes(StandardCharsets.US_ASCII);
+        final CharStream stream =
+            new ByteBufferCharStream(ByteBuffer.wrap(bytes), 2, bytes.length - 2);
+
+        final List<Token> expected = tokens(CharStreams.fromString(expression));
+        final List<Token> actual = tokens(stream);
+        assertThat(actual).hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getType()).isEqualTo(expected.get(i).getType());
+            assertThat(actual.get(i).getText()).isEqualTo(expected.get(i).getText());
+        }
+
+        assertThat(stream.size()).isEqualTo(expression.length());
+        assertThat(stream.getText(Interval.of(0, 3))).isEqualTo("sqrt");
+        assertThat(stream.getText(Interval.of(21, 100))).isEqualTo("! $");
+        assertThat(stream.getSourceName()).isEqualTo(IntStream.UNKNOWN_SOURCE_NAME);
+        assertThat(stream.LA(1)).isEqualTo(IntStream.EOF);
+        assertThat(stream.LA(-1)).isEqualTo((int) '$');
+        assertThat(stream.LA(0)).isEqualTo(IntStream.EOF);
+        assertThrows(IllegalStateException.class, stream::consume);
+
+        stream.seek(0);
+        final int marker = stream.mark();
+        assertThat(stream.LA(1)).isEqualTo((int) 's');
+        assertThat(stream.LA(-1)).isEqualTo(IntStream.EOF);
+        stream.release(marker);
+        stream.consume();
+        assertThat(stream.index()).isEqualTo(1);
+    }
+
+    private static List<Token> tokens(CharStream stream) {
+        final MathLexer lexer = new MathLexer(stream);
+        lexer.removeErrorListeners();
+        final CommonTokenStream tokenStream = new CommonTokenStream(lexer);
+        tokenStream.fill();
+        return tokenStream.getTokens();
+    }
+
+    @Test
+    void testBatchFromMappedFile(@TempDir Path directory) throws IOException {
+        final Path path = directory.resolve("expressions.txt");
+        Files.writeString(path, "1 + 2\r\n\r\n2 +* 3\n(3!)");
+        final BatchRunner runner = new BatchRunner(
+            line -> new DoubleEvaluator().visit(ExpressionParser.buildExpressionTreeStrictly(line)));
+        final StringWriter output = new StringWriter();
+
+        final BatchRunner.Summary summary = runner.run(path, output);
+        assertThat(output.toString()).isEqualTo("3.0\n\n"
+            + "error: line 1:3 extraneous input '*' expecting "
+            + "{'e', 'E', 'pi', 'PI', '+', '-', '(', NUM, ID}\n"
+            + "6.0\n");
+        assertThat(summary).isEqualTo(new BatchRunner.Summary(4, 1));
+    }
+}
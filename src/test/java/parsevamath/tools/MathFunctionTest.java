@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+public class MathFunctionTest {
+
+    @Test
+    void testFunctionsMatchJavaLangMath() throws ReflectiveOperationException {
+        final double[] arguments = {0.5, 0.25, 2.0};
+        for (MathFunction function : MathFunction.values()) {
+            final Class<?>[] paramTypes = new Class<?>[function.getArity()];
+            Arrays.fill(paramTypes, double.class);
+            final Method method = Math.class.getMethod(function.getFunctionName(), paramTypes);
+            final Object[] boxedArguments = Arrays.stream(arguments, 0, function.getArity())
+                .boxed()
+                .toArray();
+            final double expected = ((Number) method.invoke(null, boxedArguments)).doubleValue();
+
+            final double actual = switch (function.getArity()) {
+                case 1 -> function.apply(arguments[0]);
+                case 2 -> function.apply(arguments[0], arguments[1]);
+                default -> function.apply(arguments[0], arguments[1], arguments[2]);
+            };
+
+            assertWithMessage(function.name())
+                .that(actual)
+                .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void testLookup() {
+        assertThat(MathFunction.lookup("sin", 1)).isEqualTo(Optional.of(MathFunction.SIN));
+        assertThat(MathFunction.lookup("pow", 2)).isEqualTo(Optional.of(MathFunction.POW));
+        assertThat(MathFunction.lookup("fma", 3)).isEqualTo(Optional.of(MathFunction.FMA));
+        assertThat(MathFunction.lookup("sin", 2)).isEqualTo(Optional.empty());
+        assertThat(MathFunction.lookup("nosuchfunction", 1)).isEqualTo(Optional.empty());
+    }
+
+    @Test
+    void testFunctionResolvedWhenAstIsBuilt() {
+        final MethodNode node = (MethodNode) Main.buildExpressionTree("hypot(3, 4)");
+        assertThat(node.function()).isEqualTo(MathFunction.HYPOT);
+        assertThat(node.functionName()).isEqualTo("hypot");
+
+        final MethodNode unknown = (MethodNode) Main.buildExpressionTree("hypot(3)");
+        assertThat(unknown.function()).isNull();
+        assertThat(Main.evaluate("hypot(3)")).isNaN();
+    }
+
+    @Test
+    void testIntegralReturnTypes() {
+        assertThat(Main.evaluate("round(2.5)")).isEqualTo(3.0);
+        assertThat(Main.evaluate("getExponent(1024)")).isEqualTo(10.0);
+        assertThat(Main.evaluate("fma(2, 3, 4)")).isEqualTo(10.0);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class OptimizerTest {
+
+    @Test
+    void testOptimizedTreeHasSameValue() {
+        final Optimizer optimizer = Optimizer.allPasses();
+        for (String expression : BytecodeCompilerTest.EXPRESSIONS) {
+            final ExpressionNode root = Main.buildExpressionTree(expression);
+            final double expected = new DoubleEvaluator().visit(root);
+            final double actual = new DoubleEvaluator().visit(optimizer.optimize(root).root());
+            assertWithMessage(expression)
+                .that(actual)
+                .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void testConstantFolding() {
+        final ExpressionNode actual = optimize("2 * pi / 360 + sqrt(2) + (4!)",
+            OptimizationPass.CONSTANT_FOLDING);
+        assertThat(actual).isEqualTo(
+            new NumberNode(2 * Math.PI / 360 + Math.sqrt(2) + 24));
+        assertThat(optimize("nosuchfunction(2)", OptimizationPass.CONSTANT_FOLDING))
+            .isEqualTo(new NumberNode(Double.NaN));
+    }
+
+    @Test
+    void testIdentityRemoval() {
+        final NumberNode two = new NumberNode(2);
+        assertThat(optimize("2 + 0", OptimizationPass.IDENTITY_REMOVAL)).isEqualTo(two);
+        assertThat(optimize("0 + 2", OptimizationPass.IDENTITY_REMOVAL)).isEqualTo(two);
+        assertThat(optimize("2 - 0", OptimizationPass.IDENTITY_REMOVAL)).isEqualTo(two);
+        assertThat(optimize("2 * 1", OptimizationPass.IDENTITY_REMOVAL)).isEqualTo(two);
+        assertThat(optimize("1 * 2", OptimizationPass.IDENTITY_REMOVAL)).isEqualTo(two);
+        assertThat(optimize("2 / 1", OptimizationPass.IDENTITY_REMOVAL)).isEqualTo(two);
+        assertThat(optimize("--2", OptimizationPass.IDENTITY_REMOVAL)).isEqualTo(two);
+        assertThat(optimize("---2", OptimizationPass.IDENTITY_REMOVAL))
+            .isEqualTo(new NegateNode(two));
+        assertThat(optimize("0 - 2", OptimizationPass.IDENTITY_REMOVAL))
+            .isEqualTo(new SubtractionNode(new NumberNode(0), two));
+        assertThat(optimize("1 / 2", OptimizationPass.IDENTITY_REMOVAL))
+            .isEqualTo(new DivisionNode(new NumberNode(1), two));
+    }
+
+    @Test
+    void testStrengthReduction() {
+        assertThat(optimize("sqrt(3) / 4", OptimizationPass.STRENGTH_REDUCTION))
+            .isEqualTo(new MultiplicationNode(Main.buildExpressionTree("sqrt(3)"),
+                new NumberNode(0.25)));
+        assertThat(optimize("1 / 3", OptimizationPass.STRENGTH_REDUCTION))
+            .isEqualTo(Main.buildExpressionTree("1 / 3"));
+        assertThat(StrengthReductionVisitor.hasExactReciprocal(-0.5)).isTrue();
+        assertThat(StrengthReductionVisitor.hasExactReciprocal(0)).isFalse();
+        assertThat(StrengthReductionVisitor.hasExactReciprocal(Double.MIN_VALUE)).isFalse();
+        assertThat(StrengthReductionVisitor.hasExactReciprocal(Double.POSITIVE_INFINITY))
+            .isFalse();
+        assertThat(StrengthReductionVisitor.hasExactReciprocal(Double.NaN)).isFalse();
+    }
+
+    @Test
+    void testPassStatistics() {
+        final Optimizer optimizer = new Optimizer(List.of(
+            OptimizationPass.STRENGTH_REDUCTION, OptimizationPass.IDENTITY_REMOVAL));
+        assertThat(optimizer.getPasses()).containsExactly(
+            OptimizationPass.IDENTITY_REMOVAL, OptimizationPass.STRENGTH_REDUCTION).inOrder();
+
+        final Optimizer.Result result = optimizer.optimize(
+            Main.buildExpressionTree("sqrt(3) * 1 / 2"));
+        assertThat(result.statistics()).containsExactly(
+            new Optimizer.PassStatistics(OptimizationPass.IDENTITY_REMOVAL, 6, 4),
+            new Optimizer.PassStatistics(OptimizationPass.STRENGTH_REDUCTION, 4, 4)).inOrder();
+        assertThat(result.statistics().get(0).toString())
+            .isEqualTo("IDENTITY_REMOVAL: 6 -> 4 nodes");
+    }
+
+    @Test
+    void testNoPasses() {
+        final ExpressionNode root = Main.buildExpressionTree("2 * 1");
+        final Optimizer.Result result = new Optimizer(EnumSet.noneOf(OptimizationPass.class))
+            .optimize(root);
+        assertThat(result.root()).isSameInstanceAs(root);
+        assertThat(result.statistics()).isEmpty();
+    }
+
+    @Test
+    void testMainCompileWithOptimizer() {
+        final CompiledExpression compiled = Main.compile("2 * pi / 360", Engine.VM,
+            Optimizer.allPasses());
+        assertThat(compiled.evaluate()).isEqualTo(2 * Math.PI / 360);
+    }
+
+    private static ExpressionNode optimize(String expression, OptimizationPass pass) {
+        return pass.apply(Main.buildExpressionTree(expression));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+public class ParallelEvaluatorTest {
+
+    @Test
+    void testRowsMatchSequential() {
+        final int rowCount = 10_007;
+        final double[][] columns = new double[2][rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            columns[0][row] = row * 0.5;
+            columns[1][row] = rowCount - row;
+        }
+        final BatchEvaluator evaluator = new BatchEvaluator(
+            ProgramCompiler.compile(Main.buildExpressionTree("sqrt(x) * y - x / (y + 1)")), 64);
+        final double[] expected = evaluator.evaluate(columns, rowCount);
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int threshold : new int[] {1, 100, ParallelEvaluator.DEFAULT_THRESHOLD}) {
+                final ParallelEvaluator parallel = new ParallelEvaluator(pool, threshold);
+                assertThat(parallel.evaluate(evaluator, columns, rowCount)).isEqualTo(expected);
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+        assertThat(new ParallelEvaluator().evaluate(evaluator, columns, rowCount))
+            .isEqualTo(expected);
+    }
+
+    @Test
+    void testExpressionsInOrder() {
+        final List<String> expressions = new ArrayList<>();
+        final double[] expected = new double[500];
+        for (int i = 0; i < expected.length; i++) {
+            expressions.add(i + " * 2 + 1");
+            expected[i] = i * 2 + 1;
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            final ParallelEvaluator parallel = new ParallelEvaluator(pool, 7);
+            assertThat(parallel.evaluate(expressions)).isEqualTo(expected);
+            assertThat(parallel.getThreshold()).isEqualTo(7);
+            assertThat(parallel.getPool()).isSameInstanceAs(pool);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testRepeatedExpressionsAreEvaluatedOnce() {
+        final List<String> expressions = new ArrayList<>();
+        final double[] expected = new double[300];
+        for (int i = 0; i < expected.length; i++) {
+            expressions.add("sqrt(" + i % 3 + " + 7)");
+            expected[i] = Math.sqrt(i % 3 + 7);
+        }
+
+        final ExpressionCache<ExpressionNode> cache = Main.getExpressionCache();
+        final long lookupCount = cache.getHitCount() + cache.getMissCount();
+        assertThat(new ParallelEvaluator().evaluate(expressions)).isEqualTo(expected);
+        assertThat(cache.getHitCount() + cache.getMissCount() - lookupCount).isEqualTo(3);
+    }
+
+    @Test
+    void testErrorsArePropagated() {
+        final ParallelEvaluator parallel = new ParallelEvaluator();
+        final IllegalStateException actual = assertThrows(IllegalStateException.class,
+            () -> parallel.evaluate(List.of("1 + 1", "q * 2")));
+        assertThat(actual).hasMessageThat().contains("Variable 'q' is not bound");
+
+        final IllegalArgumentException threshold = assertThrows(IllegalArgumentException.class,
+            () -> new ParallelEvaluator(ForkJoinPool.commonPool(), 0));
+        assertThat(threshold).hasMessageThat().isEqualTo("Threshold must be positive: 0");
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.antlr.v4.runtime.CharStreams;
+
+import org.junit.jupiter.api.Test;
+
+public class PrattParserTest {
+
+    /**
+     * Valid expressions covering every rule, precedence level and lexer
+     * corner case of the grammar.
+     */
+    private static final List<String> VALID_CORPUS = List.of(
+        "1", "3.25", "6.02e23", "1E-3", "2e+2", "0.5e1",
+        "e", "E", "pi", "PI", "x", "ex", "Pi", "pie", "abc",
+        "1 + 2", "1 - 2 - 3", "8 / 4 / 2", "2 * 3 + 4", "2 + 3 * 4", "2 - 3 / 4 * 5",
+        "(1 + 2) * 3", "((1))", "-1", "+1", "--1", "-+-1", "-2 * 3", "2 * -3", "-x + y",
+        "- (1 + 2)", "1 - -2", "2 * +3 - -4 / -5",
+        "3!", "(3!)", "-3!", "2 * 3!", "2 + 3!", "3!!", "(3!) + 1", "1 + (3!) * 2",
+        "-(3!)", "2 * -3! + 1", "3! + 1",
+        "sqrt(4)", "sqrt(x * x + y * y)", "max(1, 2)", "fma(1, 2, 3)", "foo(1, 2, 3, 4)",
+        "sin(cos(tan(x)))", "max(-1, -(2!))", "2 * sin(x) + 1", "hypot(3, 4) / 5",
+        "x * y + x * z - y", "a + b + c + d + a",
+        " 1\t+\r\n2 ", "\n\n  (x)\n");
+
+    /**
+     * Invalid expressions, which must fail with both front-ends.
+     */
+    private static final List<String> INVALID_CORPUS = List.of(
+        "", " ", "1 +", "* 2", "(1 + 2", "1 + 2)", "()", "sqrt()", "max(1,)",
+        "max(1 2)", "1 2", "x y", "pi(2)", "e(1)", "1.", "1.e5", ".5", "2 $ 3",
+        "ä", "!", "3 ! 4", "sqrt(1, )", ",", "1 + (", "f(1,,2)",
+        "2e", "2ex", "1e+", "1E-x");
+
+    /**
+     * Names of the variables, constants and functions of generated expressions,
+     * with each function taking one more argument than the previous one.
+     */
+    private static final String[] NAMES = {"x", "y", "z", "e", "pi", "sqrt", "max", "fma"};
+
+    /**
+     * Infix operators of generated expressions.
+     */
+    private static final String[] OPERATORS = {"+", "-", "*", "/"};
+
+    private static void assertSameTree(String expression) {
+        final ExpressionNode expected = ExpressionParser.buildExpressionTreeStrictly(expression);
+        assertWithMessage(expression)
+            .that(PrattParser.buildExpressionTree(expression))
+            .isEqualTo(expected);
+    }
+
+    private static String generate(Random random, int depth) {
+        final String expression;
+        final int choice = random.nextInt(depth <= 0 ? 3 : 8);
+        switch (choice) {
+            case 0 -> expression = Integer.toString(random.nextInt(100));
+            case 1 -> expression = random.nextInt(10) + "." + random.nextInt(10)
+                + "e" + (random.nextInt(7) - 3);
+            case 2 -> expression = NAMES[random.nextInt(3)];
+            case 3 -> expression = NAMES[3 + random.nextInt(2)];
+            case 4 -> expression = generate(random, depth - 1) + space(random)
+                + OPERATORS[random.nextInt(OPERATORS.length)] + space(random)
+                + generate(random, depth - 1);
+            case 5 -> expression = (random.nextBoolean() ? "-" : "+") + space(random)
+                + generate(random, depth - 1);
+            case 6 -> expression = "(" + generate(random, depth - 1) + ")"
+                + (random.nextBoolean() ? "!" : "");
+            default -> {
+                final List<String> arguments = new ArrayList<>();
+                final int count = 1 + random.nextInt(3);
+                for (int i = 0; i < count; i++) {
+                    arguments.add(generate(random, depth - 1));
+                }
+                expression = NAMES[4 + count] + "(" + String.join(", ", arguments)
+                    + ")";
+            }
+        }
+        return expression;
+    }
+
+    private static String space(Random random) {
+        return random.nextBoolean() ? " " : "";
+    }
+
+    @Test
+    void testValidCorpus() {
+        for (String expression : VALID_CORPUS) {
+            assertSameTree(expression);
+        }
+    }
+
+    @Test
+    void testGeneratedCorpus() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            final String expression = generate(random, 1 + random.nextInt(6));
+            assertSameTree(expression);
+            assertSameTree(expression + "!");
+        }
+    }
+
+    @Test
+    void testInvalidCorpus() {
+        for (String expression : INVALID_CORPUS) {
+            assertThrows(IllegalArgumentException.class,
+                () -> ExpressionParser.buildExpressionTreeStrictly(expression), expression);
+            assertThrows(IllegalArgumentException.class,
+                () -> PrattParser.buildExpressionTree(expression), expression);
+        }
+    }
+
+    @Test
+    void testSyntaxErrorPosition() {
+        final IllegalArgumentException unexpected = assertThrows(IllegalArgumentException.class,
+            () -> PrattParser.buildExpressionTree("1 +* 2"));
+        assertThat(unexpected).hasMessageThat().isEqualTo("line 1:3 unexpected '*'");
+
+        final IllegalArgumentException mismatched = assertThrows(IllegalArgumentException.class,
+            () -> PrattParser.buildExpressionTree("(1\n+ 2"));
+        assertThat(mismatched).hasMessageThat()
+            .isEqualTo("line 2:3 mismatched input <EOF> expecting ')'");
+
+        final IllegalArgumentException unknown = assertThrows(IllegalArgumentException.class,
+            () -> PrattParser.buildExpressionTree("2 $ 3"));
+        assertThat(unknown).hasMessageThat()
+            .isEqualTo("line 1:2 token recognition error at: '$'");
+    }
+
+    @Test
+    void testVariableNames() {
+        final List<String> names = List.of("y", "x");
+        assertThat(PrattParser.buildExpressionTree("x * y + x", names))
+            .isEqualTo(ExpressionParser.buildExpressionTree("x * y + x", names));
+
+        final IllegalStateException actual = assertThrows(IllegalStateException.class,
+            () -> PrattParser.buildExpressionTree("x * z", names));
+        assertThat(actual).hasMessageThat().isEqualTo("Unknown variable: z");
+    }
+
+    @Test
+    void testFrontEnds() {
+        for (FrontEnd frontEnd : FrontEnd.values()) {
+            assertThat(Engine.TREE.compile(frontEnd.buildExpressionTree("2 * (3!) + 1"))
+                .evaluate()).isEqualTo(13.0);
+            assertThat(frontEnd.buildExpressionTree(
+                CharStreams.fromString("max(x, -y)")))
+                .isEqualTo(PrattParser.buildExpressionTree("max(x, -y)"));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import org.junit.jupiter.api.Test;
+
+public class ProgramCompilerTest {
+
+    @Test
+    void testProgramMatchesTree() {
+        for (String expression : BytecodeCompilerTest.EXPRESSIONS) {
+            final ExpressionNode root = Main.buildExpressionTree(expression);
+            final double expected = Engine.TREE.compile(root).evaluate();
+            final double actual = Engine.VM.compile(root).evaluate();
+            assertWithMessage(expression)
+                .that(actual)
+                .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void testConstantsAndFunctionsAreShared() {
+        final Program program = ProgramCompiler.compile(
+            Main.buildExpressionTree("sqrt(2) + sqrt(2) * 2 - hypot(2, 3)"));
+        assertThat(program.getConstantCount()).isEqualTo(2);
+        assertThat(program.getFunctionCount()).isEqualTo(2);
+        assertThat(program.evaluate()).isEqualTo(
+            Math.sqrt(2) + Math.sqrt(2) * 2 - Math.hypot(2, 3));
+    }
+
+    @Test
+    void testMaxStack() {
+        assertThat(compile("1").getMaxStack()).isEqualTo(1);
+        assertThat(compile("1 + 2 + 3 + 4").getMaxStack()).isEqualTo(2);
+        assertThat(compile("1 + (2 + (3 + 4))").getMaxStack()).isEqualTo(4);
+        assertThat(compile("fma(1, 2, 3)").getMaxStack()).isEqualTo(3);
+        assertThat(compile("-(5!)").getMaxStack()).isEqualTo(1);
+    }
+
+    @Test
+    void testCodeLayout() {
+        // const 0, const 1, add
+        assertThat(compile("2 + 3").getCodeLength()).isEqualTo(5);
+        // const 0, neg, call1 0
+        assertThat(compile("abs(-2)").getCodeLength()).isEqualTo(5);
+    }
+
+    @Test
+    void testStackIsReusable() {
+        final Program program = compile("(1 + 2) * (3 + 4) - max(5, 6)");
+        final double[] stack = new double[program.getFrameSize()];
+        assertThat(program.evaluate(CompiledExpression.NO_VARIABLES, stack)).isEqualTo(15.0);
+        assertThat(program.evaluate(CompiledExpression.NO_VARIABLES, stack)).isEqualTo(15.0);
+    }
+
+    @Test
+    void testUnknownFunctionIsNaN() {
+        assertThat(Main.evaluate("nosuchfunction(2)", Engine.VM)).isNaN();
+    }
+
+    private static Program compile(String expression) {
+        return ProgramCompiler.compile(Main.buildExpressionTree(expression));
+    }
+}
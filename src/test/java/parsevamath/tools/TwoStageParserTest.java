@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.junit.jupiter.api.Test;
+
+import parsevamath.tools.grammar.MathParser;
+
+public class TwoStageParserTest {
+
+    private static final List<String> EXPRESSIONS = List.of("2 * sin(x) + 1",
+        "max(x, y) - (3!)", "-(1 + 2) / e", "sqrt(x * x + y * y)", "pi * r * r");
+
+    @Test
+    void testReuseAfterErrors() {
+        final ExpressionNode expected = ExpressionParser.buildExpressionTreeStrictly("1 + x");
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IllegalArgumentException.class,
+                () -> ExpressionParser.buildExpressionTreeStrictly("1 + $"));
+            assertThrows(IllegalArgumentException.class,
+                () -> ExpressionParser.buildExpressionTreeStrictly("(1 + x"));
+            assertThat(ExpressionParser.buildExpressionTreeStrictly("1 + x")).isEqualTo(expected);
+            assertThat(ExpressionParser.parseStrictly("1 + x").getText()).isEqualTo("1+x<EOF>");
+        }
+    }
+
+    @Test
+    void testConcurrentParsing() throws Exception {
+        final List<ExpressionNode> expected = new ArrayList<>();
+        for (String expression : EXPRESSIONS) {
+            expected.add(ExpressionParser.buildExpressionTreeStrictly(expression));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int task = 0; task < 32; task++) {
+                final int offset = task;
+                results.add(executor.submit(() -> {
+                    boolean same = true;
+                    for (int i = 0; i < 500; i++) {
+                        final int index = (offset + i) % EXPRESSIONS.size();
+                        same &= expected.get(index).equals(
+                            ExpressionParser.buildExpressionTreeStrictly(EXPRESSIONS.get(index)));
+                        if (i % 50 == 0) {
+                            assertThrows(IllegalArgumentException.class,
+                                () -> ExpressionParser.buildExpressionTreeStrictly("1 +"));
+                        }
+                    }
+                    return same;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertThat(result.get()).isTrue();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testNestedParseUsesFreshInstance() {
+        final TwoStageParser parsers = new TwoStageParser(ConsoleErrorListener.INSTANCE);
+        final String nested = parsers.parse(CharStreams.fromString("1 + 2"), parser -> {
+            final String inner = parsers.parse(CharStreams.fromString("3 * 4"),
+                MathParser::compilationUnit, MathParser::compilationUnit).getText();
+            return inner + " " + parser.compilationUnit().getText();
+        }, parser -> "fallback");
+
+        assertThat(nested).isEqualTo("3*4<EOF> 1+2<EOF>");
+    }
+}
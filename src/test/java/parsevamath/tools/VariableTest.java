@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) parseva-math  2021.
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package parsevamath.tools;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class VariableTest {
+
+    @Test
+    void testSlotsInOrderOfAppearance() {
+        final ExpressionNode root = Main.buildExpressionTree("y * x + sqrt(y) - e * ex");
+        assertThat(ParsevaUtils.getVariableNames(root))
+            .containsExactly("y", "x", "ex")
+            .inOrder();
+        final MultiplicationNode product = (MultiplicationNode) ((SubtractionNode) root).right();
+        assertThat(product.left()).isEqualTo(new ConstantNode(Math.E));
+        assertThat(product.right()).isEqualTo(new VariableNode("ex", 2));
+    }
+
+    @Test
+    void testDeclaredSlots() {
+        final ExpressionNode root = Main.buildExpressionTree("b - a", List.of("a", "b", "c"));
+        assertThat(root).isEqualTo(
+            new SubtractionNode(new VariableNode("b", 1), new VariableNode("a", 0)));
+        assertThat(Engine.VM.compile(root).evaluate(new double[] {1, 5, 0})).isEqualTo(4.0);
+        assertThat(ParsevaUtils.getVariableNames(Main.buildExpressionTree("c", List.of("a", "c"))))
+            .containsExactly(null, "c")
+            .inOrder();
+
+        final IllegalStateException actual = assertThrows(IllegalStateException.class,
+            () -> Main.buildExpressionTree("a + d", List.of("a", "b")));
+        assertThat(actual).hasMessageThat().isEqualTo("Unknown variable: d");
+    }
+
+    @Test
+    void testEnginesMatchTree() {
+        final String expression = "x * x - 2 * x * y + sqrt(y) / z + (max(x, y)!) - --z";
+        final ExpressionNode root = Main.buildExpressionTree(expression);
+        final double[] variables = {3, 4, 0.5};
+        final double expected = new DoubleEvaluator().visit(root, variables);
+        assertThat(expected).isEqualTo(9 - 24 + 4 + 24 - 0.5);
+        assertThat(new EvaluateExpressionVisitor(variables).visit(root)).isEqualTo(expected);
+
+        final ExpressionNode optimized = Optimizer.allPasses().optimize(root).root();
+        for (Engine engine : Engine.values()) {
+            assertWithMessage(engine.name())
+                .that(engine.compile(root).evaluate(variables))
+                .isEqualTo(expected);
+            assertWithMessage(engine.name())
+                .that(engine.compile(optimized).evaluate(variables))
+                .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void testOptimizerKeepsVariables() {
+        final ExpressionNode root = Main.buildExpressionTree("x * 1 + 0 + (2 * 3) * x / 4");
+        final ExpressionNode optimized = Optimizer.allPasses().optimize(root).root();
+        final VariableNode x = new VariableNode("x", 0);
+        assertThat(optimized).isEqualTo(new AdditionNode(x,
+            new MultiplicationNode(new MultiplicationNode(new NumberNode(6), x),
+                new NumberNode(0.25))));
+    }
+
+    @Test
+    void testManyVariables() {
+        final List<String> names = new ArrayList<>();
+        final StringBuilder expression = new StringBuilder("0");
+        for (int i = 0; i < 300; i++) {
+            final String name = "v" + Character.toString('a' + i / 26) + (char) ('a' + i % 26);
+            names.add(name.substring(1));
+            expression.append(" + ").append(name.substring(1));
+        }
+        final ExpressionNode root = Main.buildExpressionTree(expression.toString(), names);
+        final double[] variables = new double[names.size()];
+        Arrays.setAll(variables, i -> i);
+        for (Engine engine : Engine.values()) {
+            assertWithMessage(engine.name())
+                .that(engine.compile(root).evaluate(variables))
+                .isEqualTo(299 * 300 / 2.0);
+        }
+    }
+
+    @Test
+    void testMainBindsVariablesByName() {
+        assertThat(Main.evaluate("r * r * pi", Engine.BYTECODE, Map.of("r", 2.0)))
+            .isEqualTo(4 * Math.PI);
+        assertThat(Main.evaluate("2 + 2", Engine.TREE, Map.of("r", 2.0))).isEqualTo(4.0);
+
+        final IllegalStateException actual = assertThrows(IllegalStateException.class,
+            () -> Main.evaluate("r * q", Engine.TREE, Map.of("r", 2.0)));
+        assertThat(actual).hasMessageThat().isEqualTo("Variable 'q' is not bound");
+        assertThrows(IllegalStateException.class, () -> Main.evaluate("q + 1"));
+    }
+}